@@ -51,7 +51,16 @@ import java.util.Map;
 
 public class ArcBinGridReader extends AbstractProductReader {
 
+    /**
+     * The name of the system property telling whether the class frequencies of integer grids
+     * with a colour palette are computed when the product is opened.
+     */
+    public static final String CLASS_FREQUENCIES_PROPERTY = "beam.arcbin.classFrequencies";
+
     private RasterDataFile rasterDataFile;
+    private CachingGridTileProvider gridTileCache;
+    private GridClassCounter classCounter;
+    private OverviewCache overviewCache;
     private static final String BAND_NAME = "classes";
     private static final String PRODUCT_TYPE = "ARC_INFO_BIN_GRID";
 
@@ -88,27 +97,70 @@ public class ArcBinGridReader extends AbstractProductReader {
 
         int productDataType = getDataType(header, rasterStatistics);
         final Band band = product.addBand(BAND_NAME, productDataType);
-        double nodataValue = getNodataValue(productDataType);
+        final double nodataValue = getNodataValue(productDataType);
         band.setNoDataValue(nodataValue);
         band.setNoDataValueUsed(true);
         final int databufferType = ImageManager.getDataBufferType(productDataType);
-        final GridTileProvider gridTileProvider;
+        final GridTileProvider decodingProvider;
+        final IntegerGridTileDecoder integerDecoder;
         if (ProductData.isIntType(productDataType)) {
-            gridTileProvider = new IntegerGridTileProvider(rasterDataFile, tileIndex, (int) nodataValue, gridTileSize,
-                                                           productDataType);
+            final IntegerGridTileProvider integerProvider =
+                    new IntegerGridTileProvider(rasterDataFile, tileIndex, (int) nodataValue, gridTileSize);
+            decodingProvider = integerProvider;
+            integerDecoder = integerProvider;
+            final double upperY = georefBounds.lowerLeftY + height * header.pixelSizeY;
+            classCounter = new GridClassCounter(integerDecoder, header.tilesPerRow, gridTileSize, width, height,
+                                                (int) nodataValue,
+                                                GridClassCounter.createRowAreas(upperY, header.pixelSizeX,
+                                                                                header.pixelSizeY, height));
         } else {
             final int tileLength = gridTileSize.width * gridTileSize.height;
-            gridTileProvider = new FloatGridTileProvider(rasterDataFile, tileIndex, (float) nodataValue, tileLength,
-                                                         productDataType);
+            decodingProvider = new FloatGridTileProvider(rasterDataFile, tileIndex, (float) nodataValue, tileLength);
+            integerDecoder = null;
         }
+        // the decoded grid tiles are shared by the images of all resolution levels
+        gridTileCache = CachingGridTileProvider.create(decodingProvider, gridTileSize, databufferType);
+        final GridTileProvider gridTileProvider = gridTileCache;
         final MultiLevelModel model = new DefaultMultiLevelModel(i2m, width, height);
+        if (ProductData.isIntType(productDataType)) {
+            final File tileIndexFile = getCaseInsensitiveFile(gridDir, TileIndex.FILE_NAME);
+            final File rasterFile = getCaseInsensitiveFile(gridDir, RasterDataFile.FILE_NAME);
+            final OverviewCache cache = OverviewCache.createDefault(gridDir, headerFile, tileIndexFile, rasterFile);
+            if (cache.getMinLevel() < model.getLevelCount()) {
+                overviewCache = cache;
+            }
+        }
+        final OverviewCache levelOverviewCache = overviewCache;
         AbstractMultiLevelSource multiLevelSource = new AbstractMultiLevelSource(model) {
             @Override
             protected RenderedImage createImage(int level) {
                 if (rasterDataFile != null) {
                     ResolutionLevel resolutionLevel = ResolutionLevel.create(model, level);
-                    return new GridTileOpImage(width, height, imageTileSize, databufferType, resolutionLevel, header,
-                                               gridTileSize, gridTileProvider);
+                    GridTileOpImage gridTileImage = new GridTileOpImage(width, height, imageTileSize, databufferType,
+                                                                        resolutionLevel, header, gridTileSize,
+                                                                        gridTileProvider);
+                    if (levelOverviewCache == null || level < levelOverviewCache.getMinLevel()) {
+                        return gridTileImage;
+                    }
+                    // coarse levels show the dominant class of each area, once it has been computed
+                    final int minLevel = levelOverviewCache.getMinLevel();
+                    final OverviewBuilder builder;
+                    if (level == minLevel) {
+                        builder = OverviewBuilder.fromGrid(levelOverviewCache, level, gridTileImage.getWidth(),
+                                                           gridTileImage.getHeight(), databufferType,
+                                                           (int) resolutionLevel.getScale(), (int) nodataValue,
+                                                           integerDecoder, header.tilesPerRow, gridTileSize,
+                                                           width, height);
+                    } else {
+                        // the lowest cached level is created first, so its builder is run first
+                        final RenderedImage minLevelImage = getImage(minLevel);
+                        builder = OverviewBuilder.fromOverview(levelOverviewCache, level, gridTileImage.getWidth(),
+                                                               gridTileImage.getHeight(), databufferType,
+                                                               1 << (level - minLevel), (int) nodataValue, minLevel,
+                                                               minLevelImage.getWidth(), minLevelImage.getHeight());
+                    }
+                    levelOverviewCache.build(builder);
+                    return new OverviewOpImage(width, height, levelOverviewCache, gridTileImage, resolutionLevel);
                 } else {
                     throw new IllegalStateException("rasterDataFile is closed");
                 }
@@ -123,7 +175,14 @@ public class ArcBinGridReader extends AbstractProductReader {
             if (colorPaletteDef != null) {
                 band.setImageInfo(new ImageInfo(colorPaletteDef));
                 final Map<Integer, String> descriptionMap = LegendFile.createDescriptionMap(gridDir);
-                IndexCoding indexCoding = ColorPalette.createIndexCoding(colorPaletteDef, descriptionMap);
+                ClassHistogram classHistogram = null;
+                if (classCounter != null && Boolean.getBoolean(CLASS_FREQUENCIES_PROPERTY)) {
+                    classHistogram = classCounter.count(new Rectangle(width, height));
+                    product.getMetadataRoot().addElement(
+                            MetaDataHandler.createClassHistogramElement(classHistogram, descriptionMap));
+                }
+                IndexCoding indexCoding = ColorPalette.createIndexCoding(colorPaletteDef, descriptionMap,
+                                                                         classHistogram);
                 product.getIndexCodingGroup().add(indexCoding);
                 band.setSampleCoding(indexCoding);
             }
@@ -139,6 +198,24 @@ public class ArcBinGridReader extends AbstractProductReader {
         return product;
     }
 
+    /**
+     * Computes the number of pixels and the area of each class within a region of the grid.
+     * Run-length encoded grid tiles are counted without expanding them into pixels, and the grid
+     * tiles are decoded in parallel.
+     *
+     * @param region the region in pixel coordinates, which is clipped to the bounds of the grid.
+     * @return the histogram of the classes.
+     * @throws IOException if the grid is not an integer grid, the reader has been closed or the
+     *                     computation fails.
+     */
+    public ClassHistogram computeClassHistogram(Rectangle region) throws IOException {
+        final GridClassCounter counter = classCounter;
+        if (counter == null) {
+            throw new IOException("Class histograms can only be computed for open integer grids.");
+        }
+        return counter.count(region);
+    }
+
     private GeoCoding createGeoCoding(int width, int height, AffineTransform i2m) {
         // TODO parse projection from prj.adf file. For now we assume WGS84 (applicable for GlobToolBox products) (mz, 2010-02-24)
         Rectangle imageBounds = new Rectangle(width, height);
@@ -170,10 +247,20 @@ public class ArcBinGridReader extends AbstractProductReader {
     @Override
     public void close() throws IOException {
         super.close();
+        // overview building is stopped first, so no overview is written from a closed grid
+        if (overviewCache != null) {
+            overviewCache.close();
+            overviewCache = null;
+        }
         if (rasterDataFile != null) {
             rasterDataFile.close();
             rasterDataFile = null;
         }
+        if (gridTileCache != null) {
+            gridTileCache.clear();
+            gridTileCache = null;
+        }
+        classCounter = null;
     }
 
     private int getDataType(Header header, RasterStatistics rasterStatistics) throws ProductIOException {
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.arcbin;
+
+import org.esa.beam.dataio.util.WeighedLruCache;
+
+import java.awt.Dimension;
+import java.awt.image.DataBuffer;
+
+/**
+ * A {@link GridTileProvider} keeping the decoded grid tiles of another provider in memory, so
+ * the images of all resolution levels of a band do not decode the same tiles again. The least
+ * recently used tiles are dropped when the size of the cached data exceeds the maximum size.
+ * <p/>
+ * Grid tiles are cached at full resolution as primitive arrays and copied into the rasters
+ * line by line. If caching is disabled, the grid tiles are decoded into the rasters directly.
+ */
+class CachingGridTileProvider implements GridTileProvider {
+
+    /**
+     * The name of the system property defining the maximum size of the cached grid tiles in
+     * megabytes. The budget applies to each band separately, so the memory used grows with the
+     * number of open grids. A size of zero disables caching.
+     */
+    static final String CACHE_SIZE_PROPERTY = "beam.arcbin.tileCacheSize";
+
+    private static final int DEFAULT_CACHE_SIZE = 32;
+
+    private final GridTileProvider delegate;
+    private final Dimension gridTileSize;
+    private final int dataType;
+    private final long tileSize;
+    private final WeighedLruCache<Integer, Object> tiles;
+
+    /**
+     * Creates a provider whose maximum size is given by the system property {@link #CACHE_SIZE_PROPERTY}.
+     *
+     * @param delegate     the provider decoding the grid tiles.
+     * @param gridTileSize the size of the grid tiles.
+     * @param dataType     the data type of the rasters, one of the {@link DataBuffer} type constants.
+     * @return the provider.
+     */
+    static CachingGridTileProvider create(GridTileProvider delegate, Dimension gridTileSize, int dataType) {
+        return new CachingGridTileProvider(delegate, gridTileSize, dataType,
+                                           Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE) * 1024L * 1024L);
+    }
+
+    CachingGridTileProvider(GridTileProvider delegate, Dimension gridTileSize, int dataType, long maxSize) {
+        this.delegate = delegate;
+        this.gridTileSize = gridTileSize;
+        this.dataType = dataType;
+        // all grid tiles are cached at full size
+        tileSize = (long) gridTileSize.width * gridTileSize.height * DataBuffer.getDataTypeSize(dataType) / 8;
+        tiles = new WeighedLruCache<Integer, Object>(maxSize) {
+            @Override
+            protected long weigh(Object tileData) {
+                return tileSize;
+            }
+        };
+    }
+
+    @Override
+    public void readData(int tileIndex, GridTileWriter writer) {
+        // cached arrays are never modified, so they are copied without locking
+        final Object cachedData = tiles.get(tileIndex);
+        if (cachedData != null) {
+            writer.copy(cachedData);
+            return;
+        }
+        if (tileSize > tiles.getMaxWeight()) {
+            delegate.readData(tileIndex, writer);
+            return;
+        }
+        final Object tileData = createArray(gridTileSize.width * gridTileSize.height);
+        delegate.readData(tileIndex, GridTileWriter.create(tileData, gridTileSize, 0, gridTileSize.width, 1));
+        writer.copy(tileData);
+        tiles.put(tileIndex, tileData);
+    }
+
+    void clear() {
+        tiles.clear();
+    }
+
+    /**
+     * Returns the size of the cached grid tiles.
+     *
+     * @return the size in bytes.
+     */
+    long getSize() {
+        return tiles.getWeight();
+    }
+
+    long getHitCount() {
+        return tiles.getHitCount();
+    }
+
+    long getMissCount() {
+        return tiles.getMissCount();
+    }
+
+    private Object createArray(int length) {
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                return new byte[length];
+            case DataBuffer.TYPE_SHORT:
+            case DataBuffer.TYPE_USHORT:
+                return new short[length];
+            case DataBuffer.TYPE_INT:
+                return new int[length];
+            case DataBuffer.TYPE_FLOAT:
+                return new float[length];
+            default:
+                throw new IllegalStateException("Unsupported data type: " + dataType);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.arcbin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The number of pixels and the area of each class of an integer Arc/Info grid, as computed by
+ * {@link ArcBinGridReader#computeClassHistogram}. No-data pixels are not counted.
+ */
+public final class ClassHistogram {
+
+    // classes in this range are counted in arrays, all others in maps
+    private static final int DENSE_CLASS_COUNT = 1 << 16;
+
+    private long[] denseCounts;
+    private double[] denseAreas;
+    private final Map<Integer, long[]> sparseCounts;
+    private final Map<Integer, double[]> sparseAreas;
+    private final boolean geographic;
+    private long totalPixelCount;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param geographic whether the grid is geographic, i.e. the areas of its pixels are known.
+     */
+    ClassHistogram(boolean geographic) {
+        this.geographic = geographic;
+        sparseCounts = new HashMap<Integer, long[]>();
+        sparseAreas = new HashMap<Integer, double[]>();
+    }
+
+    /**
+     * Returns the classes occurring in the grid.
+     *
+     * @return the class values in ascending order.
+     */
+    public int[] getClasses() {
+        final TreeSet<Integer> classes = new TreeSet<Integer>(sparseCounts.keySet());
+        if (denseCounts != null) {
+            for (int value = 0; value < DENSE_CLASS_COUNT; value++) {
+                if (denseCounts[value] > 0) {
+                    classes.add(value);
+                }
+            }
+        }
+        final int[] result = new int[classes.size()];
+        int i = 0;
+        for (final Integer value : classes) {
+            result[i++] = value;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of pixels of a class.
+     *
+     * @param classValue the class value.
+     * @return the number of pixels.
+     */
+    public long getPixelCount(int classValue) {
+        if (isDense(classValue)) {
+            return denseCounts != null ? denseCounts[classValue] : 0;
+        }
+        final long[] count = sparseCounts.get(classValue);
+        return count != null ? count[0] : 0;
+    }
+
+    /**
+     * Returns the area covered by a class, assuming geographic WGS84 coordinates.
+     *
+     * @param classValue the class value.
+     * @return the area in square kilometres, zero if the class does not occur, or {@code NaN} if
+     *         the grid is not geographic.
+     */
+    public double getArea(int classValue) {
+        if (!geographic) {
+            return Double.NaN;
+        }
+        if (isDense(classValue)) {
+            return denseAreas != null ? denseAreas[classValue] : 0.0;
+        }
+        final double[] area = sparseAreas.get(classValue);
+        return area != null ? area[0] : 0.0;
+    }
+
+    /**
+     * Returns the number of pixels of all classes.
+     *
+     * @return the number of pixels.
+     */
+    public long getTotalPixelCount() {
+        return totalPixelCount;
+    }
+
+    /**
+     * Returns the fraction of the pixels of all classes which belong to a class.
+     *
+     * @param classValue the class value.
+     * @return the frequency, between zero and one.
+     */
+    public double getFrequency(int classValue) {
+        final long total = getTotalPixelCount();
+        return total > 0 ? getPixelCount(classValue) / (double) total : 0.0;
+    }
+
+    void add(int classValue, long count, double area) {
+        totalPixelCount += count;
+        if (isDense(classValue)) {
+            if (denseCounts == null) {
+                denseCounts = new long[DENSE_CLASS_COUNT];
+                denseAreas = new double[DENSE_CLASS_COUNT];
+            }
+            denseCounts[classValue] += count;
+            denseAreas[classValue] += area;
+        } else {
+            long[] sparseCount = sparseCounts.get(classValue);
+            if (sparseCount == null) {
+                sparseCount = new long[1];
+                sparseCounts.put(classValue, sparseCount);
+                sparseAreas.put(classValue, new double[1]);
+            }
+            sparseCount[0] += count;
+            sparseAreas.get(classValue)[0] += area;
+        }
+    }
+
+    void add(ClassHistogram other) {
+        if (other.denseCounts != null) {
+            for (int value = 0; value < DENSE_CLASS_COUNT; value++) {
+                if (other.denseCounts[value] > 0) {
+                    add(value, other.denseCounts[value], other.denseAreas[value]);
+                }
+            }
+        }
+        for (final Map.Entry<Integer, long[]> entry : other.sparseCounts.entrySet()) {
+            add(entry.getKey(), entry.getValue()[0], other.sparseAreas.get(entry.getKey())[0]);
+        }
+    }
+
+    private static boolean isDense(int classValue) {
+        return classValue >= 0 && classValue < DENSE_CLASS_COUNT;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.arcbin;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+
+/**
+ * An {@link IntegerGridTileWriter} adding the samples of a grid tile to a {@link ClassHistogram}
+ * instead of writing them into a raster. Runs of equal samples are counted as a whole, so
+ * run-length encoded grid tiles are never expanded into pixels.
+ */
+class ClassHistogramWriter extends IntegerGridTileWriter {
+
+    private final ClassHistogram histogram;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int tileX;
+    private final int tileY;
+    private final Rectangle region;
+    private final int nodataValue;
+    private final double[] rowAreas;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param histogram    the histogram.
+     * @param gridTileSize the size of the grid tile.
+     * @param tileX        the x coordinate of the grid tile within the grid.
+     * @param tileY        the y coordinate of the grid tile within the grid.
+     * @param region       the region of the grid which is counted.
+     * @param nodataValue  the no-data value, which is not counted.
+     * @param rowAreas     the area of a pixel in each row of the grid, or {@code null} if unknown.
+     */
+    ClassHistogramWriter(ClassHistogram histogram, Dimension gridTileSize, int tileX, int tileY,
+                         Rectangle region, int nodataValue, double[] rowAreas) {
+        this.histogram = histogram;
+        this.tileWidth = gridTileSize.width;
+        this.tileHeight = gridTileSize.height;
+        this.tileX = tileX;
+        this.tileY = tileY;
+        this.region = region;
+        this.nodataValue = nodataValue;
+        this.rowAreas = rowAreas;
+    }
+
+    @Override
+    void setInt(int index, int value) {
+        fillInt(index, 1, value);
+    }
+
+    @Override
+    void fillInt(int index, int count, int value) {
+        if (value == nodataValue) {
+            return;
+        }
+        final int end = index + count;
+        while (index < end) {
+            final int y = index / tileWidth;
+            final int lineEnd = Math.min(end, (y + 1) * tileWidth);
+            final int gridY = tileY + y;
+            if (gridY >= region.y && gridY < region.y + region.height) {
+                final int x0 = Math.max(tileX + index - y * tileWidth, region.x);
+                final int x1 = Math.min(tileX + lineEnd - y * tileWidth, region.x + region.width);
+                if (x1 > x0) {
+                    final double area = rowAreas != null ? (x1 - x0) * rowAreas[gridY] : Double.NaN;
+                    histogram.add(value, x1 - x0, area);
+                }
+            }
+            index = lineEnd;
+        }
+    }
+
+    @Override
+    void copy(Object tileData) {
+        // consecutive equal samples are counted as runs
+        final int size = tileWidth * tileHeight;
+        int runStart = 0;
+        int runValue = getSample(tileData, 0);
+        for (int i = 1; i < size; i++) {
+            final int value = getSample(tileData, i);
+            if (value != runValue) {
+                fillInt(runStart, i - runStart, runValue);
+                runStart = i;
+                runValue = value;
+            }
+        }
+        fillInt(runStart, size - runStart, runValue);
+    }
+
+    private static int getSample(Object tileData, int index) {
+        if (tileData instanceof byte[]) {
+            return ((byte[]) tileData)[index] & 0xff;
+        } else if (tileData instanceof short[]) {
+            return ((short[]) tileData)[index];
+        }
+        return ((int[]) tileData)[index];
+    }
+}
@@ -107,12 +107,23 @@ class ColorPalette {
     }
 
     static IndexCoding createIndexCoding(ColorPaletteDef colorPaletteDef, Map<Integer, String> descriptionMap ) {
+        return createIndexCoding(colorPaletteDef, descriptionMap, null);
+    }
+
+    // if a class histogram is given, the frequency of each class is appended to its description
+    static IndexCoding createIndexCoding(ColorPaletteDef colorPaletteDef, Map<Integer, String> descriptionMap,
+                                         ClassHistogram classHistogram) {
         final IndexCoding indexCoding = new IndexCoding("index_coding");
         final Point[] points = colorPaletteDef.getPoints();
         for (Point point : points) {
             final int sample = (int) point.getSample();
             final String name = "class_ " + sample;
-            indexCoding.addIndex(name, sample, descriptionMap.get(sample) );
+            String description = descriptionMap.get(sample);
+            if (classHistogram != null) {
+                final String frequency = String.format("%.2f %%", 100.0 * classHistogram.getFrequency(sample));
+                description = description != null ? description + " (" + frequency + ")" : frequency;
+            }
+            indexCoding.addIndex(name, sample, description);
         }
         return indexCoding;
     }
@@ -15,65 +15,57 @@
  */
 package org.esa.beam.dataio.arcbin;
 
-import com.bc.ceres.binio.util.ByteArrayCodec;
 import org.esa.beam.dataio.arcbin.TileIndex.IndexEntry;
-import org.esa.beam.framework.datamodel.ProductData;
 
-import java.awt.image.DataBuffer;
-import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
 
 
 class FloatGridTileProvider implements GridTileProvider {
 
-    private static final ByteArrayCodec byteArrayCodec = ByteArrayCodec.getInstance(ByteOrder.BIG_ENDIAN);
-
     private final RasterDataFile rasterDataFile;
     private final TileIndex tileIndex;
     private final float nodataValue;
     private final int size;
-    private final int productDataType;
 
 
-    FloatGridTileProvider(RasterDataFile rasterDataFile, TileIndex tileIndex, float nodataValue, int size,
-                          int productDataType) {
+    FloatGridTileProvider(RasterDataFile rasterDataFile, TileIndex tileIndex, float nodataValue, int size) {
         this.rasterDataFile = rasterDataFile;
         this.tileIndex = tileIndex;
         this.nodataValue = nodataValue;
         this.size = size;
-        this.productDataType = productDataType;
     }
 
     @Override
-    public ProductData getData(int currentTileIndex) {
-        ProductData data = ProductData.createInstance(productDataType, size);
+    public void readData(int currentTileIndex, GridTileWriter data) {
+        // the raster data file is not closed while the tile is decoded from its mapping
+        rasterDataFile.beginRead();
+        try {
+            decodeTile(currentTileIndex, data);
+        } finally {
+            rasterDataFile.endRead();
+        }
+    }
+
+    private void decodeTile(int currentTileIndex, GridTileWriter data) {
         IndexEntry indexEntry = tileIndex.getIndexEntry(currentTileIndex);
         if (indexEntry == null) {
             fillBuffer(data, nodataValue);
         } else {
             try {
-                byte[] rawTileData = rasterDataFile.loadRawTileData(indexEntry);
+                ByteBuffer rawTileData = rasterDataFile.getRawTileData(indexEntry);
                 int tileOffset = 2;
                 for (int i = 0; i < size; i++) {
-                    float value = byteArrayCodec.getFloat(rawTileData, tileOffset);
+                    float value = rawTileData.getFloat(tileOffset);
                     tileOffset += 4;
-                    data.setElemFloatAt(i, value);
+                    data.setFloat(i, value);
                 }
             } catch (Exception ignored) {
                 fillBuffer(data, nodataValue);
             }
         }
-        return data;
     }
 
-    @Override
-    public void transferData(ProductData data, int sourceIndex, DataBuffer dataBuffer, int targetIndex) {
-        float value = data.getElemFloatAt(sourceIndex);
-        dataBuffer.setElemFloat(targetIndex, value);
-    }
-
-    private void fillBuffer(ProductData data, float value) {
-        for (int i = 0; i < size; i++) {
-            data.setElemFloatAt(i, value);
-        }
+    private void fillBuffer(GridTileWriter data, float value) {
+        data.fillFloat(0, size, value);
     }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.arcbin;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Computes the {@link ClassHistogram} of an integer Arc/Info grid. The grid tiles are decoded
+ * in parallel, and the decoded runs are counted without expanding them into pixels.
+ */
+class GridClassCounter {
+
+    // the authalic radius of the WGS84 ellipsoid in kilometres
+    private static final double EARTH_RADIUS = 6371.0072;
+
+    private final IntegerGridTileDecoder decoder;
+    private final int tilesPerRow;
+    private final Dimension gridTileSize;
+    private final int width;
+    private final int height;
+    private final int nodataValue;
+    private final double[] rowAreas;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param decoder      the provider decoding the grid tiles, which must be thread-safe.
+     * @param tilesPerRow  the number of grid tiles per row of the grid.
+     * @param gridTileSize the size of the grid tiles.
+     * @param width        the width of the grid.
+     * @param height       the height of the grid.
+     * @param nodataValue  the no-data value, which is not counted.
+     * @param rowAreas     the area of a pixel in each row of the grid, or {@code null} if unknown.
+     */
+    GridClassCounter(IntegerGridTileDecoder decoder, int tilesPerRow, Dimension gridTileSize, int width, int height,
+                     int nodataValue, double[] rowAreas) {
+        this.decoder = decoder;
+        this.tilesPerRow = tilesPerRow;
+        this.gridTileSize = gridTileSize;
+        this.width = width;
+        this.height = height;
+        this.nodataValue = nodataValue;
+        this.rowAreas = rowAreas;
+    }
+
+    /**
+     * Computes the histogram of a region of the grid.
+     *
+     * @param region the region, which is clipped to the bounds of the grid.
+     * @return the histogram.
+     * @throws IOException if the computation fails or is interrupted.
+     */
+    ClassHistogram count(Rectangle region) throws IOException {
+        final ClassHistogram histogram = new ClassHistogram(rowAreas != null);
+        final Rectangle bounds = region.intersection(new Rectangle(width, height));
+        if (bounds.isEmpty()) {
+            return histogram;
+        }
+        final int tileRow0 = bounds.y / gridTileSize.height;
+        final int tileRow1 = (bounds.y + bounds.height - 1) / gridTileSize.height;
+        final int tileCol0 = bounds.x / gridTileSize.width;
+        final int tileCol1 = (bounds.x + bounds.width - 1) / gridTileSize.width;
+        final int taskCount = Math.min(Runtime.getRuntime().availableProcessors(), tileRow1 - tileRow0 + 1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(taskCount, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "Arc/Info class counter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            final List<Future<ClassHistogram>> futures = new ArrayList<Future<ClassHistogram>>(taskCount);
+            for (int task = 0; task < taskCount; task++) {
+                // the tasks take every taskCount-th row of grid tiles
+                final int firstRow = tileRow0 + task;
+                futures.add(executor.submit(new Callable<ClassHistogram>() {
+                    @Override
+                    public ClassHistogram call() throws IOException {
+                        final ClassHistogram taskHistogram = new ClassHistogram(rowAreas != null);
+                        for (int row = firstRow; row <= tileRow1; row += taskCount) {
+                            for (int col = tileCol0; col <= tileCol1; col++) {
+                                final ClassHistogramWriter writer = new ClassHistogramWriter(
+                                        taskHistogram, gridTileSize, col * gridTileSize.width,
+                                        row * gridTileSize.height, bounds, nodataValue, rowAreas);
+                                decoder.readData(row * tilesPerRow + col, writer);
+                            }
+                        }
+                        return taskHistogram;
+                    }
+                }));
+            }
+            for (final Future<ClassHistogram> future : futures) {
+                histogram.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Class counting has been interrupted.");
+        } catch (ExecutionException e) {
+            throw new IOException("Class counting has failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return histogram;
+    }
+
+    /**
+     * Computes the area of a pixel in each row of a geographic WGS84 grid.
+     *
+     * @param upperY     the latitude of the upper border of the grid.
+     * @param pixelSizeX the width of a pixel in degrees.
+     * @param pixelSizeY the height of a pixel in degrees.
+     * @param height     the height of the grid.
+     * @return the areas in square kilometres, or {@code null} if the grid is not geographic.
+     */
+    static double[] createRowAreas(double upperY, double pixelSizeX, double pixelSizeY, int height) {
+        final double lowerY = upperY - height * pixelSizeY;
+        if (upperY > 90.0 || lowerY < -90.0 || pixelSizeX <= 0.0 || pixelSizeX > 360.0) {
+            return null;
+        }
+        final double[] rowAreas = new double[height];
+        final double factor = EARTH_RADIUS * EARTH_RADIUS * Math.toRadians(pixelSizeX);
+        for (int y = 0; y < height; y++) {
+            final double lat1 = Math.toRadians(upperY - y * pixelSizeY);
+            final double lat2 = Math.toRadians(upperY - (y + 1) * pixelSizeY);
+            rowAreas[y] = factor * Math.abs(Math.sin(lat1) - Math.sin(lat2));
+        }
+        return rowAreas;
+    }
+}
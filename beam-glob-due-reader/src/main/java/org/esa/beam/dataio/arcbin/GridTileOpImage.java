@@ -15,7 +15,6 @@
  */
 package org.esa.beam.dataio.arcbin;
 
-import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.jai.ResolutionLevel;
 import org.esa.beam.jai.SingleBandedOpImage;
 
@@ -23,6 +22,11 @@ import javax.media.jai.PlanarImage;
 import java.awt.Dimension;
 import java.awt.Rectangle;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
 import java.awt.image.WritableRaster;
 
 
@@ -50,6 +54,7 @@ class GridTileOpImage extends SingleBandedOpImage {
     @Override
     protected final void computeRect(PlanarImage[] planarImages, WritableRaster targetRaster, Rectangle rectangle) {
         DataBuffer dataBuffer = targetRaster.getDataBuffer();
+        Object data = getData(dataBuffer);
 
         int tileXStart = xToGridTileX(targetRaster.getMinX());
         int tileXEnd = xToGridTileX(targetRaster.getMinX() + targetRaster.getWidth() - 1);
@@ -71,25 +76,36 @@ class GridTileOpImage extends SingleBandedOpImage {
             for (int tileX = tileXStart; tileX <= tileXEnd; tileX += tileStepX) {
                 int sourceX = gridTileXToX(tileX);
                 int gridTileIndex = (sourceX / header.tileXSize) + tileIndexY;
-                ProductData data = gridTileProvider.getData(gridTileIndex);
 
                 int numTilesX = tileX - tileXStart;
                 int rasterOffset = rasterOffsetY + numTilesX * gridTileSize.width / subsampling;
 
-                int writtenLines = 0;
-                for (int y = 0; y < gridTileSize.height; y += subsampling) {
-                    int targetIndex = rasterOffset + writtenLines * targetRaster.getWidth();
-                    for (int x = 0; x < gridTileSize.width; x += subsampling) {
-                        int sourceIndex = x + y * gridTileSize.width;
-                        gridTileProvider.transferData(data, sourceIndex, dataBuffer, targetIndex);
-                        targetIndex++;
-                    }
-                    writtenLines++;
-                }
+                // the grid tile is decoded into the data buffer, applying the subsampling
+                GridTileWriter writer = GridTileWriter.create(data, gridTileSize,
+                                                              dataBuffer.getOffset() + rasterOffset,
+                                                              targetRaster.getWidth(), subsampling);
+                gridTileProvider.readData(gridTileIndex, writer);
             }
         }
     }
 
+    static Object getData(DataBuffer dataBuffer) {
+        switch (dataBuffer.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                return ((DataBufferByte) dataBuffer).getData();
+            case DataBuffer.TYPE_SHORT:
+                return ((DataBufferShort) dataBuffer).getData();
+            case DataBuffer.TYPE_USHORT:
+                return ((DataBufferUShort) dataBuffer).getData();
+            case DataBuffer.TYPE_INT:
+                return ((DataBufferInt) dataBuffer).getData();
+            case DataBuffer.TYPE_FLOAT:
+                return ((DataBufferFloat) dataBuffer).getData();
+            default:
+                throw new IllegalStateException("Unsupported data type: " + dataBuffer.getDataType());
+        }
+    }
+
     private int gridTileXToX(int tileX) {
         return tileX * gridTileSize.width;
     }
@@ -15,14 +15,14 @@
  */
 package org.esa.beam.dataio.arcbin;
 
-import org.esa.beam.framework.datamodel.ProductData;
-
-import java.awt.image.DataBuffer;
-
 interface GridTileProvider {
 
-    ProductData getData(int tileIndex);
-
-    void transferData(ProductData data, int sourceIndex, DataBuffer dataBuffer, int targetIndex);
+    /**
+     * Decodes a grid tile.
+     *
+     * @param tileIndex the index of the grid tile.
+     * @param writer    the writer receiving the samples of the grid tile.
+     */
+    void readData(int tileIndex, GridTileWriter writer);
 
 }
@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.arcbin;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+
+/**
+ * Receives the samples of a grid tile from a {@link GridTileProvider}. Samples are addressed by
+ * their index within the grid tile. In addition to the integer samples of an
+ * {@link IntegerGridTileWriter}, floating point samples are accepted.
+ * <p/>
+ * The writers created by {@link #create} write the samples into the primitive data array of a
+ * raster. If the raster is subsampled, only every <code>subsampling</code>-th sample of every
+ * <code>subsampling</code>-th line is written. Runs of equal samples are written with
+ * {@link Arrays#fill}, so decoders should prefer {@link #fillInt(int, int, int)} over single
+ * samples wherever the data is run-length encoded. Grid tiles are copied from primitive arrays
+ * of the same type as the data array of the raster.
+ */
+abstract class GridTileWriter extends IntegerGridTileWriter {
+
+    /**
+     * Creates a writer.
+     *
+     * @param data         the data array of the raster, a <code>byte[]</code>, <code>short[]</code>,
+     *                     <code>int[]</code> or <code>float[]</code>.
+     * @param gridTileSize the size of the grid tile.
+     * @param offset       the index of the first sample of the grid tile within the data array.
+     * @param lineStride   the distance between two lines of the raster.
+     * @param subsampling  the subsampling of the raster.
+     * @return the writer.
+     */
+    static GridTileWriter create(Object data, Dimension gridTileSize, int offset, int lineStride, int subsampling) {
+        if (data instanceof byte[]) {
+            return new ByteWriter((byte[]) data, gridTileSize, offset, lineStride, subsampling);
+        } else if (data instanceof short[]) {
+            return new ShortWriter((short[]) data, gridTileSize, offset, lineStride, subsampling);
+        } else if (data instanceof int[]) {
+            return new IntWriter((int[]) data, gridTileSize, offset, lineStride, subsampling);
+        } else if (data instanceof float[]) {
+            return new FloatWriter((float[]) data, gridTileSize, offset, lineStride, subsampling);
+        }
+        throw new IllegalArgumentException("Unsupported data array: " + data);
+    }
+
+    abstract void setFloat(int index, float value);
+
+    abstract void fillFloat(int index, int count, float value);
+
+    /**
+     * Writes the samples into the primitive data array of a raster.
+     */
+    private abstract static class RasterWriter extends GridTileWriter {
+
+        private final int tileWidth;
+        private final int tileHeight;
+        private final int offset;
+        private final int lineStride;
+        private final int subsampling;
+        private final boolean contiguous;
+
+        private RasterWriter(Dimension gridTileSize, int offset, int lineStride, int subsampling) {
+            this.tileWidth = gridTileSize.width;
+            this.tileHeight = gridTileSize.height;
+            this.offset = offset;
+            this.lineStride = lineStride;
+            this.subsampling = subsampling;
+            contiguous = subsampling == 1 && lineStride == tileWidth;
+        }
+
+        @Override
+        final void setInt(int index, int value) {
+            final int targetIndex = getTargetIndex(index);
+            if (targetIndex >= 0) {
+                putInt(targetIndex, value);
+            }
+        }
+
+        @Override
+        final void setFloat(int index, float value) {
+            final int targetIndex = getTargetIndex(index);
+            if (targetIndex >= 0) {
+                putFloat(targetIndex, value);
+            }
+        }
+
+        @Override
+        final void fillInt(int index, int count, int value) {
+            if (contiguous) {
+                fillInts(offset + index, count, value);
+                return;
+            }
+            final int end = index + count;
+            while (index < end) {
+                final int y = index / tileWidth;
+                final int lineEnd = Math.min(end, (y + 1) * tileWidth);
+                if (y % subsampling == 0) {
+                    // the first sample of the line segment which is written
+                    final int x0 = index - y * tileWidth;
+                    final int x1 = lineEnd - y * tileWidth;
+                    final int first = (x0 + subsampling - 1) / subsampling;
+                    final int n = (x1 + subsampling - 1) / subsampling - first;
+                    if (n > 0) {
+                        fillInts(offset + (y / subsampling) * lineStride + first, n, value);
+                    }
+                }
+                index = lineEnd;
+            }
+        }
+
+        @Override
+        final void fillFloat(int index, int count, float value) {
+            for (int i = index; i < index + count; i++) {
+                setFloat(i, value);
+            }
+        }
+
+        @Override
+        final void copy(Object tileData) {
+            if (contiguous) {
+                System.arraycopy(tileData, 0, getData(), offset, tileWidth * tileHeight);
+                return;
+            }
+            for (int y = 0; y < tileHeight; y += subsampling) {
+                final int targetIndex = offset + (y / subsampling) * lineStride;
+                if (subsampling == 1) {
+                    System.arraycopy(tileData, y * tileWidth, getData(), targetIndex, tileWidth);
+                } else {
+                    copyLine(tileData, y * tileWidth, targetIndex, (tileWidth + subsampling - 1) / subsampling,
+                             subsampling);
+                }
+            }
+        }
+
+        // returns -1 if the sample is skipped by the subsampling
+        private int getTargetIndex(int index) {
+            if (contiguous) {
+                return offset + index;
+            }
+            final int y = index / tileWidth;
+            final int x = index - y * tileWidth;
+            if (x % subsampling != 0 || y % subsampling != 0) {
+                return -1;
+            }
+            return offset + (y / subsampling) * lineStride + x / subsampling;
+        }
+
+        abstract Object getData();
+
+        abstract void putInt(int targetIndex, int value);
+
+        abstract void putFloat(int targetIndex, float value);
+
+        abstract void fillInts(int targetIndex, int count, int value);
+
+        abstract void copyLine(Object tileData, int sourceIndex, int targetIndex, int count, int step);
+    }
+
+    private static final class ByteWriter extends RasterWriter {
+
+        private final byte[] data;
+
+        private ByteWriter(byte[] data, Dimension gridTileSize, int offset, int lineStride, int subsampling) {
+            super(gridTileSize, offset, lineStride, subsampling);
+            this.data = data;
+        }
+
+        @Override
+        Object getData() {
+            return data;
+        }
+
+        @Override
+        void putInt(int targetIndex, int value) {
+            data[targetIndex] = (byte) value;
+        }
+
+        @Override
+        void putFloat(int targetIndex, float value) {
+            data[targetIndex] = (byte) value;
+        }
+
+        @Override
+        void fillInts(int targetIndex, int count, int value) {
+            Arrays.fill(data, targetIndex, targetIndex + count, (byte) value);
+        }
+
+        @Override
+        void copyLine(Object tileData, int sourceIndex, int targetIndex, int count, int step) {
+            final byte[] source = (byte[]) tileData;
+            for (int i = 0; i < count; i++) {
+                data[targetIndex + i] = source[sourceIndex + i * step];
+            }
+        }
+    }
+
+    private static final class ShortWriter extends RasterWriter {
+
+        private final short[] data;
+
+        private ShortWriter(short[] data, Dimension gridTileSize, int offset, int lineStride, int subsampling) {
+            super(gridTileSize, offset, lineStride, subsampling);
+            this.data = data;
+        }
+
+        @Override
+        Object getData() {
+            return data;
+        }
+
+        @Override
+        void putInt(int targetIndex, int value) {
+            data[targetIndex] = (short) value;
+        }
+
+        @Override
+        void putFloat(int targetIndex, float value) {
+            data[targetIndex] = (short) value;
+        }
+
+        @Override
+        void fillInts(int targetIndex, int count, int value) {
+            Arrays.fill(data, targetIndex, targetIndex + count, (short) value);
+        }
+
+        @Override
+        void copyLine(Object tileData, int sourceIndex, int targetIndex, int count, int step) {
+            final short[] source = (short[]) tileData;
+            for (int i = 0; i < count; i++) {
+                data[targetIndex + i] = source[sourceIndex + i * step];
+            }
+        }
+    }
+
+    private static final class IntWriter extends RasterWriter {
+
+        private final int[] data;
+
+        private IntWriter(int[] data, Dimension gridTileSize, int offset, int lineStride, int subsampling) {
+            super(gridTileSize, offset, lineStride, subsampling);
+            this.data = data;
+        }
+
+        @Override
+        Object getData() {
+            return data;
+        }
+
+        @Override
+        void putInt(int targetIndex, int value) {
+            data[targetIndex] = value;
+        }
+
+        @Override
+        void putFloat(int targetIndex, float value) {
+            data[targetIndex] = (int) value;
+        }
+
+        @Override
+        void fillInts(int targetIndex, int count, int value) {
+            Arrays.fill(data, targetIndex, targetIndex + count, value);
+        }
+
+        @Override
+        void copyLine(Object tileData, int sourceIndex, int targetIndex, int count, int step) {
+            final int[] source = (int[]) tileData;
+            for (int i = 0; i < count; i++) {
+                data[targetIndex + i] = source[sourceIndex + i * step];
+            }
+        }
+    }
+
+    private static final class FloatWriter extends RasterWriter {
+
+        private final float[] data;
+
+        private FloatWriter(float[] data, Dimension gridTileSize, int offset, int lineStride, int subsampling) {
+            super(gridTileSize, offset, lineStride, subsampling);
+            this.data = data;
+        }
+
+        @Override
+        Object getData() {
+            return data;
+        }
+
+        @Override
+        void putInt(int targetIndex, int value) {
+            data[targetIndex] = value;
+        }
+
+        @Override
+        void putFloat(int targetIndex, float value) {
+            data[targetIndex] = value;
+        }
+
+        @Override
+        void fillInts(int targetIndex, int count, int value) {
+            Arrays.fill(data, targetIndex, targetIndex + count, value);
+        }
+
+        @Override
+        void copyLine(Object tileData, int sourceIndex, int targetIndex, int count, int step) {
+            final float[] source = (float[]) tileData;
+            for (int i = 0; i < count; i++) {
+                data[targetIndex + i] = source[sourceIndex + i * step];
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.arcbin;
+
+import java.io.IOException;
+
+/**
+ * Decodes the grid tiles of an integer grid into writers which accept integer samples only.
+ */
+interface IntegerGridTileDecoder {
+
+    /**
+     * Decodes a grid tile.
+     *
+     * @param tileIndex the index of the grid tile.
+     * @param writer    the writer receiving the samples of the grid tile.
+     * @throws IOException if the grid tile cannot be read.
+     */
+    void readData(int tileIndex, IntegerGridTileWriter writer) throws IOException;
+}
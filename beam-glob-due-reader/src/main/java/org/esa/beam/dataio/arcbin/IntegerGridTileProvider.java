@@ -15,295 +15,283 @@
  */
 package org.esa.beam.dataio.arcbin;
 
-import com.bc.ceres.binio.util.ByteArrayCodec;
 import com.sun.media.imageioimpl.plugins.tiff.TIFFFaxDecompressor;
 import com.sun.media.jai.codec.ByteArraySeekableStream;
 import com.sun.media.jai.codec.SeekableStream;
 import org.esa.beam.dataio.arcbin.TileIndex.IndexEntry;
 import org.esa.beam.framework.dataio.ProductIOException;
-import org.esa.beam.framework.datamodel.ProductData;
 
 import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.MemoryCacheImageInputStream;
 import java.awt.Dimension;
-import java.awt.image.DataBuffer;
 import java.io.IOException;
-import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
 import java.text.MessageFormat;
 
-class IntegerGridTileProvider implements GridTileProvider {
-
-    private static final ByteArrayCodec byteArrayCodec = ByteArrayCodec.getInstance(ByteOrder.BIG_ENDIAN);
+class IntegerGridTileProvider implements GridTileProvider, IntegerGridTileDecoder {
 
     private final RasterDataFile rasterDataFile;
     private final TileIndex tileIndex;
     private final int nodataValue;
     private final int size;
-    private final int productDataType;
     private final Dimension gridTileSize;
 
 
-    IntegerGridTileProvider(RasterDataFile rasterDataFile, TileIndex tileIndex, int nodataValue, Dimension gridTileSize,
-                            int productDataType) {
+    IntegerGridTileProvider(RasterDataFile rasterDataFile, TileIndex tileIndex, int nodataValue, Dimension gridTileSize) {
         this.rasterDataFile = rasterDataFile;
         this.tileIndex = tileIndex;
         this.nodataValue = nodataValue;
         this.gridTileSize = gridTileSize;
         this.size = gridTileSize.width * gridTileSize.height;
-        this.productDataType = productDataType;
     }
 
     @Override
-    public ProductData getData(int currentTileIndex) {
-        ProductData dataBuffer = ProductData.createInstance(productDataType, size);
+    public void readData(int currentTileIndex, GridTileWriter dataBuffer) {
+        try {
+            readTile(currentTileIndex, dataBuffer);
+        } catch (IOException ignored) {
+            // images show grid tiles which cannot be read as no-data
+            fillBuffer(dataBuffer, nodataValue);
+        }
+    }
+
+    @Override
+    public void readData(int currentTileIndex, IntegerGridTileWriter dataBuffer) throws IOException {
+        readTile(currentTileIndex, dataBuffer);
+    }
+
+    private void readTile(int currentTileIndex, IntegerGridTileWriter dataBuffer) throws IOException {
+        // the raster data file is not closed while the tile is decoded from its mapping
+        rasterDataFile.beginRead();
+        try {
+            decodeTile(currentTileIndex, dataBuffer);
+        } finally {
+            rasterDataFile.endRead();
+        }
+    }
+
+    private void decodeTile(int currentTileIndex, IntegerGridTileWriter dataBuffer) throws IOException {
         IndexEntry indexEntry = tileIndex.getIndexEntry(currentTileIndex);
         if (indexEntry == null) {
             fillBuffer(dataBuffer, nodataValue);
         } else {
-            try {
-                byte[] rawTileData = rasterDataFile.loadRawTileData(indexEntry);
-                int tileType = rawTileData[2] & 0xff;
-                int minSize = getMinSize(rawTileData);
-                int min = 0;
-                if (minSize > 0) {
-                    min = getMin(minSize, rawTileData);
-                }
-                int tileDataSize = indexEntry.size - 2 - minSize;
-                int tileOffset = 2 + 2 + minSize;
-                switch (tileType) {
-                    case ArcBinGridConstants.CONST_BLOCK:
-                        fillBuffer(dataBuffer, min);
-                        break;
-                    case ArcBinGridConstants.RAW_1BIT:
-                        handleRaw1Bit(dataBuffer, rawTileData, min, tileOffset);
-                        break;
-                    case ArcBinGridConstants.RAW_4BIT:
-                        handleRaw4Bit(dataBuffer, rawTileData, min, tileOffset);
-                        break;
-                    case ArcBinGridConstants.RAW_8BIT:
-                        handleRaw8Bit(dataBuffer, rawTileData, min, tileOffset);
-                        break;
-                    case ArcBinGridConstants.RAW_16BIT:
-                        handleRaw16Bit(dataBuffer, rawTileData, min, tileOffset);
-                        break;
-                    case ArcBinGridConstants.RAW_32BIT:
-                        handleRaw32Bit(dataBuffer, rawTileData, min, tileOffset);
-                        break;
-                    case ArcBinGridConstants.RLE_4BIT:
-                    case ArcBinGridConstants.RLE_8BIT:
-                        handleRle8Bit(dataBuffer, rawTileData, min, tileOffset);
-                        break;
-                    case ArcBinGridConstants.RLE_16BIT:
-                        handleRle16Bit(dataBuffer, rawTileData, min, tileOffset);
-                        break;
-                    case ArcBinGridConstants.RLE_32BIT:
-                        handleRle32Bit(dataBuffer, rawTileData, min, tileOffset);
-                        break;
-                    case ArcBinGridConstants.RUN_MIN:
-                        handleRunMin(dataBuffer, rawTileData, min, tileOffset);
-                        break;
-                    case ArcBinGridConstants.RUN_8BIT:
-                        handleRun8Bit(dataBuffer, rawTileData, min, tileOffset);
-                        break;
-                    case ArcBinGridConstants.RUN_16BIT:
-                        handleRun16Bit(dataBuffer, rawTileData, min, tileOffset);
-                        break;
-                    case ArcBinGridConstants.CCITT:
-                        handleCCITT(dataBuffer, rawTileData, min, tileDataSize, tileOffset);
-                        break;
-                    default:
-                        fillBuffer(dataBuffer, nodataValue);
-                        break;
-                }
-            } catch (IOException ignored) {
-                fillBuffer(dataBuffer, nodataValue);
+            ByteBuffer rawTileData = rasterDataFile.getRawTileData(indexEntry);
+            int tileType = rawTileData.get(2) & 0xff;
+            int minSize = getMinSize(rawTileData);
+            int min = 0;
+            if (minSize > 0) {
+                min = getMin(minSize, rawTileData);
+            }
+            int tileDataSize = indexEntry.size - 2 - minSize;
+            int tileOffset = 2 + 2 + minSize;
+            switch (tileType) {
+                case ArcBinGridConstants.CONST_BLOCK:
+                    fillBuffer(dataBuffer, min);
+                    break;
+                case ArcBinGridConstants.RAW_1BIT:
+                    handleRaw1Bit(dataBuffer, rawTileData, min, tileOffset);
+                    break;
+                case ArcBinGridConstants.RAW_4BIT:
+                    handleRaw4Bit(dataBuffer, rawTileData, min, tileOffset);
+                    break;
+                case ArcBinGridConstants.RAW_8BIT:
+                    handleRaw8Bit(dataBuffer, rawTileData, min, tileOffset);
+                    break;
+                case ArcBinGridConstants.RAW_16BIT:
+                    handleRaw16Bit(dataBuffer, rawTileData, min, tileOffset);
+                    break;
+                case ArcBinGridConstants.RAW_32BIT:
+                    handleRaw32Bit(dataBuffer, rawTileData, min, tileOffset);
+                    break;
+                case ArcBinGridConstants.RLE_4BIT:
+                case ArcBinGridConstants.RLE_8BIT:
+                    handleRle8Bit(dataBuffer, rawTileData, min, tileOffset);
+                    break;
+                case ArcBinGridConstants.RLE_16BIT:
+                    handleRle16Bit(dataBuffer, rawTileData, min, tileOffset);
+                    break;
+                case ArcBinGridConstants.RLE_32BIT:
+                    handleRle32Bit(dataBuffer, rawTileData, min, tileOffset);
+                    break;
+                case ArcBinGridConstants.RUN_MIN:
+                    handleRunMin(dataBuffer, rawTileData, min, tileOffset);
+                    break;
+                case ArcBinGridConstants.RUN_8BIT:
+                    handleRun8Bit(dataBuffer, rawTileData, min, tileOffset);
+                    break;
+                case ArcBinGridConstants.RUN_16BIT:
+                    handleRun16Bit(dataBuffer, rawTileData, min, tileOffset);
+                    break;
+                case ArcBinGridConstants.CCITT:
+                    handleCCITT(dataBuffer, rawTileData, min, tileDataSize, tileOffset);
+                    break;
+                default:
+                    fillBuffer(dataBuffer, nodataValue);
+                    break;
             }
         }
-        return dataBuffer;
     }
 
-    private void handleCCITT(ProductData dataBuffer, byte[] rawTileData, int min, int tileDataSize,
+    private void handleCCITT(IntegerGridTileWriter dataBuffer, ByteBuffer rawTileData, int min, int tileDataSize,
                              int tileOffset) throws IOException {
         byte[] buffer = decompressCCITT(rawTileData, tileOffset, tileDataSize);
         //  Convert the bit buffer into 32bit integers and account for nMin
-        handleRaw1Bit(dataBuffer, buffer, min, 0);
+        handleRaw1Bit(dataBuffer, ByteBuffer.wrap(buffer), min, 0);
     }
 
-    private void handleRunMin(ProductData dataBuffer, byte[] rawTileData, int min, int tileOffset) {
-        int count = 0;
-        int value = 0;
-        for (int i = 0; i < size; i++) {
-            if (count == 0) {
-                count = rawTileData[tileOffset++] & 0xff;
-                if (count < 128) {
-                    value = min;
-                } else {
-                    count = 256 - count;
-                    value = nodataValue;
-                }
+    private void handleRunMin(IntegerGridTileWriter dataBuffer, ByteBuffer rawTileData, int min, int tileOffset) {
+        int i = 0;
+        while (i < size) {
+            int count = rawTileData.get(tileOffset++) & 0xff;
+            if (count < 128) {
+                count = getRunLength(count, i);
+                dataBuffer.fillInt(i, count, min);
+            } else {
+                count = getRunLength(256 - count, i);
+                dataBuffer.fillInt(i, count, nodataValue);
             }
-            dataBuffer.setElemIntAt(i, value);
-            count--;
+            i += count;
         }
     }
 
-    private void handleRun8Bit(ProductData dataBuffer, byte[] rawTileData, int min, int tileOffset) {
-        int count = 0;
-        int value = 0;
-        boolean readData = true;
-        for (int i = 0; i < size; i++) {
-            if (count == 0) {
-                count = rawTileData[tileOffset++] & 0xff;
-                if (count < 128) {
-                    readData = true;
-                } else {
-                    count = 256 - count;
-                    value = nodataValue;
-                    readData = false;
+    private void handleRun8Bit(IntegerGridTileWriter dataBuffer, ByteBuffer rawTileData, int min, int tileOffset) {
+        int i = 0;
+        while (i < size) {
+            int count = rawTileData.get(tileOffset++) & 0xff;
+            if (count < 128) {
+                count = getRunLength(count, i);
+                for (int k = i; k < i + count; k++) {
+                    dataBuffer.setInt(k, (rawTileData.get(tileOffset++) & 0xff) + min);
                 }
+            } else {
+                count = getRunLength(256 - count, i);
+                dataBuffer.fillInt(i, count, nodataValue);
             }
-            if (readData) {
-                value = (rawTileData[tileOffset++] & 0xff) + min;
-            }
-            dataBuffer.setElemIntAt(i, value);
-            count--;
+            i += count;
         }
     }
 
-    private void handleRun16Bit(ProductData dataBuffer, byte[] rawTileData, int min, int tileOffset) {
-        int count = 0;
-        int value = 0;
-        boolean readData = true;
-        for (int i = 0; i < size; i++) {
-            if (count == 0) {
-                count = rawTileData[tileOffset++] & 0xff;
-                if (count < 128) {
-                    readData = true;
-                } else {
-                    count = 256 - count;
-                    value = nodataValue;
-                    readData = false;
+    private void handleRun16Bit(IntegerGridTileWriter dataBuffer, ByteBuffer rawTileData, int min, int tileOffset) {
+        int i = 0;
+        while (i < size) {
+            int count = rawTileData.get(tileOffset++) & 0xff;
+            if (count < 128) {
+                count = getRunLength(count, i);
+                for (int k = i; k < i + count; k++) {
+                    dataBuffer.setInt(k, rawTileData.get(tileOffset) + min);
+                    tileOffset += 2;
                 }
+            } else {
+                count = getRunLength(256 - count, i);
+                dataBuffer.fillInt(i, count, nodataValue);
             }
-            if (readData) {
-                value = byteArrayCodec.getByte(rawTileData, tileOffset) + min;
-                tileOffset += 2;
-            }
-            dataBuffer.setElemIntAt(i, value);
-            count--;
+            i += count;
         }
     }
 
-    private void handleRle32Bit(ProductData dataBuffer, byte[] rawTileData, int min, int tileOffset) {
-        int count = 0;
-        int value = 0;
-        for (int i = 0; i < size; i++) {
-            if (count == 0) {
-                count = rawTileData[tileOffset++] & 0xff;
-                value = byteArrayCodec.getInt(rawTileData, tileOffset) + min;
-                tileOffset += 4;
-            }
-            dataBuffer.setElemIntAt(i, value);
-            count--;
+    private void handleRle32Bit(IntegerGridTileWriter dataBuffer, ByteBuffer rawTileData, int min, int tileOffset) {
+        int i = 0;
+        while (i < size) {
+            int count = getRunLength(rawTileData.get(tileOffset++) & 0xff, i);
+            int value = rawTileData.getInt(tileOffset) + min;
+            tileOffset += 4;
+            dataBuffer.fillInt(i, count, value);
+            i += count;
         }
     }
 
-    private void handleRle16Bit(ProductData dataBuffer, byte[] rawTileData, int min, int tileOffset) {
-        int count = 0;
-        int value = 0;
-        for (int i = 0; i < size; i++) {
-            if (count == 0) {
-                count = rawTileData[tileOffset++] & 0xff;
-                value = byteArrayCodec.getShort(rawTileData, tileOffset) + min;
-                tileOffset += 2;
-            }
-            dataBuffer.setElemIntAt(i, value);
-            count--;
+    private void handleRle16Bit(IntegerGridTileWriter dataBuffer, ByteBuffer rawTileData, int min, int tileOffset) {
+        int i = 0;
+        while (i < size) {
+            int count = getRunLength(rawTileData.get(tileOffset++) & 0xff, i);
+            int value = rawTileData.getShort(tileOffset) + min;
+            tileOffset += 2;
+            dataBuffer.fillInt(i, count, value);
+            i += count;
         }
     }
 
-    private void handleRle8Bit(ProductData dataBuffer, byte[] rawTileData, int min, int tileOffset) {
-        int count = 0;
-        int value = 0;
-        for (int i = 0; i < size; i++) {
-            if (count == 0) {
-                count = rawTileData[tileOffset++] & 0xff;
-                value = (rawTileData[tileOffset++] & 0xff) + min;
-            }
-            dataBuffer.setElemIntAt(i, value);
-            count--;
+    private void handleRle8Bit(IntegerGridTileWriter dataBuffer, ByteBuffer rawTileData, int min, int tileOffset) {
+        int i = 0;
+        while (i < size) {
+            int count = getRunLength(rawTileData.get(tileOffset++) & 0xff, i);
+            int value = (rawTileData.get(tileOffset++) & 0xff) + min;
+            dataBuffer.fillInt(i, count, value);
+            i += count;
         }
     }
 
-    private void handleRaw32Bit(ProductData dataBuffer, byte[] rawTileData, int min, int tileOffset) {
+    // a run of length zero extends to the end of the tile
+    private int getRunLength(int count, int index) {
+        if (count == 0 || count > size - index) {
+            return size - index;
+        }
+        return count;
+    }
+
+    private void handleRaw32Bit(IntegerGridTileWriter dataBuffer, ByteBuffer rawTileData, int min, int tileOffset) {
         for (int i = 0; i < size; i++) {
-            int value = byteArrayCodec.getInt(rawTileData, tileOffset);
+            int value = rawTileData.getInt(tileOffset);
             tileOffset += 4;
-            dataBuffer.setElemIntAt(i, value + min);
+            dataBuffer.setInt(i, value + min);
         }
     }
 
-    private void handleRaw16Bit(ProductData dataBuffer, byte[] rawTileData, int min, int tileOffset) {
+    private void handleRaw16Bit(IntegerGridTileWriter dataBuffer, ByteBuffer rawTileData, int min, int tileOffset) {
         for (int i = 0; i < size; i++) {
-            short value = byteArrayCodec.getShort(rawTileData, tileOffset);
+            short value = rawTileData.getShort(tileOffset);
             tileOffset += 2;
-            dataBuffer.setElemIntAt(i, value + min);
+            dataBuffer.setInt(i, value + min);
         }
     }
 
-    private void handleRaw8Bit(ProductData dataBuffer, byte[] rawTileData, int min, int tileOffset) {
+    private void handleRaw8Bit(IntegerGridTileWriter dataBuffer, ByteBuffer rawTileData, int min, int tileOffset) {
         for (int i = 0; i < size; i++) {
-            dataBuffer.setElemIntAt(i, rawTileData[tileOffset++] + min);
+            dataBuffer.setInt(i, rawTileData.get(tileOffset++) + min);
         }
     }
 
-    private void handleRaw4Bit(ProductData dataBuffer, byte[] rawTileData, int min, int tileOffset) {
+    private void handleRaw4Bit(IntegerGridTileWriter dataBuffer, ByteBuffer rawTileData, int min, int tileOffset) {
         int rawValue = 0;
         for (int i = 0; i < size; i++) {
             int value;
             if (i % 2 == 0) {
-                rawValue = rawTileData[tileOffset++] & 0xff;
+                rawValue = rawTileData.get(tileOffset++) & 0xff;
                 value = ((rawValue & 0xf0) >> 4);
             } else {
                 value = (rawValue & 0xf);
             }
-            dataBuffer.setElemIntAt(i, value + min);
+            dataBuffer.setInt(i, value + min);
         }
     }
 
-    private void handleRaw1Bit(ProductData dataBuffer, byte[] rawTileData, int min, int tileOffset) {
+    private void handleRaw1Bit(IntegerGridTileWriter dataBuffer, ByteBuffer rawTileData, int min, int tileOffset) {
         for (int i = 0; i < size; i++) {
-            if ((rawTileData[tileOffset + (i >> 3)] & (0x80 >> (i & 0x7))) != 0) {
-                dataBuffer.setElemIntAt(i, min + 1);
+            if ((rawTileData.get(tileOffset + (i >> 3)) & (0x80 >> (i & 0x7))) != 0) {
+                dataBuffer.setInt(i, min + 1);
             } else {
-                dataBuffer.setElemIntAt(i, min);
+                dataBuffer.setInt(i, min);
             }
         }
     }
 
-    @Override
-    public void transferData(ProductData data, int sourceIndex, DataBuffer dataBuffer, int targetIndex) {
-        int value = data.getElemIntAt(sourceIndex);
-        dataBuffer.setElem(targetIndex, value);
+    int getMinSize(ByteBuffer bytes) {
+        return bytes.get(3);
     }
 
-    int getMinSize(byte[] bytes) {
-        return bytes[3];
-    }
-
-    int getMin(int minSize, byte[] bytes) throws ProductIOException {
+    int getMin(int minSize, ByteBuffer bytes) throws ProductIOException {
         if (minSize > 4) {
             throw new ProductIOException(
                     MessageFormat.format("Corrupt 'minsize' of %d in block header.  Read aborted.", minSize));
         }
         int min = 0;
         if (minSize == 4) {
-            min = byteArrayCodec.getInt(bytes, 4);
+            min = bytes.getInt(4);
         } else {
             for (int i = 0; i < minSize; i++) {
-                min = min * 256 + bytes[4 + i];
+                min = min * 256 + bytes.get(4 + i);
             }
-            if (bytes[4] > 127) {
+            if (bytes.get(4) > 127) {
                 if (minSize == 2) {
                     min -= 65536;
                 } else if (minSize == 1) {
@@ -316,14 +304,15 @@ class IntegerGridTileProvider implements GridTileProvider {
         return min;
     }
 
-    private void fillBuffer(ProductData data, int value) {
-        for (int i = 0; i < size; i++) {
-            data.setElemIntAt(i, value);
-        }
+    private void fillBuffer(IntegerGridTileWriter data, int value) {
+        data.fillInt(0, size, value);
     }
 
-    private byte[] decompressCCITT(byte[] rawTileData, int tileOffset, int tileDataSize) throws IOException {
-        SeekableStream stream = new ByteArraySeekableStream(rawTileData, tileOffset, tileDataSize);
+    private byte[] decompressCCITT(ByteBuffer rawTileData, int tileOffset, int tileDataSize) throws IOException {
+        // the decompressor reads from an array, so the rarely used CCITT tiles are copied
+        byte[] rawTileBytes = new byte[rawTileData.capacity()];
+        rawTileData.duplicate().get(rawTileBytes);
+        SeekableStream stream = new ByteArraySeekableStream(rawTileBytes, tileOffset, tileDataSize);
         TIFFFaxDecompressorExtension decompressor = new TIFFFaxDecompressorExtension(tileOffset, tileDataSize);
         ImageInputStream imageInputStream = new MemoryCacheImageInputStream(stream);
         decompressor.setStream(imageInputStream);
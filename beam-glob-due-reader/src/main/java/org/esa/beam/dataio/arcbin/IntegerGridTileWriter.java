@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.arcbin;
+
+/**
+ * Receives the samples of a grid tile of an integer grid. Samples are addressed by their index
+ * within the grid tile.
+ *
+ * @see GridTileWriter
+ */
+abstract class IntegerGridTileWriter {
+
+    abstract void setInt(int index, int value);
+
+    /**
+     * Writes a run of equal samples.
+     *
+     * @param index the index of the first sample within the grid tile.
+     * @param count the number of samples.
+     * @param value the value of the samples.
+     */
+    abstract void fillInt(int index, int count, int value);
+
+    /**
+     * Copies a complete grid tile.
+     *
+     * @param tileData the samples of the grid tile, a primitive array stored line by line.
+     */
+    abstract void copy(Object tileData);
+}
@@ -20,6 +20,8 @@ import org.esa.beam.framework.datamodel.MetadataAttribute;
 import org.esa.beam.framework.datamodel.MetadataElement;
 import org.esa.beam.framework.datamodel.ProductData;
 
+import java.util.Map;
+
 class MetaDataHandler {
 
     private MetaDataHandler() {
@@ -61,6 +63,22 @@ class MetaDataHandler {
         return elem;
     }
 
+    static MetadataElement createClassHistogramElement(ClassHistogram histogram, Map<Integer, String> descriptionMap) {
+        MetadataElement elem = new MetadataElement("ClassHistogram");
+        for (int classValue : histogram.getClasses()) {
+            MetadataElement classElem = new MetadataElement("class_" + classValue);
+            classElem.addAttribute(createIntAttr("value", classValue, descriptionMap.get(classValue)));
+            classElem.addAttribute(createDoubleAttr("pixelCount", histogram.getPixelCount(classValue),
+                                                    "Number of pixels of the class."));
+            classElem.addAttribute(createDoubleAttr("frequency", histogram.getFrequency(classValue),
+                                                    "Fraction of the valid pixels belonging to the class."));
+            classElem.addAttribute(createDoubleAttr("area", histogram.getArea(classValue),
+                                                    "Area of the class in square kilometres."));
+            elem.addElement(classElem);
+        }
+        return elem;
+    }
+
     static MetadataAttribute createIntAttr(String name, int value, String desc) {
         ProductData productData = ProductData.createInstance(new int[]{value});
         MetadataAttribute attribute = new MetadataAttribute(name, productData, true);
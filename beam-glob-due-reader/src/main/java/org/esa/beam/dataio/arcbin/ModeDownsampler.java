@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.arcbin;
+
+import java.awt.image.DataBuffer;
+import java.util.Arrays;
+
+/**
+ * Downsamples classification samples to the most frequent class (mode) of each block of
+ * source samples. No-data samples are ignored, and blocks without any valid sample yield the
+ * no-data value. Ties are resolved in favour of the smallest class value.
+ * <p/>
+ * Instances are not thread-safe.
+ */
+class ModeDownsampler {
+
+    private final int dataType;
+    private final int nodataValue;
+    private final int[] counts;
+    private int[] values;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param dataType    the data type of the samples, {@link DataBuffer#TYPE_BYTE},
+     *                    {@link DataBuffer#TYPE_SHORT} or {@link DataBuffer#TYPE_INT}.
+     * @param nodataValue the no-data value.
+     */
+    ModeDownsampler(int dataType, int nodataValue) {
+        this.dataType = dataType;
+        this.nodataValue = nodataValue;
+        // unsigned bytes are counted directly, all other classes are sorted
+        counts = dataType == DataBuffer.TYPE_BYTE ? new int[256] : null;
+        values = new int[0];
+    }
+
+    /**
+     * Computes the mode of a block of samples.
+     *
+     * @param data   the samples, a primitive array stored line by line.
+     * @param offset the index of the first sample of the block.
+     * @param stride the distance between two lines of the samples.
+     * @param width  the width of the block.
+     * @param height the height of the block.
+     * @return the mode, or the no-data value if there is no valid sample.
+     */
+    int computeMode(Object data, int offset, int stride, int width, int height) {
+        if (counts != null) {
+            return computeByteMode((byte[]) data, offset, stride, width, height);
+        }
+        if (values.length < width * height) {
+            values = new int[width * height];
+        }
+        int n = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int value = getSample(data, offset + y * stride + x, dataType);
+                if (value != nodataValue) {
+                    values[n++] = value;
+                }
+            }
+        }
+        if (n == 0) {
+            return nodataValue;
+        }
+        Arrays.sort(values, 0, n);
+        int mode = values[0];
+        int maxCount = 0;
+        int runStart = 0;
+        for (int i = 1; i <= n; i++) {
+            if (i == n || values[i] != values[runStart]) {
+                if (i - runStart > maxCount) {
+                    maxCount = i - runStart;
+                    mode = values[runStart];
+                }
+                runStart = i;
+            }
+        }
+        return mode;
+    }
+
+    /**
+     * Downsamples a raster.
+     *
+     * @param data         the samples of the raster, a primitive array stored line by line.
+     * @param sourceWidth  the width of the raster.
+     * @param sourceHeight the height of the raster.
+     * @param factor       the downsampling factor.
+     * @param targetWidth  the width of the downsampled raster.
+     * @param targetHeight the height of the downsampled raster.
+     * @return the samples of the downsampled raster, a primitive array of the same type.
+     */
+    Object downsample(Object data, int sourceWidth, int sourceHeight, int factor, int targetWidth, int targetHeight) {
+        final Object target = createArray(dataType, targetWidth * targetHeight);
+        for (int y = 0; y < targetHeight; y++) {
+            final int y0 = y * factor;
+            final int h = Math.min(factor, sourceHeight - y0);
+            for (int x = 0; x < targetWidth; x++) {
+                final int x0 = x * factor;
+                final int w = Math.min(factor, sourceWidth - x0);
+                final int mode = w > 0 && h > 0
+                                 ? computeMode(data, y0 * sourceWidth + x0, sourceWidth, w, h) : nodataValue;
+                setSample(target, y * targetWidth + x, mode, dataType);
+            }
+        }
+        return target;
+    }
+
+    private int computeByteMode(byte[] data, int offset, int stride, int width, int height) {
+        Arrays.fill(counts, 0);
+        for (int y = 0; y < height; y++) {
+            final int lineOffset = offset + y * stride;
+            for (int x = 0; x < width; x++) {
+                counts[data[lineOffset + x] & 0xff]++;
+            }
+        }
+        int mode = nodataValue;
+        int maxCount = 0;
+        for (int value = 0; value < counts.length; value++) {
+            if (counts[value] > maxCount && value != nodataValue) {
+                maxCount = counts[value];
+                mode = value;
+            }
+        }
+        return mode;
+    }
+
+    static Object createArray(int dataType, int length) {
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                return new byte[length];
+            case DataBuffer.TYPE_SHORT:
+            case DataBuffer.TYPE_USHORT:
+                return new short[length];
+            case DataBuffer.TYPE_INT:
+                return new int[length];
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataType);
+        }
+    }
+
+    static int getSample(Object data, int index, int dataType) {
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                return ((byte[]) data)[index] & 0xff;
+            case DataBuffer.TYPE_USHORT:
+                return ((short[]) data)[index] & 0xffff;
+            case DataBuffer.TYPE_SHORT:
+                return ((short[]) data)[index];
+            default:
+                return ((int[]) data)[index];
+        }
+    }
+
+    static void setSample(Object data, int index, int value, int dataType) {
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                ((byte[]) data)[index] = (byte) value;
+                break;
+            case DataBuffer.TYPE_SHORT:
+            case DataBuffer.TYPE_USHORT:
+                ((short[]) data)[index] = (short) value;
+                break;
+            default:
+                ((int[]) data)[index] = value;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.arcbin;
+
+import org.esa.beam.util.Debug;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.lang.reflect.Array;
+
+/**
+ * Builds the {@link OverviewFile} of a resolution level of an integer grid, where each overview
+ * pixel holds the most frequent class (mode) of the grid pixels it covers.
+ * <p/>
+ * The overview file of the lowest cached resolution level is built from the grid tiles at full
+ * resolution, so each grid pixel contributes. Overview files of lower resolution levels are
+ * built from the overview file of the lowest cached level instead, which is much faster, but
+ * yields the mode of modes.
+ */
+class OverviewBuilder implements Runnable {
+
+    private final OverviewCache cache;
+    private final int level;
+    private final int width;
+    private final int height;
+    private final int dataType;
+    private final int factor;
+    private final int nodataValue;
+    // source of builders reading the grid tiles
+    private final IntegerGridTileDecoder gridTileDecoder;
+    private final int tilesPerRow;
+    private final Dimension gridTileSize;
+    // source of builders reading an overview file
+    private final int sourceLevel;
+    // the size of the source raster
+    private final int sourceWidth;
+    private final int sourceHeight;
+
+    private OverviewBuilder(OverviewCache cache, int level, int width, int height, int dataType, int factor,
+                            int nodataValue, IntegerGridTileDecoder gridTileDecoder, int tilesPerRow,
+                            Dimension gridTileSize, int sourceLevel, int sourceWidth, int sourceHeight) {
+        this.cache = cache;
+        this.level = level;
+        this.width = width;
+        this.height = height;
+        this.dataType = dataType;
+        this.factor = factor;
+        this.nodataValue = nodataValue;
+        this.gridTileDecoder = gridTileDecoder;
+        this.tilesPerRow = tilesPerRow;
+        this.gridTileSize = gridTileSize;
+        this.sourceLevel = sourceLevel;
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+    }
+
+    /**
+     * Creates a builder decoding the grid tiles. The building is abandoned if a grid tile cannot
+     * be decoded, so the overview file never holds no-data in place of unreadable tiles.
+     */
+    static OverviewBuilder fromGrid(OverviewCache cache, int level, int width, int height, int dataType,
+                                    int factor, int nodataValue, IntegerGridTileDecoder gridTileDecoder,
+                                    int tilesPerRow, Dimension gridTileSize, int gridWidth, int gridHeight) {
+        return new OverviewBuilder(cache, level, width, height, dataType, factor, nodataValue,
+                                   gridTileDecoder, tilesPerRow, gridTileSize, -1, gridWidth, gridHeight);
+    }
+
+    /**
+     * Creates a builder reading the overview file of a higher resolution level.
+     */
+    static OverviewBuilder fromOverview(OverviewCache cache, int level, int width, int height, int dataType,
+                                        int factor, int nodataValue,
+                                        int sourceLevel, int sourceWidth, int sourceHeight) {
+        return new OverviewBuilder(cache, level, width, height, dataType, factor, nodataValue,
+                                   null, 0, null, sourceLevel, sourceWidth, sourceHeight);
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (cache.isClosed() || cache.getOverviewFile(level, width, height, dataType) != null) {
+                return;
+            }
+            // levels too large for a single mapping are always served by the fallback image
+            if (!OverviewFile.canHold(width, height, dataType)) {
+                return;
+            }
+            final Object data;
+            if (gridTileDecoder != null) {
+                data = downsampleGrid();
+            } else {
+                final OverviewFile sourceFile = cache.getOverviewFile(sourceLevel, sourceWidth, sourceHeight,
+                                                                      dataType);
+                if (sourceFile == null) {
+                    return;
+                }
+                final ModeDownsampler downsampler = new ModeDownsampler(dataType, nodataValue);
+                data = downsampler.downsample(sourceFile.readAll(), sourceWidth, sourceHeight, factor,
+                                              width, height);
+            }
+            if (data != null) {
+                cache.putOverviewFile(level, width, height, dataType, data);
+            }
+        } catch (Exception e) {
+            // the overview file is built when the grid is opened another time
+            if (!cache.isClosed()) {
+                Debug.trace(e);
+            }
+        }
+    }
+
+    private Object downsampleGrid() throws IOException {
+        final ModeDownsampler downsampler = new ModeDownsampler(dataType, nodataValue);
+        final Object data = ModeDownsampler.createArray(dataType, width * height);
+        final int tileWidth = gridTileSize.width;
+        final int tileHeight = gridTileSize.height;
+        final int tileColumns = Math.min(tilesPerRow, (sourceWidth + tileWidth - 1) / tileWidth);
+        final int stripWidth = tileColumns * tileWidth;
+        Object strip = null;
+        for (int y = 0; y < height; y++) {
+            if (cache.isClosed()) {
+                return null;
+            }
+            // the strip holds the grid tile rows covered by a line of overview pixels
+            final int sourceY = y * factor;
+            final int lineCount = Math.min(factor, sourceHeight - sourceY);
+            final int tileRow0 = sourceY / tileHeight;
+            final int tileRow1 = (sourceY + Math.max(lineCount, 1) - 1) / tileHeight;
+            final int stripLength = stripWidth * (tileRow1 - tileRow0 + 1) * tileHeight;
+            if (strip == null || Array.getLength(strip) < stripLength) {
+                strip = ModeDownsampler.createArray(dataType, stripLength);
+            }
+            for (int tileRow = tileRow0; tileRow <= tileRow1; tileRow++) {
+                for (int tileColumn = 0; tileColumn < tileColumns; tileColumn++) {
+                    final int offset = (tileRow - tileRow0) * tileHeight * stripWidth + tileColumn * tileWidth;
+                    gridTileDecoder.readData(tileRow * tilesPerRow + tileColumn,
+                                             GridTileWriter.create(strip, gridTileSize, offset, stripWidth, 1));
+                }
+            }
+            final int lineOffset = (sourceY - tileRow0 * tileHeight) * stripWidth;
+            for (int x = 0; x < width; x++) {
+                final int sourceX = x * factor;
+                final int sampleCount = Math.min(factor, sourceWidth - sourceX);
+                final int mode = sampleCount > 0 && lineCount > 0
+                                 ? downsampler.computeMode(strip, lineOffset + sourceX, stripWidth,
+                                                           sampleCount, lineCount)
+                                 : nodataValue;
+                ModeDownsampler.setSample(data, y * width + x, mode, dataType);
+            }
+        }
+        return data;
+    }
+}
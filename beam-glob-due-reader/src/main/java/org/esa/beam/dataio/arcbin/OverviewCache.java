@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.arcbin;
+
+import org.esa.beam.dataio.util.CacheFileUtils;
+import org.esa.beam.util.Debug;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Manages the overview files of an integer grid, which hold the grid at low resolution levels.
+ * Reading these levels from the grid is slow, because every grid tile has to be decoded for
+ * a subsampled read, and subsampling picks arbitrary classes instead of the dominant ones.
+ * <p/>
+ * There is one {@link OverviewFile} per level, kept in a cache directory of the user, see
+ * {@link CacheFileUtils}. Missing overview files are built in the background by a single low
+ * priority thread.
+ */
+class OverviewCache {
+
+    /**
+     * The name of the system property defining the lowest resolution level served from
+     * overview files.
+     */
+    static final String MIN_LEVEL_PROPERTY = "beam.arcbin.overviewMinLevel";
+
+    private static final int DEFAULT_MIN_LEVEL = 5;
+    private static final String CACHE_DIR_NAME = "arcbin-overviews";
+    private static final String OVERVIEW_FILE_EXTENSION = ".ovr";
+
+    private final File cacheDir;
+    private final String filePrefix;
+    private final long signature;
+    private final int minLevel;
+    private final Map<Integer, OverviewFile> overviewFiles;
+    private final Set<Integer> openedLevels;
+    private ExecutorService builderExecutor;
+    private volatile boolean closed;
+
+    /**
+     * Returns the cache of a grid.
+     *
+     * @param gridDir   the directory of the grid.
+     * @param gridFiles the files of the grid whose modification invalidates the overviews.
+     * @return the cache.
+     */
+    static OverviewCache createDefault(File gridDir, File... gridFiles) {
+        // grids of the same name in different directories are kept separately
+        final String filePrefix = CacheFileUtils.getFilePrefix(gridDir.getName(), gridDir);
+        return new OverviewCache(CacheFileUtils.getCacheDir(CACHE_DIR_NAME),
+                                 filePrefix, createSignature(gridFiles),
+                                 Integer.getInteger(MIN_LEVEL_PROPERTY, DEFAULT_MIN_LEVEL));
+    }
+
+    OverviewCache(File cacheDir, String filePrefix, long signature, int minLevel) {
+        if (minLevel < 1) {
+            throw new IllegalArgumentException("minLevel < 1");
+        }
+        this.cacheDir = cacheDir;
+        this.filePrefix = filePrefix;
+        this.signature = signature;
+        this.minLevel = minLevel;
+        overviewFiles = new HashMap<Integer, OverviewFile>();
+        openedLevels = new HashSet<Integer>();
+    }
+
+    /**
+     * Returns the lowest resolution level served from overview files.
+     *
+     * @return the level.
+     */
+    int getMinLevel() {
+        return minLevel;
+    }
+
+    /**
+     * Returns the overview file of a resolution level.
+     *
+     * @param level    the resolution level.
+     * @param width    the width of the grid at the level.
+     * @param height   the height of the grid at the level.
+     * @param dataType the data type of the grid, one of the {@link java.awt.image.DataBuffer}
+     *                 type constants.
+     * @return the overview file, or {@code null} if the overview file has not been built yet.
+     */
+    synchronized OverviewFile getOverviewFile(int level, int width, int height, int dataType) {
+        if (closed) {
+            return null;
+        }
+        OverviewFile overviewFile = overviewFiles.get(level);
+        // the file system is only asked once, overview files built later are added by the builder
+        if (overviewFile == null && openedLevels.add(level)) {
+            try {
+                overviewFile = OverviewFile.open(getFile(level), signature, width, height, dataType);
+            } catch (IOException e) {
+                Debug.trace(e);
+            }
+            if (overviewFile != null) {
+                overviewFiles.put(level, overviewFile);
+            }
+        }
+        return overviewFile;
+    }
+
+    /**
+     * Writes the overview file of a resolution level, unless the cache has been closed.
+     *
+     * @param level    the resolution level.
+     * @param width    the width of the grid at the level.
+     * @param height   the height of the grid at the level.
+     * @param dataType the data type of the grid.
+     * @param data     the samples, a primitive array stored line by line.
+     * @throws IOException if an I/O error occurs.
+     */
+    void putOverviewFile(int level, int width, int height, int dataType, Object data) throws IOException {
+        // the grid may have been closed while the data was computed
+        if (closed) {
+            return;
+        }
+        if (!CacheFileUtils.makeCacheDir(cacheDir)) {
+            throw new IOException("Failed to create overview directory: " + cacheDir);
+        }
+        // an overview file computed for a previous state of the grid is overwritten
+        final File file = getFile(level);
+        OverviewFile.write(file, signature, width, height, dataType, data);
+        final OverviewFile overviewFile = OverviewFile.open(file, signature, width, height, dataType);
+        synchronized (this) {
+            if (!closed && overviewFile != null) {
+                overviewFiles.put(level, overviewFile);
+            }
+        }
+    }
+
+    /**
+     * Schedules the building of an overview file. Builders are run one after the other in the
+     * order they have been scheduled.
+     *
+     * @param builder the builder.
+     */
+    synchronized void build(OverviewBuilder builder) {
+        if (closed) {
+            return;
+        }
+        if (builderExecutor == null) {
+            builderExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "Arc/Info grid overview builder");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        builderExecutor.execute(builder);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops building. Overview files which are not built yet are built when the grid is
+     * opened another time.
+     */
+    synchronized void close() {
+        closed = true;
+        if (builderExecutor != null) {
+            // the builder is not interrupted, since an interrupt would close the channel of the grid
+            builderExecutor.shutdown();
+        }
+        overviewFiles.clear();
+    }
+
+    private File getFile(int level) {
+        return new File(cacheDir, String.format("%s-L%d%s", filePrefix, level, OVERVIEW_FILE_EXTENSION));
+    }
+
+    // the signature changes whenever a file of the grid is modified
+    static long createSignature(File... files) {
+        long signature = files.length;
+        for (final File file : files) {
+            signature = 31 * signature + file.getName().toLowerCase().hashCode();
+            signature = 31 * signature + file.length();
+            signature = 31 * signature + file.lastModified();
+        }
+        return signature;
+    }
+}
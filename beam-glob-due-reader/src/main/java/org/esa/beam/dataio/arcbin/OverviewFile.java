@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.arcbin;
+
+import org.esa.beam.dataio.util.CacheFileUtils;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An on-disk raster holding an integer grid at a single low resolution level.
+ * <p/>
+ * The file starts with a header identifying the grid it has been computed from, followed by
+ * the samples stored line by line. Files are always written completely to a temporary file
+ * which is renamed afterwards, so a file which can be opened is complete. The samples are
+ * read from a read-only mapping of the file.
+ */
+class OverviewFile {
+
+    private static final int MAGIC = 0x41424f56; // "ABOV"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private final int width;
+    private final int height;
+    private final int dataType;
+    private final ByteBuffer buffer;
+
+    private OverviewFile(int width, int height, int dataType, ByteBuffer buffer) {
+        this.width = width;
+        this.height = height;
+        this.dataType = dataType;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens an overview file.
+     *
+     * @param file      the file.
+     * @param signature the signature of the grid, which changes whenever the grid changes.
+     * @param width     the width of the raster.
+     * @param height    the height of the raster.
+     * @param dataType  the data type of the raster, {@link DataBuffer#TYPE_BYTE},
+     *                  {@link DataBuffer#TYPE_SHORT} or {@link DataBuffer#TYPE_INT}.
+     * @return the overview file, or {@code null} if the file does not exist or does not match
+     *         the grid and the raster given.
+     * @throws IOException if an I/O error occurs.
+     */
+    static OverviewFile open(File file, long signature, int width, int height, int dataType) throws IOException {
+        if (!file.isFile() || file.length() != getFileLength(width, height, dataType)) {
+            return null;
+        }
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // the mapping stays valid after the file has been closed
+            final ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (!CacheFileUtils.getHeader(buffer, MAGIC, VERSION) || buffer.getLong() != signature
+                || buffer.getInt() != width || buffer.getInt() != height || buffer.getInt() != dataType) {
+                return null;
+            }
+            return new OverviewFile(width, height, dataType, buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes an overview file, replacing an existing one.
+     *
+     * @param file      the file.
+     * @param signature the signature of the grid.
+     * @param width     the width of the raster.
+     * @param height    the height of the raster.
+     * @param dataType  the data type of the raster.
+     * @param data      the samples, a primitive array stored line by line.
+     * @throws IOException if an I/O error occurs.
+     */
+    static void write(File file, long signature, int width, int height, int dataType, Object data) throws IOException {
+        final File tempFile = CacheFileUtils.createTempFile(file);
+        final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+        boolean written = false;
+        try {
+            final FileChannel channel = raf.getChannel();
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            CacheFileUtils.putHeader(header, MAGIC, VERSION);
+            header.putLong(signature);
+            header.putInt(width);
+            header.putInt(height);
+            header.putInt(dataType);
+            header.clear();
+            writeFully(channel, header);
+
+            final int elemSize = DataBuffer.getDataTypeSize(dataType) / 8;
+            final ByteBuffer line = ByteBuffer.allocate(width * elemSize);
+            for (int y = 0; y < height; y++) {
+                line.clear();
+                switch (dataType) {
+                    case DataBuffer.TYPE_BYTE:
+                        line.put((byte[]) data, y * width, width);
+                        break;
+                    case DataBuffer.TYPE_SHORT:
+                    case DataBuffer.TYPE_USHORT:
+                        line.asShortBuffer().put((short[]) data, y * width, width);
+                        break;
+                    default:
+                        line.asIntBuffer().put((int[]) data, y * width, width);
+                }
+                line.clear();
+                writeFully(channel, line);
+            }
+            written = true;
+        } finally {
+            raf.close();
+            if (!written) {
+                tempFile.delete();
+            }
+        }
+        if (!CacheFileUtils.replace(tempFile, file)) {
+            tempFile.delete();
+            throw new IOException("Failed to write overview file: " + file);
+        }
+    }
+
+    /**
+     * Tells whether a raster can be held by an overview file.
+     *
+     * @param width    the width of the raster.
+     * @param height   the height of the raster.
+     * @param dataType the data type of the raster.
+     * @return {@code true} if the raster fits into a single mapping, {@code false} otherwise.
+     */
+    static boolean canHold(int width, int height, int dataType) {
+        return getFileLength(width, height, dataType) <= Integer.MAX_VALUE;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    int getDataType() {
+        return dataType;
+    }
+
+    /**
+     * Reads the samples of a rectangle.
+     *
+     * @param rect   the rectangle.
+     * @param data   the target samples, a primitive array stored line by line.
+     * @param offset the index of the target sample of the upper left corner of the rectangle.
+     * @param stride the distance between two lines of the target samples.
+     */
+    void readRect(Rectangle rect, Object data, int offset, int stride) {
+        // a duplicate has its own position, so several threads may read concurrently
+        final ByteBuffer source = buffer.duplicate();
+        final int elemSize = DataBuffer.getDataTypeSize(dataType) / 8;
+        for (int y = 0; y < rect.height; y++) {
+            source.position(HEADER_SIZE + ((rect.y + y) * width + rect.x) * elemSize);
+            final int index = offset + y * stride;
+            switch (dataType) {
+                case DataBuffer.TYPE_BYTE:
+                    source.get((byte[]) data, index, rect.width);
+                    break;
+                case DataBuffer.TYPE_SHORT:
+                case DataBuffer.TYPE_USHORT:
+                    source.asShortBuffer().get((short[]) data, index, rect.width);
+                    break;
+                default:
+                    source.asIntBuffer().get((int[]) data, index, rect.width);
+            }
+        }
+    }
+
+    /**
+     * Reads all samples.
+     *
+     * @return the samples, a primitive array stored line by line.
+     */
+    Object readAll() {
+        final Object data = ModeDownsampler.createArray(dataType, width * height);
+        readRect(new Rectangle(width, height), data, 0, width);
+        return data;
+    }
+
+    private static long getFileLength(int width, int height, int dataType) {
+        return HEADER_SIZE + (long) width * height * (DataBuffer.getDataTypeSize(dataType) / 8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.arcbin;
+
+import org.esa.beam.jai.ResolutionLevel;
+import org.esa.beam.jai.SingleBandedOpImage;
+
+import javax.media.jai.PlanarImage;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+
+/**
+ * The image of an integer grid at a low resolution level, served from an {@link OverviewFile}.
+ * As long as the overview file has not been built, the image is computed by the given fallback
+ * image, which subsamples the grid tiles.
+ */
+class OverviewOpImage extends SingleBandedOpImage {
+
+    private final OverviewCache cache;
+    private final int level;
+    private final GridTileOpImage fallbackImage;
+
+    OverviewOpImage(int sourceWidth, int sourceHeight, OverviewCache cache, GridTileOpImage fallbackImage,
+                    ResolutionLevel level) {
+        super(fallbackImage.getSampleModel().getDataType(),
+              sourceWidth, sourceHeight,
+              new Dimension(fallbackImage.getTileWidth(), fallbackImage.getTileHeight()),
+              null, level);
+        this.cache = cache;
+        this.level = level.getIndex();
+        this.fallbackImage = fallbackImage;
+    }
+
+    @Override
+    protected void computeRect(PlanarImage[] planarImages, WritableRaster targetRaster, Rectangle targetRect) {
+        final OverviewFile overviewFile = cache.getOverviewFile(level, getWidth(), getHeight(),
+                                                                getSampleModel().getDataType());
+        if (overviewFile == null) {
+            targetRaster.setRect(fallbackImage.getData(targetRect));
+            return;
+        }
+        final DataBuffer dataBuffer = targetRaster.getDataBuffer();
+        final int offset = dataBuffer.getOffset()
+                           + (targetRect.y - targetRaster.getMinY()) * targetRaster.getWidth()
+                           + targetRect.x - targetRaster.getMinX();
+        overviewFile.readRect(targetRect, GridTileOpImage.getData(dataBuffer), offset, targetRaster.getWidth());
+    }
+}
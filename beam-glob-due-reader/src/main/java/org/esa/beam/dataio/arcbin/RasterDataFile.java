@@ -16,39 +16,217 @@
 package org.esa.beam.dataio.arcbin;
 
 import org.esa.beam.dataio.arcbin.TileIndex.IndexEntry;
+import org.esa.beam.util.Debug;
 
-import javax.imageio.stream.FileImageInputStream;
-import javax.imageio.stream.ImageInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Gives access to the raw tile data of the raster file of an Arc/Info binary grid.
+ * <p/>
+ * The file is mapped into memory, so the tile data can be read by several threads without
+ * locking and copying. Files larger than a single mapping are mapped in overlapping windows,
+ * so each tile lies completely in one window. Windows are mapped when first accessed. Tiles
+ * which are larger than the overlap and cross a window border are read from the file channel
+ * instead, and so are all tiles if the file cannot be mapped, for example on a 32-bit JVM
+ * running out of address space, or if mapping is disabled.
+ * <p/>
+ * Tile data must be read and decoded between {@link #beginRead()} and {@link #endRead()}, since
+ * the mappings are released when the file is closed.
+ */
 class RasterDataFile {
 
     static final String FILE_NAME = "w001001.adf";
 
-    private final ImageInputStream imageInputStream;
+    /**
+     * The name of the system property telling whether the raster data file is mapped into memory.
+     */
+    static final String MAP_PROPERTY = "beam.arcbin.mapRasterData";
+
+    private static final long WINDOW_SIZE = 1L << 30;
+    private static final long WINDOW_OVERLAP = 1L << 20;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long fileLength;
+    private final long windowSize;
+    private final long windowOverlap;
+    private final AtomicReferenceArray<MappedByteBuffer> windows;
+    private final ReadWriteLock closeLock;
+    private volatile boolean mappingEnabled;
+    private boolean closed;
+
+    private RasterDataFile(RandomAccessFile raf, long windowSize, long windowOverlap,
+                           boolean mappingEnabled) throws IOException {
+        this.raf = raf;
+        this.windowSize = windowSize;
+        this.windowOverlap = windowOverlap;
+        this.mappingEnabled = mappingEnabled;
+        channel = raf.getChannel();
+        fileLength = channel.size();
+        final int windowCount = (int) Math.max(1, (fileLength + windowSize - 1) / windowSize);
+        windows = new AtomicReferenceArray<MappedByteBuffer>(windowCount);
+        closeLock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Begins reading tile data. The file is not closed before {@link #endRead()} is called.
+     */
+    void beginRead() {
+        closeLock.readLock().lock();
+    }
 
-    private RasterDataFile(ImageInputStream imageInputStream) {
-        this.imageInputStream = imageInputStream;
+    /**
+     * Ends reading tile data. The buffers returned by {@link #getRawTileData(IndexEntry)} must not
+     * be accessed any more.
+     */
+    void endRead() {
+        closeLock.readLock().unlock();
     }
 
+    /**
+     * Closes the file and releases its mappings, waiting for running reads to end.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
     void close() throws IOException {
-        imageInputStream.close();
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (int i = 0; i < windows.length(); i++) {
+                final MappedByteBuffer window = windows.getAndSet(i, null);
+                if (window != null) {
+                    unmap(window);
+                }
+            }
+            raf.close();
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of windows which are currently mapped.
+     */
+    int getMappedWindowCount() {
+        int count = 0;
+        for (int i = 0; i < windows.length(); i++) {
+            if (windows.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the raw data of a tile, including the two bytes of the tile size. Must be called
+     * between {@link #beginRead()} and {@link #endRead()}.
+     *
+     * @param indexEntry the index entry of the tile.
+     * @return a read-only big endian buffer holding the data, positioned at zero.
+     * @throws IOException if the file has been closed, the tile exceeds the file or an I/O error occurs.
+     */
+    ByteBuffer getRawTileData(IndexEntry indexEntry) throws IOException {
+        if (closed) {
+            throw new IOException("Raster data file has been closed.");
+        }
+        final long offset = indexEntry.offset;
+        final int length = indexEntry.size + 2;
+        if (offset < 0 || indexEntry.size < 0 || offset + length > fileLength) {
+            throw new IOException("Tile at offset " + offset + " exceeds the raster data file.");
+        }
+        final int windowIndex = (int) (offset / windowSize);
+        final MappedByteBuffer window = getWindow(windowIndex);
+        final int windowOffset = (int) (offset - windowIndex * windowSize);
+        if (window != null && windowOffset + length <= window.capacity()) {
+            // the window is shared, so its position and limit are set on a duplicate
+            final ByteBuffer buffer = window.duplicate();
+            buffer.limit(windowOffset + length);
+            buffer.position(windowOffset);
+            return buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        }
+        return readTileData(offset, length);
     }
 
-    byte[] loadRawTileData(IndexEntry indexEntry) throws IOException {
-        byte[] bytes = new byte[indexEntry.size + 2];
-        synchronized (imageInputStream) {
-            imageInputStream.seek(indexEntry.offset);
-            imageInputStream.read(bytes);
+    // returns null if the file cannot be mapped
+    private MappedByteBuffer getWindow(int windowIndex) {
+        MappedByteBuffer window = windows.get(windowIndex);
+        if (window != null || !mappingEnabled) {
+            return window;
+        }
+        synchronized (windows) {
+            window = windows.get(windowIndex);
+            if (window == null && mappingEnabled) {
+                final long position = windowIndex * windowSize;
+                final long length = Math.min(windowSize + windowOverlap, fileLength - position);
+                try {
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    windows.set(windowIndex, window);
+                } catch (IOException e) {
+                    // the address space is exhausted, all tiles are read from the channel from now on
+                    Debug.trace(e);
+                    mappingEnabled = false;
+                }
+            }
+            return window;
         }
-        return bytes;
+    }
+
+    private ByteBuffer readTileData(long offset, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of raster data file.");
+            }
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
     }
 
     static RasterDataFile create(File file) throws IOException {
-        ImageInputStream imageInputStream = new FileImageInputStream(file);
-        imageInputStream.setByteOrder(ByteOrder.BIG_ENDIAN);
-        return new RasterDataFile(imageInputStream);
+        final boolean mappingEnabled = Boolean.parseBoolean(System.getProperty(MAP_PROPERTY, "true"));
+        return create(file, WINDOW_SIZE, WINDOW_OVERLAP, mappingEnabled);
+    }
+
+    static RasterDataFile create(File file, long windowSize, long windowOverlap) throws IOException {
+        return create(file, windowSize, windowOverlap, true);
+    }
+
+    static RasterDataFile create(File file, long windowSize, long windowOverlap,
+                                 boolean mappingEnabled) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return new RasterDataFile(raf, windowSize, windowOverlap, mappingEnabled);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    // releases a mapping immediately, so the file is not locked any more, if the JVM allows it
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // the mapping is released by the garbage collector
+            Debug.trace(e);
+        }
     }
 }
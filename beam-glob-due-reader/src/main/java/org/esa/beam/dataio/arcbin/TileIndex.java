@@ -56,7 +56,8 @@ class TileIndex {
         for (int i = 0; i < numTiles; i++) {
             CompoundData indexData = indexSeq.getCompound(i);
             int size = indexData.getInt(1);
-            int offset = indexData.getInt(0);
+            // the offset is an unsigned number of 16 bit words, files may exceed 2 GB
+            long offset = indexData.getInt(0) & 0xffffffffL;
             IndexEntry indexEntry = new IndexEntry(offset * 2, size * 2);
             index.put(i, indexEntry);
         }
@@ -78,10 +79,10 @@ class TileIndex {
 
     static class IndexEntry {
 
-        final int offset;
+        final long offset;
         final int size;
 
-        IndexEntry(int offset, int size) {
+        IndexEntry(long offset, int size) {
             this.offset = offset;
             this.size = size;
         }
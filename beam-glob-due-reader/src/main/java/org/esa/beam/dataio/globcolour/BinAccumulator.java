@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import java.util.Arrays;
+
+/**
+ * The class <code>BinAccumulator</code> accumulates the values of the bins of a continuous
+ * sequence of {@link IsinGrid} rows read from several Binned products. For each variable
+ * the weighted sum, the sum of weights, the number of valid values and the minimum and
+ * maximum valid value are accumulated in primitive arrays indexed by bin number.
+ *
+ * @see IsinBinCompositor
+ */
+class BinAccumulator {
+
+    private final IsinGrid grid;
+    private final int minRow;
+    private final int maxRow;
+    private final int firstBin;
+
+    // the number of chunks contributing to each bin
+    private final int[] binCounts;
+    private final double[][] weightedSums;
+    private final double[][] weightSums;
+    private final int[][] counts;
+    private final double[][] mins;
+    private final double[][] maxs;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param grid          the ISIN grid.
+     * @param minRow        the index number of the southernmost row of interest.
+     * @param maxRow        the index number of the northernmost row of interest.
+     * @param variableCount the number of variables accumulated.
+     */
+    BinAccumulator(IsinGrid grid, int minRow, int maxRow, int variableCount) {
+        this.grid = grid;
+        this.minRow = minRow;
+        this.maxRow = maxRow;
+
+        firstBin = grid.getBin(minRow, 0);
+        final int binCount = grid.getBin(maxRow, 0) + grid.getColCount(maxRow) - firstBin;
+
+        binCounts = new int[binCount];
+        weightedSums = new double[variableCount][binCount];
+        weightSums = new double[variableCount][binCount];
+        counts = new int[variableCount][binCount];
+        mins = new double[variableCount][binCount];
+        maxs = new double[variableCount][binCount];
+        for (int v = 0; v < variableCount; ++v) {
+            Arrays.fill(mins[v], Double.POSITIVE_INFINITY);
+            Arrays.fill(maxs[v], Double.NEGATIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Accumulates a chunk of bins. The first values of the chunk are those of the variables
+     * accumulated, optionally followed by the weights.
+     *
+     * @param chunk       the chunk of bins.
+     * @param fillValues  the fill values of the variables accumulated.
+     * @param weightIndex the index of the weights within the chunk, or <code>-1</code> if all
+     *                    bins are weighted equally. Bins without a positive weight are ignored.
+     */
+    void accumulate(IsinBinChunk chunk, double[] fillValues, int weightIndex) {
+        final int[] bins = chunk.getBins();
+        final double[] weights = weightIndex >= 0 ? chunk.getValues(weightIndex) : null;
+
+        for (int k = 0; k < bins.length; ++k) {
+            final int i = bins[k] - firstBin;
+            binCounts[i]++;
+
+            final double weight = weights != null ? weights[k] : 1.0;
+            if (!(weight > 0.0)) {
+                continue;
+            }
+            for (int v = 0; v < weightedSums.length; ++v) {
+                final double value = chunk.getValues(v)[k];
+                if (Double.isNaN(value) || value == fillValues[v]) {
+                    continue;
+                }
+                weightedSums[v][i] += weight * value;
+                weightSums[v][i] += weight;
+                counts[v][i]++;
+                if (value < mins[v][i]) {
+                    mins[v][i] = value;
+                }
+                if (value > maxs[v][i]) {
+                    maxs[v][i] = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a chunk holding all bins which have been accumulated at least once. For each
+     * variable the chunk holds four consecutive values: the weighted mean, the number of
+     * valid values, the minimum and the maximum. Where no valid value has been accumulated,
+     * the mean, minimum and maximum are {@link Double#NaN}.
+     *
+     * @return the chunk.
+     */
+    IsinBinChunk createChunk() {
+        int binCount = 0;
+        for (final int count : binCounts) {
+            if (count > 0) {
+                binCount++;
+            }
+        }
+
+        final int variableCount = weightedSums.length;
+        final int[] bins = new int[binCount];
+        final short[] rows = new short[binCount];
+        final short[] cols = new short[binCount];
+        final double[][] values = new double[4 * variableCount][binCount];
+
+        int k = 0;
+        for (int row = minRow; row <= maxRow; ++row) {
+            final int colCount = grid.getColCount(row);
+            for (int col = 0; col < colCount; ++col) {
+                final int bin = grid.getBin(row, col);
+                final int i = bin - firstBin;
+                if (binCounts[i] == 0) {
+                    continue;
+                }
+                bins[k] = bin;
+                rows[k] = (short) row;
+                cols[k] = (short) col;
+                for (int v = 0; v < variableCount; ++v) {
+                    final boolean valid = counts[v][i] > 0;
+                    values[4 * v][k] = valid ? weightedSums[v][i] / weightSums[v][i] : Double.NaN;
+                    values[4 * v + 1][k] = counts[v][i];
+                    values[4 * v + 2][k] = valid ? mins[v][i] : Double.NaN;
+                    values[4 * v + 3][k] = valid ? maxs[v][i] : Double.NaN;
+                }
+                k++;
+            }
+        }
+
+        return new IsinBinChunk(bins, rows, cols, values);
+    }
+}
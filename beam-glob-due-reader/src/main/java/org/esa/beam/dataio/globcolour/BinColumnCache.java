@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import org.esa.beam.dataio.util.WeighedLruCache;
+
+/**
+ * The class <code>BinColumnCache</code> caches the {@link IsinGrid} column numbers of
+ * the bins stored for the rows of a Binned product, keyed by the stored row of interest,
+ * see {@link IsinGridStorageInfo}. The cache is shared by all bands of the product, so the
+ * column numbers of a row are read only once and not once per band.
+ * <p/>
+ * The cache is bounded by a memory budget. When the budget is exceeded, the least
+ * recently used rows are evicted. The arrays of column numbers must not be modified.
+ */
+class BinColumnCache extends WeighedLruCache<Integer, short[]> {
+
+    // the approximate memory occupied by an array in addition to its elements
+    private static final int ARRAY_OVERHEAD = 16;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param maxByteCount the memory budget of the cache (bytes), must not be negative.
+     * @throws IllegalArgumentException if <code>maxByteCount</code> is negative.
+     */
+    BinColumnCache(long maxByteCount) {
+        super(maxByteCount);
+    }
+
+    @Override
+    protected long weigh(short[] cols) {
+        return ARRAY_OVERHEAD + 2L * cols.length;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.jai.BandOpImage;
+import org.esa.beam.jai.ResolutionLevel;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+
+/**
+ * The class <code>BinnedBandOpImage</code> provides the image of a band of a Binned
+ * product at a given resolution level.
+ * <p/>
+ * The full resolution level is read by the {@link BinnedProductReader} as usual. Lower
+ * resolution levels are computed directly from the bins stored in the product instead
+ * of downsampling the full resolution raster, so each bin is read only once.
+ */
+class BinnedBandOpImage extends BandOpImage {
+
+    private final BinnedProductReader reader;
+
+    BinnedBandOpImage(Band band, ResolutionLevel level, BinnedProductReader reader) {
+        super(band, level);
+        this.reader = reader;
+    }
+
+    @Override
+    protected void computeProductData(ProductData productData, Rectangle destRect) throws IOException {
+        if (getLevel() == 0) {
+            super.computeProductData(productData, destRect);
+        } else {
+            reader.readBandRasterDataAggregated(getBand(), (int) getScale(), destRect, productData);
+        }
+    }
+}
@@ -16,6 +16,11 @@
 package org.esa.beam.dataio.globcolour;
 
 import com.bc.ceres.core.ProgressMonitor;
+import com.bc.ceres.glevel.MultiLevelImage;
+import com.bc.ceres.glevel.MultiLevelModel;
+import com.bc.ceres.glevel.support.AbstractMultiLevelSource;
+import com.bc.ceres.glevel.support.DefaultMultiLevelImage;
+import com.bc.ceres.glevel.support.DefaultMultiLevelModel;
 import org.esa.beam.dataio.netcdf.util.DataTypeUtils;
 import org.esa.beam.dataio.netcdf.util.MetadataUtils;
 import org.esa.beam.framework.dataio.AbstractProductReader;
@@ -23,14 +28,14 @@ import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.CrsGeoCoding;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.jai.ImageManager;
+import org.esa.beam.jai.ResolutionLevel;
 import org.esa.beam.util.Guardian;
 import org.esa.beam.util.io.FileUtils;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.operation.TransformException;
 import ucar.ma2.Array;
-import ucar.ma2.ArrayShort;
-import ucar.ma2.Index1D;
 import ucar.ma2.InvalidRangeException;
 import ucar.nc2.Attribute;
 import ucar.nc2.Dimension;
@@ -40,9 +45,11 @@ import ucar.nc2.Variable;
 
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
+import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -63,9 +70,21 @@ import java.util.List;
  */
 public class BinnedProductReader extends AbstractProductReader {
 
-    private volatile NetcdfFile ncFile;
+    // the maximum number of bins read at once
+    private static final int MAX_BIN_COUNT_PER_READ = 500000;
+    // the memory budget of the bin column cache of each product (bytes), shared by all bands
+    private static final long COL_CACHE_BYTE_COUNT = 32L * 1024L * 1024L;
+
+    private static final StorageInfoCache STORAGE_INFO_CACHE = StorageInfoCache.createDefault();
+
+    private final StorageInfoCache storageInfoCache;
+    private final Object storageInfoLock = new Object();
+
+    private volatile NetcdfFilePool ncFilePool;
     private volatile EquirectGrid equirectGrid;
     private volatile IsinGridStorageInfo storageInfo;
+    private volatile IsinColumnLookup columnLookup;
+    private volatile BinColumnCache colCache;
 
     /**
      * Constructs an instance of this class.
@@ -73,7 +92,18 @@ public class BinnedProductReader extends AbstractProductReader {
      * @param productReaderPlugIn the plug-in which creates this dataio instance.
      */
     public BinnedProductReader(BinnedProductReaderPlugIn productReaderPlugIn) {
+        this(productReaderPlugIn, STORAGE_INFO_CACHE);
+    }
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param productReaderPlugIn the plug-in which creates this dataio instance.
+     * @param storageInfoCache    the cache persisting the storage information of products.
+     */
+    BinnedProductReader(BinnedProductReaderPlugIn productReaderPlugIn, StorageInfoCache storageInfoCache) {
         super(productReaderPlugIn);
+        this.storageInfoCache = storageInfoCache;
     }
 
     /**
@@ -89,47 +119,60 @@ public class BinnedProductReader extends AbstractProductReader {
     @Override
     protected Product readProductNodesImpl() throws IOException {
         final File file = new File(getInput().toString());
-        ncFile = NetcdfFile.open(file.getPath());
-
-        final Group ncroot = ncFile.getRootGroup();
-
-        final double minLat = getDoubleValue(ncroot.findAttributeIgnoreCase(ProductAttributes.MIN_LAT), -90.0);
-        final double maxLat = getDoubleValue(ncroot.findAttributeIgnoreCase(ProductAttributes.MAX_LAT), 90.0);
-        final double minLon = getDoubleValue(ncroot.findAttributeIgnoreCase(ProductAttributes.MIN_LON), -180.0);
-        final double maxLon = getDoubleValue(ncroot.findAttributeIgnoreCase(ProductAttributes.MAX_LON), 180.0);
-        final double latitudeOfTrueScale = getDoubleValue(ncroot.findAttributeIgnoreCase(ProductAttributes.SITE_LAT),
-                                                          0.0);
-
-        equirectGrid = createEquirectGrid(minLat, maxLat, minLon, maxLon, latitudeOfTrueScale);
-        String productName = FileUtils.getFilenameWithoutExtension(file);
-        final Product product = new Product(productName,
-                                            ReaderConstants.BINNED_GLOBAL,
-                                            equirectGrid.getColCount(),
-                                            equirectGrid.getRowCount(),
-                                            this);
-
-        final Attribute title = ncroot.findAttributeIgnoreCase(ProductAttributes.TITLE);
-        if (title != null && title.isString()) {
-            product.setDescription(title.getStringValue());
+        ncFilePool = new NetcdfFilePool(file.getPath());
+        // reuse the file opened by the plug-in when qualifying the input, if any
+        final NetcdfFile qualifiedFile = OpenFileCache.getInstance().take(file.getPath());
+        if (qualifiedFile != null) {
+            ncFilePool.release(qualifiedFile);
         }
+        colCache = new BinColumnCache(COL_CACHE_BYTE_COUNT);
 
-        product.setFileLocation(file);
-        MetadataUtils.readNetcdfMetadata(ncFile, product.getMetadataRoot());
+        final NetcdfFile ncFile = ncFilePool.acquire();
+        try {
+            final Group ncroot = ncFile.getRootGroup();
+
+            final double minLat = getDoubleValue(ncroot.findAttributeIgnoreCase(ProductAttributes.MIN_LAT), -90.0);
+            final double maxLat = getDoubleValue(ncroot.findAttributeIgnoreCase(ProductAttributes.MAX_LAT), 90.0);
+            final double minLon = getDoubleValue(ncroot.findAttributeIgnoreCase(ProductAttributes.MIN_LON), -180.0);
+            final double maxLon = getDoubleValue(ncroot.findAttributeIgnoreCase(ProductAttributes.MAX_LON), 180.0);
+            final double latitudeOfTrueScale = getDoubleValue(
+                    ncroot.findAttributeIgnoreCase(ProductAttributes.SITE_LAT), 0.0);
+
+            equirectGrid = createEquirectGrid(minLat, maxLat, minLon, maxLon, latitudeOfTrueScale);
+            columnLookup = IsinColumnLookup.getInstance(ReaderConstants.IG, equirectGrid);
+            String productName = FileUtils.getFilenameWithoutExtension(file);
+            final Product product = new Product(productName,
+                                                ReaderConstants.BINNED_GLOBAL,
+                                                equirectGrid.getColCount(),
+                                                equirectGrid.getRowCount(),
+                                                this);
+
+            final Attribute title = ncroot.findAttributeIgnoreCase(ProductAttributes.TITLE);
+            if (title != null && title.isString()) {
+                product.setDescription(title.getStringValue());
+            }
 
-        final Dimension bin = ncroot.findDimension(ReaderConstants.BIN);
-        final List<Variable> variableList = findVariables(ncroot, bin);
-        addBands(product, variableList);
+            product.setFileLocation(file);
+            MetadataUtils.readNetcdfMetadata(ncFile, product.getMetadataRoot());
 
-        setGeoCoding(product, equirectGrid);
-        ProductUtilities.extend(product);
+            final Dimension bin = ncroot.findDimension(ReaderConstants.BIN);
+            final List<Variable> variableList = findVariables(ncroot, bin);
+            addBands(product, variableList);
 
-        if (ProductUtilities.isDiagnosticDataSet(product)) {
-            product.setProductType(ReaderConstants.BINNED_DDS);
-        }
+            setGeoCoding(product, equirectGrid);
+            setSourceImages(product, variableList);
+            ProductUtilities.extend(product);
+
+            if (ProductUtilities.isDiagnosticDataSet(product)) {
+                product.setProductType(ReaderConstants.BINNED_DDS);
+            }
 
-        product.setModified(false);
+            product.setModified(false);
 
-        return product;
+            return product;
+        } finally {
+            ncFilePool.release(ncFile);
+        }
     }
 
     /**
@@ -160,87 +203,206 @@ public class BinnedProductReader extends AbstractProductReader {
      * @see #getSubsetDef
      */
     @Override
-    protected synchronized void readBandRasterDataImpl(int sourceOffsetX,
-                                                       int sourceOffsetY,
-                                                       int sourceWidth,
-                                                       int sourceHeight,
-                                                       int sourceStepX,
-                                                       int sourceStepY,
-                                                       Band targetBand,
-                                                       int targetOffsetX,
-                                                       int targetOffsetY,
-                                                       int targetWidth,
-                                                       int targetHeight,
-                                                       ProductData targetBuffer,
-                                                       ProgressMonitor pm)
+    protected void readBandRasterDataImpl(int sourceOffsetX,
+                                          int sourceOffsetY,
+                                          int sourceWidth,
+                                          int sourceHeight,
+                                          int sourceStepX,
+                                          int sourceStepY,
+                                          Band targetBand,
+                                          int targetOffsetX,
+                                          int targetOffsetY,
+                                          int targetWidth,
+                                          int targetHeight,
+                                          ProductData targetBuffer,
+                                          ProgressMonitor pm)
             throws IOException {
         Guardian.assertTrue("sourceStepX != 1", sourceStepX == 1);
         Guardian.assertTrue("sourceStepY != 1", sourceStepY == 1);
         Guardian.assertTrue("sourceWidth != targetWidth", sourceWidth == targetWidth);
         Guardian.assertTrue("sourceHeight != targetHeight", sourceHeight == targetHeight);
 
-        final Variable col = ncFile.findVariable(ReaderConstants.COL);
-        final Variable var = ncFile.findVariable(targetBand.getName());
         final double noDataValue = targetBand.getNoDataValue();
+        // each thread reads through a handle of its own, so concurrent requests need not be serialized
+        final NetcdfFile ncFile = ncFilePool.acquire();
 
         pm.beginTask(MessageFormat.format("Resampling data from band ''{0}''", targetBand.getName()), targetHeight);
         try {
-            if (storageInfo == null) {
-                storageInfo = createStorageInfo(ReaderConstants.IG.getRow(equirectGrid.getMinLat()),
-                                                equirectGrid.getRowCount());
-            }
-
-            final int[] start = new int[1];
-            final int[] shape = new int[1];
+            final Variable col = ncFile.findVariable(ReaderConstants.COL);
+            final Variable var = ncFile.findVariable(targetBand.getName());
+            final IsinGridStorageInfo storageInfo = getStorageInfo();
+            final int maxY = sourceOffsetY + targetHeight - 1;
+
+            for (int i = 0; i < targetHeight;) {
+                // rows are stored from south to north, so a block of adjacent target rows
+                // corresponds to a contiguous range of bins, which is read at once
+                final int firstY = sourceOffsetY + i;
+                int lastY = firstY;
+                int binCount = storageInfo.getBinCount(firstY);
+                while (lastY < maxY && binCount + storageInfo.getBinCount(lastY + 1) <= MAX_BIN_COUNT_PER_READ) {
+                    ++lastY;
+                    binCount += storageInfo.getBinCount(lastY);
+                }
+                final int binOffset = storageInfo.getOffset(lastY);
+                final short[][] rowCols = readCols(col, storageInfo, firstY, lastY);
+
+                // the bins of each row which lie between the western and eastern ISIN columns
+                // of the target region, found by binary search within the sorted row columns
+                final int[] binStarts = new int[lastY - firstY + 1];
+                final int[] binEnds = new int[lastY - firstY + 1];
+                int boundedBinCount = 0;
+                for (int y = firstY; y <= lastY; ++y) {
+                    if (!storageInfo.isEmpty(y)) {
+                        final short[] isinCols = columnLookup.getCols(storageInfo.getRow(y));
+                        final short[] cols = rowCols[y - firstY];
+                        binStarts[y - firstY] = lowerBound(cols, isinCols[sourceOffsetX]);
+                        binEnds[y - firstY] = lowerBound(cols, isinCols[sourceOffsetX + targetWidth - 1] + 1);
+                        boundedBinCount += binEnds[y - firstY] - binStarts[y - firstY];
+                    }
+                }
+                // narrow regions are read row by row, wide regions at once
+                final boolean bounded = 2 * boundedBinCount < binCount;
+                final Array data = binCount > 0 && !bounded ? readBins(var, binOffset, binCount) : null;
 
-            for (int i = 0; i < targetHeight; ++i) {
-                final int y = sourceOffsetY + i;
+                for (int y = firstY; y <= lastY; ++y, ++i) {
+                    final int binStart = binStarts[y - firstY];
+                    final int binEnd = binEnds[y - firstY];
 
-                start[0] = storageInfo.getOffset(y);
-                shape[0] = storageInfo.getBinCount(y);
-                final int row = storageInfo.getRow(y);
+                    if (storageInfo.isEmpty(y)) {
+                        for (int j = 0; j < targetWidth; ++j) {
+                            targetBuffer.setElemDoubleAt(i * targetWidth + j, noDataValue);
+                        }
+                    } else if (bounded) {
+                        final int rowBinOffset = storageInfo.getOffset(y) + binStart;
+                        final Array rowData = binEnd > binStart ? readBins(var, rowBinOffset, binEnd - binStart) : null;
+                        resampleRow(columnLookup.getCols(storageInfo.getRow(y)), sourceOffsetX,
+                                    rowCols[y - firstY], binStart, binEnd, rowData, -binStart,
+                                    noDataValue, targetBuffer, i * targetWidth, targetWidth);
+                    } else {
+                        resampleRow(columnLookup.getCols(storageInfo.getRow(y)), sourceOffsetX,
+                                    rowCols[y - firstY], binStart, binEnd, data, storageInfo.getOffset(y) - binOffset,
+                                    noDataValue, targetBuffer, i * targetWidth, targetWidth);
+                    }
 
-                Array cols = null;
-                Array data = null;
-                Index1D index = null;
+                    pm.worked(1);
 
-                if (shape[0] > 0) {
-                    cols = col.read(start, shape);
-                    data = var.read(start, shape);
-                    index = new Index1D(shape);
+                    if (pm.isCanceled()) {
+                        throw new IOException("Process terminated by user.");
+                    }
                 }
+            }
+        } catch (InvalidRangeException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            pm.done();
+            ncFilePool.release(ncFile);
+        }
+    }
 
-                row:
-                for (int j = 0, k = 0; j < targetWidth; ++j) {
-                    final int x = sourceOffsetX + j;
-                    // calculate the ISIN grid column corresponding to (x, y)
-                    final int z = ReaderConstants.IG.getCol(row, equirectGrid.getLon(x));
+    /**
+     * Reads the raster data of a band at a lower resolution level. Each target element
+     * corresponds to a cell of <code>scale</code> by <code>scale</code> elements of the
+     * full resolution raster and is computed from the bins whose centres fall into that
+     * cell: the mean of all valid bin values for floating point bands, and the first valid
+     * bin value for integer bands. If no valid bin is centred within a cell, the value of
+     * the bin located at the centre of the cell is used instead.
+     *
+     * @param targetBand   the target band.
+     * @param scale        the number of full resolution elements per target element in each dimension.
+     * @param targetRect   the target region in the coordinates of the resolution level.
+     * @param targetBuffer the target buffer.
+     * @throws IOException if an I/O error occurs.
+     */
+    void readBandRasterDataAggregated(Band targetBand, int scale, Rectangle targetRect, ProductData targetBuffer)
+            throws IOException {
+        final EquirectGrid grid = equirectGrid;
+        final int sourceWidth = grid.getColCount();
+        final int sourceHeight = grid.getRowCount();
+        final int targetWidth = targetRect.width;
+        final double noDataValue = targetBand.getNoDataValue();
+        final boolean noDataValueUsed = targetBand.isNoDataValueUsed();
+        final boolean mean = ProductData.isFloatingPointType(targetBand.getDataType());
 
-                    for (; k < shape[0]; ++k) {
-                        index.set(k);
-                        final short c = cols.getShort(index);
+        final double[] sums = new double[targetWidth];
+        final int[] counts = new int[targetWidth];
+        final double[] centreValues = new double[targetWidth];
 
-                        if (c == z) {
-                            targetBuffer.setElemDoubleAt(i * targetWidth + j, data.getDouble(index));
-                            continue row;
-                        }
-                        if (c > z) {
-                            break;
+        final NetcdfFile ncFile = ncFilePool.acquire();
+        try {
+            final Variable col = ncFile.findVariable(ReaderConstants.COL);
+            final Variable var = ncFile.findVariable(targetBand.getName());
+            final IsinGridStorageInfo storageInfo = getStorageInfo();
+
+            for (int i = 0; i < targetRect.height; ++i) {
+                final int minY = (targetRect.y + i) * scale;
+                final int maxY = Math.min(sourceHeight, minY + scale) - 1;
+                final int centreY = Math.min(maxY, minY + scale / 2);
+
+                Arrays.fill(sums, 0.0);
+                Arrays.fill(counts, 0);
+                Arrays.fill(centreValues, noDataValue);
+
+                for (int firstY = minY; firstY <= maxY;) {
+                    int lastY = firstY;
+                    int binCount = storageInfo.getBinCount(firstY);
+                    while (lastY < maxY && binCount + storageInfo.getBinCount(lastY + 1) <= MAX_BIN_COUNT_PER_READ) {
+                        ++lastY;
+                        binCount += storageInfo.getBinCount(lastY);
+                    }
+                    if (binCount > 0) {
+                        final int binOffset = storageInfo.getOffset(lastY);
+                        final short[][] rowCols = readCols(col, storageInfo, firstY, lastY);
+                        final Array data = readBins(var, binOffset, binCount);
+
+                        for (int y = firstY; y <= lastY; ++y) {
+                            if (storageInfo.isEmpty(y)) {
+                                continue;
+                            }
+                            final int row = storageInfo.getRow(y);
+                            final short[] cols = rowCols[y - firstY];
+                            final int dataOffset = storageInfo.getOffset(y) - binOffset;
+
+                            for (int k = 0; k < cols.length; ++k) {
+                                final double lon = ReaderConstants.IG.getLon(row, cols[k]);
+                                final int x = (int) Math.floor((lon - grid.getMinLon()) / grid.getLonStep());
+                                if (x < 0) {
+                                    continue;
+                                }
+                                final int j = x / scale - targetRect.x;
+                                if (x >= sourceWidth || j >= targetWidth) {
+                                    break;
+                                }
+                                if (j < 0) {
+                                    continue;
+                                }
+                                final double value = data.getDouble(dataOffset + k);
+                                if (isValid(value, noDataValue, noDataValueUsed) && (mean || counts[j] == 0)) {
+                                    sums[j] += value;
+                                    counts[j]++;
+                                }
+                            }
+                            if (y == centreY) {
+                                resampleCentres(columnLookup.getCols(row), targetRect.x, scale, sourceWidth,
+                                                cols, data, dataOffset, centreValues);
+                            }
                         }
                     }
-                    targetBuffer.setElemDoubleAt(i * targetWidth + j, noDataValue);
+                    firstY = lastY + 1;
                 }
 
-                pm.worked(1);
-
-                if (pm.isCanceled()) {
-                    throw new IOException("Process terminated by user.");
+                final int targetOffset = i * targetWidth;
+                for (int j = 0; j < targetWidth; ++j) {
+                    if (counts[j] > 0) {
+                        targetBuffer.setElemDoubleAt(targetOffset + j, sums[j] / counts[j]);
+                    } else {
+                        targetBuffer.setElemDoubleAt(targetOffset + j, centreValues[j]);
+                    }
                 }
             }
         } catch (InvalidRangeException e) {
             throw new IOException(e.getMessage());
         } finally {
-            pm.done();
+            ncFilePool.release(ncFile);
         }
     }
 
@@ -257,58 +419,184 @@ public class BinnedProductReader extends AbstractProductReader {
      */
     @Override
     public void close() throws IOException {
-        if (ncFile != null) {
+        if (ncFilePool != null) {
             storageInfo = null;
+            columnLookup = null;
+            colCache.clear();
+            colCache = null;
             equirectGrid = null;
-            ncFile.close();
-            ncFile = null;
+            ncFilePool.close();
+            ncFilePool = null;
         }
         super.close();
     }
 
-    private IsinGridStorageInfo createStorageInfo(final int minRow, int rowCount)
-            throws IOException, InvalidRangeException {
-        final Variable row = ncFile.findVariable(ReaderConstants.ROW);
+    /**
+     * Resamples the bins stored for a single ISIN grid row onto a row of the equirectangular
+     * grid. Since both the ISIN columns of the stored bins and the ISIN columns corresponding
+     * to the equirectangular columns are sorted in ascending order, a single merging pass over
+     * the bins is sufficient.
+     *
+     * @param isinCols     the ISIN columns corresponding to the equirectangular columns.
+     * @param sourceX      the equirectangular column corresponding to the first target element.
+     * @param cols         the ISIN columns of the stored bins.
+     * @param binStart     the index of the first stored bin considered.
+     * @param binEnd       the index following the last stored bin considered.
+     * @param data         the data stored for the bins considered.
+     * @param dataOffset   the index of the data element corresponding to the first stored bin.
+     * @param noDataValue  the value used for target elements without a corresponding bin.
+     * @param targetBuffer the target buffer.
+     * @param targetOffset the index of the first target element.
+     * @param targetWidth  the number of target elements.
+     */
+    private static void resampleRow(final short[] isinCols, final int sourceX, final short[] cols,
+                                    final int binStart, final int binEnd, final Array data, final int dataOffset,
+                                    final double noDataValue, final ProductData targetBuffer,
+                                    final int targetOffset, final int targetWidth) {
+        for (int j = 0, k = binStart; j < targetWidth; ++j) {
+            final short z = isinCols[sourceX + j];
+
+            while (k < binEnd && cols[k] < z) {
+                ++k;
+            }
+            if (k < binEnd && cols[k] == z) {
+                targetBuffer.setElemDoubleAt(targetOffset + j, data.getDouble(dataOffset + k));
+            } else {
+                targetBuffer.setElemDoubleAt(targetOffset + j, noDataValue);
+            }
+        }
+    }
 
-        final int[] offsets = new int[rowCount];
-        int binCount = 0;
+    /**
+     * Returns the index of the first element of a sorted array which is not less than a
+     * given key.
+     *
+     * @param cols the sorted array.
+     * @param key  the key.
+     * @return the index of the first element not less than the key, or the length of the
+     *         array if all elements are less than the key.
+     */
+    static int lowerBound(final short[] cols, final int key) {
+        int low = 0;
+        int high = cols.length;
+
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (cols[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
 
-        indexing:
-        for (int rowIndex = minRow; binCount < row.getShape()[0];) {
-            final ArrayShort.D1 chunk = (ArrayShort.D1) readChunk(row, binCount);
+        return low;
+    }
 
-            for (final int chunkFront = binCount; binCount - chunkFront < chunk.getShape()[0];) {
-                if (rowIndex > chunk.get(binCount - chunkFront)) {
-                    ++binCount;
-                    continue;
-                }
-                if (rowCount == 0) {
-                    break indexing;
-                }
+    /**
+     * Picks the values of the bins located at the centres of the cells of a lower resolution
+     * level from the bins stored for a single ISIN grid row.
+     *
+     * @param isinCols     the ISIN columns corresponding to the equirectangular columns.
+     * @param targetX      the column of the first cell in the coordinates of the resolution level.
+     * @param scale        the number of equirectangular columns per cell.
+     * @param sourceWidth  the number of equirectangular columns.
+     * @param cols         the ISIN columns of the stored bins.
+     * @param data         the data stored for the bins.
+     * @param dataOffset   the index of the data element corresponding to the first stored bin.
+     * @param centreValues the values picked, cells without a corresponding bin are not modified.
+     */
+    private static void resampleCentres(final short[] isinCols, final int targetX, final int scale,
+                                        final int sourceWidth, final short[] cols, final Array data,
+                                        final int dataOffset, final double[] centreValues) {
+        final int binCount = cols.length;
+
+        for (int j = 0, k = 0; j < centreValues.length; ++j) {
+            final int minX = (targetX + j) * scale;
+            if (minX >= sourceWidth) {
+                break;
+            }
+            final short z = isinCols[Math.min(sourceWidth - 1, minX + scale / 2)];
+
+            while (k < binCount && cols[k] < z) {
+                ++k;
+            }
+            if (k < binCount && cols[k] == z) {
+                centreValues[j] = data.getDouble(dataOffset + k);
+            }
+        }
+    }
+
+    private static boolean isValid(final double value, final double noDataValue, final boolean noDataValueUsed) {
+        return !Double.isNaN(value) && !(noDataValueUsed && value == noDataValue);
+    }
 
-                offsets[--rowCount] = binCount;
-                if (rowIndex == chunk.get(binCount - chunkFront)) {
-                    ++binCount;
+    /**
+     * Returns the ISIN columns of the bins stored for a range of stored rows. Rows which are
+     * not found in the bin column cache are read at once and put into the cache.
+     *
+     * @param col         the column variable.
+     * @param storageInfo the storage info.
+     * @param firstY      the first (i.e. northernmost) stored row of interest.
+     * @param lastY       the last (i.e. southernmost) stored row of interest.
+     * @return the ISIN columns of the bins stored for each row.
+     * @throws IOException           if an I/O error occurs.
+     * @throws InvalidRangeException if the storage info is inconsistent with the column variable.
+     */
+    private short[][] readCols(final Variable col, final IsinGridStorageInfo storageInfo, final int firstY,
+                               final int lastY) throws IOException, InvalidRangeException {
+        final short[][] rowCols = new short[lastY - firstY + 1][];
+
+        int firstMissingY = -1;
+        int lastMissingY = -1;
+        for (int y = firstY; y <= lastY; ++y) {
+            rowCols[y - firstY] = colCache.get(y);
+            if (rowCols[y - firstY] == null) {
+                if (firstMissingY == -1) {
+                    firstMissingY = y;
                 }
-                ++rowIndex;
+                lastMissingY = y;
             }
         }
-        while (rowCount > 0) {
-            offsets[--rowCount] = binCount;
+        if (firstMissingY != -1) {
+            final int binOffset = storageInfo.getOffset(lastMissingY);
+            final int binEnd = storageInfo.getOffset(firstMissingY) + storageInfo.getBinCount(firstMissingY);
+            final int binCount = binEnd - binOffset;
+            final short[] cols;
+            if (binCount > 0) {
+                cols = (short[]) readBins(col, binOffset, binCount).copyTo1DJavaArray();
+            } else {
+                cols = new short[0];
+            }
+            for (int y = firstMissingY; y <= lastMissingY; ++y) {
+                if (rowCols[y - firstY] == null) {
+                    final int from = storageInfo.getOffset(y) - binOffset;
+                    rowCols[y - firstY] = Arrays.copyOfRange(cols, from, from + storageInfo.getBinCount(y));
+                    colCache.put(y, rowCols[y - firstY]);
+                }
+            }
         }
 
-        return new IsinGridStorageInfo(minRow, binCount, offsets);
+        return rowCols;
     }
 
-    private static Array readChunk(final Variable var, final int offset)
+    private static Array readBins(final Variable var, final int binOffset, final int binCount)
             throws IOException, InvalidRangeException {
-        final int[] start = new int[1];
-        final int[] shape = new int[1];
-
-        start[0] = offset;
-        shape[0] = Math.min(50000, var.getShape()[0] - start[0]);
+        return var.read(new int[]{binOffset}, new int[]{binCount});
+    }
 
-        return var.read(start, shape);
+    private IsinGridStorageInfo getStorageInfo() throws IOException, InvalidRangeException {
+        IsinGridStorageInfo info = storageInfo;
+        if (info == null) {
+            synchronized (storageInfoLock) {
+                info = storageInfo;
+                if (info == null) {
+                    final int minRow = ReaderConstants.IG.getRow(equirectGrid.getMinLat());
+                    info = storageInfoCache.get(ncFilePool, minRow, equirectGrid.getRowCount());
+                    storageInfo = info;
+                }
+            }
+        }
+        return info;
     }
 
     private static EquirectGrid createEquirectGrid(final double minLat,
@@ -338,7 +626,7 @@ public class BinnedProductReader extends AbstractProductReader {
     }
 
     @SuppressWarnings("unchecked")
-    private static List<Variable> findVariables(final Group ncgroup, final Dimension ncdim) {
+    static List<Variable> findVariables(final Group ncgroup, final Dimension ncdim) {
         final List<Variable> variableList = ncgroup.getVariables();
 
         final Iterator<Variable> iter = variableList.iterator();
@@ -378,6 +666,28 @@ public class BinnedProductReader extends AbstractProductReader {
         }
     }
 
+    private void setSourceImages(final Product product, final List<Variable> variableList) {
+        for (final Variable variable : variableList) {
+            final Band band = product.getBand(variable.getShortName());
+            band.setSourceImage(createSourceImage(band));
+        }
+    }
+
+    private MultiLevelImage createSourceImage(final Band band) {
+        final MultiLevelModel model = new DefaultMultiLevelModel(
+                ImageManager.getImageToModelTransform(band.getGeoCoding()),
+                band.getSceneRasterWidth(), band.getSceneRasterHeight());
+
+        return new DefaultMultiLevelImage(new AbstractMultiLevelSource(model) {
+            @Override
+            protected RenderedImage createImage(int level) {
+                // lower resolution levels are computed directly from the bins
+                return new BinnedBandOpImage(band, ResolutionLevel.create(getModel(), level),
+                                             BinnedProductReader.this);
+            }
+        });
+    }
+
     private static void setGeoCoding(final Product product, final EquirectGrid grid) {
         AffineTransform i2m = new AffineTransform();
         i2m.translate(grid.getMinLon(), grid.getMinLat());
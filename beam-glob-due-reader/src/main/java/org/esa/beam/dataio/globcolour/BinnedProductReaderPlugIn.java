@@ -26,7 +26,10 @@ import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Locale;
 
 /**
@@ -54,6 +57,8 @@ public class BinnedProductReaderPlugIn implements ProductReaderPlugIn {
      */
     public static final String FILE_EXTENSION = ".nc";
 
+    private static final byte[] HDF5_SIGNATURE = {(byte) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n'};
+
     /**
      * Creates and returns an instance of the actual {@link ProductReader}.
      *
@@ -85,6 +90,11 @@ public class BinnedProductReaderPlugIn implements ProductReaderPlugIn {
             return DecodeQualification.UNABLE;
         }
 
+        // reject any file which is not a netCDF file without opening it
+        if (!hasNetcdfSignature(new File(path))) {
+            return DecodeQualification.UNABLE;
+        }
+
         NetcdfFile ncfile = null;
         try {
             ncfile = NetcdfFile.open(path);
@@ -111,6 +121,10 @@ public class BinnedProductReaderPlugIn implements ProductReaderPlugIn {
                     "globcolour")) {
                 return DecodeQualification.UNABLE;
             }
+
+            // the reader created for the input takes the opened file over
+            OpenFileCache.getInstance().put(path, ncfile);
+            ncfile = null;
         } catch (IOException ignored) {
             return DecodeQualification.UNABLE;
         } finally {
@@ -126,6 +140,39 @@ public class BinnedProductReaderPlugIn implements ProductReaderPlugIn {
         return DecodeQualification.INTENDED;
     }
 
+    /**
+     * Tests if a file starts with the signature of a netCDF-3 (classic or 64-bit offset)
+     * or a netCDF-4 (HDF5) file.
+     *
+     * @param file the file.
+     * @return true if the file starts with a netCDF signature, false otherwise.
+     */
+    static boolean hasNetcdfSignature(File file) {
+        final byte[] bytes = new byte[HDF5_SIGNATURE.length];
+        try {
+            final InputStream stream = new FileInputStream(file);
+            try {
+                int count = 0;
+                while (count < bytes.length) {
+                    final int n = stream.read(bytes, count, bytes.length - count);
+                    if (n == -1) {
+                        break;
+                    }
+                    count += n;
+                }
+                if (count >= 4 && bytes[0] == 'C' && bytes[1] == 'D' && bytes[2] == 'F'
+                    && (bytes[3] == 1 || bytes[3] == 2)) {
+                    return true;
+                }
+                return count == bytes.length && Arrays.equals(bytes, HDF5_SIGNATURE);
+            } finally {
+                stream.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     /**
      * Returns an array of the classes representing the valid input types for this
      * {@link ProductReaderPlugIn}.
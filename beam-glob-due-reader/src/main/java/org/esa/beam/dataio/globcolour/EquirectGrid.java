@@ -177,4 +177,37 @@ class EquirectGrid {
         return (col + 0.5) * lonStep + minLon;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EquirectGrid)) {
+            return false;
+        }
+
+        final EquirectGrid that = (EquirectGrid) o;
+
+        return rowCount == that.rowCount
+               && colCount == that.colCount
+               && Double.compare(that.minLat, minLat) == 0
+               && Double.compare(that.minLon, minLon) == 0
+               && Double.compare(that.latStep, latStep) == 0
+               && Double.compare(that.lonStep, lonStep) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = rowCount;
+        result = 31 * result + colCount;
+        long temp = Double.doubleToLongBits(minLat);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(minLon);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(latStep);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(lonStep);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        return result;
+    }
 }
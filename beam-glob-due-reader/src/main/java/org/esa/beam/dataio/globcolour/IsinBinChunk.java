@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+/**
+ * The class <code>IsinBinChunk</code> holds a chunk of consecutive bins read from a
+ * Binned product by an {@link IsinBinReader}. The properties of the bins are provided
+ * as columns of primitive values, all having the same length.
+ *
+ * @see IsinBinReader
+ */
+public class IsinBinChunk {
+
+    private final int[] bins;
+    private final short[] rows;
+    private final short[] cols;
+    private final double[][] values;
+
+    IsinBinChunk(int[] bins, short[] rows, short[] cols, double[][] values) {
+        this.bins = bins;
+        this.rows = rows;
+        this.cols = cols;
+        this.values = values;
+    }
+
+    /**
+     * Returns the number of bins in this chunk.
+     *
+     * @return the number of bins.
+     */
+    public final int getBinCount() {
+        return bins.length;
+    }
+
+    /**
+     * Returns the ISIN grid numbers of the bins in this chunk.
+     *
+     * @return the bin numbers. The array returned must not be modified.
+     */
+    public final int[] getBins() {
+        return bins;
+    }
+
+    /**
+     * Returns the ISIN grid row index numbers of the bins in this chunk.
+     *
+     * @return the row index numbers. The array returned must not be modified.
+     */
+    public final short[] getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the ISIN grid column index numbers of the bins in this chunk.
+     *
+     * @return the column index numbers. The array returned must not be modified.
+     */
+    public final short[] getCols() {
+        return cols;
+    }
+
+    /**
+     * Returns the values stored for the bins in this chunk.
+     *
+     * @param variableIndex the index of the variable of interest within the array of
+     *                      variable names passed to {@link IsinBinReader#readBins}.
+     * @return the raw (i.e. unscaled) values. The array returned must not be modified.
+     */
+    public final double[] getValues(int variableIndex) {
+        return values[variableIndex];
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFileWriteable;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The class <code>IsinBinCompositor</code> creates temporal composites of Binned products
+ * generated by the GlobColour processor, e.g. weekly or monthly composites of daily products.
+ * <p/>
+ * The products are merged directly in {@link IsinGrid} bin space, without resampling them
+ * onto an equirectangular grid. The grid is divided into bands of rows, which are composed
+ * concurrently. For each band the bins of all products are accumulated by bin number, so
+ * neither a product nor the composite is ever held in memory completely.
+ * <p/>
+ * All products are open while composing. Each product keeps at most one file handle per
+ * composing thread open between reads, so handles are not reopened for every band of rows.
+ * <p/>
+ * For each variable of interest the composite provides the weighted mean, the number of
+ * valid values, and the minimum and maximum valid value.
+ *
+ * @see IsinBinReader
+ */
+public class IsinBinCompositor {
+
+    /**
+     * The suffix of the name of the composite variable holding the number of valid values.
+     */
+    public static final String COUNT_SUFFIX = "_count";
+    /**
+     * The suffix of the name of the composite variable holding the minimum valid value.
+     */
+    public static final String MIN_SUFFIX = "_min";
+    /**
+     * The suffix of the name of the composite variable holding the maximum valid value.
+     */
+    public static final String MAX_SUFFIX = "_max";
+
+    // the maximum number of bins in a band of rows
+    private static final int MAX_BIN_COUNT_PER_BAND = 100000;
+
+    private final File[] inputFiles;
+    private final String[] variableNames;
+    private final StorageInfoCache storageInfoCache;
+    private String weightVariableName;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param inputFiles    the Binned products to be composed.
+     * @param variableNames the names of the variables to be composed, which must be present
+     *                      in all products.
+     */
+    public IsinBinCompositor(File[] inputFiles, String[] variableNames) {
+        this(inputFiles, variableNames, StorageInfoCache.createDefault());
+    }
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param inputFiles       the Binned products to be composed.
+     * @param variableNames    the names of the variables to be composed, which must be present
+     *                         in all products.
+     * @param storageInfoCache the cache persisting the storage information of the products.
+     */
+    IsinBinCompositor(File[] inputFiles, String[] variableNames, StorageInfoCache storageInfoCache) {
+        this.inputFiles = inputFiles.clone();
+        this.variableNames = variableNames.clone();
+        this.storageInfoCache = storageInfoCache;
+    }
+
+    /**
+     * Sets the name of the variable providing the weight of each bin. By default, all bins
+     * are weighted equally.
+     *
+     * @param weightVariableName the name of the weight variable, or <code>null</code> if all
+     *                           bins are weighted equally.
+     */
+    public void setWeightVariableName(String weightVariableName) {
+        this.weightVariableName = weightVariableName;
+    }
+
+    /**
+     * Composes the products. The bins of the composite are passed to the handler in chunks
+     * and from south to north. For each variable of interest, a chunk holds four consecutive
+     * values: the weighted mean, the number of valid values, the minimum and the maximum
+     * valid value. Bins present in a product but without a valid value yield a mean, minimum
+     * and maximum of {@link Double#NaN} and a count of zero.
+     *
+     * @param handler the handler receiving the chunks of composite bins.
+     * @throws IOException if an I/O error occurs, or if thrown by the handler.
+     */
+    public void compose(IsinBinHandler handler) throws IOException {
+        compose(variableNames, handler);
+    }
+
+    /**
+     * Composes the products and writes the composite to a new Binned product, which can be
+     * read by the {@link BinnedProductReader}. For each variable of interest, the product
+     * holds the weighted mean under the name of the variable, and the number of valid values,
+     * the minimum and the maximum under names carrying the suffixes {@link #COUNT_SUFFIX},
+     * {@link #MIN_SUFFIX} and {@link #MAX_SUFFIX}.
+     *
+     * @param outputFile the output file.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeBinnedProduct(File outputFile) throws IOException {
+        // the number of bins must be known in advance, so the composite bins are counted first,
+        // which requires reading the columns only
+        final int[] binCount = new int[1];
+        compose(new String[0], new IsinBinHandler() {
+            @Override
+            public void handleBins(IsinBinChunk chunk) {
+                binCount[0] += chunk.getBinCount();
+            }
+        });
+        if (binCount[0] == 0) {
+            throw new IOException("The products to be composed contain no bins.");
+        }
+
+        final NetcdfFileWriteable ncFile = NetcdfFileWriteable.createNew(outputFile.getPath(), false);
+        try {
+            final Dimension bin = ncFile.addDimension(ReaderConstants.BIN, binCount[0]);
+            final Dimension[] dims = {bin};
+            ncFile.addVariable(ReaderConstants.ROW, DataType.SHORT, dims);
+            ncFile.addVariable(ReaderConstants.COL, DataType.SHORT, dims);
+            for (final String name : variableNames) {
+                ncFile.addVariable(name, DataType.FLOAT, dims);
+                ncFile.addVariableAttribute(name, ProductAttributes.FILL_VALUE, Float.NaN);
+                ncFile.addVariable(name + COUNT_SUFFIX, DataType.INT, dims);
+                ncFile.addVariable(name + MIN_SUFFIX, DataType.FLOAT, dims);
+                ncFile.addVariableAttribute(name + MIN_SUFFIX, ProductAttributes.FILL_VALUE, Float.NaN);
+                ncFile.addVariable(name + MAX_SUFFIX, DataType.FLOAT, dims);
+                ncFile.addVariableAttribute(name + MAX_SUFFIX, ProductAttributes.FILL_VALUE, Float.NaN);
+            }
+            ncFile.addGlobalAttribute(ProductAttributes.TITLE,
+                                      MessageFormat.format("GlobColour composite of {0} binned products",
+                                                           inputFiles.length));
+            ncFile.create();
+
+            compose(variableNames, new IsinBinHandler() {
+                private int offset;
+
+                @Override
+                public void handleBins(IsinBinChunk chunk) throws IOException {
+                    final int n = chunk.getBinCount();
+                    try {
+                        write(ncFile, ReaderConstants.ROW, offset, n, DataType.SHORT, chunk.getRows());
+                        write(ncFile, ReaderConstants.COL, offset, n, DataType.SHORT, chunk.getCols());
+                        for (int v = 0; v < variableNames.length; ++v) {
+                            final String name = variableNames[v];
+                            write(ncFile, name, offset, n, DataType.FLOAT, toFloats(chunk.getValues(4 * v)));
+                            write(ncFile, name + COUNT_SUFFIX, offset, n, DataType.INT,
+                                  toInts(chunk.getValues(4 * v + 1)));
+                            write(ncFile, name + MIN_SUFFIX, offset, n, DataType.FLOAT,
+                                  toFloats(chunk.getValues(4 * v + 2)));
+                            write(ncFile, name + MAX_SUFFIX, offset, n, DataType.FLOAT,
+                                  toFloats(chunk.getValues(4 * v + 3)));
+                        }
+                    } catch (InvalidRangeException e) {
+                        throw new IOException(e.getMessage(), e);
+                    }
+                    offset += n;
+                }
+            });
+        } finally {
+            ncFile.close();
+        }
+    }
+
+    private void compose(String[] names, IsinBinHandler handler) throws IOException {
+        final IsinBinReader[] readers = new IsinBinReader[inputFiles.length];
+        final int threadCount = Runtime.getRuntime().availableProcessors();
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (int i = 0; i < readers.length; ++i) {
+                // every composing thread may read each product, so each may keep a handle open
+                readers[i] = IsinBinReader.open(inputFiles[i], threadCount, storageInfoCache);
+            }
+            final String[] readNames = getReadNames(names);
+            final double[][] fillValues = new double[readers.length][names.length];
+            for (int i = 0; i < readers.length; ++i) {
+                for (int v = 0; v < names.length; ++v) {
+                    fillValues[i][v] = getFillValue(readers[i], names[v]);
+                }
+                if (weightVariableName != null) {
+                    getFillValue(readers[i], weightVariableName);
+                }
+            }
+
+            // bands are composed concurrently, but passed to the handler in order
+            final int maxPendingCount = 2 * threadCount;
+            final LinkedList<Future<IsinBinChunk>> pending = new LinkedList<Future<IsinBinChunk>>();
+            final int rowCount = ReaderConstants.IG.getRowCount();
+            for (int minRow = 0; minRow < rowCount || !pending.isEmpty();) {
+                if (minRow < rowCount && pending.size() < maxPendingCount) {
+                    final int maxRow = getMaxRow(minRow);
+                    pending.add(executor.submit(new BandComposer(readers, readNames, names.length, fillValues,
+                                                                 minRow, maxRow)));
+                    minRow = maxRow + 1;
+                } else {
+                    final IsinBinChunk chunk = getResult(pending.removeFirst());
+                    if (chunk != null && chunk.getBinCount() > 0) {
+                        handler.handleBins(chunk);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            for (final IsinBinReader reader : readers) {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+        }
+    }
+
+    private String[] getReadNames(String[] names) {
+        if (weightVariableName == null) {
+            return names;
+        }
+        final String[] readNames = new String[names.length + 1];
+        System.arraycopy(names, 0, readNames, 0, names.length);
+        readNames[names.length] = weightVariableName;
+        return readNames;
+    }
+
+    private static double getFillValue(IsinBinReader reader, String variableName) throws IOException {
+        try {
+            return reader.getFillValue(variableName);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(MessageFormat.format("A product to be composed lacks the variable ''{0}''.",
+                                                       variableName));
+        }
+    }
+
+    // returns the northernmost row of the band of rows starting with the row given
+    private static int getMaxRow(int minRow) {
+        final IsinGrid grid = ReaderConstants.IG;
+        int maxRow = minRow;
+        int binCount = grid.getColCount(minRow);
+        while (maxRow + 1 < grid.getRowCount() && binCount + grid.getColCount(maxRow + 1) <= MAX_BIN_COUNT_PER_BAND) {
+            ++maxRow;
+            binCount += grid.getColCount(maxRow);
+        }
+        return maxRow;
+    }
+
+    private static IsinBinChunk getResult(Future<IsinBinChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while composing bins.");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    private static void write(NetcdfFileWriteable ncFile, String name, int offset, int length, DataType dataType,
+                              Object data) throws IOException, InvalidRangeException {
+        ncFile.write(name, new int[]{offset}, Array.factory(dataType, new int[]{length}, data));
+    }
+
+    private static float[] toFloats(double[] values) {
+        final float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            floats[i] = (float) values[i];
+        }
+        return floats;
+    }
+
+    private static int[] toInts(double[] values) {
+        final int[] ints = new int[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            ints[i] = (int) values[i];
+        }
+        return ints;
+    }
+
+    private static final class BandComposer implements Callable<IsinBinChunk> {
+
+        private final IsinBinReader[] readers;
+        private final String[] readNames;
+        private final int variableCount;
+        private final double[][] fillValues;
+        private final int minRow;
+        private final int maxRow;
+
+        private BandComposer(IsinBinReader[] readers, String[] readNames, int variableCount, double[][] fillValues,
+                             int minRow, int maxRow) {
+            this.readers = readers;
+            this.readNames = readNames;
+            this.variableCount = variableCount;
+            this.fillValues = fillValues;
+            this.minRow = minRow;
+            this.maxRow = maxRow;
+        }
+
+        @Override
+        public IsinBinChunk call() throws IOException {
+            // the weights, if any, follow the variables of interest
+            final int weightIndex = readNames.length > variableCount ? variableCount : -1;
+
+            BinAccumulator accumulator = null;
+            for (int i = 0; i < readers.length; ++i) {
+                if (readers[i].getBinCount(minRow, maxRow) == 0) {
+                    continue;
+                }
+                if (accumulator == null) {
+                    accumulator = new BinAccumulator(ReaderConstants.IG, minRow, maxRow, variableCount);
+                }
+                final BinAccumulator target = accumulator;
+                final double[] readerFillValues = fillValues[i];
+                readers[i].readBins(minRow, maxRow, readNames, new IsinBinHandler() {
+                    @Override
+                    public void handleBins(IsinBinChunk chunk) {
+                        target.accumulate(chunk, readerFillValues, weightIndex);
+                    }
+                });
+            }
+
+            return accumulator != null ? accumulator.createChunk() : null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import java.io.IOException;
+
+/**
+ * Receives the chunks of bins read by an {@link IsinBinReader}.
+ *
+ * @see IsinBinReader#readBins
+ */
+public interface IsinBinHandler {
+
+    /**
+     * Handles a chunk of bins. Chunks are passed in the order the bins are stored, i.e.
+     * from south to north and from west to east within a row.
+     *
+     * @param chunk the chunk of bins.
+     * @throws IOException if the chunk cannot be handled.
+     */
+    void handleBins(IsinBinChunk chunk) throws IOException;
+}
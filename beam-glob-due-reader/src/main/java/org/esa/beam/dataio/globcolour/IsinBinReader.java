@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class <code>IsinBinReader</code> provides access to the bins stored in a Binned product
+ * generated by the GlobColour processor, without resampling them onto an equirectangular grid.
+ * <p/>
+ * Bins are read in chunks for any continuous sequence of {@link IsinGrid} rows. Each bin is
+ * read exactly once, so statistics computed from the bins are neither biased by bins being
+ * duplicated at high latitudes nor slowed down by the empty pixels of a resampled raster.
+ *
+ * @see IsinBinChunk
+ * @see IsinBinHandler
+ */
+public class IsinBinReader {
+
+    // the maximum number of bins per chunk
+    private static final int CHUNK_SIZE = 100000;
+
+    private static final StorageInfoCache STORAGE_INFO_CACHE = StorageInfoCache.createDefault();
+
+    private final NetcdfFilePool ncFilePool;
+    private final StorageInfoCache storageInfoCache;
+    private final String[] variableNames;
+    private final double[] fillValues;
+    private IsinGridStorageInfo storageInfo;
+
+    /**
+     * Opens a Binned product.
+     *
+     * @param file the product file.
+     * @return the reader.
+     * @throws IOException if the file cannot be opened or is not a Binned product.
+     */
+    public static IsinBinReader open(File file) throws IOException {
+        return open(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Opens a Binned product, keeping a limited number of file handles open between reads.
+     * Threads reading concurrently still use a handle each, surplus handles are closed after
+     * reading.
+     *
+     * @param file               the product file.
+     * @param maxIdleHandleCount the maximum number of file handles kept open between reads.
+     * @return the reader.
+     * @throws IOException if the file cannot be opened or is not a Binned product.
+     */
+    static IsinBinReader open(File file, int maxIdleHandleCount) throws IOException {
+        return open(file, maxIdleHandleCount, STORAGE_INFO_CACHE);
+    }
+
+    /**
+     * Opens a Binned product, keeping a limited number of file handles open between reads.
+     *
+     * @param file               the product file.
+     * @param maxIdleHandleCount the maximum number of file handles kept open between reads.
+     * @param storageInfoCache   the cache persisting the storage information of products.
+     * @return the reader.
+     * @throws IOException if the file cannot be opened or is not a Binned product.
+     */
+    static IsinBinReader open(File file, int maxIdleHandleCount, StorageInfoCache storageInfoCache)
+            throws IOException {
+        final NetcdfFilePool ncFilePool = new NetcdfFilePool(file.getPath(), maxIdleHandleCount);
+        final List<String> variableNames = new ArrayList<String>();
+        final List<Double> fillValues = new ArrayList<Double>();
+
+        boolean binned = false;
+        final NetcdfFile ncFile = ncFilePool.acquire();
+        try {
+            final Dimension bin = ncFile.getRootGroup().findDimension(ReaderConstants.BIN);
+            if (bin != null && ncFile.findVariable(ReaderConstants.ROW) != null
+                && ncFile.findVariable(ReaderConstants.COL) != null) {
+                for (final Variable variable : BinnedProductReader.findVariables(ncFile.getRootGroup(), bin)) {
+                    final String name = variable.getShortName();
+                    if (!ReaderConstants.ROW.equals(name) && !ReaderConstants.COL.equals(name)) {
+                        variableNames.add(name);
+                        fillValues.add(getFillValue(variable));
+                    }
+                }
+                binned = true;
+            }
+        } finally {
+            ncFilePool.release(ncFile);
+            if (!binned) {
+                ncFilePool.close();
+            }
+        }
+        if (!binned) {
+            throw new IOException(MessageFormat.format("''{0}'' is not a Binned product.", file.getPath()));
+        }
+
+        final double[] fillValueArray = new double[fillValues.size()];
+        for (int i = 0; i < fillValueArray.length; ++i) {
+            fillValueArray[i] = fillValues.get(i);
+        }
+
+        return new IsinBinReader(ncFilePool, storageInfoCache,
+                                 variableNames.toArray(new String[variableNames.size()]), fillValueArray);
+    }
+
+    private IsinBinReader(NetcdfFilePool ncFilePool, StorageInfoCache storageInfoCache, String[] variableNames,
+                          double[] fillValues) {
+        this.ncFilePool = ncFilePool;
+        this.storageInfoCache = storageInfoCache;
+        this.variableNames = variableNames;
+        this.fillValues = fillValues;
+    }
+
+    /**
+     * Returns the names of the variables stored for the bins, excluding the
+     * <code>row</code> and <code>col</code> variables.
+     *
+     * @return the variable names.
+     */
+    public String[] getVariableNames() {
+        return variableNames.clone();
+    }
+
+    /**
+     * Returns the fill value of a variable, which marks bins without a valid value.
+     *
+     * @param variableName the name of the variable of interest.
+     * @return the raw fill value, or {@link Double#NaN} if the variable has no fill value.
+     * @throws IllegalArgumentException if the variable is unknown.
+     */
+    public double getFillValue(String variableName) {
+        return fillValues[indexOf(variableName)];
+    }
+
+    /**
+     * Returns the number of rows in the {@link IsinGrid} underlying the product.
+     *
+     * @return the number of rows.
+     */
+    public int getRowCount() {
+        return ReaderConstants.IG.getRowCount();
+    }
+
+    /**
+     * Returns the number of columns in a given row of the {@link IsinGrid} underlying the product.
+     *
+     * @param row the index number of the row of interest.
+     * @return the number of columns.
+     */
+    public int getColCount(int row) {
+        return ReaderConstants.IG.getColCount(row);
+    }
+
+    /**
+     * Returns the (central) latitude of a given row of interest.
+     *
+     * @param row the index number of the row of interest.
+     * @return the central latitude of the row.
+     */
+    public double getLat(int row) {
+        return ReaderConstants.IG.getLat(row);
+    }
+
+    /**
+     * Returns the (central) longitude for a given row and column of interest.
+     *
+     * @param row the index number of the row of interest.
+     * @param col the index number of the column of interest.
+     * @return the central longitude of the column within the row.
+     */
+    public double getLon(int row, int col) {
+        return ReaderConstants.IG.getLon(row, col);
+    }
+
+    /**
+     * Returns the number of bins stored for a continuous sequence of rows.
+     *
+     * @param minRow the index number of the southernmost row of interest.
+     * @param maxRow the index number of the northernmost row of interest.
+     * @return the number of bins.
+     * @throws IOException if an I/O error occurs.
+     */
+    public int getBinCount(int minRow, int maxRow) throws IOException {
+        checkRowRange(minRow, maxRow);
+        final IsinGridStorageInfo info = getStorageInfo();
+        return getBinEnd(info, maxRow) - getBinStart(info, minRow);
+    }
+
+    /**
+     * Reads the bins stored for a continuous sequence of rows. The bins are passed to the
+     * handler in chunks, so the number of bins read at once is bounded.
+     *
+     * @param minRow        the index number of the southernmost row of interest.
+     * @param maxRow        the index number of the northernmost row of interest.
+     * @param variableNames the names of the variables whose values are read.
+     * @param handler       the handler receiving the chunks.
+     * @throws IOException              if an I/O error occurs, or if thrown by the handler.
+     * @throws IllegalArgumentException if the rows are out of range, or if a variable is unknown.
+     */
+    public void readBins(int minRow, int maxRow, String[] variableNames, IsinBinHandler handler)
+            throws IOException {
+        checkRowRange(minRow, maxRow);
+        for (final String name : variableNames) {
+            indexOf(name);
+        }
+        final IsinGridStorageInfo info = getStorageInfo();
+        final int binStart = getBinStart(info, minRow);
+        final int binEnd = getBinEnd(info, maxRow);
+
+        final NetcdfFile ncFile = ncFilePool.acquire();
+        try {
+            final Variable col = ncFile.findVariable(ReaderConstants.COL);
+            final Variable[] variables = new Variable[variableNames.length];
+            for (int v = 0; v < variables.length; ++v) {
+                variables[v] = ncFile.findVariable(variableNames[v]);
+            }
+
+            int row = minRow;
+            for (int offset = binStart; offset < binEnd; offset += CHUNK_SIZE) {
+                final int binCount = Math.min(CHUNK_SIZE, binEnd - offset);
+                final short[] cols = (short[]) readBins(col, offset, binCount).copyTo1DJavaArray();
+                final short[] rows = new short[binCount];
+                final int[] bins = new int[binCount];
+
+                for (int k = 0; k < binCount; ++k) {
+                    while (offset + k >= getBinEnd(info, row)) {
+                        ++row;
+                    }
+                    rows[k] = (short) row;
+                    bins[k] = ReaderConstants.IG.getBin(row, cols[k]);
+                }
+
+                final double[][] values = new double[variables.length][binCount];
+                for (int v = 0; v < variables.length; ++v) {
+                    final Array data = readBins(variables[v], offset, binCount);
+                    for (int k = 0; k < binCount; ++k) {
+                        values[v][k] = data.getDouble(k);
+                    }
+                }
+
+                handler.handleBins(new IsinBinChunk(bins, rows, cols, values));
+            }
+        } catch (InvalidRangeException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            ncFilePool.release(ncFile);
+        }
+    }
+
+    /**
+     * Closes the product.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void close() throws IOException {
+        ncFilePool.close();
+    }
+
+    private synchronized IsinGridStorageInfo getStorageInfo() throws IOException {
+        if (storageInfo == null) {
+            try {
+                storageInfo = storageInfoCache.get(ncFilePool, 0, ReaderConstants.IG.getRowCount());
+            } catch (InvalidRangeException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+        return storageInfo;
+    }
+
+    private void checkRowRange(int minRow, int maxRow) {
+        if (minRow < 0) {
+            throw new IllegalArgumentException("minRow < 0");
+        }
+        if (maxRow < minRow) {
+            throw new IllegalArgumentException("maxRow < minRow");
+        }
+        if (maxRow >= getRowCount()) {
+            throw new IllegalArgumentException("maxRow >= getRowCount()");
+        }
+    }
+
+    // the storage information covers all rows, the first (i.e. northernmost) having the largest index number
+    private static int getBinStart(IsinGridStorageInfo info, int row) {
+        return info.getOffset(info.getRowCount() - 1 - row);
+    }
+
+    private static int getBinEnd(IsinGridStorageInfo info, int row) {
+        final int i = info.getRowCount() - 1 - row;
+        return info.getOffset(i) + info.getBinCount(i);
+    }
+
+    private static Array readBins(Variable var, int binOffset, int binCount)
+            throws IOException, InvalidRangeException {
+        return var.read(new int[]{binOffset}, new int[]{binCount});
+    }
+
+    private int indexOf(String variableName) {
+        for (int i = 0; i < variableNames.length; ++i) {
+            if (variableNames[i].equals(variableName)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(MessageFormat.format("Unknown variable ''{0}''.", variableName));
+    }
+
+    private static double getFillValue(Variable variable) {
+        final Attribute attribute = variable.findAttribute(ProductAttributes.FILL_VALUE);
+        if (attribute != null && attribute.getNumericValue() != null) {
+            return attribute.getNumericValue().doubleValue();
+        }
+        return Double.NaN;
+    }
+}
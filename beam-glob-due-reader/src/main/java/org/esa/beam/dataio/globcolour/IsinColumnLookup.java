@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The class <code>IsinColumnLookup</code> maps the columns of an {@link EquirectGrid}
+ * onto the columns of the rows of an {@link IsinGrid}.
+ * <p/>
+ * For each {@link IsinGrid} row the lookup table holds the value of the expression
+ * <p/>
+ * <code>isinGrid.getCol(row, equirectGrid.getLon(x))</code>
+ * <p/>
+ * for all columns <code>x</code> of the equirectangular grid. Since the result depends
+ * on the number of columns in the row only, rows having the same number of columns share
+ * a single table. Tables are computed lazily and instances are shared between all readers
+ * using the same pair of grids.
+ *
+ * @see IsinGrid
+ * @see EquirectGrid
+ */
+class IsinColumnLookup {
+
+    private static final int MAX_CACHED_INSTANCES = 4;
+
+    private static final Map<Key, IsinColumnLookup> instances =
+            new LinkedHashMap<Key, IsinColumnLookup>(MAX_CACHED_INSTANCES + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, IsinColumnLookup> eldest) {
+                    return size() > MAX_CACHED_INSTANCES;
+                }
+            };
+
+    private final IsinGrid isinGrid;
+    private final EquirectGrid equirectGrid;
+    // the lookup tables, indexed by the number of columns in an ISIN grid row
+    private final AtomicReferenceArray<short[]> tables;
+
+    /**
+     * Returns the lookup instance for the given pair of grids.
+     *
+     * @param isinGrid     the ISIN grid.
+     * @param equirectGrid the equirectangular grid.
+     * @return the lookup instance.
+     * @throws IllegalArgumentException if the columns of the ISIN grid cannot be represented
+     *                                  by <code>short</code> values.
+     */
+    static IsinColumnLookup getInstance(final IsinGrid isinGrid, final EquirectGrid equirectGrid) {
+        final Key key = new Key(isinGrid, equirectGrid);
+        synchronized (instances) {
+            IsinColumnLookup lookup = instances.get(key);
+            if (lookup == null) {
+                lookup = new IsinColumnLookup(isinGrid, equirectGrid);
+                instances.put(key, lookup);
+            }
+            return lookup;
+        }
+    }
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param isinGrid     the ISIN grid.
+     * @param equirectGrid the equirectangular grid.
+     * @throws IllegalArgumentException if the columns of the ISIN grid cannot be represented
+     *                                  by <code>short</code> values.
+     */
+    IsinColumnLookup(final IsinGrid isinGrid, final EquirectGrid equirectGrid) {
+        int maxColCount = 0;
+        for (int row = 0; row < isinGrid.getRowCount(); ++row) {
+            maxColCount = Math.max(maxColCount, isinGrid.getColCount(row));
+        }
+        if (maxColCount > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("maxColCount > Short.MAX_VALUE");
+        }
+
+        this.isinGrid = isinGrid;
+        this.equirectGrid = equirectGrid;
+        tables = new AtomicReferenceArray<short[]>(maxColCount + 1);
+    }
+
+    /**
+     * Returns the {@link IsinGrid} column numbers corresponding to the columns of the
+     * {@link EquirectGrid} for a given row of interest.
+     * <p/>
+     * The array returned is shared and must not be modified.
+     *
+     * @param row the index number of the {@link IsinGrid} row of interest.
+     * @return the array of column numbers, its length is equal to the number of columns
+     *         of the {@link EquirectGrid}.
+     * @throws ArrayIndexOutOfBoundsException if <code>row</code> is less than 0 or not less
+     *                                        than the number of rows in the ISIN grid.
+     */
+    final short[] getCols(final int row) {
+        final int colCount = isinGrid.getColCount(row);
+        short[] table = tables.get(colCount);
+        if (table == null) {
+            table = createTable(row);
+            // a concurrently computed table is equal to ours, so either one may win
+            if (!tables.compareAndSet(colCount, null, table)) {
+                table = tables.get(colCount);
+            }
+        }
+        return table;
+    }
+
+    private short[] createTable(final int row) {
+        final short[] table = new short[equirectGrid.getColCount()];
+        for (int x = 0; x < table.length; ++x) {
+            table[x] = (short) isinGrid.getCol(row, equirectGrid.getLon(x));
+        }
+        return table;
+    }
+
+    private static final class Key {
+
+        private final IsinGrid isinGrid;
+        private final EquirectGrid equirectGrid;
+
+        private Key(IsinGrid isinGrid, EquirectGrid equirectGrid) {
+            this.isinGrid = isinGrid;
+            this.equirectGrid = equirectGrid;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return isinGrid == key.isinGrid && equirectGrid.equals(key.equirectGrid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(isinGrid) + equirectGrid.hashCode();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import ucar.nc2.NetcdfFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The class <code>NetcdfFilePool</code> manages independent {@link NetcdfFile} handles
+ * to the same file. Since a {@link NetcdfFile} must not be accessed by several threads
+ * concurrently, each reading thread acquires a handle of its own and releases it after
+ * reading.
+ * <p/>
+ * Handles are opened on demand. At most <code>maxIdleCount</code> released handles are
+ * kept open for later reuse, any surplus handle is closed on release.
+ */
+class NetcdfFilePool {
+
+    private final String path;
+    private final int maxIdleCount;
+    private final List<NetcdfFile> idleFiles;
+    private boolean closed;
+
+    /**
+     * Constructs a pool with a maximum number of idle handles equal to the number
+     * of available processors.
+     *
+     * @param path the path of the netCDF file.
+     */
+    NetcdfFilePool(String path) {
+        this(path, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param path         the path of the netCDF file.
+     * @param maxIdleCount the maximum number of idle handles kept open, must be positive.
+     * @throws IllegalArgumentException if <code>maxIdleCount</code> is not a positive number.
+     */
+    NetcdfFilePool(String path, int maxIdleCount) {
+        if (maxIdleCount < 1) {
+            throw new IllegalArgumentException("maxIdleCount < 1");
+        }
+        this.path = path;
+        this.maxIdleCount = maxIdleCount;
+        idleFiles = new ArrayList<NetcdfFile>(maxIdleCount);
+    }
+
+    /**
+     * Returns the path of the netCDF file.
+     *
+     * @return the path.
+     */
+    final String getPath() {
+        return path;
+    }
+
+    /**
+     * Acquires a handle for exclusive use by the calling thread. The handle must
+     * be returned to the pool by calling {@link #release(NetcdfFile)}.
+     *
+     * @return the handle.
+     * @throws IOException if the pool has been closed or the file cannot be opened.
+     */
+    NetcdfFile acquire() throws IOException {
+        synchronized (idleFiles) {
+            if (closed) {
+                throw new IOException("Pool has been closed.");
+            }
+            if (!idleFiles.isEmpty()) {
+                return idleFiles.remove(idleFiles.size() - 1);
+            }
+        }
+        return open();
+    }
+
+    /**
+     * Opens a new handle to the netCDF file.
+     *
+     * @return the handle.
+     * @throws IOException if the file cannot be opened.
+     */
+    NetcdfFile open() throws IOException {
+        return NetcdfFile.open(path);
+    }
+
+    /**
+     * Releases a handle which has been acquired before.
+     *
+     * @param ncFile the handle.
+     * @throws IOException if an I/O error occurs while closing a surplus handle.
+     */
+    void release(NetcdfFile ncFile) throws IOException {
+        synchronized (idleFiles) {
+            if (!closed && idleFiles.size() < maxIdleCount) {
+                idleFiles.add(ncFile);
+                return;
+            }
+        }
+        ncFile.close();
+    }
+
+    /**
+     * Closes all idle handles. Handles released after closing the pool are closed
+     * immediately.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    void close() throws IOException {
+        final List<NetcdfFile> files;
+        synchronized (idleFiles) {
+            closed = true;
+            files = new ArrayList<NetcdfFile>(idleFiles);
+            idleFiles.clear();
+        }
+        IOException exception = null;
+        for (final NetcdfFile file : files) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import org.esa.beam.util.Debug;
+import ucar.nc2.NetcdfFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * The class <code>OpenFileCache</code> hands netCDF files opened while a product reader
+ * plug-in qualifies an input over to the product reader subsequently reading the input,
+ * so the file is not opened twice.
+ * <p/>
+ * The cache is small and short-lived: files not taken within a few seconds, or exceeding
+ * the maximum number of entries, are closed. Expired files are closed by a daemon timer,
+ * so files qualified without ever being read, for example while a directory is scanned,
+ * do not stay open. A file is not handed over if it has been modified since it was opened.
+ */
+class OpenFileCache {
+
+    private static final OpenFileCache INSTANCE = new OpenFileCache(8, 10000L);
+
+    private final int maxEntryCount;
+    private final long maxAgeMillis;
+    private final Map<String, Entry> entries;
+    // closes expired entries, guarded by the entries
+    private Timer timer;
+
+    /**
+     * Returns the cache shared by the plug-ins and readers of this package.
+     *
+     * @return the shared cache.
+     */
+    static OpenFileCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param maxEntryCount the maximum number of files kept open.
+     * @param maxAgeMillis  the maximum time a file is kept open (ms).
+     */
+    OpenFileCache(int maxEntryCount, long maxAgeMillis) {
+        this.maxEntryCount = maxEntryCount;
+        this.maxAgeMillis = maxAgeMillis;
+        entries = new LinkedHashMap<String, Entry>();
+    }
+
+    /**
+     * Puts an opened file into the cache. A file previously put for the same path is closed.
+     *
+     * @param path   the path of the file.
+     * @param ncFile the opened file.
+     */
+    void put(String path, NetcdfFile ncFile) {
+        final File file = new File(path);
+        final Entry entry = new Entry(ncFile, System.currentTimeMillis(), file.lastModified(), file.length());
+
+        synchronized (entries) {
+            final String key = getKey(file);
+            final Entry previous = entries.remove(key);
+            if (previous != null) {
+                close(previous.ncFile);
+            }
+            entries.put(key, entry);
+            evict(entry.putTime);
+            scheduleEviction();
+        }
+    }
+
+    /**
+     * Takes an opened file out of the cache. The caller is responsible for closing the file.
+     *
+     * @param path the path of the file.
+     * @return the opened file, or <code>null</code> if the cache holds no valid entry for the path.
+     */
+    NetcdfFile take(String path) {
+        final File file = new File(path);
+        final Entry entry;
+
+        synchronized (entries) {
+            evict(System.currentTimeMillis());
+            entry = entries.remove(getKey(file));
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (entry.lastModified != file.lastModified() || entry.length != file.length()) {
+            close(entry.ncFile);
+            return null;
+        }
+        return entry.ncFile;
+    }
+
+    /**
+     * Closes all files held by the cache.
+     */
+    void clear() {
+        synchronized (entries) {
+            for (final Entry entry : entries.values()) {
+                close(entry.ncFile);
+            }
+            entries.clear();
+            cancelEviction();
+        }
+    }
+
+    /**
+     * @return the number of files held by the cache.
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // guarded by the entries
+    private void scheduleEviction() {
+        if (timer == null) {
+            timer = new Timer("GlobColour open file cache", true);
+        }
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                synchronized (entries) {
+                    evict(System.currentTimeMillis());
+                    if (entries.isEmpty()) {
+                        // the timer thread ends, a new one is started by the next put
+                        cancelEviction();
+                    }
+                }
+            }
+        }, maxAgeMillis + 1);
+    }
+
+    // guarded by the entries
+    private void cancelEviction() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    // closes and removes expired entries and the eldest entries exceeding the maximum number
+    private void evict(long now) {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (entries.size() > maxEntryCount || now - entry.putTime > maxAgeMillis) {
+                close(entry.ncFile);
+                iterator.remove();
+            } else {
+                // entries are kept in insertion order, so all remaining entries are younger
+                break;
+            }
+        }
+    }
+
+    private static String getKey(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    private static void close(NetcdfFile ncFile) {
+        try {
+            ncFile.close();
+        } catch (IOException e) {
+            Debug.trace(e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final NetcdfFile ncFile;
+        private final long putTime;
+        private final long lastModified;
+        private final long length;
+
+        private Entry(NetcdfFile ncFile, long putTime, long lastModified, long length) {
+            this.ncFile = ncFile;
+            this.putTime = putTime;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+}
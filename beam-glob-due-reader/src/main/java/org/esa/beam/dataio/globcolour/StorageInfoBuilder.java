@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The class <code>StorageInfoBuilder</code> creates the {@link IsinGridStorageInfo} of
+ * a Binned product by scanning the <code>row</code> variable, which holds the (ascending)
+ * {@link IsinGrid} row index number of each bin stored.
+ * <p/>
+ * The offset of a row is the index of the first bin whose row index number is not less than
+ * the row's index number. The <code>row</code> variable is split into ranges of bins, which
+ * are scanned concurrently. Each range contributes the offsets of the rows starting within
+ * the range, so the partial results never overlap and are merged without further scanning.
+ */
+class StorageInfoBuilder {
+
+    // the number of bins read at once
+    private static final int CHUNK_SIZE = 50000;
+
+    private StorageInfoBuilder() {
+    }
+
+    /**
+     * Creates the storage information for a continuous sequence of {@link IsinGrid} rows.
+     *
+     * @param ncFilePool the pool providing handles to the product file.
+     * @param minRow     the {@link IsinGrid} index number of the southernmost row of interest.
+     * @param rowCount   the number of rows of interest.
+     * @return the storage information.
+     * @throws IOException           if an I/O error occurs.
+     * @throws InvalidRangeException if the <code>row</code> variable cannot be read.
+     */
+    static IsinGridStorageInfo build(final NetcdfFilePool ncFilePool, final int minRow, final int rowCount)
+            throws IOException, InvalidRangeException {
+        final int binCount = getBinCount(ncFilePool);
+        final int chunkCount = (binCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final int taskCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), chunkCount));
+        final int[] rowStarts = createRowStarts(rowCount);
+
+        if (taskCount == 1) {
+            new RangeScanner(ncFilePool, 0, binCount, minRow, rowStarts).call();
+        } else {
+            final int rangeSize = (chunkCount + taskCount - 1) / taskCount * CHUNK_SIZE;
+            final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(taskCount);
+            for (int start = 0; start < binCount; start += rangeSize) {
+                final int end = Math.min(binCount, start + rangeSize);
+                tasks.add(new RangeScanner(ncFilePool, start, end, minRow, rowStarts));
+            }
+            final ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+            try {
+                for (final Future<Object> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while indexing bins.");
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof InvalidRangeException) {
+                    throw (InvalidRangeException) cause;
+                }
+                throw new IOException(cause.getMessage());
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        return createStorageInfo(minRow, binCount, rowStarts);
+    }
+
+    /**
+     * Creates an array for the indexes of the first bins stored for the rows of interest, where
+     * the element <code>rowStarts[k]</code> refers to the {@link IsinGrid} row <code>minRow + k</code>.
+     * The additional last element refers to the first row following the rows of interest.
+     *
+     * @param rowCount the number of rows of interest.
+     * @return the array, all of whose elements are marked as unassigned.
+     */
+    static int[] createRowStarts(final int rowCount) {
+        final int[] rowStarts = new int[rowCount + 1];
+        Arrays.fill(rowStarts, -1);
+        return rowStarts;
+    }
+
+    /**
+     * Assigns the indexes of the first bins stored for all rows which start within a
+     * sequence of bins.
+     *
+     * @param rows      the row index numbers of the bins in the sequence.
+     * @param firstBin  the index of the first bin in the sequence.
+     * @param prevRow   the row index number of the bin preceding the sequence, or
+     *                  <code>Integer.MIN_VALUE</code> if there is no preceding bin.
+     * @param minRow    the {@link IsinGrid} index number of the southernmost row of interest.
+     * @param rowStarts the indexes of the first bins stored for the rows of interest.
+     * @return the row index number of the last bin in the sequence.
+     */
+    static int assignRowStarts(final short[] rows, final int firstBin, int prevRow, final int minRow,
+                               final int[] rowStarts) {
+        final int maxIndex = rowStarts.length - 1;
+
+        for (int i = 0; i < rows.length; ++i) {
+            final int row = rows[i];
+            if (row > prevRow) {
+                final int k0 = prevRow < minRow ? 0 : prevRow - minRow + 1;
+                final int k1 = Math.min(maxIndex, row - minRow);
+                for (int k = k0; k <= k1; ++k) {
+                    rowStarts[k] = firstBin + i;
+                }
+                prevRow = row;
+            }
+        }
+
+        return prevRow;
+    }
+
+    /**
+     * Creates the storage information from the indexes of the first bins stored for the
+     * rows of interest. Rows starting beyond the last bin are assigned the number of bins.
+     *
+     * @param minRow    the {@link IsinGrid} index number of the southernmost row of interest.
+     * @param binCount  the total number of bins.
+     * @param rowStarts the indexes of the first bins stored for the rows of interest.
+     * @return the storage information.
+     */
+    static IsinGridStorageInfo createStorageInfo(final int minRow, final int binCount, final int[] rowStarts) {
+        final int rowCount = rowStarts.length - 1;
+        final int[] offsets = new int[rowCount];
+
+        for (int k = 0; k < rowCount; ++k) {
+            // the offsets are sorted from north to south
+            offsets[rowCount - 1 - k] = rowStarts[k] != -1 ? rowStarts[k] : binCount;
+        }
+        final int storedBinCount = rowStarts[rowCount] != -1 ? rowStarts[rowCount] : binCount;
+
+        return new IsinGridStorageInfo(minRow, storedBinCount, offsets);
+    }
+
+    private static int getBinCount(final NetcdfFilePool ncFilePool) throws IOException {
+        final NetcdfFile ncFile = ncFilePool.acquire();
+        try {
+            return ncFile.findVariable(ReaderConstants.ROW).getShape()[0];
+        } finally {
+            ncFilePool.release(ncFile);
+        }
+    }
+
+    private static final class RangeScanner implements Callable<Object> {
+
+        private final NetcdfFilePool ncFilePool;
+        private final int start;
+        private final int end;
+        private final int minRow;
+        private final int[] rowStarts;
+
+        private RangeScanner(NetcdfFilePool ncFilePool, int start, int end, int minRow, int[] rowStarts) {
+            this.ncFilePool = ncFilePool;
+            this.start = start;
+            this.end = end;
+            this.minRow = minRow;
+            this.rowStarts = rowStarts;
+        }
+
+        @Override
+        public Object call() throws IOException, InvalidRangeException {
+            final NetcdfFile ncFile = ncFilePool.acquire();
+            try {
+                final Variable row = ncFile.findVariable(ReaderConstants.ROW);
+
+                int prevRow = Integer.MIN_VALUE;
+                if (start > 0) {
+                    prevRow = readRows(row, start - 1, 1)[0];
+                }
+                for (int offset = start; offset < end; offset += CHUNK_SIZE) {
+                    final short[] rows = readRows(row, offset, Math.min(CHUNK_SIZE, end - offset));
+                    prevRow = assignRowStarts(rows, offset, prevRow, minRow, rowStarts);
+                }
+            } finally {
+                ncFilePool.release(ncFile);
+            }
+            return null;
+        }
+
+        private static short[] readRows(Variable row, int offset, int length)
+                throws IOException, InvalidRangeException {
+            return (short[]) row.read(new int[]{offset}, new int[]{length}).copyTo1DJavaArray();
+        }
+    }
+}
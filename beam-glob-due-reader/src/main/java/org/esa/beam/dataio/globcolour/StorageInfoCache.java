@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import org.esa.beam.dataio.util.CacheFileUtils;
+import org.esa.beam.util.Debug;
+import ucar.ma2.InvalidRangeException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The class <code>StorageInfoCache</code> persists the {@link IsinGridStorageInfo} computed
+ * for a Binned product, so the <code>row</code> variable of the product need not be scanned
+ * again when the product is opened another time.
+ * <p/>
+ * The storage information of each product is written to a small binary index file within
+ * the cache directory. An index file is identified by the path of the product and is valid
+ * as long as size and modification time of the product are unchanged. Stale index files are
+ * ignored and overwritten.
+ * <p/>
+ * The number of index files is bounded by the system property {@link #MAX_INDEX_FILE_COUNT_PROPERTY}.
+ * When an index file is written, the least recently used index files exceeding this number are
+ * deleted, so index files of products which have been moved or deleted do not accumulate.
+ */
+class StorageInfoCache {
+
+    /**
+     * The name of the system property defining the maximum number of index files kept in the
+     * cache directory.
+     */
+    static final String MAX_INDEX_FILE_COUNT_PROPERTY = "beam.globcolour.maxIndexFiles";
+
+    private static final int DEFAULT_MAX_INDEX_FILE_COUNT = 1000;
+    private static final int MAGIC = 0x47434249; // "GCBI"
+    private static final int VERSION = 1;
+
+    private static final String CACHE_DIR_NAME = "globcolour-index";
+    private static final String INDEX_FILE_EXTENSION = ".idx";
+
+    private final File cacheDir;
+    private final int maxIndexFileCount;
+
+    /**
+     * Returns the cache shared by all Binned products.
+     *
+     * @return the cache.
+     */
+    static StorageInfoCache createDefault() {
+        return new StorageInfoCache(CacheFileUtils.getCacheDir(CACHE_DIR_NAME),
+                                    Integer.getInteger(MAX_INDEX_FILE_COUNT_PROPERTY, DEFAULT_MAX_INDEX_FILE_COUNT));
+    }
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param cacheDir          the directory where index files are stored.
+     * @param maxIndexFileCount the maximum number of index files kept in the directory.
+     */
+    StorageInfoCache(File cacheDir, int maxIndexFileCount) {
+        if (maxIndexFileCount < 1) {
+            throw new IllegalArgumentException("maxIndexFileCount < 1");
+        }
+        this.cacheDir = cacheDir;
+        this.maxIndexFileCount = maxIndexFileCount;
+    }
+
+    /**
+     * Returns the storage information for a continuous sequence of {@link IsinGrid} rows of a
+     * product. The storage information is read from the cache, if possible. Otherwise it is
+     * built by scanning the product and persisted for later use.
+     *
+     * @param ncFilePool the pool providing handles to the product file.
+     * @param minRow     the {@link IsinGrid} index number of the southernmost row of interest.
+     * @param rowCount   the number of rows of interest.
+     * @return the storage information.
+     * @throws IOException           if an I/O error occurs.
+     * @throws InvalidRangeException if the <code>row</code> variable cannot be read.
+     */
+    IsinGridStorageInfo get(NetcdfFilePool ncFilePool, int minRow, int rowCount)
+            throws IOException, InvalidRangeException {
+        final File productFile = new File(ncFilePool.getPath());
+
+        IsinGridStorageInfo storageInfo = read(productFile, minRow, rowCount);
+        if (storageInfo == null) {
+            storageInfo = StorageInfoBuilder.build(ncFilePool, minRow, rowCount);
+            write(productFile, minRow, storageInfo);
+        }
+
+        return storageInfo;
+    }
+
+    /**
+     * Reads the storage information persisted for a product.
+     *
+     * @param productFile the product file.
+     * @param minRow      the {@link IsinGrid} index number of the southernmost row stored.
+     * @param rowCount    the number of rows stored.
+     * @return the storage information, or <code>null</code> if no valid storage information
+     *         has been persisted for the product.
+     */
+    IsinGridStorageInfo read(File productFile, int minRow, int rowCount) {
+        final File indexFile = getIndexFile(productFile, minRow, rowCount);
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try {
+            final FileInputStream stream = new FileInputStream(indexFile);
+            try {
+                final FileChannel channel = stream.getChannel();
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+                if (!CacheFileUtils.getHeader(buffer, MAGIC, VERSION)) {
+                    return null;
+                }
+                final byte[] pathBytes = new byte[buffer.getInt()];
+                buffer.get(pathBytes);
+                if (!CacheFileUtils.getPath(productFile).equals(new String(pathBytes, "UTF-8"))) {
+                    return null;
+                }
+                if (buffer.getLong() != productFile.length() || buffer.getLong() != productFile.lastModified()) {
+                    return null;
+                }
+                if (buffer.getInt() != minRow || buffer.getInt() != rowCount) {
+                    return null;
+                }
+                final int binCount = buffer.getInt();
+                final int[] offsets = new int[rowCount];
+                buffer.asIntBuffer().get(offsets);
+                // the modification time of an index file records its last use
+                indexFile.setLastModified(System.currentTimeMillis());
+
+                return new IsinGridStorageInfo(minRow, binCount, offsets);
+            } finally {
+                stream.close();
+            }
+        } catch (IOException e) {
+            Debug.trace(e);
+        } catch (BufferUnderflowException e) {
+            Debug.trace(e);
+        } catch (IllegalArgumentException e) {
+            Debug.trace(e);
+        }
+        return null;
+    }
+
+    /**
+     * Persists the storage information computed for a product, ignoring I/O errors.
+     *
+     * @param productFile the product file.
+     * @param minRow      the {@link IsinGrid} index number of the southernmost row stored.
+     * @param storageInfo the storage information.
+     */
+    void write(File productFile, int minRow, IsinGridStorageInfo storageInfo) {
+        if (!CacheFileUtils.makeCacheDir(cacheDir)) {
+            return;
+        }
+        final File indexFile = getIndexFile(productFile, minRow, storageInfo.getRowCount());
+        try {
+            final File tempFile = CacheFileUtils.createTempFile(indexFile);
+            try {
+                final byte[] pathBytes = CacheFileUtils.getPath(productFile).getBytes("UTF-8");
+                final int rowCount = storageInfo.getRowCount();
+                final DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(tempFile)));
+                try {
+                    CacheFileUtils.writeHeader(out, MAGIC, VERSION);
+                    out.writeInt(pathBytes.length);
+                    out.write(pathBytes);
+                    out.writeLong(productFile.length());
+                    out.writeLong(productFile.lastModified());
+                    out.writeInt(minRow);
+                    out.writeInt(rowCount);
+                    out.writeInt(storageInfo.getBinCount());
+                    for (int i = 0; i < rowCount; ++i) {
+                        out.writeInt(storageInfo.getOffset(i));
+                    }
+                } finally {
+                    out.close();
+                }
+                CacheFileUtils.replace(tempFile, indexFile);
+            } finally {
+                if (tempFile.exists()) {
+                    tempFile.delete();
+                }
+            }
+        } catch (IOException e) {
+            Debug.trace(e);
+        }
+        deleteLeastRecentlyUsed();
+    }
+
+    private void deleteLeastRecentlyUsed() {
+        final File[] indexFiles = cacheDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(INDEX_FILE_EXTENSION) && file.isFile();
+            }
+        });
+        if (indexFiles == null || indexFiles.length <= maxIndexFileCount) {
+            return;
+        }
+        final long[] lastModifieds = new long[indexFiles.length];
+        final Integer[] order = new Integer[indexFiles.length];
+        for (int i = 0; i < indexFiles.length; ++i) {
+            // modification times are read once, because they may change while sorting
+            lastModifieds[i] = indexFiles[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return lastModifieds[i1] < lastModifieds[i2] ? -1 : lastModifieds[i1] > lastModifieds[i2] ? 1 : 0;
+            }
+        });
+        for (int i = 0; i < indexFiles.length - maxIndexFileCount; ++i) {
+            indexFiles[order[i]].delete();
+        }
+    }
+
+    private File getIndexFile(File productFile, int minRow, int rowCount) {
+        // different sequences of rows of the same product are kept in separate index files
+        final String name = String.format("%s-%d-%d%s", CacheFileUtils.getFilePrefix(productFile.getName(), productFile),
+                                          minRow, rowCount, INDEX_FILE_EXTENSION);
+        return new File(cacheDir, name);
+    }
+}
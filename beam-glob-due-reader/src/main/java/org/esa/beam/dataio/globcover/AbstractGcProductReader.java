@@ -18,6 +18,7 @@ package org.esa.beam.dataio.globcover;
 
 import com.bc.ceres.core.ProgressMonitor;
 import com.bc.ceres.glevel.MultiLevelImage;
+import org.esa.beam.dataio.netcdf.util.MetadataUtils;
 import org.esa.beam.framework.dataio.AbstractProductReader;
 import org.esa.beam.framework.dataio.ProductReaderPlugIn;
 import org.esa.beam.framework.datamodel.Band;
@@ -54,23 +55,29 @@ abstract class AbstractGcProductReader extends AbstractProductReader {
         super(readerPlugIn);
     }
 
-    protected Product createProduct(GCTileFile refGcFile, String prodName, String prodType,
+    protected Product createProduct(GCMosaicCatalog catalog, String prodName, String prodType,
                                     int width, int height) throws IOException {
         final Product product = new Product(prodName, prodType, width, height);
-        product.setFileLocation(new File(refGcFile.getFilePath()));
-        product.setStartTime(refGcFile.getStartDate());
-        product.setEndTime(refGcFile.getEndDate());
+        product.setFileLocation(new File(catalog.getFilePath()));
+        product.setStartTime(catalog.getStartDate());
+        product.setEndTime(catalog.getEndDate());
 
         addGeoCoding(product);
-        addBands(product, refGcFile);
-        addIndexCodingAndBitmasks(product.getBand("SM"));
-        refGcFile.readMetadata(product.getMetadataRoot());
+        addBands(product, catalog.getBandDescriptors());
+        final Band smBand = product.getBand("SM");
+        if (smBand != null) {
+            addIndexCodingAndBitmasks(smBand);
+        }
+        product.getMetadataRoot().addElement(MetadataUtils.readAttributeList(catalog.getGlobalAttributes(), "MPH"));
         return product;
     }
 
-    protected void addBands(Product product, GCTileFile gcTileFile) {
-        final List<BandDescriptor> bandDescriptorList = gcTileFile.getBandDescriptorList();
+    protected void addBands(Product product, List<BandDescriptor> bandDescriptorList) {
         for (BandDescriptor descriptor : bandDescriptorList) {
+            // bands excluded by a band subset are not added at all
+            if (!isNodeAccepted(descriptor.getName())) {
+                continue;
+            }
             final Band band = new Band(descriptor.getName(), descriptor.getDataType(),
                                        product.getSceneRasterWidth(),
                                        product.getSceneRasterHeight());
@@ -142,9 +149,9 @@ abstract class AbstractGcProductReader extends AbstractProductReader {
     }
 
 
-    protected String getProductType(GCTileFile refGcFile) {
+    protected String getProductType(GCMosaicCatalog catalog) {
         final String prodType;
-        if (refGcFile.isAnnualFile()) {
+        if (catalog.isAnnualFile()) {
             prodType = getAnnualProductType();
         } else {
             prodType = getBimonthlyProductType();
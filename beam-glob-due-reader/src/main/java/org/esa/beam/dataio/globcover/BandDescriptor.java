@@ -31,6 +31,8 @@ class BandDescriptor {
     private String unit;
     private boolean fillValueUsed;
     private double fillValue;
+    private int chunkWidth;
+    private int chunkHeight;
 
     public void setName(String name) {
         this.name = name;
@@ -112,4 +114,26 @@ class BandDescriptor {
         return fillValue;
     }
 
+    /**
+     * @return the width of the HDF chunks of the band, or zero if unknown.
+     */
+    public int getChunkWidth() {
+        return chunkWidth;
+    }
+
+    public void setChunkWidth(int chunkWidth) {
+        this.chunkWidth = chunkWidth;
+    }
+
+    /**
+     * @return the height of the HDF chunks of the band, or zero if unknown.
+     */
+    public int getChunkHeight() {
+        return chunkHeight;
+    }
+
+    public void setChunkHeight(int chunkHeight) {
+        this.chunkHeight = chunkHeight;
+    }
+
 }
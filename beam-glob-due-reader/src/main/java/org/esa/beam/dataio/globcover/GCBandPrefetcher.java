@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the sibling bands of a GlobCover product along with a band, since images combining
+ * several bands, like RGB or band maths images, request the same region of each band one
+ * after the other.
+ * <p/>
+ * A band is only read along once it has been observed to request a region right after another
+ * band requested the very same region, so a band read on its own, for example by a product
+ * writer or a statistics computation, never causes the other bands to be read. A band stops
+ * being read along when its buffered data are not requested: either when the oldest data are
+ * discarded because the buffer exceeds a configurable number of bytes, or when too many regions
+ * of the band are waiting in the buffer.
+ */
+class GCBandPrefetcher {
+
+    /**
+     * The name of the system property defining the maximum size of the buffered data in megabytes.
+     * Each product has a buffer of its own, which is shared by all bands of the product.
+     */
+    static final String MAX_SIZE_PROPERTY = "beam.globcover.prefetchBufferSize";
+
+    // the maximum number of buffered regions per band, which allows for parallel tile computation
+    static final int MAX_PENDING_COUNT = 16;
+
+    private static final int DEFAULT_MAX_SIZE_MB = 16;
+    private static final int RECENT_READ_COUNT = 256;
+
+    /**
+     * The source of the band data, usually a {@link GCTileFile}.
+     */
+    interface TileReader {
+
+        String getFilePath();
+
+        Array[] readData(String[] variableNames,
+                         int offsetX, int offsetY,
+                         int width, int height,
+                         int stepX, int stepY) throws IOException, InvalidRangeException;
+    }
+
+    private final long maxSize;
+    // all of the following are guarded by the buffer
+    // in insertion order, so the oldest data come first
+    private final LinkedHashMap<Key, Object> buffer;
+    // the names of the bands read along, per subsampling
+    private final Map<Integer, Set<String>> prefetchedBandNames;
+    // the number of buffered regions per band
+    private final Map<String, Integer> pendingCounts;
+    // the bands which have recently read a region, per region
+    private final LinkedHashMap<Key, Set<String>> recentReads;
+    private long size;
+
+    GCBandPrefetcher() {
+        this(Integer.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE_MB) * 1024L * 1024L);
+    }
+
+    GCBandPrefetcher(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0");
+        }
+        this.maxSize = maxSize;
+        buffer = new LinkedHashMap<Key, Object>();
+        prefetchedBandNames = new HashMap<Integer, Set<String>>();
+        pendingCounts = new HashMap<String, Integer>();
+        recentReads = new LinkedHashMap<Key, Set<String>>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Set<String>> eldest) {
+                return size() > RECENT_READ_COUNT;
+            }
+        };
+    }
+
+    /**
+     * Reads a region of a band, either from the buffer or from the tile file. In the latter
+     * case, the sibling bands which are currently read along are read and buffered as well.
+     *
+     * @return the samples of the region, a primitive array stored row by row.
+     * @see GCTileFile#readData(String, int, int, int, int, int, int)
+     */
+    Object readData(TileReader tileReader, String variableName,
+                    int offsetX, int offsetY,
+                    int width, int height,
+                    int stepX, int stepY) throws IOException, InvalidRangeException {
+        final Key key = new Key(tileReader.getFilePath(), variableName, offsetX, offsetY, width, height,
+                                stepX, stepY);
+        final List<String> variableNames = new ArrayList<String>();
+        variableNames.add(variableName);
+        synchronized (buffer) {
+            final Object data = buffer.remove(key);
+            if (data != null) {
+                removed(key, data);
+                return data;
+            }
+            if (maxSize > 0 && stepX == stepY) {
+                final Key regionKey = key.derive("");
+                Set<String> readNames = recentReads.get(regionKey);
+                if (readNames == null) {
+                    readNames = new HashSet<String>();
+                    recentReads.put(regionKey, readNames);
+                }
+                // a band requesting a region just read for other bands is read along with them from now on
+                if (!readNames.isEmpty() && !readNames.contains(variableName)) {
+                    getBandNames(stepX).addAll(readNames);
+                    getBandNames(stepX).add(variableName);
+                }
+                readNames.add(variableName);
+                final Iterator<String> iterator = getBandNames(stepX).iterator();
+                while (iterator.hasNext()) {
+                    final String siblingName = iterator.next();
+                    if (readNames.contains(siblingName) || buffer.containsKey(key.derive(siblingName))) {
+                        continue;
+                    }
+                    if (getPendingCount(siblingName) >= MAX_PENDING_COUNT) {
+                        // the sibling band does not request its data
+                        iterator.remove();
+                    } else {
+                        variableNames.add(siblingName);
+                        readNames.add(siblingName);
+                    }
+                }
+            }
+        }
+        final Array[] arrays = tileReader.readData(variableNames.toArray(new String[variableNames.size()]),
+                                                   offsetX, offsetY, width, height, stepX, stepY);
+        synchronized (buffer) {
+            for (int i = 1; i < arrays.length; i++) {
+                final Key siblingKey = key.derive(variableNames.get(i));
+                final Object data = arrays[i].getStorage();
+                final Object previous = buffer.put(siblingKey, data);
+                if (previous != null) {
+                    removed(siblingKey, previous);
+                }
+                size += GCChunkCache.getDataSize(data);
+                pendingCounts.put(siblingKey.variableName, getPendingCount(siblingKey.variableName) + 1);
+            }
+            final Iterator<Map.Entry<Key, Object>> iterator = buffer.entrySet().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                final Map.Entry<Key, Object> entry = iterator.next();
+                iterator.remove();
+                removed(entry.getKey(), entry.getValue());
+                // the band has not requested its data in time
+                getBandNames(entry.getKey().stepX).remove(entry.getKey().variableName);
+            }
+        }
+        return arrays[0].getStorage();
+    }
+
+    /**
+     * @return the size of the buffered data in bytes.
+     */
+    long getSize() {
+        synchronized (buffer) {
+            return size;
+        }
+    }
+
+    /**
+     * @return the names of the bands currently read along at the given subsampling.
+     */
+    Set<String> getPrefetchedBandNames(int subsampling) {
+        synchronized (buffer) {
+            return new HashSet<String>(getBandNames(subsampling));
+        }
+    }
+
+    // guarded by the buffer
+    private Set<String> getBandNames(int subsampling) {
+        Set<String> names = prefetchedBandNames.get(subsampling);
+        if (names == null) {
+            names = new HashSet<String>();
+            prefetchedBandNames.put(subsampling, names);
+        }
+        return names;
+    }
+
+    private int getPendingCount(String variableName) {
+        final Integer count = pendingCounts.get(variableName);
+        return count != null ? count : 0;
+    }
+
+    private void removed(Key key, Object data) {
+        size -= GCChunkCache.getDataSize(data);
+        final int count = getPendingCount(key.variableName) - 1;
+        if (count > 0) {
+            pendingCounts.put(key.variableName, count);
+        } else {
+            pendingCounts.remove(key.variableName);
+        }
+    }
+
+    private static final class Key {
+
+        private final String filePath;
+        private final String variableName;
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        private final int stepX;
+        private final int stepY;
+
+        private Key(String filePath, String variableName, int x, int y, int width, int height,
+                    int stepX, int stepY) {
+            this.filePath = filePath;
+            this.variableName = variableName;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.stepX = stepX;
+            this.stepY = stepY;
+        }
+
+        private Key derive(String siblingName) {
+            return new Key(filePath, siblingName, x, y, width, height, stepX, stepY);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return x == key.x && y == key.y && width == key.width && height == key.height
+                   && stepX == key.stepX && stepY == key.stepY
+                   && filePath.equals(key.filePath) && variableName.equals(key.variableName);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = filePath.hashCode();
+            result = 31 * result + variableName.hashCode();
+            result = 31 * result + x;
+            result = 31 * result + y;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + stepX;
+            result = 31 * result + stepY;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.dataio.util.WeighedLruCache;
+
+import java.lang.reflect.Array;
+
+/**
+ * A memory-bounded cache of decompressed HDF chunks of GlobCover tile files, shared by all
+ * bands, resolution levels and products. Reading a few pixels of a compressed chunk requires
+ * decompressing the whole chunk, so when several bands are displayed or the view is panned
+ * across levels, the same chunks would be decompressed again and again.
+ * <p/>
+ * Chunks are identified by the tile file, the variable and the position of the chunk. The
+ * least recently used chunks are evicted when the size of the cache exceeds the limit given
+ * by a system property. A limit of zero disables the cache.
+ * <p/>
+ * Cached chunks are shared and must never be modified, see {@link WeighedLruCache}.
+ */
+class GCChunkCache {
+
+    /**
+     * The name of the system property defining the maximum size of the cache in megabytes.
+     * There is a single cache per process, so this is the budget for all open GlobCover
+     * products together.
+     */
+    static final String MAX_SIZE_PROPERTY = "beam.globcover.chunkCacheSize";
+
+    private static final int DEFAULT_MAX_SIZE_MB = 64;
+
+    private static GCChunkCache defaultInstance;
+
+    private final WeighedLruCache<Key, Object> chunks;
+
+    /**
+     * Returns the cache shared by all GlobCover tile files.
+     *
+     * @return the cache.
+     */
+    static synchronized GCChunkCache getDefault() {
+        if (defaultInstance == null) {
+            defaultInstance = new GCChunkCache(Integer.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE_MB) * 1024L * 1024L);
+        }
+        return defaultInstance;
+    }
+
+    GCChunkCache(long maxSize) {
+        chunks = new WeighedLruCache<Key, Object>(maxSize) {
+            @Override
+            protected long weigh(Object data) {
+                return getDataSize(data);
+            }
+        };
+    }
+
+    boolean isEnabled() {
+        return chunks.getMaxWeight() > 0;
+    }
+
+    /**
+     * Returns a cached chunk and counts the access as hit or miss.
+     *
+     * @param fileKey      the key of the tile file, see {@link #createFileKey(String, long, long)}.
+     * @param variableName the name of the variable.
+     * @param chunkX       the horizontal index of the chunk.
+     * @param chunkY       the vertical index of the chunk.
+     * @return the samples of the chunk, a primitive array stored row by row, or {@code null}
+     *         if the chunk is not cached.
+     */
+    Object get(String fileKey, String variableName, int chunkX, int chunkY) {
+        return chunks.get(new Key(fileKey, variableName, chunkX, chunkY));
+    }
+
+    /**
+     * Adds a chunk, evicting the least recently used chunks if the cache becomes too large.
+     * Chunks larger than the cache are not added.
+     *
+     * @param fileKey      the key of the tile file.
+     * @param variableName the name of the variable.
+     * @param chunkX       the horizontal index of the chunk.
+     * @param chunkY       the vertical index of the chunk.
+     * @param data         the samples of the chunk, a primitive array.
+     */
+    void put(String fileKey, String variableName, int chunkX, int chunkY, Object data) {
+        chunks.put(new Key(fileKey, variableName, chunkX, chunkY), data);
+    }
+
+    void clear() {
+        chunks.clear();
+    }
+
+    /**
+     * @return the size of the cached chunks in bytes.
+     */
+    long getSize() {
+        return chunks.getWeight();
+    }
+
+    long getHitCount() {
+        return chunks.getHitCount();
+    }
+
+    long getMissCount() {
+        return chunks.getMissCount();
+    }
+
+    /**
+     * Creates the key identifying a tile file in the cache. The key changes when the file is
+     * modified, so chunks of a previous state of the file are never returned.
+     *
+     * @param filePath     the path of the file.
+     * @param length       the length of the file.
+     * @param lastModified the modification time of the file.
+     * @return the key.
+     */
+    static String createFileKey(String filePath, long length, long lastModified) {
+        return filePath + ":" + length + ":" + lastModified;
+    }
+
+    // the size of a primitive array in bytes
+    static long getDataSize(Object data) {
+        final int length = Array.getLength(data);
+        final Class<?> type = data.getClass().getComponentType();
+        if (type == byte.class) {
+            return length;
+        } else if (type == short.class) {
+            return 2L * length;
+        } else if (type == int.class || type == float.class) {
+            return 4L * length;
+        }
+        return 8L * length;
+    }
+
+    private static final class Key {
+
+        private final String fileKey;
+        private final String variableName;
+        private final int chunkX;
+        private final int chunkY;
+
+        private Key(String fileKey, String variableName, int chunkX, int chunkY) {
+            this.fileKey = fileKey;
+            this.variableName = variableName;
+            this.chunkX = chunkX;
+            this.chunkY = chunkY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return chunkX == key.chunkX && chunkY == key.chunkY
+                   && fileKey.equals(key.fileKey) && variableName.equals(key.variableName);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = fileKey.hashCode();
+            result = 31 * result + variableName.hashCode();
+            result = 31 * result + chunkX;
+            result = 31 * result + chunkY;
+            return result;
+        }
+    }
+}
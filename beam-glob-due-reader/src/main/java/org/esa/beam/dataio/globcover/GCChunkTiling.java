@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.util.jai.JAIUtils;
+
+import java.awt.Dimension;
+
+/**
+ * Computes JAI tile sizes which are aligned with the HDF chunks of the GlobCover tile files.
+ * <p/>
+ * The bands of the tile files are stored in compressed chunks, and a chunk is decompressed
+ * completely whenever a single pixel of it is read. If a JAI tile straddles several chunks,
+ * each of these chunks is decompressed once for every JAI tile touching it. Hence the source
+ * region of a JAI tile shall cover whole chunks. In a mosaic, the chunk layout restarts with
+ * each tile file, so the source region shall also evenly divide, or be a multiple of, the
+ * size of the tile files.
+ */
+class GCChunkTiling {
+
+    // the tile size is chosen among multiples of the chunk size up to this multiple of the preferred size
+    private static final int MAX_PREFERRED_SIZE_FACTOR = 4;
+
+    private GCChunkTiling() {
+    }
+
+    /**
+     * Computes the tile size of an image, falling back to the preferred tile size of JAI if
+     * the chunk layout is unknown or no aligned tile size exists.
+     *
+     * @param imageWidth  the width of the image.
+     * @param imageHeight the height of the image.
+     * @param chunkWidth  the width of the chunks in source pixels, zero if unknown.
+     * @param chunkHeight the height of the chunks in source pixels, zero if unknown.
+     * @param subsampling the number of source pixels per image pixel.
+     * @param period      the size of the tile files the chunk layout restarts with, or zero if
+     *                    the image is read from a single tile file.
+     * @return the tile size.
+     */
+    static Dimension computeTileSize(int imageWidth, int imageHeight, int chunkWidth, int chunkHeight,
+                                     int subsampling, int period) {
+        final Dimension preferredSize = JAIUtils.computePreferredTileSize(imageWidth, imageHeight, 1);
+        return new Dimension(
+                computeTileExtent(imageWidth, preferredSize.width, chunkWidth, subsampling, period),
+                computeTileExtent(imageHeight, preferredSize.height, chunkHeight, subsampling, period));
+    }
+
+    static Dimension computeTileSize(int imageWidth, int imageHeight, BandDescriptor descriptor,
+                                     int subsampling, int period) {
+        if (descriptor == null) {
+            return JAIUtils.computePreferredTileSize(imageWidth, imageHeight, 1);
+        }
+        return computeTileSize(imageWidth, imageHeight, descriptor.getChunkWidth(), descriptor.getChunkHeight(),
+                               subsampling, period);
+    }
+
+    static int computeTileExtent(int imageExtent, int preferredExtent, int chunkExtent, int subsampling,
+                                 int period) {
+        if (chunkExtent <= 0 || subsampling < 1) {
+            return preferredExtent;
+        }
+        final int maxExtent = Math.min(imageExtent, MAX_PREFERRED_SIZE_FACTOR * preferredExtent);
+        int bestExtent = -1;
+        for (int tileExtent = 1; tileExtent <= maxExtent; tileExtent++) {
+            if (isAligned(tileExtent, imageExtent, chunkExtent, subsampling, period)
+                && (bestExtent < 0
+                    || Math.abs(tileExtent - preferredExtent) <= Math.abs(bestExtent - preferredExtent))) {
+                bestExtent = tileExtent;
+            }
+        }
+        return bestExtent > 0 ? bestExtent : preferredExtent;
+    }
+
+    private static boolean isAligned(int tileExtent, int imageExtent, int chunkExtent, int subsampling,
+                                     int period) {
+        if (tileExtent == imageExtent) {
+            // a single tile reads each chunk once
+            return true;
+        }
+        final long sourceExtent = (long) tileExtent * subsampling;
+        if (sourceExtent % chunkExtent != 0) {
+            return false;
+        }
+        return period <= 0 || period % sourceExtent == 0 || sourceExtent % period == 0;
+    }
+}
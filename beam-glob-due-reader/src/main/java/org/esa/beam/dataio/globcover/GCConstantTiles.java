@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import com.bc.ceres.jai.NoDataRaster;
+
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A process-wide cache of rasters filled with a constant value, shared by all bands and
+ * resolution levels of all GlobCover mosaics. Large parts of a mosaic (the oceans) are not
+ * covered by any tile file, so the same no-data rasters are needed over and over again.
+ * <p/>
+ * The rasters are keyed by data type, size and value. They are shared and must never be
+ * modified, only copied from or used as parents of translated children.
+ */
+class GCConstantTiles {
+
+    /**
+     * Creates a no-data raster for a given key, if the cache does not hold one yet.
+     */
+    interface NoDataRasterFactory {
+
+        NoDataRaster createNoDataRaster(double noDataValue);
+    }
+
+    private static final Map<Key, WritableRaster> constantRasters = new HashMap<Key, WritableRaster>();
+    private static final Map<Key, NoDataRaster> noDataRasters = new HashMap<Key, NoDataRaster>();
+
+    private GCConstantTiles() {
+    }
+
+    /**
+     * Returns a raster filled with a constant value.
+     *
+     * @param sampleModel a sample model compatible to the raster, its size is ignored.
+     * @param width       the width of the raster.
+     * @param height      the height of the raster.
+     * @param value       the value.
+     * @return the shared raster, which must not be modified.
+     */
+    static WritableRaster getConstantRaster(SampleModel sampleModel, int width, int height, double value) {
+        final Key key = new Key(sampleModel.getDataType(), width, height, value);
+        synchronized (constantRasters) {
+            WritableRaster raster = constantRasters.get(key);
+            if (raster == null) {
+                raster = Raster.createWritableRaster(sampleModel.createCompatibleSampleModel(width, height),
+                                                     new Point(0, 0));
+                fill(raster.getDataBuffer(), value);
+                constantRasters.put(key, raster);
+            }
+            return raster;
+        }
+    }
+
+    /**
+     * Returns a no-data raster, which tells consumers that a tile does not contain any valid
+     * sample without them having to read its pixels.
+     *
+     * @param sampleModel the sample model of the raster.
+     * @param noDataValue the no-data value.
+     * @param factory     the factory creating the raster if the cache does not hold one yet.
+     * @return the shared raster, which must not be modified.
+     */
+    static NoDataRaster getNoDataRaster(SampleModel sampleModel, double noDataValue, NoDataRasterFactory factory) {
+        final Key key = new Key(sampleModel.getDataType(), sampleModel.getWidth(), sampleModel.getHeight(),
+                                noDataValue);
+        synchronized (noDataRasters) {
+            NoDataRaster raster = noDataRasters.get(key);
+            if (raster == null) {
+                raster = factory.createNoDataRaster(noDataValue);
+                noDataRasters.put(key, raster);
+            }
+            return raster;
+        }
+    }
+
+    // fills whole banks at once instead of setting element by element
+    static void fill(DataBuffer buffer, double value) {
+        for (int bank = 0; bank < buffer.getNumBanks(); bank++) {
+            if (buffer instanceof DataBufferByte) {
+                Arrays.fill(((DataBufferByte) buffer).getData(bank), (byte) value);
+            } else if (buffer instanceof DataBufferShort) {
+                Arrays.fill(((DataBufferShort) buffer).getData(bank), (short) value);
+            } else if (buffer instanceof DataBufferUShort) {
+                Arrays.fill(((DataBufferUShort) buffer).getData(bank), (short) value);
+            } else if (buffer instanceof DataBufferInt) {
+                Arrays.fill(((DataBufferInt) buffer).getData(bank), (int) value);
+            } else if (buffer instanceof DataBufferFloat) {
+                Arrays.fill(((DataBufferFloat) buffer).getData(bank), (float) value);
+            } else if (buffer instanceof DataBufferDouble) {
+                Arrays.fill(((DataBufferDouble) buffer).getData(bank), value);
+            } else {
+                for (int i = 0; i < buffer.getSize(); i++) {
+                    buffer.setElemDouble(bank, i, value);
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+
+        private final int dataType;
+        private final int width;
+        private final int height;
+        private final long valueBits;
+
+        private Key(int dataType, int width, int height, double value) {
+            this.dataType = dataType;
+            this.width = width;
+            this.height = height;
+            valueBits = Double.doubleToLongBits(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return dataType == key.dataType && width == key.width && height == key.height
+                   && valueBits == key.valueBits;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = dataType;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + (int) (valueBits ^ (valueBits >>> 32));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.ProductData;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Holds everything needed to create a GlobCover product without opening any tile file:
+ * the tile files of the mosaic, the band descriptors, the dates, the global attributes
+ * and optionally the upper left corner of the reference tile file.
+ * <p/>
+ * A catalog is created from an open reference tile file once and persisted by the
+ * {@link GCMosaicCatalogCache}. It remains valid as long as the directory containing the
+ * tile files and the size and modification time of each tile file are unchanged.
+ */
+class GCMosaicCatalog {
+
+    private final String filePath;
+    private final long fileLength;
+    private final long fileLastModified;
+    private final long dirLastModified;
+    private final boolean annualFile;
+    private final int width;
+    private final int height;
+    private final ProductData.UTC startDate;
+    private final ProductData.UTC endDate;
+    private final GeoPos upperLeftCorner;
+    private final List<BandDescriptor> bandDescriptors;
+    private final List<Attribute> globalAttributes;
+    private final Map<TileIndex, File> tileFileMap;
+    private final long[] tileFileLengths;
+    private final long[] tileFileLastModifieds;
+
+    private GCMosaicCatalog(String filePath, long fileLength, long fileLastModified, long dirLastModified,
+                            boolean annualFile, int width, int height,
+                            ProductData.UTC startDate, ProductData.UTC endDate, GeoPos upperLeftCorner,
+                            List<BandDescriptor> bandDescriptors, List<Attribute> globalAttributes,
+                            Map<TileIndex, File> tileFileMap, long[] tileFileLengths, long[] tileFileLastModifieds) {
+        this.filePath = filePath;
+        this.fileLength = fileLength;
+        this.fileLastModified = fileLastModified;
+        this.dirLastModified = dirLastModified;
+        this.annualFile = annualFile;
+        this.width = width;
+        this.height = height;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.upperLeftCorner = upperLeftCorner;
+        this.bandDescriptors = Collections.unmodifiableList(bandDescriptors);
+        this.globalAttributes = Collections.unmodifiableList(globalAttributes);
+        this.tileFileMap = Collections.unmodifiableMap(tileFileMap);
+        this.tileFileLengths = tileFileLengths;
+        this.tileFileLastModifieds = tileFileLastModifieds;
+    }
+
+    /**
+     * Creates a catalog from an open reference tile file.
+     *
+     * @param refFile          the reference tile file.
+     * @param tileFileMap      the tile files of the mosaic, may be empty for a single tile product.
+     * @param readUpperLeftCorner {@code true} if the upper left corner shall be read from the
+     *                         <code>StructMetadata.0</code> of the reference tile file.
+     * @return the catalog.
+     * @throws IOException if an I/O error occurs.
+     */
+    static GCMosaicCatalog create(GCTileFile refFile, Map<TileIndex, File> tileFileMap,
+                                  boolean readUpperLeftCorner) throws IOException {
+        final File file = new File(refFile.getFilePath());
+        final Map<TileIndex, File> sortedTileFileMap = new TreeMap<TileIndex, File>(tileFileMap);
+        final long[] lengths = new long[sortedTileFileMap.size()];
+        final long[] lastModifieds = new long[sortedTileFileMap.size()];
+        int i = 0;
+        for (final File tileFile : sortedTileFileMap.values()) {
+            lengths[i] = tileFile.length();
+            lastModifieds[i] = tileFile.lastModified();
+            i++;
+        }
+        return new GCMosaicCatalog(file.getPath(), file.length(), file.lastModified(),
+                                   file.getParentFile().lastModified(), refFile.isAnnualFile(),
+                                   refFile.getWidth(), refFile.getHeight(),
+                                   refFile.getStartDate(), refFile.getEndDate(),
+                                   readUpperLeftCorner ? refFile.getUpperLeftCorner() : null,
+                                   refFile.getBandDescriptorList(), refFile.getGlobalAttributes(),
+                                   sortedTileFileMap, lengths, lastModifieds);
+    }
+
+    String getFilePath() {
+        return filePath;
+    }
+
+    boolean isAnnualFile() {
+        return annualFile;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    ProductData.UTC getStartDate() {
+        return startDate;
+    }
+
+    ProductData.UTC getEndDate() {
+        return endDate;
+    }
+
+    /**
+     * Returns the upper left corner of the reference tile file.
+     *
+     * @return the upper left corner, or {@code null} if it has not been read.
+     */
+    GeoPos getUpperLeftCorner() {
+        return upperLeftCorner;
+    }
+
+    List<BandDescriptor> getBandDescriptors() {
+        return bandDescriptors;
+    }
+
+    BandDescriptor getBandDescriptor(String bandName) {
+        for (final BandDescriptor descriptor : bandDescriptors) {
+            if (descriptor.getName().equals(bandName)) {
+                return descriptor;
+            }
+        }
+        return null;
+    }
+
+    List<Attribute> getGlobalAttributes() {
+        return globalAttributes;
+    }
+
+    Map<TileIndex, File> getTileFileMap() {
+        return tileFileMap;
+    }
+
+    /**
+     * Tells whether the files the catalog has been created from are unchanged. Only the file
+     * attributes are checked, no file is opened or listed.
+     *
+     * @return {@code true} if the catalog is up to date, {@code false} otherwise.
+     */
+    boolean isUpToDate() {
+        final File file = new File(filePath);
+        if (file.length() != fileLength || file.lastModified() != fileLastModified
+            || file.getParentFile().lastModified() != dirLastModified) {
+            return false;
+        }
+        int i = 0;
+        for (final File tileFile : tileFileMap.values()) {
+            if (tileFile.length() != tileFileLengths[i] || tileFile.lastModified() != tileFileLastModifieds[i]) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeUTF(filePath);
+        out.writeLong(fileLength);
+        out.writeLong(fileLastModified);
+        out.writeLong(dirLastModified);
+        out.writeBoolean(annualFile);
+        out.writeInt(width);
+        out.writeInt(height);
+        writeDate(out, startDate);
+        writeDate(out, endDate);
+        out.writeBoolean(upperLeftCorner != null);
+        if (upperLeftCorner != null) {
+            out.writeFloat(upperLeftCorner.getLat());
+            out.writeFloat(upperLeftCorner.getLon());
+        }
+
+        out.writeInt(bandDescriptors.size());
+        for (final BandDescriptor descriptor : bandDescriptors) {
+            out.writeUTF(descriptor.getName());
+            out.writeInt(descriptor.getDataType());
+            out.writeInt(descriptor.getWidth());
+            out.writeInt(descriptor.getHeight());
+            writeString(out, descriptor.getDescription());
+            out.writeDouble(descriptor.getScaleFactor());
+            out.writeDouble(descriptor.getOffsetValue());
+            writeString(out, descriptor.getUnit());
+            out.writeBoolean(descriptor.isFillValueUsed());
+            out.writeDouble(descriptor.getFillValue());
+            out.writeInt(descriptor.getChunkWidth());
+            out.writeInt(descriptor.getChunkHeight());
+        }
+
+        out.writeInt(globalAttributes.size());
+        for (final Attribute attribute : globalAttributes) {
+            writeAttribute(out, attribute);
+        }
+
+        out.writeInt(tileFileMap.size());
+        int i = 0;
+        for (final Map.Entry<TileIndex, File> entry : tileFileMap.entrySet()) {
+            out.writeInt(entry.getKey().getIndex());
+            out.writeUTF(entry.getValue().getPath());
+            out.writeLong(tileFileLengths[i]);
+            out.writeLong(tileFileLastModifieds[i]);
+            i++;
+        }
+    }
+
+    static GCMosaicCatalog read(DataInputStream in) throws IOException {
+        final String filePath = in.readUTF();
+        final long fileLength = in.readLong();
+        final long fileLastModified = in.readLong();
+        final long dirLastModified = in.readLong();
+        final boolean annualFile = in.readBoolean();
+        final int width = in.readInt();
+        final int height = in.readInt();
+        final ProductData.UTC startDate = readDate(in);
+        final ProductData.UTC endDate = readDate(in);
+        GeoPos upperLeftCorner = null;
+        if (in.readBoolean()) {
+            final float lat = in.readFloat();
+            final float lon = in.readFloat();
+            upperLeftCorner = new GeoPos(lat, lon);
+        }
+
+        final int bandCount = in.readInt();
+        final List<BandDescriptor> bandDescriptors = new ArrayList<BandDescriptor>(bandCount);
+        for (int i = 0; i < bandCount; i++) {
+            final BandDescriptor descriptor = new BandDescriptor();
+            descriptor.setName(in.readUTF());
+            descriptor.setDataType(in.readInt());
+            descriptor.setWidth(in.readInt());
+            descriptor.setHeight(in.readInt());
+            descriptor.setDescription(readString(in));
+            descriptor.setScaleFactor(in.readDouble());
+            descriptor.setOffsetValue(in.readDouble());
+            descriptor.setUnit(readString(in));
+            descriptor.setFillValueUsed(in.readBoolean());
+            descriptor.setFillValue(in.readDouble());
+            descriptor.setChunkWidth(in.readInt());
+            descriptor.setChunkHeight(in.readInt());
+            bandDescriptors.add(descriptor);
+        }
+
+        final int attributeCount = in.readInt();
+        final List<Attribute> globalAttributes = new ArrayList<Attribute>(attributeCount);
+        for (int i = 0; i < attributeCount; i++) {
+            globalAttributes.add(readAttribute(in));
+        }
+
+        final int tileCount = in.readInt();
+        final Map<TileIndex, File> tileFileMap = new TreeMap<TileIndex, File>();
+        final long[] tileFileLengths = new long[tileCount];
+        final long[] tileFileLastModifieds = new long[tileCount];
+        for (int i = 0; i < tileCount; i++) {
+            final int index = in.readInt();
+            final TileIndex tileIndex = new TileIndex(index % TileIndex.HORIZ_TILE_COUNT,
+                                                      index / TileIndex.HORIZ_TILE_COUNT);
+            tileFileMap.put(tileIndex, new File(in.readUTF()));
+            tileFileLengths[i] = in.readLong();
+            tileFileLastModifieds[i] = in.readLong();
+        }
+
+        return new GCMosaicCatalog(filePath, fileLength, fileLastModified, dirLastModified, annualFile,
+                                   width, height, startDate, endDate, upperLeftCorner,
+                                   bandDescriptors, globalAttributes,
+                                   tileFileMap, tileFileLengths, tileFileLastModifieds);
+    }
+
+    private static void writeDate(DataOutputStream out, ProductData.UTC date) throws IOException {
+        out.writeInt(date.getDaysFraction());
+        out.writeInt((int) date.getSecondsFraction());
+        out.writeInt((int) date.getMicroSecondsFraction());
+    }
+
+    private static ProductData.UTC readDate(DataInputStream in) throws IOException {
+        final int days = in.readInt();
+        final int seconds = in.readInt();
+        final int microSeconds = in.readInt();
+        return new ProductData.UTC(days, seconds, microSeconds);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeAttribute(DataOutputStream out, Attribute attribute) throws IOException {
+        out.writeUTF(attribute.getName());
+        out.writeBoolean(attribute.isString());
+        final int length = attribute.getLength();
+        out.writeInt(length);
+        if (attribute.isString()) {
+            for (int i = 0; i < length; i++) {
+                out.writeUTF(attribute.getStringValue(i));
+            }
+        } else {
+            out.writeUTF(attribute.getDataType().name());
+            for (int i = 0; i < length; i++) {
+                out.writeDouble(attribute.getNumericValue(i).doubleValue());
+            }
+        }
+    }
+
+    private static Attribute readAttribute(DataInputStream in) throws IOException {
+        final String name = in.readUTF();
+        final boolean isString = in.readBoolean();
+        final int length = in.readInt();
+        if (isString) {
+            final List<String> values = new ArrayList<String>(length);
+            for (int i = 0; i < length; i++) {
+                values.add(in.readUTF());
+            }
+            return length == 1 ? new Attribute(name, values.get(0)) : new Attribute(name, values);
+        }
+        final DataType dataType;
+        try {
+            dataType = DataType.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        final Array values = Array.factory(dataType, new int[]{length});
+        for (int i = 0; i < length; i++) {
+            values.setDouble(i, in.readDouble());
+        }
+        return new Attribute(name, values);
+    }
+}
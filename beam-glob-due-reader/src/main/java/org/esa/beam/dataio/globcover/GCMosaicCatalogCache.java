@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.dataio.util.CacheFileUtils;
+import org.esa.beam.util.Debug;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Persists the {@link GCMosaicCatalog} of GlobCover products, so a product can be opened
+ * without listing its directory and without opening and parsing a tile file.
+ * <p/>
+ * The catalog of each product is written to a small binary file within the cache directory.
+ * A catalog file is identified by a name and the directory of the product. Catalogs which are
+ * not up to date are ignored and overwritten.
+ */
+class GCMosaicCatalogCache {
+
+    private static final int MAGIC = 0x47434354; // "GCCT"
+    private static final int VERSION = 2;
+
+    private static final String CACHE_DIR_NAME = "globcover-catalog";
+    private static final String CATALOG_FILE_EXTENSION = ".cat";
+
+    private final File cacheDir;
+
+    /**
+     * Returns the cache shared by all GlobCover products.
+     *
+     * @return the cache.
+     */
+    static GCMosaicCatalogCache createDefault() {
+        return new GCMosaicCatalogCache(CacheFileUtils.getCacheDir(CACHE_DIR_NAME));
+    }
+
+    GCMosaicCatalogCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Reads the catalog persisted for a product.
+     *
+     * @param name       the name identifying the product within its directory.
+     * @param productDir the directory of the product.
+     * @return the catalog, or {@code null} if no up to date catalog has been persisted.
+     */
+    GCMosaicCatalog read(String name, File productDir) {
+        final File catalogFile = getCatalogFile(name, productDir);
+        if (!catalogFile.isFile()) {
+            return null;
+        }
+        try {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(catalogFile)));
+            try {
+                if (!CacheFileUtils.readHeader(in, MAGIC, VERSION)) {
+                    return null;
+                }
+                if (!CacheFileUtils.getPath(productDir).equals(in.readUTF()) || !name.equals(in.readUTF())) {
+                    return null;
+                }
+                final GCMosaicCatalog catalog = GCMosaicCatalog.read(in);
+                return catalog.isUpToDate() ? catalog : null;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Debug.trace(e);
+        } catch (RuntimeException e) {
+            Debug.trace(e);
+        }
+        return null;
+    }
+
+    /**
+     * Persists the catalog of a product, ignoring I/O errors.
+     *
+     * @param name       the name identifying the product within its directory.
+     * @param productDir the directory of the product.
+     * @param catalog    the catalog.
+     */
+    void write(String name, File productDir, GCMosaicCatalog catalog) {
+        if (!CacheFileUtils.makeCacheDir(cacheDir)) {
+            return;
+        }
+        final File catalogFile = getCatalogFile(name, productDir);
+        try {
+            final File tempFile = CacheFileUtils.createTempFile(catalogFile);
+            try {
+                final DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(tempFile)));
+                try {
+                    CacheFileUtils.writeHeader(out, MAGIC, VERSION);
+                    out.writeUTF(CacheFileUtils.getPath(productDir));
+                    out.writeUTF(name);
+                    catalog.write(out);
+                } finally {
+                    out.close();
+                }
+                CacheFileUtils.replace(tempFile, catalogFile);
+            } finally {
+                if (tempFile.exists()) {
+                    tempFile.delete();
+                }
+            }
+        } catch (IOException e) {
+            Debug.trace(e);
+        }
+    }
+
+    private File getCatalogFile(String name, File productDir) {
+        // products of the same name in different directories are kept in separate catalog files
+        return new File(cacheDir, CacheFileUtils.getFilePrefix(name, productDir) + CATALOG_FILE_EXTENSION);
+    }
+}
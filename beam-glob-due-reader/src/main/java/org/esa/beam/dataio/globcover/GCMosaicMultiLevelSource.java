@@ -19,40 +19,104 @@ package org.esa.beam.dataio.globcover;
 import com.bc.ceres.glevel.support.AbstractMultiLevelSource;
 import com.bc.ceres.glevel.support.DefaultMultiLevelModel;
 import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.IndexCoding;
 import org.esa.beam.jai.ImageManager;
 import org.esa.beam.jai.ResolutionLevel;
 
+import java.awt.Dimension;
+import java.awt.Point;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.awt.image.RenderedImage;
-import java.util.Map;
 
 /**
  * @author Marco Peters
  * @version $ Revision $ Date $
  * @since BEAM 4.7
  */
-// the tileFileMap is unmodifiable
-@SuppressWarnings({"AssignmentToCollectionOrArrayFieldFromParameter"})
 class GCMosaicMultiLevelSource extends AbstractMultiLevelSource {
 
     private final Band band;
-    private final Map<TileIndex, GCTileFile> tileFileMap;
+    private final GCTileFilePool tileFilePool;
+    private final GCBandPrefetcher bandPrefetcher;
+    private final GCOverviewCache overviewCache;
+    private final BandDescriptor bandDescriptor;
+    private final Point mosaicOffset;
     private final Area coveredModelArea;
 
-    GCMosaicMultiLevelSource(Band band, Map<TileIndex, GCTileFile> tileFileMap, Area coveredImageArea) {
+    GCMosaicMultiLevelSource(Band band, GCTileFilePool tileFilePool, GCBandPrefetcher bandPrefetcher,
+                             GCOverviewCache overviewCache, BandDescriptor bandDescriptor, Point mosaicOffset,
+                             Area coveredImageArea) {
         super(new DefaultMultiLevelModel(ImageManager.getImageToModelTransform(band.getGeoCoding()),
                                          band.getSceneRasterWidth(), band.getSceneRasterHeight()));
         this.band = band;
-        this.tileFileMap = tileFileMap;
+        this.tileFilePool = tileFilePool;
+        this.bandPrefetcher = bandPrefetcher;
+        this.overviewCache = overviewCache;
+        this.bandDescriptor = bandDescriptor;
+        this.mosaicOffset = mosaicOffset;
         final AffineTransform i2mTransform = ImageManager.getImageToModelTransform(band.getGeoCoding());
         coveredModelArea = coveredImageArea.createTransformedArea(i2mTransform);
     }
 
     @Override
     protected RenderedImage createImage(int level) {
-        return new GCMosaicOpImage(band, tileFileMap, ResolutionLevel.create(getModel(), level));
+        final ResolutionLevel resolutionLevel = ResolutionLevel.create(getModel(), level);
+        final GCMosaicOpImage mosaicImage = new GCMosaicOpImage(band, tileFilePool, bandPrefetcher,
+                                                                getTileSize(level), mosaicOffset, resolutionLevel);
+        if (overviewCache == null || level < overviewCache.getMinLevel()) {
+            return mosaicImage;
+        }
+        final GCOverviewFile overviewFile = overviewCache.getOverviewFile(band.getName(), level,
+                                                                          mosaicImage.getWidth(),
+                                                                          mosaicImage.getHeight(),
+                                                                          mosaicImage.getSampleModel().getDataType());
+        if (overviewFile == null) {
+            return mosaicImage;
+        }
+        if (!overviewFile.isComplete()) {
+            overviewCache.build(createOverviewBuilder(overviewFile, level));
+        }
+        return new GCOverviewOpImage(band, overviewFile, mosaicImage, resolutionLevel);
+    }
+
+    private GCOverviewBuilder createOverviewBuilder(GCOverviewFile overviewFile, int level) {
+        final int minLevel = overviewCache.getMinLevel();
+        final int classCount = getClassCount(band);
+        if (level == minLevel) {
+            final int factor = (int) Math.round(getModel().getScale(level));
+            return GCOverviewBuilder.fromTileFiles(overviewCache, overviewFile, factor, classCount,
+                                                   band.isNoDataValueUsed(), band.getNoDataValue(),
+                                                   tileFilePool, band.getName());
+        }
+        // the image of the lowest cached level schedules its own building first
+        final RenderedImage sourceImage = getImage(minLevel);
+        final int factor = (int) Math.round(getModel().getScale(level) / getModel().getScale(minLevel));
+        return GCOverviewBuilder.fromImage(overviewCache, overviewFile, factor, classCount,
+                                           band.isNoDataValueUsed(), band.getNoDataValue(), sourceImage);
+    }
+
+    // the tiles are aligned with the HDF chunks of the tile files, if the chunk layout is known
+    private Dimension getTileSize(int level) {
+        final double scale = getModel().getScale(level);
+        final int width = Math.max(1, (int) Math.floor(band.getSceneRasterWidth() / scale));
+        final int height = Math.max(1, (int) Math.floor(band.getSceneRasterHeight() / scale));
+        return GCChunkTiling.computeTileSize(width, height, bandDescriptor, (int) Math.round(scale),
+                                             TileIndex.TILE_SIZE);
+    }
+
+    // categorical bands are downsampled to the most frequent class, all other bands to the mean
+    private static int getClassCount(Band band) {
+        final IndexCoding indexCoding = band.getIndexCoding();
+        if (indexCoding == null) {
+            return 0;
+        }
+        int classCount = 0;
+        for (final String name : indexCoding.getIndexNames()) {
+            classCount = Math.max(classCount, indexCoding.getIndexValue(name) + 1);
+        }
+        return classCount;
     }
 
     @Override
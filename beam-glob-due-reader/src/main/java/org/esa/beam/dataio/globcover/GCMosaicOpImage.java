@@ -21,162 +21,185 @@ import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.jai.ImageManager;
 import org.esa.beam.jai.ResolutionLevel;
 import org.esa.beam.jai.SingleBandedOpImage;
-import org.esa.beam.util.jai.JAIUtils;
 import org.esa.beam.util.math.MathUtils;
-import ucar.ma2.Array;
 
 import javax.media.jai.PlanarImage;
+import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
-import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
 
 class GCMosaicOpImage extends SingleBandedOpImage {
 
-    private final Map<TileIndex, GCTileFile> tileMap;
+    private static final int[] BAND_LIST = {0};
+
+    private final GCTileFilePool tileFilePool;
+    private final GCBandPrefetcher bandPrefetcher;
     private final double noDataValue;
     private final String variableName;
+    private final int subsampling;
+    // the position of the product within the global mosaic grid
+    private final int mosaicOffsetX;
+    private final int mosaicOffsetY;
     private NoDataRaster noDataTargetRaster;
     private WritableRaster noDataSourceRaster;
 
-    GCMosaicOpImage(Band band, Map<TileIndex, GCTileFile> fileMap, ResolutionLevel level) {
+    GCMosaicOpImage(Band band, GCTileFilePool tileFilePool, GCBandPrefetcher bandPrefetcher, Dimension tileSize,
+                    Point mosaicOffset, ResolutionLevel level) {
         this(ImageManager.getDataBufferType(band.getDataType()),
-             band.getSceneRasterWidth(), band.getSceneRasterHeight(),
-             fileMap, band.getName(), band.getNoDataValue(), level);
+             band.getSceneRasterWidth(), band.getSceneRasterHeight(), tileSize, mosaicOffset,
+             tileFilePool, bandPrefetcher, band.getName(), band.getNoDataValue(), level);
     }
 
-    private GCMosaicOpImage(int dataBufferType, int sourceWidth, int sourceHeight,
-                    Map<TileIndex, GCTileFile> fileMap,
+    private GCMosaicOpImage(int dataBufferType, int sourceWidth, int sourceHeight, Dimension tileSize,
+                    Point mosaicOffset, GCTileFilePool tileFilePool, GCBandPrefetcher bandPrefetcher,
                     String name, double noDataValue, ResolutionLevel level) {
-        super(dataBufferType, sourceWidth, sourceHeight,
-              JAIUtils.computePreferredTileSize(sourceWidth, sourceHeight, 1),
-              null, level);
-        this.tileMap = fileMap;
+        super(dataBufferType, sourceWidth, sourceHeight, tileSize, null, level);
+        mosaicOffsetX = mosaicOffset.x;
+        mosaicOffsetY = mosaicOffset.y;
+        this.tileFilePool = tileFilePool;
+        this.bandPrefetcher = bandPrefetcher;
         this.variableName = name;
         this.noDataValue = noDataValue;
-
+        subsampling = MathUtils.floorInt(getScale());
     }
 
     @Override
     public Raster computeTile(int tileX, int tileY) {
-        Rectangle targetRect = getTileRect(tileX, tileY);
-        Rectangle rect = getSourceRect(targetRect);
-        TileIndex[] indexes = getAffectedSourceTiles(rect);
-        for (TileIndex index : indexes) {
-            final GCTileFile file = tileMap.get(index);
-            if (file != null) {
-                return super.computeTile(tileX, tileY);
+        if (isNoDataTile(tileX, tileY)) {
+            return getNoDataTargetTile(tileXToX(tileX), tileYToY(tileY));
+        }
+        return super.computeTile(tileX, tileY);
+    }
+
+    /**
+     * Tells whether a tile of this image is not covered by any tile file of the mosaic, so
+     * it contains no-data samples only. Such tiles are returned as instances of
+     * {@link NoDataRaster}, hence consumers like statistics or writers may skip them
+     * without reading their pixels.
+     *
+     * @param tileX the horizontal index of the tile.
+     * @param tileY the vertical index of the tile.
+     * @return {@code true} if the tile contains no-data samples only.
+     */
+    boolean isNoDataTile(int tileX, int tileY) {
+        final int x = tileXToX(tileX);
+        final int y = tileYToY(tileY);
+        final int width = Math.min(getTileWidth(), getMinX() + getWidth() - x);
+        final int height = Math.min(getTileHeight(), getMinY() + getHeight() - y);
+        final int sourceX = mosaicOffsetX + getSourceX(x);
+        final int sourceY = mosaicOffsetY + getSourceY(y);
+        final int sourceX1 = sourceX + getSourceWidth(width);
+        final int sourceY1 = sourceY + getSourceHeight(height);
+        final int h0 = getTileStart(sourceX, TileIndex.MAX_HORIZ_INDEX);
+        final int h1 = getTileEnd(sourceX1, TileIndex.MAX_HORIZ_INDEX);
+        final int v0 = getTileStart(sourceY, TileIndex.MAX_VERT_INDEX);
+        final int v1 = getTileEnd(sourceY1, TileIndex.MAX_VERT_INDEX);
+        for (int v = v0; v <= v1; v++) {
+            for (int h = h0; h <= h1; h++) {
+                if (tileFilePool.contains(TileIndex.getIndex(h, v))) {
+                    return false;
+                }
             }
         }
-        return getNoDataTargetTile(new Point(tileXToX(tileX), tileYToY(tileY)));
+        return true;
+    }
 
+    /**
+     * Returns a no-data tile of this image. The parent raster is shared by all images
+     * with the same data type, tile size and no-data value.
+     *
+     * @param x the x coordinate of the tile.
+     * @param y the y coordinate of the tile.
+     * @return the no-data tile.
+     */
+    NoDataRaster getNoDataTargetTile(int x, int y) {
+        if (noDataTargetRaster == null) {
+            final GCConstantTiles.NoDataRasterFactory factory = new GCConstantTiles.NoDataRasterFactory() {
+                @Override
+                public NoDataRaster createNoDataRaster(double value) {
+                    return GCMosaicOpImage.this.createNoDataRaster(value);
+                }
+            };
+            noDataTargetRaster = GCConstantTiles.getNoDataRaster(getSampleModel(), noDataValue, factory);
+        }
+        return noDataTargetRaster.createTranslatedChild(x, y);
     }
 
     @Override
     protected void computeRect(PlanarImage[] planarImages, WritableRaster writableRaster, Rectangle targetRect) {
-        Rectangle sourceRect = getSourceRect(targetRect);
-        TileIndex[] indexes = getAffectedSourceTiles(sourceRect);
-        for (TileIndex index : indexes) {
-            Rectangle sourceTileRect = index.getBounds();
-            Rectangle sourceRectToRead = sourceRect.intersection(sourceTileRect);
-            if (sourceRectToRead.isEmpty()) {
+        final int sourceX = mosaicOffsetX + getSourceX(targetRect.x);
+        final int sourceY = mosaicOffsetY + getSourceY(targetRect.y);
+        final int sourceX1 = sourceX + getSourceWidth(targetRect.width);
+        final int sourceY1 = sourceY + getSourceHeight(targetRect.height);
+        final int h0 = getTileStart(sourceX, TileIndex.MAX_HORIZ_INDEX);
+        final int h1 = getTileEnd(sourceX1, TileIndex.MAX_HORIZ_INDEX);
+        final int v0 = getTileStart(sourceY, TileIndex.MAX_VERT_INDEX);
+        final int v1 = getTileEnd(sourceY1, TileIndex.MAX_VERT_INDEX);
+        for (int v = v0; v <= v1; v++) {
+            final int tileSourceY = v * TileIndex.TILE_SIZE;
+            final int readY0 = Math.max(sourceY, tileSourceY);
+            final int readY1 = Math.min(sourceY1, tileSourceY + TileIndex.TILE_SIZE);
+            if (readY0 >= readY1) {
                 continue;
             }
-            final GCTileFile tileFile = tileMap.get(index);
-            if (tileFile != null) {
-                sourceRectToRead.translate(-sourceTileRect.x, -sourceTileRect.y);
-                Object data = readRectangle(tileFile, sourceRectToRead, MathUtils.floorInt(getScale()));
-                sourceRectToRead.translate(sourceTileRect.x, sourceTileRect.y);
-                Rectangle destRect = getDestRect(sourceRectToRead);
-                writableRaster.setDataElements(destRect.x, destRect.y,
-                                               destRect.width, destRect.height,
-                                               data);
-            } else {
-                Rectangle destRect = getDestRect(sourceRectToRead);
-                WritableRaster raster = getNoDataSourceTile(destRect);
-                writableRaster.setRect(raster);
+            for (int h = h0; h <= h1; h++) {
+                final int tileSourceX = h * TileIndex.TILE_SIZE;
+                final int readX0 = Math.max(sourceX, tileSourceX);
+                final int readX1 = Math.min(sourceX1, tileSourceX + TileIndex.TILE_SIZE);
+                if (readX0 >= readX1) {
+                    continue;
+                }
+                final int destX = MathUtils.floorInt((readX0 - mosaicOffsetX) / getScale());
+                final int destY = MathUtils.floorInt((readY0 - mosaicOffsetY) / getScale());
+                final int destWidth = MathUtils.ceilInt((readX1 - readX0) / getScale());
+                final int destHeight = MathUtils.ceilInt((readY1 - readY0) / getScale());
+                final int index = TileIndex.getIndex(h, v);
+                if (tileFilePool.contains(index)) {
+                    Object data = readRectangle(index,
+                                                readX0 - tileSourceX, readY0 - tileSourceY,
+                                                readX1 - readX0, readY1 - readY0);
+                    writableRaster.setDataElements(destX, destY, destWidth, destHeight, data);
+                } else {
+                    WritableRaster raster = getNoDataSourceTile(destX, destY, destWidth, destHeight);
+                    writableRaster.setRect(raster);
+                }
             }
-
         }
 
     }
 
-    private Object readRectangle(GCTileFile tileFile, Rectangle sourceRect, int subsampling) {
+    private Object readRectangle(int index, int x, int y, int width, int height) {
+        GCTileFile tileFile = null;
         try {
-            Array array = tileFile.readData(variableName,
-                                            sourceRect.x,
-                                            sourceRect.y,
-                                            sourceRect.width, sourceRect.height,
-                                            subsampling, subsampling);
-            return array.getStorage();
+            tileFile = tileFilePool.acquire(index);
+            return bandPrefetcher.readData(tileFile, variableName, x, y, width, height, subsampling, subsampling);
         } catch (Exception e) {
-            throw new RuntimeException("Could not read " + tileFile, e);
-        }
-    }
-
-    private Rectangle getSourceRect(Rectangle rect) {
-        int sourceX = getSourceX(rect.x);
-        int sourceY = getSourceY(rect.y);
-        int sourceWidth = getSourceWidth(rect.width);
-        int sourceHeight = getSourceHeight(rect.height);
-        return new Rectangle(sourceX, sourceY, sourceWidth, sourceHeight);
-    }
-
-    private Rectangle getDestRect(Rectangle rect) {
-        int destX0 = MathUtils.floorInt(rect.x / getScale());
-        int destY0 = MathUtils.floorInt(rect.y / getScale());
-        int destX1 = MathUtils.ceilInt(rect.width / getScale());
-        int destY1 = MathUtils.ceilInt(rect.height / getScale());
-        return new Rectangle(destX0, destY0, destX1, destY1);
-    }
-
-    private TileIndex[] getAffectedSourceTiles(Rectangle rect) {
-        final int indexX0 = rect.x / TileIndex.TILE_SIZE;
-        final int indexY0 = rect.y / TileIndex.TILE_SIZE;
-        final int indexWidth = ((rect.x + rect.width) / TileIndex.TILE_SIZE) + 1;
-        final int indexHeight = ((rect.y + rect.height) / TileIndex.TILE_SIZE) + 1;
-        List<TileIndex> indexes = new ArrayList<TileIndex>();
-        for (int y = indexY0; y < indexHeight; y++) {
-            for (int x = indexX0; x < indexWidth; x++) {
-                indexes.add(new TileIndex(x, y));
+            throw new RuntimeException("Could not read " + (tileFile != null ? tileFile : "tile " + index), e);
+        } finally {
+            if (tileFile != null) {
+                tileFilePool.release(index);
             }
         }
-        return indexes.toArray(new TileIndex[indexes.size()]);
     }
 
-    private NoDataRaster getNoDataTargetTile(Point location) {
-        if (noDataTargetRaster == null) {
-            noDataTargetRaster = createNoDataRaster(noDataValue);
-        }
-        return noDataTargetRaster.createTranslatedChild(location.x, location.y);
+    // the index of the first mosaic tile touched by a source coordinate range starting at sourceStart
+    private static int getTileStart(int sourceStart, int maxIndex) {
+        return Math.min(Math.max(sourceStart / TileIndex.TILE_SIZE, 0), maxIndex);
     }
 
-    private WritableRaster getNoDataSourceTile(Rectangle rectangle) {
-        if (noDataSourceRaster == null) {
-            noDataSourceRaster = createNoDataSourceRaster(noDataValue);
-        }
-        return noDataSourceRaster.createWritableChild(0, 0,
-                                                      rectangle.width, rectangle.height,
-                                                      rectangle.x, rectangle.y,
-                                                      new int[]{0});
+    // the index of the last mosaic tile touched by a source coordinate range ending before sourceEnd
+    private static int getTileEnd(int sourceEnd, int maxIndex) {
+        return Math.min(Math.max((sourceEnd - 1) / TileIndex.TILE_SIZE, 0), maxIndex);
     }
 
-    private WritableRaster createNoDataSourceRaster(double noDataValue) {
-        SampleModel sampleModel1 = getSampleModel().createCompatibleSampleModel(TileIndex.TILE_SIZE,
-                                                                                TileIndex.TILE_SIZE);
-        final WritableRaster raster = createWritableRaster(sampleModel1, new Point(0, 0));
-        final DataBuffer buffer = raster.getDataBuffer();
-
-        for (int i = 0; i < buffer.getSize(); i++) {
-            buffer.setElemDouble(i, noDataValue);
+    private WritableRaster getNoDataSourceTile(int x, int y, int width, int height) {
+        if (noDataSourceRaster == null) {
+            noDataSourceRaster = GCConstantTiles.getConstantRaster(getSampleModel(), TileIndex.TILE_SIZE,
+                                                                   TileIndex.TILE_SIZE, noDataValue);
         }
-
-        return raster;
+        return noDataSourceRaster.createWritableChild(0, 0, width, height, x, y, BAND_LIST);
     }
 
 }
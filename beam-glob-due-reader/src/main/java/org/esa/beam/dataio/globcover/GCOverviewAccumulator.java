@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import java.awt.image.DataBuffer;
+
+/**
+ * Downsamples source samples into a block of an overview raster, where each overview
+ * pixel covers a square of <code>factor</code> by <code>factor</code> source pixels.
+ * <p/>
+ * The source samples may be passed in arbitrary pieces, for example one piece per tile
+ * file of the mosaic. Categorical samples are downsampled to their most frequent value
+ * (mode), all other samples to their mean. No-data samples are ignored, and overview
+ * pixels without any valid source sample are set to the no-data value.
+ */
+class GCOverviewAccumulator {
+
+    private final int dataType;
+    private final int destX;
+    private final int destY;
+    private final int destWidth;
+    private final int destHeight;
+    private final int factor;
+    private final int classCount;
+    private final boolean noDataValueUsed;
+    private final double noDataValue;
+    private final double[] sums;
+    private final int[] counts;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param dataType        the data type of the samples, one of the {@link DataBuffer} type constants.
+     * @param destX           the x coordinate of the overview block.
+     * @param destY           the y coordinate of the overview block.
+     * @param destWidth       the width of the overview block.
+     * @param destHeight      the height of the overview block.
+     * @param factor          the downsampling factor.
+     * @param classCount      the number of classes of categorical samples, whose values range from
+     *                        zero to <code>classCount - 1</code>, or zero for non-categorical samples.
+     * @param noDataValueUsed {@code true} if no-data samples shall be ignored.
+     * @param noDataValue     the no-data value.
+     */
+    GCOverviewAccumulator(int dataType, int destX, int destY, int destWidth, int destHeight, int factor,
+                          int classCount, boolean noDataValueUsed, double noDataValue) {
+        this.dataType = dataType;
+        this.destX = destX;
+        this.destY = destY;
+        this.destWidth = destWidth;
+        this.destHeight = destHeight;
+        this.factor = factor;
+        this.classCount = classCount;
+        this.noDataValueUsed = noDataValueUsed;
+        this.noDataValue = noDataValue;
+        if (classCount > 0) {
+            sums = null;
+            counts = new int[destWidth * destHeight * classCount];
+        } else {
+            sums = new double[destWidth * destHeight];
+            counts = new int[destWidth * destHeight];
+        }
+    }
+
+    /**
+     * Returns the source rectangle covered by the overview block.
+     *
+     * @return the source x, y, width and height.
+     */
+    int[] getSourceRect() {
+        return new int[]{destX * factor, destY * factor, destWidth * factor, destHeight * factor};
+    }
+
+    /**
+     * Accumulates a piece of source samples.
+     *
+     * @param data   the samples, a primitive array stored row by row.
+     * @param x      the source x coordinate of the first sample.
+     * @param y      the source y coordinate of the first sample.
+     * @param width  the number of samples per row.
+     * @param height the number of rows.
+     */
+    void accumulate(Object data, int x, int y, int width, int height) {
+        for (int j = 0; j < height; j++) {
+            final int dy = (y + j) / factor - destY;
+            if (dy < 0 || dy >= destHeight) {
+                continue;
+            }
+            for (int i = 0; i < width; i++) {
+                final int dx = (x + i) / factor - destX;
+                if (dx < 0 || dx >= destWidth) {
+                    continue;
+                }
+                final double value = getSample(data, j * width + i, dataType);
+                if (Double.isNaN(value) || noDataValueUsed && value == noDataValue) {
+                    continue;
+                }
+                final int destIndex = dy * destWidth + dx;
+                if (classCount > 0) {
+                    final int classIndex = (int) value;
+                    if (classIndex >= 0 && classIndex < classCount) {
+                        counts[destIndex * classCount + classIndex]++;
+                    }
+                } else {
+                    sums[destIndex] += value;
+                    counts[destIndex]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the downsampled samples of the overview block.
+     *
+     * @param blockSize the size of the block array, which may exceed the width and height of
+     *                  the overview block.
+     * @return the samples, a primitive array of <code>blockSize</code> times <code>blockSize</code>
+     *         elements stored row by row.
+     */
+    Object createData(int blockSize) {
+        final Object data = createArray(dataType, blockSize * blockSize);
+        final double fillValue = noDataValueUsed ? noDataValue : 0.0;
+        for (int i = 0; i < blockSize * blockSize; i++) {
+            setSample(data, i, fillValue, dataType);
+        }
+        for (int dy = 0; dy < destHeight; dy++) {
+            for (int dx = 0; dx < destWidth; dx++) {
+                final int destIndex = dy * destWidth + dx;
+                final double value;
+                if (classCount > 0) {
+                    value = getMode(destIndex);
+                } else {
+                    value = counts[destIndex] > 0 ? sums[destIndex] / counts[destIndex] : Double.NaN;
+                }
+                if (!Double.isNaN(value)) {
+                    setSample(data, dy * blockSize + dx, value, dataType);
+                }
+            }
+        }
+        return data;
+    }
+
+    private double getMode(int destIndex) {
+        final int offset = destIndex * classCount;
+        int mode = -1;
+        int maxCount = 0;
+        for (int k = 0; k < classCount; k++) {
+            if (counts[offset + k] > maxCount) {
+                maxCount = counts[offset + k];
+                mode = k;
+            }
+        }
+        return mode >= 0 ? mode : Double.NaN;
+    }
+
+    static Object createArray(int dataType, int length) {
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                return new byte[length];
+            case DataBuffer.TYPE_SHORT:
+            case DataBuffer.TYPE_USHORT:
+                return new short[length];
+            case DataBuffer.TYPE_INT:
+                return new int[length];
+            case DataBuffer.TYPE_FLOAT:
+                return new float[length];
+            default:
+                return new double[length];
+        }
+    }
+
+    static double getSample(Object data, int index, int dataType) {
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                return ((byte[]) data)[index] & 0xff;
+            case DataBuffer.TYPE_USHORT:
+                return ((short[]) data)[index] & 0xffff;
+            case DataBuffer.TYPE_SHORT:
+                return ((short[]) data)[index];
+            case DataBuffer.TYPE_INT:
+                return ((int[]) data)[index];
+            case DataBuffer.TYPE_FLOAT:
+                return ((float[]) data)[index];
+            default:
+                return ((double[]) data)[index];
+        }
+    }
+
+    private static void setSample(Object data, int index, double value, int dataType) {
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                ((byte[]) data)[index] = (byte) Math.round(value);
+                break;
+            case DataBuffer.TYPE_SHORT:
+            case DataBuffer.TYPE_USHORT:
+                ((short[]) data)[index] = (short) Math.round(value);
+                break;
+            case DataBuffer.TYPE_INT:
+                ((int[]) data)[index] = (int) Math.round(value);
+                break;
+            case DataBuffer.TYPE_FLOAT:
+                ((float[]) data)[index] = (float) value;
+                break;
+            default:
+                ((double[]) data)[index] = value;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.util.Debug;
+import ucar.ma2.InvalidRangeException;
+
+import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+
+/**
+ * Builds the incomplete blocks of a {@link GCOverviewFile}.
+ * <p/>
+ * The overview file of the lowest cached resolution level is built from the tile files of
+ * the mosaic at full resolution, so each source pixel contributes. Overview files of lower
+ * resolution levels are built from the image of the lowest cached level instead, which is
+ * much faster, but yields the mean of means and the mode of modes.
+ */
+class GCOverviewBuilder implements Runnable {
+
+    private final GCOverviewCache cache;
+    private final GCOverviewFile overviewFile;
+    private final int factor;
+    private final int classCount;
+    private final boolean noDataValueUsed;
+    private final double noDataValue;
+    private final GCTileFilePool tileFilePool;
+    private final String variableName;
+    private final RenderedImage sourceImage;
+
+    private GCOverviewBuilder(GCOverviewCache cache, GCOverviewFile overviewFile, int factor, int classCount,
+                              boolean noDataValueUsed, double noDataValue,
+                              GCTileFilePool tileFilePool, String variableName, RenderedImage sourceImage) {
+        this.cache = cache;
+        this.overviewFile = overviewFile;
+        this.factor = factor;
+        this.classCount = classCount;
+        this.noDataValueUsed = noDataValueUsed;
+        this.noDataValue = noDataValue;
+        this.tileFilePool = tileFilePool;
+        this.variableName = variableName;
+        this.sourceImage = sourceImage;
+    }
+
+    /**
+     * Creates a builder reading the tile files of the mosaic.
+     */
+    static GCOverviewBuilder fromTileFiles(GCOverviewCache cache, GCOverviewFile overviewFile, int factor,
+                                           int classCount, boolean noDataValueUsed, double noDataValue,
+                                           GCTileFilePool tileFilePool, String variableName) {
+        return new GCOverviewBuilder(cache, overviewFile, factor, classCount, noDataValueUsed, noDataValue,
+                                     tileFilePool, variableName, null);
+    }
+
+    /**
+     * Creates a builder reading an image of a higher resolution level.
+     */
+    static GCOverviewBuilder fromImage(GCOverviewCache cache, GCOverviewFile overviewFile, int factor,
+                                       int classCount, boolean noDataValueUsed, double noDataValue,
+                                       RenderedImage sourceImage) {
+        return new GCOverviewBuilder(cache, overviewFile, factor, classCount, noDataValueUsed, noDataValue,
+                                     null, null, sourceImage);
+    }
+
+    @Override
+    public void run() {
+        final int blockSize = GCOverviewFile.BLOCK_SIZE;
+        try {
+            for (int blockY = 0; blockY < overviewFile.getBlockCountY(); blockY++) {
+                for (int blockX = 0; blockX < overviewFile.getBlockCountX(); blockX++) {
+                    if (cache.isClosed()) {
+                        return;
+                    }
+                    if (overviewFile.isBlockComplete(blockX, blockY)) {
+                        continue;
+                    }
+                    final int destX = blockX * blockSize;
+                    final int destY = blockY * blockSize;
+                    final GCOverviewAccumulator accumulator = new GCOverviewAccumulator(
+                            overviewFile.getDataType(), destX, destY,
+                            Math.min(blockSize, overviewFile.getWidth() - destX),
+                            Math.min(blockSize, overviewFile.getHeight() - destY),
+                            factor, classCount, noDataValueUsed, noDataValue);
+                    if (sourceImage != null) {
+                        accumulateImage(accumulator);
+                    } else {
+                        accumulateTileFiles(accumulator);
+                    }
+                    overviewFile.writeBlock(blockX, blockY, accumulator.createData(blockSize));
+                }
+            }
+        } catch (Exception e) {
+            // the remaining blocks are built when the mosaic is opened another time
+            if (!cache.isClosed()) {
+                Debug.trace(e);
+            }
+        }
+    }
+
+    private void accumulateImage(GCOverviewAccumulator accumulator) {
+        final int[] sourceRect = accumulator.getSourceRect();
+        final Rectangle rect = new Rectangle(sourceRect[0], sourceRect[1], sourceRect[2], sourceRect[3]);
+        rect.setBounds(rect.intersection(new Rectangle(sourceImage.getMinX(), sourceImage.getMinY(),
+                                                       sourceImage.getWidth(), sourceImage.getHeight())));
+        if (!rect.isEmpty()) {
+            final Object data = sourceImage.getData(rect).getDataElements(rect.x, rect.y, rect.width, rect.height,
+                                                                          null);
+            accumulator.accumulate(data, rect.x, rect.y, rect.width, rect.height);
+        }
+    }
+
+    private void accumulateTileFiles(GCOverviewAccumulator accumulator) throws IOException, InvalidRangeException {
+        final int[] sourceRect = accumulator.getSourceRect();
+        final int sourceX0 = sourceRect[0];
+        final int sourceY0 = sourceRect[1];
+        final int sourceX1 = sourceX0 + sourceRect[2];
+        final int sourceY1 = sourceY0 + sourceRect[3];
+        final int h1 = Math.min((sourceX1 - 1) / TileIndex.TILE_SIZE, TileIndex.MAX_HORIZ_INDEX);
+        final int v1 = Math.min((sourceY1 - 1) / TileIndex.TILE_SIZE, TileIndex.MAX_VERT_INDEX);
+        for (int v = sourceY0 / TileIndex.TILE_SIZE; v <= v1; v++) {
+            for (int h = sourceX0 / TileIndex.TILE_SIZE; h <= h1; h++) {
+                final int index = TileIndex.getIndex(h, v);
+                if (!tileFilePool.contains(index)) {
+                    continue;
+                }
+                final int tileX = h * TileIndex.TILE_SIZE;
+                final int tileY = v * TileIndex.TILE_SIZE;
+                final int x0 = Math.max(sourceX0, tileX);
+                final int y0 = Math.max(sourceY0, tileY);
+                final int x1 = Math.min(sourceX1, tileX + TileIndex.TILE_SIZE);
+                final int y1 = Math.min(sourceY1, tileY + TileIndex.TILE_SIZE);
+                final GCTileFile tileFile = tileFilePool.acquire(index);
+                try {
+                    final Object data = tileFile.readData(variableName, x0 - tileX, y0 - tileY,
+                                                          x1 - x0, y1 - y0, 1, 1).getStorage();
+                    accumulator.accumulate(data, x0, y0, x1 - x0, y1 - y0);
+                } finally {
+                    tileFilePool.release(index);
+                }
+            }
+        }
+    }
+}
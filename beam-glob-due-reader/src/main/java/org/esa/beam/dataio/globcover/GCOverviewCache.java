@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.dataio.util.CacheFileUtils;
+import org.esa.beam.util.Debug;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Manages the overview files of a GlobCover mosaic, which hold the bands of the mosaic at
+ * low resolution levels. Reading these levels from the tile files is very slow, because
+ * every HDF chunk has to be decompressed for a strided read.
+ * <p/>
+ * There is one {@link GCOverviewFile} per band and level. The files are kept in a cache
+ * directory of the user (see {@link CacheFileUtils}) and reused across sessions. Incomplete
+ * overview files are built in the background by a single low priority thread.
+ */
+class GCOverviewCache {
+
+    /**
+     * The name of the system property defining the lowest resolution level served from
+     * overview files.
+     */
+    static final String MIN_LEVEL_PROPERTY = "beam.globcover.overviewMinLevel";
+
+    private static final int DEFAULT_MIN_LEVEL = 5;
+    private static final String CACHE_DIR_NAME = "globcover-overviews";
+    private static final String OVERVIEW_FILE_EXTENSION = ".ovr";
+
+    private final File cacheDir;
+    private final String filePrefix;
+    private final long signature;
+    private final int minLevel;
+    private final Map<String, GCOverviewFile> overviewFiles;
+    private ExecutorService builderExecutor;
+    private volatile boolean closed;
+
+    /**
+     * Returns the cache of a mosaic.
+     *
+     * @param productName the name of the mosaic product.
+     * @param productDir  the directory containing the tile files of the mosaic.
+     * @param fileMap     the tile files of the mosaic.
+     * @return the cache.
+     */
+    static GCOverviewCache createDefault(String productName, File productDir, Map<TileIndex, File> fileMap) {
+        // mosaics of the same name in different directories are kept separately
+        final String filePrefix = CacheFileUtils.getFilePrefix(productName, productDir);
+        return new GCOverviewCache(CacheFileUtils.getCacheDir(CACHE_DIR_NAME),
+                                   filePrefix, createSignature(fileMap),
+                                   Integer.getInteger(MIN_LEVEL_PROPERTY, DEFAULT_MIN_LEVEL));
+    }
+
+    GCOverviewCache(File cacheDir, String filePrefix, long signature, int minLevel) {
+        if (minLevel < 1) {
+            throw new IllegalArgumentException("minLevel < 1");
+        }
+        this.cacheDir = cacheDir;
+        this.filePrefix = filePrefix;
+        this.signature = signature;
+        this.minLevel = minLevel;
+        overviewFiles = new HashMap<String, GCOverviewFile>();
+    }
+
+    /**
+     * Returns the lowest resolution level served from overview files.
+     *
+     * @return the level.
+     */
+    int getMinLevel() {
+        return minLevel;
+    }
+
+    /**
+     * Returns the overview file of a band at a resolution level, opening or creating it if
+     * necessary.
+     *
+     * @param bandName the name of the band.
+     * @param level    the resolution level.
+     * @param width    the width of the band at the level.
+     * @param height   the height of the band at the level.
+     * @param dataType the data type of the band, one of the {@link java.awt.image.DataBuffer}
+     *                 type constants.
+     * @return the overview file, or {@code null} if the overview file cannot be opened.
+     */
+    synchronized GCOverviewFile getOverviewFile(String bandName, int level, int width, int height, int dataType) {
+        if (closed) {
+            return null;
+        }
+        final String key = bandName + "-" + level;
+        GCOverviewFile overviewFile = overviewFiles.get(key);
+        if (overviewFile == null) {
+            if (!CacheFileUtils.makeCacheDir(cacheDir)) {
+                return null;
+            }
+            // an overview file computed for a previous state of the mosaic is replaced
+            final String name = String.format("%s-%s-L%d%s", filePrefix, bandName, level, OVERVIEW_FILE_EXTENSION);
+            try {
+                overviewFile = GCOverviewFile.open(new File(cacheDir, name), signature, width, height, dataType);
+            } catch (IOException e) {
+                Debug.trace(e);
+                return null;
+            }
+            overviewFiles.put(key, overviewFile);
+        }
+        return overviewFile;
+    }
+
+    /**
+     * Schedules the building of an overview file. Builders are run one after the other in the
+     * order they have been scheduled.
+     *
+     * @param builder the builder.
+     */
+    synchronized void build(GCOverviewBuilder builder) {
+        if (closed) {
+            return;
+        }
+        if (builderExecutor == null) {
+            builderExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "GlobCover overview builder");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        builderExecutor.execute(builder);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops building and closes all overview files. Blocks which are not complete yet are
+     * built when the mosaic is opened another time.
+     */
+    void close() {
+        final List<GCOverviewFile> files;
+        synchronized (this) {
+            closed = true;
+            if (builderExecutor != null) {
+                // the builder is not interrupted, since an interrupt would close the file channel
+                builderExecutor.shutdown();
+            }
+            files = new ArrayList<GCOverviewFile>(overviewFiles.values());
+            overviewFiles.clear();
+        }
+        for (final GCOverviewFile file : files) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                Debug.trace(e);
+            }
+        }
+    }
+
+    // the signature changes whenever a tile file is added, removed or modified
+    static long createSignature(Map<TileIndex, File> fileMap) {
+        long signature = fileMap.size();
+        for (final Map.Entry<TileIndex, File> entry : fileMap.entrySet()) {
+            final File file = entry.getValue();
+            long fileSignature = entry.getKey().getIndex();
+            fileSignature = 31 * fileSignature + file.getName().hashCode();
+            fileSignature = 31 * fileSignature + file.length();
+            fileSignature = 31 * fileSignature + file.lastModified();
+            // the sum does not depend on the iteration order
+            signature += fileSignature * 0x9e3779b97f4a7c15L;
+        }
+        return signature;
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.dataio.util.CacheFileUtils;
+
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An on-disk raster holding one band of a GlobCover mosaic at a single resolution level.
+ * <p/>
+ * The raster is divided into square blocks of {@link #BLOCK_SIZE} pixels, which are written
+ * independently, so the raster can be built incrementally. Each block is stored with a flag
+ * telling whether it is complete. Blocks at the right and lower border are padded.
+ * <p/>
+ * The file starts with a header identifying the mosaic it has been computed from. When the
+ * mosaic has changed, an existing file is discarded and all blocks have to be built again.
+ * A new file is written completely under a temporary name and then renamed, so a file opened
+ * by other readers or processes is replaced rather than truncated.
+ * Blocks are read and written with positional channel operations, so complete blocks can be
+ * read by several threads while other blocks are written.
+ */
+class GCOverviewFile {
+
+    static final int BLOCK_SIZE = 256;
+
+    private static final int MAGIC = 0x47434f56; // "GCOV"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private final File file;
+    private final int width;
+    private final int height;
+    private final int dataType;
+    private final int blockCountX;
+    private final int blockCountY;
+    private final int blockByteCount;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    // guarded by itself
+    private final boolean[] completeBlocks;
+
+    private GCOverviewFile(File file, int width, int height, int dataType, RandomAccessFile raf) {
+        this.file = file;
+        this.width = width;
+        this.height = height;
+        this.dataType = dataType;
+        blockCountX = (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blockCountY = (height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blockByteCount = BLOCK_SIZE * BLOCK_SIZE * DataBuffer.getDataTypeSize(dataType) / 8;
+        this.raf = raf;
+        channel = raf.getChannel();
+        completeBlocks = new boolean[blockCountX * blockCountY];
+    }
+
+    /**
+     * Opens an overview file, creating it if it does not exist or does not match the mosaic
+     * and the raster given.
+     *
+     * @param file      the file.
+     * @param signature the signature of the mosaic, which changes whenever the mosaic changes.
+     * @param width     the width of the raster.
+     * @param height    the height of the raster.
+     * @param dataType  the data type of the raster, one of the {@link DataBuffer} type constants.
+     * @return the overview file.
+     * @throws IOException if the file cannot be opened or created.
+     */
+    static GCOverviewFile open(File file, long signature, int width, int height, int dataType) throws IOException {
+        if (DataBuffer.getDataTypeSize(dataType) < 8) {
+            throw new IllegalArgumentException("Unsupported data type: " + dataType);
+        }
+        GCOverviewFile overviewFile = openExisting(file, signature, width, height, dataType);
+        if (overviewFile == null) {
+            create(file, signature, width, height, dataType);
+            overviewFile = openExisting(file, signature, width, height, dataType);
+            if (overviewFile == null) {
+                throw new IOException("Failed to create overview file: " + file);
+            }
+        }
+        return overviewFile;
+    }
+
+    // returns null if the file does not exist or does not match
+    private static GCOverviewFile openExisting(File file, long signature, int width, int height,
+                                               int dataType) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        boolean opened = false;
+        try {
+            final GCOverviewFile overviewFile = new GCOverviewFile(file, width, height, dataType, raf);
+            if (!overviewFile.readHeader(signature)) {
+                return null;
+            }
+            opened = true;
+            return overviewFile;
+        } finally {
+            if (!opened) {
+                raf.close();
+            }
+        }
+    }
+
+    private static void create(File file, long signature, int width, int height, int dataType) throws IOException {
+        final File tempFile = CacheFileUtils.createTempFile(file);
+        try {
+            final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+            try {
+                new GCOverviewFile(file, width, height, dataType, raf).writeHeader(signature);
+                raf.getChannel().force(true);
+            } finally {
+                raf.close();
+            }
+            // readers which have opened the replaced file keep reading their own copy
+            CacheFileUtils.replace(tempFile, file);
+        } finally {
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    int getDataType() {
+        return dataType;
+    }
+
+    int getBlockCountX() {
+        return blockCountX;
+    }
+
+    int getBlockCountY() {
+        return blockCountY;
+    }
+
+    boolean isBlockComplete(int blockX, int blockY) {
+        synchronized (completeBlocks) {
+            return completeBlocks[blockY * blockCountX + blockX];
+        }
+    }
+
+    /**
+     * Tells whether all blocks have been written.
+     *
+     * @return {@code true} if the raster is complete, {@code false} otherwise.
+     */
+    boolean isComplete() {
+        synchronized (completeBlocks) {
+            for (final boolean complete : completeBlocks) {
+                if (!complete) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads a complete block.
+     *
+     * @param blockX the horizontal index of the block.
+     * @param blockY the vertical index of the block.
+     * @return the samples of the block, a primitive array of {@link #BLOCK_SIZE} times
+     *         {@link #BLOCK_SIZE} elements, stored row by row.
+     * @throws IOException if an I/O error occurs.
+     */
+    Object readBlock(int blockX, int blockY) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(blockByteCount);
+        final long position = getBlockPosition(blockX, blockY);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of overview file: " + file);
+            }
+        }
+        buffer.flip();
+
+        final int sampleCount = BLOCK_SIZE * BLOCK_SIZE;
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                return buffer.array();
+            case DataBuffer.TYPE_SHORT:
+            case DataBuffer.TYPE_USHORT:
+                final short[] shorts = new short[sampleCount];
+                buffer.asShortBuffer().get(shorts);
+                return shorts;
+            case DataBuffer.TYPE_INT:
+                final int[] ints = new int[sampleCount];
+                buffer.asIntBuffer().get(ints);
+                return ints;
+            case DataBuffer.TYPE_FLOAT:
+                final float[] floats = new float[sampleCount];
+                buffer.asFloatBuffer().get(floats);
+                return floats;
+            default:
+                final double[] doubles = new double[sampleCount];
+                buffer.asDoubleBuffer().get(doubles);
+                return doubles;
+        }
+    }
+
+    /**
+     * Writes a block and marks it as complete.
+     *
+     * @param blockX the horizontal index of the block.
+     * @param blockY the vertical index of the block.
+     * @param data   the samples of the block, see {@link #readBlock(int, int)}.
+     * @throws IOException if an I/O error occurs.
+     */
+    void writeBlock(int blockX, int blockY, Object data) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(blockByteCount);
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                buffer.put((byte[]) data);
+                break;
+            case DataBuffer.TYPE_SHORT:
+            case DataBuffer.TYPE_USHORT:
+                buffer.asShortBuffer().put((short[]) data);
+                break;
+            case DataBuffer.TYPE_INT:
+                buffer.asIntBuffer().put((int[]) data);
+                break;
+            case DataBuffer.TYPE_FLOAT:
+                buffer.asFloatBuffer().put((float[]) data);
+                break;
+            default:
+                buffer.asDoubleBuffer().put((double[]) data);
+        }
+        buffer.clear();
+        writeFully(buffer, getBlockPosition(blockX, blockY));
+
+        // the samples are forced to disk before the flag is written, so neither an interrupted
+        // write nor a crash leaves a block marked as complete without its samples
+        channel.force(false);
+        final int blockIndex = blockY * blockCountX + blockX;
+        writeFully(ByteBuffer.wrap(new byte[]{1}), HEADER_SIZE + blockIndex);
+        synchronized (completeBlocks) {
+            completeBlocks[blockIndex] = true;
+        }
+    }
+
+    void close() throws IOException {
+        raf.close();
+    }
+
+    private long getBlockPosition(int blockX, int blockY) {
+        final long dataOffset = HEADER_SIZE + completeBlocks.length;
+        return dataOffset + (long) (blockY * blockCountX + blockX) * blockByteCount;
+    }
+
+    private boolean readHeader(long signature) throws IOException {
+        final long expectedLength = getBlockPosition(0, blockCountY);
+        if (raf.length() != expectedLength) {
+            return false;
+        }
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + completeBlocks.length);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                return false;
+            }
+        }
+        header.flip();
+        if (!CacheFileUtils.getHeader(header, MAGIC, VERSION) || header.getLong() != signature
+            || header.getInt() != width || header.getInt() != height || header.getInt() != dataType
+            || header.getInt() != BLOCK_SIZE) {
+            return false;
+        }
+        synchronized (completeBlocks) {
+            for (int i = 0; i < completeBlocks.length; i++) {
+                completeBlocks[i] = header.get() != 0;
+            }
+        }
+        return true;
+    }
+
+    private void writeHeader(long signature) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + completeBlocks.length);
+        CacheFileUtils.putHeader(header, MAGIC, VERSION);
+        header.putLong(signature);
+        header.putInt(width);
+        header.putInt(height);
+        header.putInt(dataType);
+        header.putInt(BLOCK_SIZE);
+        header.clear();
+        writeFully(header, 0);
+        raf.setLength(getBlockPosition(0, blockCountY));
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
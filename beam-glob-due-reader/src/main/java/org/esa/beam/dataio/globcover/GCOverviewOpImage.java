@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.jai.ImageManager;
+import org.esa.beam.jai.ResolutionLevel;
+import org.esa.beam.jai.SingleBandedOpImage;
+import org.esa.beam.util.Debug;
+
+import javax.media.jai.PlanarImage;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+
+/**
+ * The image of a GlobCover mosaic band at a low resolution level, served from a
+ * {@link GCOverviewFile}. Blocks of the overview file which have not been built yet
+ * are computed by the given fallback image, which reads the tile files of the mosaic.
+ * <p/>
+ * Both images share the same tiling, so tiles not covered by any tile file are returned as
+ * the shared no-data tiles of the fallback image.
+ */
+class GCOverviewOpImage extends SingleBandedOpImage {
+
+    private final GCOverviewFile overviewFile;
+    private final GCMosaicOpImage fallbackImage;
+    private final SampleModel blockSampleModel;
+
+    GCOverviewOpImage(Band band, GCOverviewFile overviewFile, GCMosaicOpImage fallbackImage, ResolutionLevel level) {
+        super(ImageManager.getDataBufferType(band.getDataType()),
+              band.getSceneRasterWidth(), band.getSceneRasterHeight(),
+              new Dimension(fallbackImage.getTileWidth(), fallbackImage.getTileHeight()),
+              null, level);
+        this.overviewFile = overviewFile;
+        this.fallbackImage = fallbackImage;
+        blockSampleModel = getSampleModel().createCompatibleSampleModel(GCOverviewFile.BLOCK_SIZE,
+                                                                        GCOverviewFile.BLOCK_SIZE);
+    }
+
+    @Override
+    public Raster computeTile(int tileX, int tileY) {
+        if (fallbackImage.isNoDataTile(tileX, tileY)) {
+            return fallbackImage.getNoDataTargetTile(tileXToX(tileX), tileYToY(tileY));
+        }
+        return super.computeTile(tileX, tileY);
+    }
+
+    @Override
+    protected void computeRect(PlanarImage[] planarImages, WritableRaster writableRaster, Rectangle targetRect) {
+        final int blockSize = GCOverviewFile.BLOCK_SIZE;
+        final int blockX0 = targetRect.x / blockSize;
+        final int blockY0 = targetRect.y / blockSize;
+        final int blockX1 = (targetRect.x + targetRect.width - 1) / blockSize;
+        final int blockY1 = (targetRect.y + targetRect.height - 1) / blockSize;
+        for (int blockY = blockY0; blockY <= blockY1; blockY++) {
+            for (int blockX = blockX0; blockX <= blockX1; blockX++) {
+                final Point location = new Point(blockX * blockSize, blockY * blockSize);
+                if (overviewFile.isBlockComplete(blockX, blockY)) {
+                    try {
+                        final DataBuffer dataBuffer = createDataBuffer(overviewFile.readBlock(blockX, blockY));
+                        // only the part intersecting the target raster is copied
+                        writableRaster.setRect(Raster.createWritableRaster(blockSampleModel, dataBuffer, location));
+                        continue;
+                    } catch (IOException e) {
+                        Debug.trace(e);
+                    }
+                }
+                final Rectangle blockRect = new Rectangle(location.x, location.y, blockSize, blockSize);
+                writableRaster.setRect(fallbackImage.getData(blockRect.intersection(targetRect)));
+            }
+        }
+    }
+
+    private DataBuffer createDataBuffer(Object data) {
+        switch (overviewFile.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                return new DataBufferByte((byte[]) data, ((byte[]) data).length);
+            case DataBuffer.TYPE_SHORT:
+                return new DataBufferShort((short[]) data, ((short[]) data).length);
+            case DataBuffer.TYPE_USHORT:
+                return new DataBufferUShort((short[]) data, ((short[]) data).length);
+            case DataBuffer.TYPE_INT:
+                return new DataBufferInt((int[]) data, ((int[]) data).length);
+            case DataBuffer.TYPE_FLOAT:
+                return new DataBufferFloat((float[]) data, ((float[]) data).length);
+            default:
+                return new DataBufferDouble((double[]) data, ((double[]) data).length);
+        }
+    }
+}
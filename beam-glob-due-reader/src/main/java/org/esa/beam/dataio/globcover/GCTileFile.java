@@ -17,14 +17,13 @@
 package org.esa.beam.dataio.globcover;
 
 import org.esa.beam.dataio.netcdf.util.DataTypeUtils;
-import org.esa.beam.dataio.netcdf.util.MetadataUtils;
 import org.esa.beam.framework.datamodel.GeoPos;
-import org.esa.beam.framework.datamodel.MetadataElement;
 import org.esa.beam.framework.datamodel.ProductData;
 import org.esa.beam.util.Debug;
 import org.esa.beam.util.io.FileUtils;
 import org.jdom.Element;
 import ucar.ma2.Array;
+import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
 import ucar.nc2.Attribute;
@@ -33,19 +32,33 @@ import ucar.nc2.NetcdfFile;
 import ucar.nc2.Variable;
 import ucar.nc2.iosp.hdf4.ODLparser;
 
+import javax.media.jai.JAI;
+
 import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Since a {@link NetcdfFile} must not be read by several threads concurrently, data are read
+ * through a small pool of independent read handles to the same file. The handles are opened on
+ * demand, at most as many as the tile scheduler of JAI computes tiles in parallel, and only as
+ * long as the optional {@link ReadHandleBudget} grants them, which is shared by all tile files
+ * of a {@link GCTileFilePool}.
+ * <p/>
+ * Bands with a known chunk layout are read chunk by chunk through the {@link GCChunkCache},
+ * so repeated reads of the same area only copy samples of already decompressed chunks.
+ *
  * @author Marco Peters
  * @version $ Revision $ Date $
  * @since BEAM 4.7
  */
-class GCTileFile {
+class GCTileFile implements GCBandPrefetcher.TileReader {
 
     private static final String XDIM = "XDim";
     private static final String YDIM = "YDim";
@@ -59,11 +72,74 @@ class GCTileFile {
     private static final String GA_END_DATE = GROUP_POSTEL + "/" + GROUP_GRID_ATTRIBUTES + "/Product end date";
     private static final String ATTRIB_UNSIGNED = "_Unsigned";
     private static final String ATTRIB_FILL_VALUE = "_FillValue";
+    private static final String ATTRIB_CHUNK_SIZES = "_ChunkSizes";
+
+    /**
+     * Limits the number of additional read handles, that is all read handles except the first one.
+     */
+    interface ReadHandleBudget {
+
+        /**
+         * Reserves an additional read handle.
+         *
+         * @return {@code true} if the handle may be opened, {@code false} otherwise.
+         */
+        boolean tryAcquire();
+
+        /**
+         * Releases an additional read handle after it has been closed or failed to open.
+         */
+        void release();
+    }
 
     private final NetcdfFile ncFile;
+    private final int maxReadHandleCount;
+    private final ReadHandleBudget readHandleBudget;
+    // the read handles not in use, guarded by itself
+    private final List<NetcdfFile> idleReadHandles;
+    private int readHandleCount;
+    private boolean closed;
+    private final GCChunkCache chunkCache;
+    private final String chunkCacheKey;
+    // the chunk sizes (width, height) of the variables, null for variables not read through the
+    // chunk cache, created when first needed and guarded by this
+    private Map<String, int[]> chunkSizeMap;
+
+    // statistics
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicLong readWaitNanos = new AtomicLong();
 
     GCTileFile(File ncfile) throws IOException {
-        ncFile = NetcdfFile.open(ncfile.getCanonicalPath());
+        this(ncfile, JAI.getDefaultInstance().getTileScheduler().getParallelism());
+    }
+
+    GCTileFile(File ncfile, int maxReadHandleCount) throws IOException {
+        this(ncfile, maxReadHandleCount, GCChunkCache.getDefault());
+    }
+
+    GCTileFile(File ncfile, int maxReadHandleCount, GCChunkCache chunkCache) throws IOException {
+        this(ncfile, maxReadHandleCount, chunkCache, null);
+    }
+
+    GCTileFile(File ncfile, int maxReadHandleCount, GCChunkCache chunkCache,
+               ReadHandleBudget readHandleBudget) throws IOException {
+        this(NetcdfFile.open(ncfile.getCanonicalPath()), ncfile, maxReadHandleCount, chunkCache, readHandleBudget);
+    }
+
+    GCTileFile(NetcdfFile ncFile, File ncfile, int maxReadHandleCount, GCChunkCache chunkCache,
+               ReadHandleBudget readHandleBudget) {
+        if (maxReadHandleCount < 1) {
+            throw new IllegalArgumentException("maxReadHandleCount < 1");
+        }
+        this.ncFile = ncFile;
+        this.maxReadHandleCount = maxReadHandleCount;
+        this.readHandleBudget = readHandleBudget;
+        idleReadHandles = new ArrayList<NetcdfFile>(maxReadHandleCount);
+        // the handle used for the metadata is the first read handle
+        idleReadHandles.add(ncFile);
+        readHandleCount = 1;
+        this.chunkCache = chunkCache;
+        chunkCacheKey = GCChunkCache.createFileKey(ncFile.getLocation(), ncfile.length(), ncfile.lastModified());
     }
 
     public String getFilePath() {
@@ -88,11 +164,7 @@ class GCTileFile {
     }
 
     public GeoPos getUpperLeftCorner() throws IOException {
-        final Variable structMetadata0 = ncFile.findVariable(STRUCT_METADATA_0);
-        final Array array = structMetadata0.read();
-        final String structMetadata0Text = new String(array.getDataAsByteBuffer().array());
-        final Element element = new ODLparser().parseFromString(structMetadata0Text);
-        final Element grid = element.getChild("GridStructure").getChild("GRID_1");
+        final Element grid = readGridStructure();
         final Element ulPointDegElem = grid.getChild("UpperLeftPointMtrs");
         List ulValueElements = ulPointDegElem.getChildren("value");
         String ulPointLon = ((Element) ulValueElements.get(0)).getText();
@@ -100,42 +172,374 @@ class GCTileFile {
         return createGeoPos(ulPointLon, ulPointLat);
     }
 
+    private Element readGridStructure() throws IOException {
+        final Array array;
+        final NetcdfFile readHandle = acquireReadHandle();
+        try {
+            array = readHandle.findVariable(STRUCT_METADATA_0).read();
+        } finally {
+            releaseReadHandle(readHandle);
+        }
+        final String structMetadata0Text = new String(array.getDataAsByteBuffer().array());
+        final Element element = new ODLparser().parseFromString(structMetadata0Text);
+        return element.getChild("GridStructure").getChild("GRID_1");
+    }
 
     public Array readData(String variableName,
                           int offsetX, int offsetY,
                           int width, int height,
                           int stepX, int stepY) throws IOException, InvalidRangeException {
-        final Group group = ncFile.getRootGroup().findGroup(GROUP_POSTEL).findGroup(GROUP_DATA_FIELDS);
+        return readData(new String[]{variableName}, offsetX, offsetY, width, height, stepX, stepY)[0];
+    }
+
+    /**
+     * Reads the same region of several variables at once. The data group and the section are
+     * resolved once, and all variables not read through the chunk cache are read with a single
+     * read handle.
+     *
+     * @param variableNames the names of the variables.
+     * @param offsetX       the x coordinate of the region.
+     * @param offsetY       the y coordinate of the region.
+     * @param width         the width of the region.
+     * @param height        the height of the region.
+     * @param stepX         the horizontal step.
+     * @param stepY         the vertical step.
+     * @return the data, one array per variable.
+     * @throws IOException           if an I/O error occurs or a variable is unknown.
+     * @throws InvalidRangeException if the region exceeds the file.
+     */
+    public Array[] readData(String[] variableNames,
+                            int offsetX, int offsetY,
+                            int width, int height,
+                            int stepX, int stepY) throws IOException, InvalidRangeException {
+        final Array[] arrays = new Array[variableNames.length];
+        int directCount = 0;
+        // chunks are read with their own read handles, so they are read before a handle is held here
+        for (int i = 0; i < variableNames.length; i++) {
+            final int[] chunkSize = chunkCache.isEnabled() ? getChunkSize(variableNames[i]) : null;
+            if (chunkSize != null) {
+                arrays[i] = readChunkedData(variableNames[i], chunkSize,
+                                            offsetX, offsetY, width, height, stepX, stepY);
+            } else {
+                directCount++;
+            }
+        }
+        if (directCount == 0) {
+            return arrays;
+        }
+        final NetcdfFile readHandle = acquireReadHandle();
+        try {
+            final Group group = getDataFieldsGroup(readHandle);
+            final int[] origin = new int[2];
+            final int[] size = new int[2];
+            final int[] stride = new int[2];
+            Section section = null;
+            int sectionIndexDimX = -1;
+            for (int i = 0; i < variableNames.length; i++) {
+                if (arrays[i] != null) {
+                    continue;
+                }
+                final Variable variable = findBandVariable(group, variableNames[i]);
+                final int indexDimX = variable.findDimensionIndex(XDIM);
+                // all bands of a tile file usually share the order of their dimensions
+                if (section == null || indexDimX != sectionIndexDimX) {
+                    section = createSection(variable, offsetX, offsetY, width, height, stepX, stepY,
+                                            origin, size, stride);
+                    sectionIndexDimX = indexDimX;
+                }
+                arrays[i] = variable.read(section);
+            }
+        } finally {
+            releaseReadHandle(readHandle);
+        }
+        return arrays;
+    }
+
+    /**
+     * Returns the number of data reads performed so far.
+     *
+     * @return the number of reads.
+     */
+    long getReadCount() {
+        return readCount.get();
+    }
+
+    /**
+     * Returns the total time the reading threads have been waiting for a read handle so far.
+     *
+     * @return the waiting time (ns).
+     */
+    long getReadWaitNanos() {
+        return readWaitNanos.get();
+    }
+
+    // assembles the region from decompressed chunks, which are read completely when not cached
+    private Array readChunkedData(String variableName, int[] chunkSize,
+                                  int offsetX, int offsetY,
+                                  int width, int height,
+                                  int stepX, int stepY) throws IOException, InvalidRangeException {
+        final Variable variable = findBandVariable(ncFile, variableName);
+        final int fileWidth = variable.getDimension(1).getLength();
+        final int fileHeight = variable.getDimension(0).getLength();
+        final int endX = offsetX + width;
+        final int endY = offsetY + height;
+        if (offsetX < 0 || offsetY < 0 || width < 1 || height < 1 || stepX < 1 || stepY < 1
+            || endX > fileWidth || endY > fileHeight) {
+            throw new InvalidRangeException(String.format("Invalid region of %s: x=%d, y=%d, w=%d, h=%d",
+                                                          variableName, offsetX, offsetY, width, height));
+        }
+        final int chunkWidth = chunkSize[0];
+        final int chunkHeight = chunkSize[1];
+        final int targetWidth = (width - 1) / stepX + 1;
+        final int targetHeight = (height - 1) / stepY + 1;
+        final DataType dataType = variable.getDataType();
+        final Object targetData = java.lang.reflect.Array.newInstance(dataType.getPrimitiveClassType(),
+                                                                      targetWidth * targetHeight);
+        for (int chunkY = offsetY / chunkHeight; chunkY <= (endY - 1) / chunkHeight; chunkY++) {
+            final int chunkY0 = chunkY * chunkHeight;
+            final int chunkY1 = Math.min(chunkY0 + chunkHeight, fileHeight);
+            final int j0 = ceilDiv(Math.max(chunkY0 - offsetY, 0), stepY);
+            final int j1 = Math.min(ceilDiv(chunkY1 - offsetY, stepY), targetHeight);
+            for (int chunkX = offsetX / chunkWidth; chunkX <= (endX - 1) / chunkWidth; chunkX++) {
+                final int chunkX0 = chunkX * chunkWidth;
+                final int chunkX1 = Math.min(chunkX0 + chunkWidth, fileWidth);
+                final int i0 = ceilDiv(Math.max(chunkX0 - offsetX, 0), stepX);
+                final int i1 = Math.min(ceilDiv(chunkX1 - offsetX, stepX), targetWidth);
+                if (j0 >= j1 || i0 >= i1) {
+                    // the chunk is skipped by the steps
+                    continue;
+                }
+                final Object chunkData = getChunk(variableName, chunkX, chunkY,
+                                                  chunkX0, chunkY0, chunkX1 - chunkX0, chunkY1 - chunkY0);
+                for (int j = j0; j < j1; j++) {
+                    final int sourceY = offsetY + j * stepY - chunkY0;
+                    final int sourceX = offsetX + i0 * stepX - chunkX0;
+                    copySamples(chunkData, sourceY * (chunkX1 - chunkX0) + sourceX, stepX,
+                                targetData, j * targetWidth + i0, i1 - i0);
+                }
+            }
+        }
+        return Array.factory(dataType, new int[]{targetHeight, targetWidth}, targetData);
+    }
+
+    private Object getChunk(String variableName, int chunkX, int chunkY,
+                            int x, int y, int width, int height) throws IOException, InvalidRangeException {
+        Object chunkData = chunkCache.get(chunkCacheKey, variableName, chunkX, chunkY);
+        if (chunkData == null) {
+            final NetcdfFile readHandle = acquireReadHandle();
+            try {
+                chunkData = readData(readHandle, variableName, x, y, width, height, 1, 1).getStorage();
+            } finally {
+                releaseReadHandle(readHandle);
+            }
+            chunkCache.put(chunkCacheKey, variableName, chunkX, chunkY, chunkData);
+        }
+        return chunkData;
+    }
+
+    /**
+     * Returns the chunk size of a variable, if the variable is read through the chunk cache.
+     * This requires a known chunk layout and the dimensions to be ordered as YDim and XDim.
+     */
+    private synchronized int[] getChunkSize(String variableName) throws IOException {
+        if (chunkSizeMap == null) {
+            Element grid = null;
+            try {
+                grid = readGridStructure();
+            } catch (Exception e) {
+                // the chunk sizes remain unknown, unless given as variable attributes
+                Debug.trace(e);
+            }
+            chunkSizeMap = new HashMap<String, int[]>();
+            for (final Variable variable : getDataFieldsGroup(ncFile).getVariables()) {
+                final int[] chunkSizes = getChunkSizes(variable, grid);
+                if (chunkSizes != null && chunkSizes.length == 2 && chunkSizes[0] > 0 && chunkSizes[1] > 0
+                    && variable.findDimensionIndex(YDIM) == 0 && variable.findDimensionIndex(XDIM) == 1) {
+                    chunkSizeMap.put(variable.getShortName(), new int[]{chunkSizes[1], chunkSizes[0]});
+                }
+            }
+        }
+        return chunkSizeMap.get(variableName);
+    }
+
+    private static int ceilDiv(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    // copies count samples, taking every sourceStep-th sample of the source
+    static void copySamples(Object source, int sourcePos, int sourceStep, Object target, int targetPos, int count) {
+        if (sourceStep == 1) {
+            System.arraycopy(source, sourcePos, target, targetPos, count);
+        } else if (source instanceof byte[]) {
+            final byte[] sourceArray = (byte[]) source;
+            final byte[] targetArray = (byte[]) target;
+            for (int i = 0; i < count; i++) {
+                targetArray[targetPos + i] = sourceArray[sourcePos + i * sourceStep];
+            }
+        } else if (source instanceof short[]) {
+            final short[] sourceArray = (short[]) source;
+            final short[] targetArray = (short[]) target;
+            for (int i = 0; i < count; i++) {
+                targetArray[targetPos + i] = sourceArray[sourcePos + i * sourceStep];
+            }
+        } else if (source instanceof int[]) {
+            final int[] sourceArray = (int[]) source;
+            final int[] targetArray = (int[]) target;
+            for (int i = 0; i < count; i++) {
+                targetArray[targetPos + i] = sourceArray[sourcePos + i * sourceStep];
+            }
+        } else if (source instanceof float[]) {
+            final float[] sourceArray = (float[]) source;
+            final float[] targetArray = (float[]) target;
+            for (int i = 0; i < count; i++) {
+                targetArray[targetPos + i] = sourceArray[sourcePos + i * sourceStep];
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                System.arraycopy(source, sourcePos + i * sourceStep, target, targetPos + i, 1);
+            }
+        }
+    }
+
+    private static Group getDataFieldsGroup(NetcdfFile file) {
+        return file.getRootGroup().findGroup(GROUP_POSTEL).findGroup(GROUP_DATA_FIELDS);
+    }
+
+    private static Variable findBandVariable(NetcdfFile file, String variableName) throws IOException {
+        return findBandVariable(getDataFieldsGroup(file), variableName);
+    }
+
+    private static Variable findBandVariable(Group group, String variableName) throws IOException {
         final Variable variable = group.findVariable(variableName);
         if (variable == null) {
             throw new IOException("Unknown variable name: " + variableName);
         }
+        return variable;
+    }
+
+    private static Array readData(NetcdfFile readHandle, String variableName,
+                                  int offsetX, int offsetY,
+                                  int width, int height,
+                                  int stepX, int stepY) throws IOException, InvalidRangeException {
+        final Variable variable = findBandVariable(readHandle, variableName);
+        return variable.read(createSection(variable, offsetX, offsetY, width, height, stepX, stepY,
+                                           new int[2], new int[2], new int[2]));
+    }
+
+    // the arrays are filled in the order of the variable's dimensions and may be reused
+    private static Section createSection(Variable variable,
+                                         int offsetX, int offsetY,
+                                         int width, int height,
+                                         int stepX, int stepY,
+                                         int[] origin, int[] size, int[] stride) throws InvalidRangeException {
         final int indexDimX = variable.findDimensionIndex(XDIM);
         final int indexDimY = variable.findDimensionIndex(YDIM);
-        int[] origin = new int[2];
-        int[] size = new int[2];
-        int[] stride = new int[2];
         origin[indexDimX] = offsetX;
         origin[indexDimY] = offsetY;
         size[indexDimX] = width;
         size[indexDimY] = height;
         stride[indexDimX] = stepX;
         stride[indexDimY] = stepY;
-        final Section section = new Section(origin, size, stride);
-        final Array array;
-        synchronized (ncFile) {
-            array = variable.read(section);
+        return new Section(origin, size, stride);
+    }
+
+    NetcdfFile acquireReadHandle() throws IOException {
+        final long startTime = System.nanoTime();
+        try {
+            synchronized (idleReadHandles) {
+                while (true) {
+                    if (closed) {
+                        throw new IOException("Tile file has been closed: " + getFilePath());
+                    }
+                    if (!idleReadHandles.isEmpty()) {
+                        return idleReadHandles.remove(idleReadHandles.size() - 1);
+                    }
+                    // without budget, the thread waits for a handle of this file
+                    if (readHandleCount < maxReadHandleCount
+                        && (readHandleBudget == null || readHandleBudget.tryAcquire())) {
+                        readHandleCount++;
+                        break;
+                    }
+                    idleReadHandles.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a read handle: " + getFilePath());
+        } finally {
+            readCount.incrementAndGet();
+            readWaitNanos.addAndGet(System.nanoTime() - startTime);
+        }
+        // an additional handle is opened outside of the lock, so other threads can read meanwhile
+        boolean opened = false;
+        try {
+            final NetcdfFile readHandle = openReadHandle();
+            opened = true;
+            return readHandle;
+        } finally {
+            if (!opened) {
+                synchronized (idleReadHandles) {
+                    readHandleCount--;
+                    idleReadHandles.notify();
+                }
+                if (readHandleBudget != null) {
+                    readHandleBudget.release();
+                }
+            }
+        }
+    }
+
+    void releaseReadHandle(NetcdfFile readHandle) throws IOException {
+        synchronized (idleReadHandles) {
+            if (!closed) {
+                idleReadHandles.add(readHandle);
+                idleReadHandles.notify();
+                return;
+            }
+        }
+        closeReadHandle(readHandle);
+    }
+
+    /**
+     * Opens an additional read handle.
+     *
+     * @return the read handle.
+     * @throws IOException if the file cannot be opened.
+     */
+    NetcdfFile openReadHandle() throws IOException {
+        return NetcdfFile.open(getFilePath());
+    }
+
+    private void closeReadHandle(NetcdfFile readHandle) throws IOException {
+        try {
+            readHandle.close();
+        } finally {
+            if (readHandle != ncFile && readHandleBudget != null) {
+                readHandleBudget.release();
+            }
         }
-        return array;
     }
 
     public List<BandDescriptor> getBandDescriptorList() {
         final Group rootGroup = ncFile.getRootGroup();
         final Group group = rootGroup.findGroup(GROUP_POSTEL).findGroup(GROUP_DATA_FIELDS);
         final List<Variable> bandVariables = group.getVariables();
+        Element grid = null;
+        try {
+            grid = readGridStructure();
+        } catch (Exception e) {
+            // the chunk sizes remain unknown
+            Debug.trace(e);
+        }
         final List<BandDescriptor> bandDescriptors = new ArrayList<BandDescriptor>(bandVariables.size());
         for (Variable bandVariable : bandVariables) {
-            bandDescriptors.add(getBandDescriptor(bandVariable));
+            final BandDescriptor descriptor = getBandDescriptor(bandVariable);
+            final int[] chunkSizes = getChunkSizes(bandVariable, grid);
+            if (chunkSizes != null && chunkSizes.length == 2) {
+                descriptor.setChunkWidth(chunkSizes[bandVariable.findDimensionIndex(XDIM)]);
+                descriptor.setChunkHeight(chunkSizes[bandVariable.findDimensionIndex(YDIM)]);
+            }
+            bandDescriptors.add(descriptor);
         }
         return bandDescriptors;
     }
@@ -148,8 +552,8 @@ class GCTileFile {
         return annual;
     }
 
-    public void readMetadata(MetadataElement metadataRoot) {
-        metadataRoot.addElement(MetadataUtils.readAttributeList(ncFile.getGlobalAttributes(), "MPH"));
+    public List<Attribute> getGlobalAttributes() {
+        return ncFile.getGlobalAttributes();
     }
 
     @Override
@@ -158,7 +562,34 @@ class GCTileFile {
     }
 
     public void close() throws IOException {
-        ncFile.close();
+        final List<NetcdfFile> readHandles;
+        final int openedCount;
+        synchronized (idleReadHandles) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            openedCount = readHandleCount;
+            readHandles = new ArrayList<NetcdfFile>(idleReadHandles);
+            idleReadHandles.clear();
+            idleReadHandles.notifyAll();
+        }
+        if (readCount.get() > 0) {
+            Debug.trace(String.format("%s: %d reads, %d read handles, %.1f ms waiting for a read handle",
+                                      getFilePath(), readCount.get(), openedCount,
+                                      readWaitNanos.get() / 1.0e6));
+        }
+        IOException exception = null;
+        for (final NetcdfFile readHandle : readHandles) {
+            try {
+                closeReadHandle(readHandle);
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
     }
 
     private ProductData.UTC getDate(String attribName) {
@@ -222,6 +653,75 @@ class GCTileFile {
         return DataTypeUtils.getEquivalentProductDataType(variable.getDataType(), isUnsigned, true);
     }
 
+    /**
+     * Returns the HDF chunk layout of a variable, in the order of the variable's dimensions.
+     * Newer versions of the netCDF library report it as variable attribute, otherwise it is
+     * taken from the tiling definition of the HDF-EOS grid.
+     *
+     * @param variable the variable.
+     * @param grid     the HDF-EOS grid structure, may be {@code null}.
+     * @return the chunk sizes, or {@code null} if the variable is not chunked or the layout is unknown.
+     */
+    private static int[] getChunkSizes(Variable variable, Element grid) {
+        final Attribute chunkAttrib = variable.findAttribute(ATTRIB_CHUNK_SIZES);
+        if (chunkAttrib != null && !chunkAttrib.isString()) {
+            final int[] chunkSizes = new int[chunkAttrib.getLength()];
+            for (int i = 0; i < chunkSizes.length; i++) {
+                chunkSizes[i] = chunkAttrib.getNumericValue(i).intValue();
+            }
+            return chunkSizes;
+        }
+        if (grid == null) {
+            return null;
+        }
+        final Element dataFields = grid.getChild("DataField");
+        if (dataFields != null) {
+            for (final Object child : dataFields.getChildren()) {
+                final Element dataField = (Element) child;
+                final Element fieldName = dataField.getChild("DataFieldName");
+                if (fieldName != null && variable.getShortName().equals(unquote(fieldName.getText()))) {
+                    final int[] chunkSizes = parseIntValues(dataField.getChild("TilingDimensions"));
+                    if (chunkSizes != null) {
+                        return chunkSizes;
+                    }
+                }
+            }
+        }
+        // tiles defined for the whole grid apply to all fields, which use the dimensions YDim and XDim
+        final int[] tileDims = parseIntValues(grid.getChild("TileDims"));
+        if (tileDims != null && tileDims.length == 2 && variable.findDimensionIndex(YDIM) == 1) {
+            return new int[]{tileDims[1], tileDims[0]};
+        }
+        return tileDims;
+    }
+
+    private static int[] parseIntValues(Element element) {
+        if (element == null) {
+            return null;
+        }
+        final List valueElements = element.getChildren("value");
+        if (valueElements == null || valueElements.isEmpty()) {
+            return null;
+        }
+        final int[] values = new int[valueElements.size()];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Integer.parseInt(((Element) valueElements.get(i)).getText().trim());
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return values;
+    }
+
+    private static String unquote(String text) {
+        final String trimmed = text.trim();
+        if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
     static GeoPos createGeoPos(String lonString, String latString) {
         float lon = dgmToDec(lonString);
         float lat = dgmToDec(latString);
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.util.Debug;
+
+import javax.media.jai.JAI;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Provides the tile files of a GlobCover mosaic. The tile files are registered by their
+ * {@link TileIndex}, but opened lazily when first accessed. At most a configurable number
+ * of file handles is kept open, the least recently used tile files being closed when the
+ * limit is exceeded. A closed tile file is opened again when accessed another time.
+ * <p/>
+ * The limit includes the additional read handles of the tile files, which are only opened
+ * as long as the limit is not reached, so reading threads wait for the handles of a tile
+ * file rather than exceeding the limit.
+ * <p/>
+ * A tile file acquired by a reading thread is never closed before it has been released.
+ * <p/>
+ * Tile files are addressed by the position of their tile in the mosaic, see
+ * {@link TileIndex#getIndex(int, int)}, so looking up a tile file allocates no objects.
+ */
+class GCTileFilePool {
+
+    /**
+     * The name of the system property defining the maximum number of file handles kept open.
+     */
+    static final String MAX_OPEN_FILE_COUNT_PROPERTY = "beam.globcover.maxOpenFiles";
+
+    private static final int DEFAULT_MAX_OPEN_FILE_COUNT = 64;
+
+    private final Set<TileIndex> tileIndexes;
+    private final int maxOpenFileCount;
+    // the entries of the registered tile files, indexed by the position of their tile
+    private final Entry[] entries;
+    // the sentinel of the list of open entries, the least recently used entry comes first
+    private final Entry openEntries;
+    private int openFileCount;
+    // the number of additional read handles of the open tile files
+    private int readHandleCount;
+
+    GCTileFilePool(Map<TileIndex, File> fileMap) {
+        this(fileMap, Integer.getInteger(MAX_OPEN_FILE_COUNT_PROPERTY, DEFAULT_MAX_OPEN_FILE_COUNT));
+    }
+
+    GCTileFilePool(Map<TileIndex, File> fileMap, int maxOpenFileCount) {
+        if (maxOpenFileCount < 1) {
+            throw new IllegalArgumentException("maxOpenFileCount < 1");
+        }
+        this.tileIndexes = fileMap.keySet();
+        this.maxOpenFileCount = maxOpenFileCount;
+        entries = new Entry[TileIndex.TILE_COUNT];
+        for (final Map.Entry<TileIndex, File> mapEntry : fileMap.entrySet()) {
+            entries[mapEntry.getKey().getIndex()] = new Entry(this, mapEntry.getValue());
+        }
+        openEntries = new Entry(this, null);
+        openEntries.prev = openEntries;
+        openEntries.next = openEntries;
+    }
+
+    Set<TileIndex> getTileIndexes() {
+        return tileIndexes;
+    }
+
+    /**
+     * Tells whether a tile file is registered for a tile.
+     *
+     * @param index the position of the tile, see {@link TileIndex#getIndex(int, int)}.
+     * @return {@code true} if a tile file is registered, {@code false} otherwise.
+     */
+    boolean contains(int index) {
+        return entries[index] != null;
+    }
+
+    synchronized int getOpenFileCount() {
+        return openFileCount;
+    }
+
+    /**
+     * @return the number of open file handles, including the additional read handles.
+     */
+    synchronized int getOpenHandleCount() {
+        return openFileCount + readHandleCount;
+    }
+
+    /**
+     * Opens a tile file.
+     *
+     * @param file   the file.
+     * @param budget the budget of the additional read handles of the tile file.
+     * @return the tile file.
+     * @throws IOException if the file cannot be opened.
+     */
+    GCTileFile openTileFile(File file, GCTileFile.ReadHandleBudget budget) throws IOException {
+        return new GCTileFile(file, JAI.getDefaultInstance().getTileScheduler().getParallelism(),
+                              GCChunkCache.getDefault(), budget);
+    }
+
+    /**
+     * Acquires the tile file registered for a tile, opening it if necessary. The tile
+     * file must be released by calling {@link #release(int)} after reading.
+     *
+     * @param index the position of the tile, see {@link TileIndex#getIndex(int, int)}.
+     * @return the tile file, or {@code null} if no tile file is registered for the tile.
+     * @throws IOException if the tile file cannot be opened.
+     */
+    GCTileFile acquire(int index) throws IOException {
+        final Entry entry = entries[index];
+        if (entry == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (entry.next != null) {
+                unlink(entry);
+            } else {
+                openFileCount++;
+            }
+            linkLast(entry);
+            entry.useCount++;
+        }
+        try {
+            // the file is opened outside of the pool lock, so other tiles can be accessed meanwhile
+            return entry.open();
+        } catch (IOException e) {
+            release(index);
+            throw e;
+        }
+    }
+
+    /**
+     * Releases a tile file which has been acquired before.
+     *
+     * @param index the position of the tile, see {@link TileIndex#getIndex(int, int)}.
+     */
+    void release(int index) {
+        final Entry entry = entries[index];
+        List<Entry> evictedEntries = null;
+        synchronized (this) {
+            if (entry != null && entry.useCount > 0) {
+                entry.useCount--;
+            }
+            // the read handles of evicted tile files are released when the tile files are closed
+            int excessCount = openFileCount + readHandleCount - maxOpenFileCount;
+            Entry eldest = openEntries.next;
+            while (excessCount > 0 && eldest != openEntries) {
+                final Entry next = eldest.next;
+                if (eldest.useCount == 0) {
+                    unlink(eldest);
+                    openFileCount--;
+                    excessCount -= 1 + eldest.readHandleCount;
+                    if (evictedEntries == null) {
+                        evictedEntries = new ArrayList<Entry>();
+                    }
+                    evictedEntries.add(eldest);
+                }
+                eldest = next;
+            }
+        }
+        if (evictedEntries != null) {
+            for (final Entry evictedEntry : evictedEntries) {
+                evictedEntry.closeIfEvicted(this);
+            }
+        }
+    }
+
+    /**
+     * Closes all tile files which are currently open.
+     */
+    void close() {
+        final List<Entry> closedEntries = new ArrayList<Entry>();
+        synchronized (this) {
+            while (openEntries.next != openEntries) {
+                final Entry entry = openEntries.next;
+                unlink(entry);
+                closedEntries.add(entry);
+            }
+            openFileCount = 0;
+        }
+        for (final Entry entry : closedEntries) {
+            entry.close();
+        }
+    }
+
+    // must be called while holding the pool lock
+    private void linkLast(Entry entry) {
+        entry.prev = openEntries.prev;
+        entry.next = openEntries;
+        openEntries.prev.next = entry;
+        openEntries.prev = entry;
+    }
+
+    // must be called while holding the pool lock
+    private static void unlink(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private static final class Entry implements GCTileFile.ReadHandleBudget {
+
+        private final GCTileFilePool pool;
+        private final File file;
+        private GCTileFile tileFile;
+        // guarded by the pool, the links are null unless the entry is open
+        private Entry prev;
+        private Entry next;
+        private int useCount;
+        private int readHandleCount;
+
+        private Entry(GCTileFilePool pool, File file) {
+            this.pool = pool;
+            this.file = file;
+        }
+
+        private synchronized GCTileFile open() throws IOException {
+            if (tileFile == null) {
+                tileFile = pool.openTileFile(file, this);
+            }
+            return tileFile;
+        }
+
+        @Override
+        public boolean tryAcquire() {
+            synchronized (pool) {
+                if (pool.openFileCount + pool.readHandleCount >= pool.maxOpenFileCount) {
+                    return false;
+                }
+                pool.readHandleCount++;
+                readHandleCount++;
+                return true;
+            }
+        }
+
+        @Override
+        public void release() {
+            synchronized (pool) {
+                pool.readHandleCount--;
+                readHandleCount--;
+            }
+        }
+
+        private synchronized void closeIfEvicted(GCTileFilePool pool) {
+            synchronized (pool) {
+                if (next != null) {
+                    // the entry has been acquired again after its eviction
+                    return;
+                }
+            }
+            close();
+        }
+
+        private synchronized void close() {
+            if (tileFile != null) {
+                try {
+                    tileFile.close();
+                } catch (IOException e) {
+                    Debug.trace(e);
+                }
+                tileFile = null;
+            }
+        }
+    }
+}
@@ -16,10 +16,8 @@
 
 package org.esa.beam.dataio.globcover;
 
-import org.esa.beam.util.jai.JAIUtils;
 import org.esa.beam.util.jai.SingleBandedSampleModel;
 import org.esa.beam.util.math.MathUtils;
-import ucar.ma2.Array;
 
 import javax.media.jai.ImageLayout;
 import javax.media.jai.PlanarImage;
@@ -38,25 +36,32 @@ class GCTileImage extends SourcelessOpImage {
 
     private final String variableName;
     private final GCTileFile tileFile;
+    private final GCBandPrefetcher bandPrefetcher;
     private final int subsampling;
 
-    GCTileImage(GCTileFile tileFile, String variableName, int dataBufferType, int subsampling) {
-        this(createImageLayout(tileFile, subsampling, dataBufferType), tileFile, variableName, subsampling);
+    GCTileImage(GCTileFile tileFile, GCBandPrefetcher bandPrefetcher, String variableName, int dataBufferType,
+                int subsampling, BandDescriptor bandDescriptor) {
+        this(createImageLayout(tileFile, subsampling, dataBufferType, bandDescriptor), tileFile, bandPrefetcher,
+             variableName, subsampling);
     }
 
-    private GCTileImage(ImageLayout imageLayout, GCTileFile tileFile, String variableName, int subsampling) {
+    private GCTileImage(ImageLayout imageLayout, GCTileFile tileFile, GCBandPrefetcher bandPrefetcher,
+                        String variableName, int subsampling) {
         super(imageLayout, null, imageLayout.getSampleModel(null),
               0, 0, imageLayout.getWidth(null), imageLayout.getHeight(null));
         this.variableName = variableName;
         this.tileFile = tileFile;
+        this.bandPrefetcher = bandPrefetcher;
         this.subsampling = subsampling;
-
     }
 
-    private static ImageLayout createImageLayout(GCTileFile tileFile, int subsampling, int dataBufferType) {
+    private static ImageLayout createImageLayout(GCTileFile tileFile, int subsampling, int dataBufferType,
+                                                 BandDescriptor bandDescriptor) {
         int imageWidth = MathUtils.ceilInt(tileFile.getWidth() / (float) subsampling);
         int imageHeight = MathUtils.ceilInt(tileFile.getHeight() / (float) subsampling);
-        Dimension tileDimension = JAIUtils.computePreferredTileSize(imageWidth, imageHeight, 1);
+        // the tiles are aligned with the HDF chunks, if the chunk layout is known
+        Dimension tileDimension = GCChunkTiling.computeTileSize(imageWidth, imageHeight, bandDescriptor,
+                                                                subsampling, 0);
         SampleModel sampleModel = new SingleBandedSampleModel(dataBufferType,
                                                               tileDimension.width,
                                                               tileDimension.height);
@@ -77,13 +82,13 @@ class GCTileImage extends SourcelessOpImage {
 
     @Override
     protected void computeRect(PlanarImage[] planarImages, WritableRaster writableRaster, Rectangle rectangle) {
-        Array array;
+        Object data;
         try {
-            array = tileFile.readData(variableName,
-                                      rectangle.x * subsampling, rectangle.y * subsampling,
-                                      Math.min(1800, rectangle.width * subsampling),
-                                      Math.min(1800, rectangle.height * subsampling),
-                                      subsampling, subsampling);
+            data = bandPrefetcher.readData(tileFile, variableName,
+                                           rectangle.x * subsampling, rectangle.y * subsampling,
+                                           Math.min(1800, rectangle.width * subsampling),
+                                           Math.min(1800, rectangle.height * subsampling),
+                                           subsampling, subsampling);
         } catch (Exception e) {
             throw new RuntimeException("Could not read " + tileFile, e);
         }
@@ -91,7 +96,7 @@ class GCTileImage extends SourcelessOpImage {
             writableRaster.setDataElements(rectangle.x, rectangle.y,
                                            rectangle.width,
                                            rectangle.height,
-                                           array.getStorage());
+                                           data);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -18,16 +18,18 @@ package org.esa.beam.dataio.globcover;
 
 import com.bc.ceres.glevel.MultiLevelImage;
 import com.bc.ceres.glevel.support.DefaultMultiLevelImage;
+import org.esa.beam.framework.dataio.ProductSubsetDef;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.GeoPos;
 import org.esa.beam.framework.datamodel.Product;
 import org.esa.beam.util.io.FileUtils;
 
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
-import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -37,8 +39,13 @@ class GlobCoverMosaicProductReader extends AbstractGcProductReader {
     private static final String PRODUCT_TYPE_ANNUAL = "GC_MOSAIC_AN";
     private static final String PRODUCT_TYPE_BIMON = "GC_MOSAIC_BI";
 
-    private Map<TileIndex, GCTileFile> inputFileMap;
+    private GCMosaicCatalog catalog;
+    private GCTileFilePool tileFilePool;
+    private GCBandPrefetcher bandPrefetcher;
+    private GCOverviewCache overviewCache;
     private Area coveredImageArea;
+    // the region of the global mosaic covered by the product
+    private Rectangle mosaicRegion;
 
     protected GlobCoverMosaicProductReader(GlobCoverMosaicReaderPlugIn readerPlugIn) {
         super(readerPlugIn);
@@ -51,29 +58,89 @@ class GlobCoverMosaicProductReader extends AbstractGcProductReader {
 
     private Product createProduct() throws IOException {
         final File inputFile = getInputFile();
-        inputFileMap = createInputFileMap(inputFile);
-        coveredImageArea = createCoveredImageArea(inputFileMap.keySet());
-        final GCTileFile refGcFile = new GCTileFile(inputFile);
-        int width = (TileIndex.MAX_HORIZ_INDEX + 1) * TileIndex.TILE_SIZE;
-        int height = (TileIndex.MAX_VERT_INDEX + 1) * TileIndex.TILE_SIZE;
-        final String fileName = FileUtils.getFilenameWithoutExtension(new File(refGcFile.getFilePath()));
+        final File productDir = inputFile.getAbsoluteFile().getParentFile();
         // product name == file name without tile indeces
-        final String prodName = fileName.substring(0, fileName.lastIndexOf('_'));
-        final String prodType = getProductType(refGcFile);
+        final String prodName = getProductFilePrefix(inputFile);
+        final Rectangle globalRegion = new Rectangle((TileIndex.MAX_HORIZ_INDEX + 1) * TileIndex.TILE_SIZE,
+                                                     (TileIndex.MAX_VERT_INDEX + 1) * TileIndex.TILE_SIZE);
+        mosaicRegion = getSubsetRegion(getSubsetDef(), globalRegion);
+        catalog = getCatalog(inputFile, productDir, prodName);
+        // tile files are only registered here, they are opened when first read
+        tileFilePool = new GCTileFilePool(getIntersectingTileFiles(catalog.getTileFileMap(), mosaicRegion));
+        bandPrefetcher = new GCBandPrefetcher();
+        coveredImageArea = createCoveredImageArea(tileFilePool.getTileIndexes(), mosaicRegion);
+        if (mosaicRegion.equals(globalRegion)) {
+            overviewCache = GCOverviewCache.createDefault(prodName, productDir, catalog.getTileFileMap());
+        }
+        final String prodType = getProductType(catalog);
+
+        return createProduct(catalog, prodName, prodType, mosaicRegion.width, mosaicRegion.height);
+    }
+
+    // a spatial subset is applied here, so only the tile files intersecting it are registered;
+    // sub-sampling is rejected, since lower resolutions are served by the levels of the band images
+    static Rectangle getSubsetRegion(ProductSubsetDef subsetDef, Rectangle globalRegion) throws IOException {
+        if (subsetDef == null) {
+            return globalRegion;
+        }
+        if (subsetDef.getSubSamplingX() != 1 || subsetDef.getSubSamplingY() != 1) {
+            throw new IOException("Sub-sampling is not supported for GlobCover mosaics.");
+        }
+        if (subsetDef.getRegion() == null) {
+            return globalRegion;
+        }
+        final Rectangle region = subsetDef.getRegion().intersection(globalRegion);
+        if (region.isEmpty()) {
+            throw new IOException("The subset region does not intersect the mosaic: " + subsetDef.getRegion());
+        }
+        return region;
+    }
+
+    static Map<TileIndex, File> getIntersectingTileFiles(Map<TileIndex, File> tileFileMap, Rectangle region) {
+        final Map<TileIndex, File> intersectingTileFiles = new TreeMap<TileIndex, File>();
+        for (final Map.Entry<TileIndex, File> entry : tileFileMap.entrySet()) {
+            if (entry.getKey().getBounds().intersects(region)) {
+                intersectingTileFiles.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return intersectingTileFiles;
+    }
 
-        return createProduct(refGcFile, prodName, prodType, width, height);
+    private GCMosaicCatalog getCatalog(File inputFile, File productDir, String prodName) throws IOException {
+        final GCMosaicCatalogCache catalogCache = GCMosaicCatalogCache.createDefault();
+        GCMosaicCatalog catalog = catalogCache.read(prodName, productDir);
+        if (catalog == null) {
+            final Map<TileIndex, File> inputFileMap = createInputFileMap(inputFile);
+            final GCTileFile refGcFile = new GCTileFile(inputFile);
+            try {
+                catalog = GCMosaicCatalog.create(refGcFile, inputFileMap, false);
+            } finally {
+                refGcFile.close();
+            }
+            catalogCache.write(prodName, productDir, catalog);
+        }
+        return catalog;
     }
 
 
     @Override
     protected MultiLevelImage getMultiLevelImage(Band band) {
-        return new DefaultMultiLevelImage(new GCMosaicMultiLevelSource(band, inputFileMap, coveredImageArea));
+        return new DefaultMultiLevelImage(new GCMosaicMultiLevelSource(band, tileFilePool, bandPrefetcher,
+                                                                         overviewCache,
+                                                                         catalog.getBandDescriptor(band.getName()),
+                                                                         mosaicRegion.getLocation(),
+                                                                         coveredImageArea));
     }
 
     @Override
     protected GeoPos getUpperLeftPosition() throws IOException {
-        float lon = -180.0f + 0.5f * 1 / 360.0f;
-        float lat = 90.0f - 0.5f * 1 / 360.0f;
+        return getUpperLeftPosition(mosaicRegion);
+    }
+
+    // the centre of the upper left pixel of a region of the global mosaic
+    static GeoPos getUpperLeftPosition(Rectangle region) {
+        float lon = -180.0f + (region.x + 0.5f) * 1 / 360.0f;
+        float lat = 90.0f - (region.y + 0.5f) * 1 / 360.0f;
         return new GeoPos(lat, lon);
     }
 
@@ -89,18 +156,21 @@ class GlobCoverMosaicProductReader extends AbstractGcProductReader {
 
     @Override
     public void close() throws IOException {
-        for (GCTileFile tileFile : inputFileMap.values()) {
-            tileFile.close();
+        if (overviewCache != null) {
+            overviewCache.close();
+        }
+        if (tileFilePool != null) {
+            tileFilePool.close();
         }
         super.close();
     }
 
-    private Map<TileIndex, GCTileFile> createInputFileMap(File refFile) throws IOException {
+    private Map<TileIndex, File> createInputFileMap(File refFile) {
         File dir = refFile.getParentFile();
         final String filePrefix = getProductFilePrefix(refFile);
         final File[] files = dir.listFiles(new MosaicFileFilter(filePrefix));
 
-        Map<TileIndex, GCTileFile> fileMap = new TreeMap<TileIndex, GCTileFile>();
+        Map<TileIndex, File> fileMap = new TreeMap<TileIndex, File>();
         for (File file : files) {
             final String filename = FileUtils.getFilenameWithoutExtension(file);
             final String tilePos = filename.substring(filename.lastIndexOf('_') + 1, filename.length());
@@ -108,16 +178,18 @@ class GlobCoverMosaicProductReader extends AbstractGcProductReader {
             int horizIndex = Integer.parseInt(tileIndices[0].substring(1));   // has H as prefix
             int vertIndex = Integer.parseInt(tileIndices[1]);    // has no V as prefix
             final TileIndex tileIndex = new TileIndex(horizIndex, vertIndex);
-            fileMap.put(tileIndex, new GCTileFile(file));
+            fileMap.put(tileIndex, file);
         }
-        return Collections.unmodifiableMap(fileMap);
+        return fileMap;
     }
 
-    private static Area createCoveredImageArea(Set<TileIndex> tileIndexes) {
+    static Area createCoveredImageArea(Set<TileIndex> tileIndexes, Rectangle region) {
         Area coveredImageArea = new Area();
         for (TileIndex index : tileIndexes) {
-            coveredImageArea.add(new Area(index.getBounds()));
+            coveredImageArea.add(new Area(index.getBounds().intersection(region)));
         }
+        // in image coordinates of the product
+        coveredImageArea.transform(AffineTransform.getTranslateInstance(-region.x, -region.y));
         return coveredImageArea;
     }
 
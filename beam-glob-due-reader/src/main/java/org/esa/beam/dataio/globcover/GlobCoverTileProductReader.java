@@ -31,13 +31,16 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 
 class GlobCoverTileProductReader extends AbstractGcProductReader {
 
     private static final String PRODUCT_TYPE_ANNUAL = "GC_TILE_AN";
     private static final String PRODUCT_TYPE_BIMON = "GC_TILE_BI";
 
+    private GCMosaicCatalog catalog;
     private GCTileFile gcTileFile;
+    private final GCBandPrefetcher bandPrefetcher = new GCBandPrefetcher();
 
     protected GlobCoverTileProductReader(GlobCoverTileReaderPlugIn readerPlugIn) {
         super(readerPlugIn);
@@ -49,21 +52,31 @@ class GlobCoverTileProductReader extends AbstractGcProductReader {
     }
 
     private Product createProduct() throws IOException {
-        gcTileFile = new GCTileFile(getInputFile());
-        int width = gcTileFile.getWidth();
-        final File fileLocation = new File(gcTileFile.getFilePath());
-        int height = gcTileFile.getHeight();
-        final String prodName = FileUtils.getFilenameWithoutExtension(fileLocation);
-        final String prodType = getProductType(gcTileFile);
+        final File inputFile = getInputFile();
+        final String prodName = FileUtils.getFilenameWithoutExtension(inputFile);
+        final GCMosaicCatalogCache catalogCache = GCMosaicCatalogCache.createDefault();
+        final File productDir = inputFile.getAbsoluteFile().getParentFile();
+        catalog = catalogCache.read(prodName, productDir);
+        if (catalog == null) {
+            catalog = GCMosaicCatalog.create(getTileFile(), Collections.<TileIndex, File>emptyMap(), true);
+            catalogCache.write(prodName, productDir, catalog);
+        }
+        final String prodType = getProductType(catalog);
 
-        final GCTileFile refGcFile = gcTileFile;
+        return createProduct(catalog, prodName, prodType, catalog.getWidth(), catalog.getHeight());
+    }
 
-        return createProduct(refGcFile, prodName, prodType, width, height);
+    // the tile file is opened when first read, unless it has been opened for creating the catalog
+    private synchronized GCTileFile getTileFile() throws IOException {
+        if (gcTileFile == null) {
+            gcTileFile = new GCTileFile(getInputFile());
+        }
+        return gcTileFile;
     }
 
     @Override
     protected GeoPos getUpperLeftPosition() throws IOException {
-        return gcTileFile.getUpperLeftCorner();
+        return catalog.getUpperLeftCorner();
     }
 
     @Override
@@ -77,7 +90,12 @@ class GlobCoverTileProductReader extends AbstractGcProductReader {
             protected RenderedImage createImage(int level) {
                 int scale = MathUtils.ceilInt(getModel().getScale(level));
                 int bufferType = ImageManager.getDataBufferType(band.getDataType());
-                return new GCTileImage(gcTileFile, band.getName(), bufferType, scale);
+                try {
+                    return new GCTileImage(getTileFile(), bandPrefetcher, band.getName(), bufferType, scale,
+                                           catalog.getBandDescriptor(band.getName()));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not open " + getInput(), e);
+                }
             }
         };
         return new DefaultMultiLevelImage(levelSource);
@@ -95,7 +113,7 @@ class GlobCoverTileProductReader extends AbstractGcProductReader {
 
 
     @Override
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
         if (gcTileFile != null) {
             gcTileFile.close();
             gcTileFile = null;
@@ -28,6 +28,9 @@ class TileIndex implements Comparable {
     public static final int TILE_SIZE = 1800;
     public static final int MAX_HORIZ_INDEX = 71;
     public static final int MAX_VERT_INDEX = 35;
+    public static final int HORIZ_TILE_COUNT = MAX_HORIZ_INDEX + 1;
+    public static final int VERT_TILE_COUNT = MAX_VERT_INDEX + 1;
+    public static final int TILE_COUNT = HORIZ_TILE_COUNT * VERT_TILE_COUNT;
 
     private final int horizIndex;
     private final int vertIndex;
@@ -37,10 +40,25 @@ class TileIndex implements Comparable {
     TileIndex(int horizIndex, int vertIndex) {
         this.horizIndex = horizIndex;
         this.vertIndex = vertIndex;
-        index = horizIndex + MAX_HORIZ_INDEX * vertIndex;
+        index = getIndex(horizIndex, vertIndex);
         bounds = new Rectangle(horizIndex * TILE_SIZE, vertIndex * TILE_SIZE, TILE_SIZE, TILE_SIZE);
     }
 
+    /**
+     * Returns the position of a tile in a flat array holding all tiles of the mosaic row by row.
+     *
+     * @param horizIndex the horizontal index of the tile.
+     * @param vertIndex  the vertical index of the tile.
+     * @return the position of the tile.
+     */
+    static int getIndex(int horizIndex, int vertIndex) {
+        return horizIndex + HORIZ_TILE_COUNT * vertIndex;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
     public Rectangle getBounds() {
         return bounds;
     }
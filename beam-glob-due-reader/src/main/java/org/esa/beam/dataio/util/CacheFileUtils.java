@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.util;
+
+import org.esa.beam.util.SystemUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Utility methods shared by the readers which persist derived data, like catalogs, indexes
+ * and overviews, in cache files.
+ * <p/>
+ * Cache files reside in a directory of their own within the BEAM application data directory
+ * of the user, so they are reused across sessions. Each cache file starts with a magic number
+ * and a version number identifying its format, and is always written to a temporary file first,
+ * which then replaces the cache file in one step. Concurrent readers and processes therefore
+ * never see a partially written cache file.
+ * <p/>
+ * A cache is not essential for reading a product, so failures to write a cache file are
+ * usually not reported, and invalid cache files are ignored and overwritten.
+ */
+public class CacheFileUtils {
+
+    private static final String CACHE_DIR_NAME = "beam-glob-due-reader";
+
+    private CacheFileUtils() {
+    }
+
+    /**
+     * Returns a cache directory within the BEAM application data directory of the user. The
+     * directory is not created.
+     *
+     * @param name the name of the cache directory.
+     * @return the cache directory.
+     */
+    public static File getCacheDir(String name) {
+        return new File(new File(SystemUtils.getApplicationDataDir(), CACHE_DIR_NAME), name);
+    }
+
+    /**
+     * Creates a cache directory unless it exists.
+     *
+     * @param cacheDir the cache directory.
+     * @return {@code true} if the directory exists, {@code false} if it cannot be created.
+     */
+    public static boolean makeCacheDir(File cacheDir) {
+        return cacheDir.isDirectory() || cacheDir.mkdirs();
+    }
+
+    /**
+     * Returns the canonical path of a file, or the absolute path if the canonical path cannot
+     * be determined.
+     *
+     * @param file the file.
+     * @return the path.
+     */
+    public static String getPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Returns a prefix for the names of the cache files derived from a file or directory.
+     * Files and directories of the same name at different locations get different prefixes.
+     *
+     * @param name the name of the product, which is a part of the prefix.
+     * @param file the file or directory of the product.
+     * @return the prefix.
+     */
+    public static String getFilePrefix(String name, File file) {
+        return String.format("%s-%08x", name, getPath(file).hashCode());
+    }
+
+    /**
+     * Creates a temporary file in the directory of a cache file. Every writer has its own
+     * temporary file, so concurrent writers do not collide.
+     *
+     * @param cacheFile the cache file.
+     * @return the temporary file.
+     * @throws IOException if the temporary file cannot be created.
+     */
+    public static File createTempFile(File cacheFile) throws IOException {
+        return File.createTempFile(cacheFile.getName(), null, cacheFile.getParentFile());
+    }
+
+    /**
+     * Replaces a cache file by a completely written temporary file. Where a file cannot be
+     * renamed onto an existing file, the existing file is deleted first.
+     *
+     * @param tempFile  the temporary file.
+     * @param cacheFile the cache file.
+     * @return {@code true} if the cache file has been replaced, {@code false} otherwise.
+     */
+    public static boolean replace(File tempFile, File cacheFile) {
+        return tempFile.renameTo(cacheFile) || cacheFile.delete() && tempFile.renameTo(cacheFile);
+    }
+
+    /**
+     * Puts the header of a cache file into a buffer.
+     *
+     * @param buffer  the buffer.
+     * @param magic   the magic number identifying the kind of cache file.
+     * @param version the version of the file format.
+     */
+    public static void putHeader(ByteBuffer buffer, int magic, int version) {
+        buffer.putInt(magic);
+        buffer.putInt(version);
+    }
+
+    /**
+     * Reads the header of a cache file from a buffer.
+     *
+     * @param buffer  the buffer.
+     * @param magic   the expected magic number.
+     * @param version the expected version of the file format.
+     * @return {@code true} if the header is as expected, {@code false} otherwise.
+     */
+    public static boolean getHeader(ByteBuffer buffer, int magic, int version) {
+        return buffer.getInt() == magic && buffer.getInt() == version;
+    }
+
+    /**
+     * Writes the header of a cache file.
+     *
+     * @param out     the output.
+     * @param magic   the magic number identifying the kind of cache file.
+     * @param version the version of the file format.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static void writeHeader(DataOutput out, int magic, int version) throws IOException {
+        out.writeInt(magic);
+        out.writeInt(version);
+    }
+
+    /**
+     * Reads the header of a cache file.
+     *
+     * @param in      the input.
+     * @param magic   the expected magic number.
+     * @param version the expected version of the file format.
+     * @return {@code true} if the header is as expected, {@code false} otherwise.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static boolean readHeader(DataInput in, int magic, int version) throws IOException {
+        return in.readInt() == magic && in.readInt() == version;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache bounded by the total weight of its values, usually their size in
+ * bytes. When a value is added and the total weight exceeds the maximum weight, the least
+ * recently used values are evicted. Values heavier than the maximum weight are not added at
+ * all, so a maximum weight of zero disables the cache.
+ * <p/>
+ * Cached values are shared by all threads and must not be modified. Two threads missing
+ * the same value at the same time may both compute it, in which case the value is cached
+ * once.
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ */
+public abstract class WeighedLruCache<K, V> {
+
+    private final long maxWeight;
+    // guarded by itself, in access order, so the least recently used value comes first
+    private final LinkedHashMap<K, V> values;
+    private long weight;
+
+    // statistics
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param maxWeight the maximum total weight of the cached values, must not be negative.
+     * @throws IllegalArgumentException if {@code maxWeight} is negative.
+     */
+    protected WeighedLruCache(long maxWeight) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("maxWeight < 0");
+        }
+        this.maxWeight = maxWeight;
+        values = new LinkedHashMap<K, V>(64, 0.75f, true);
+    }
+
+    /**
+     * Returns the weight of a value.
+     *
+     * @param value the value.
+     * @return the weight, usually the approximate size of the value in bytes.
+     */
+    protected abstract long weigh(V value);
+
+    /**
+     * @return the maximum total weight of the cached values.
+     */
+    public final long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Returns a cached value and counts the access as hit or miss.
+     *
+     * @param key the key.
+     * @return the value, or {@code null} if no value is cached for the key.
+     */
+    public final V get(K key) {
+        final V value;
+        synchronized (values) {
+            value = values.get(key);
+        }
+        if (value != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Adds a value, evicting the least recently used values if the total weight exceeds
+     * the maximum weight. A value heavier than the maximum weight is not added.
+     *
+     * @param key   the key.
+     * @param value the value, which must not be modified afterwards.
+     */
+    public final void put(K key, V value) {
+        final long valueWeight = weigh(value);
+        if (valueWeight > maxWeight) {
+            return;
+        }
+        synchronized (values) {
+            final V previous = values.put(key, value);
+            weight += valueWeight;
+            if (previous != null) {
+                weight -= weigh(previous);
+            }
+            final Iterator<V> iterator = values.values().iterator();
+            while (weight > maxWeight && iterator.hasNext()) {
+                weight -= weigh(iterator.next());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all values.
+     */
+    public final void clear() {
+        synchronized (values) {
+            values.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * @return the total weight of the cached values.
+     */
+    public final long getWeight() {
+        synchronized (values) {
+            return weight;
+        }
+    }
+
+    /**
+     * @return the number of accesses which found a cached value.
+     */
+    public final long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of accesses which found no cached value.
+     */
+    public final long getMissCount() {
+        return missCount.get();
+    }
+}
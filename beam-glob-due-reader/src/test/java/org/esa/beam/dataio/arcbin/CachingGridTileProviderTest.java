@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.arcbin;
+
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.awt.image.DataBuffer;
+
+import static junit.framework.Assert.*;
+
+public class CachingGridTileProviderTest {
+
+    private static final Dimension GRID_TILE_SIZE = new Dimension(256, 4);
+    private static final int TILE_SIZE = 256 * 4;
+    private static final int TILE_BYTES = TILE_SIZE * 4;
+
+    @Test
+    public void testDecodedTilesAreReused() {
+        final CountingProvider decoder = new CountingProvider();
+        final CachingGridTileProvider provider = createProvider(decoder, 10 * TILE_BYTES);
+
+        assertEquals(3, readData(provider, 3)[0]);
+        assertEquals(3, readData(provider, 3)[TILE_SIZE - 1]);
+        readData(provider, 3);
+        assertEquals(1, decoder.count);
+        assertEquals(2, provider.getHitCount());
+        assertEquals(1, provider.getMissCount());
+        assertEquals(TILE_BYTES, provider.getSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTilesAreDropped() {
+        final CountingProvider decoder = new CountingProvider();
+        final CachingGridTileProvider provider = createProvider(decoder, 2 * TILE_BYTES);
+
+        readData(provider, 0);
+        readData(provider, 1);
+        readData(provider, 0);
+        readData(provider, 2); // drops tile 1
+        assertEquals(3, decoder.count);
+        assertEquals(2 * TILE_BYTES, provider.getSize());
+
+        readData(provider, 0);
+        assertEquals(3, decoder.count);
+        assertEquals(1, readData(provider, 1)[0]);
+        assertEquals(4, decoder.count);
+    }
+
+    @Test
+    public void testDisabledCache() {
+        final CountingProvider decoder = new CountingProvider();
+        final CachingGridTileProvider provider = createProvider(decoder, 0);
+
+        readData(provider, 0);
+        assertEquals(5, readData(provider, 5)[0]);
+        assertEquals(2, decoder.count);
+        assertEquals(0, provider.getSize());
+        assertEquals(2, provider.getMissCount());
+    }
+
+    @Test
+    public void testSubsampledCopy() {
+        final CountingProvider decoder = new CountingProvider();
+        final CachingGridTileProvider provider = createProvider(decoder, 10 * TILE_BYTES);
+
+        readData(provider, 7);
+        final int[] data = new int[2 * 128];
+        provider.readData(7, GridTileWriter.create(data, GRID_TILE_SIZE, 0, 128, 2));
+        assertEquals(1, provider.getHitCount());
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(7, data[i]);
+        }
+    }
+
+    @Test
+    public void testClear() {
+        final CountingProvider decoder = new CountingProvider();
+        final CachingGridTileProvider provider = createProvider(decoder, 10 * TILE_BYTES);
+
+        readData(provider, 0);
+        provider.clear();
+        assertEquals(0, provider.getSize());
+        readData(provider, 0);
+        assertEquals(2, decoder.count);
+    }
+
+    private static CachingGridTileProvider createProvider(GridTileProvider decoder, long maxSize) {
+        return new CachingGridTileProvider(decoder, GRID_TILE_SIZE, DataBuffer.TYPE_INT, maxSize);
+    }
+
+    private static int[] readData(GridTileProvider provider, int tileIndex) {
+        final int[] data = new int[TILE_SIZE];
+        provider.readData(tileIndex, GridTileWriter.create(data, GRID_TILE_SIZE, 0, GRID_TILE_SIZE.width, 1));
+        return data;
+    }
+
+    private static class CountingProvider implements GridTileProvider {
+
+        int count;
+
+        @Override
+        public void readData(int tileIndex, GridTileWriter writer) {
+            count++;
+            writer.fillInt(0, TILE_SIZE, tileIndex);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.arcbin;
+
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+
+import static junit.framework.Assert.*;
+
+public class ClassHistogramWriterTest {
+
+    private static final Dimension GRID_TILE_SIZE = new Dimension(8, 4);
+    private static final int NODATA = 255;
+
+    @Test
+    public void testRunsAreCounted() {
+        final ClassHistogram histogram = new ClassHistogram(false);
+        final ClassHistogramWriter writer = createWriter(histogram, new Rectangle(0, 0, 100, 100), null);
+        writer.fillInt(0, 20, 3);
+        writer.fillInt(20, 10, NODATA);
+        writer.setInt(30, 70000);
+        writer.setInt(31, -1);
+
+        assertEquals(20, histogram.getPixelCount(3));
+        assertEquals(0, histogram.getPixelCount(NODATA));
+        assertEquals(1, histogram.getPixelCount(70000));
+        assertEquals(1, histogram.getPixelCount(-1));
+        assertEquals(22, histogram.getTotalPixelCount());
+        assertTrue(Double.isNaN(histogram.getArea(3)));
+        // the area of a class which does not occur is unknown, too
+        assertTrue(Double.isNaN(histogram.getArea(4)));
+        assertTrue(Double.isNaN(histogram.getArea(-7)));
+
+        final int[] classes = histogram.getClasses();
+        assertEquals(3, classes.length);
+        assertEquals(-1, classes[0]);
+        assertEquals(3, classes[1]);
+        assertEquals(70000, classes[2]);
+    }
+
+    @Test
+    public void testRunsAreClippedToRegion() {
+        final ClassHistogram histogram = new ClassHistogram(true);
+        // the grid tile is located at (16, 8), the region covers columns 18 to 21 of rows 9 and 10
+        final ClassHistogramWriter writer = createWriter(histogram, new Rectangle(18, 9, 4, 2),
+                                                         new double[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 1.5, 2.5, 0});
+        writer.fillInt(0, 32, 7);
+        assertEquals(8, histogram.getPixelCount(7));
+        assertEquals(4 * 1.5 + 4 * 2.5, histogram.getArea(7), 1.0e-10);
+        assertEquals(0.0, histogram.getArea(4), 0.0);
+        assertEquals(0.0, histogram.getArea(-7), 0.0);
+
+        writer.fillInt(9, 3, 5); // columns 17 to 19 of row 9
+        assertEquals(2, histogram.getPixelCount(5));
+    }
+
+    @Test
+    public void testCopy() {
+        final ClassHistogram histogram = new ClassHistogram(false);
+        final ClassHistogramWriter writer = createWriter(histogram, new Rectangle(0, 0, 100, 100), null);
+        final byte[] tileData = new byte[32];
+        for (int i = 0; i < tileData.length; i++) {
+            tileData[i] = (byte) (i < 12 ? 200 : 4);
+        }
+        writer.copy(tileData);
+        assertEquals(12, histogram.getPixelCount(200));
+        assertEquals(20, histogram.getPixelCount(4));
+    }
+
+    @Test
+    public void testMerge() {
+        final ClassHistogram histogram1 = new ClassHistogram(true);
+        histogram1.add(1, 10, 1.0);
+        histogram1.add(-5, 2, 0.5);
+        final ClassHistogram histogram2 = new ClassHistogram(true);
+        histogram2.add(1, 30, 3.0);
+        histogram2.add(-5, 1, 0.25);
+
+        histogram1.add(histogram2);
+        assertEquals(40, histogram1.getPixelCount(1));
+        assertEquals(4.0, histogram1.getArea(1), 1.0e-10);
+        assertEquals(3, histogram1.getPixelCount(-5));
+        assertEquals(0.75, histogram1.getArea(-5), 1.0e-10);
+        assertEquals(40 / 43.0, histogram1.getFrequency(1), 1.0e-10);
+    }
+
+    private static ClassHistogramWriter createWriter(ClassHistogram histogram, Rectangle region, double[] rowAreas) {
+        final int tileX = rowAreas != null ? 16 : 0;
+        final int tileY = rowAreas != null ? 8 : 0;
+        return new ClassHistogramWriter(histogram, GRID_TILE_SIZE, tileX, tileY, region, NODATA, rowAreas);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.arcbin;
+
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+
+import static junit.framework.Assert.*;
+import static org.esa.beam.dataio.arcbin.ArcBinGridConstants.*;
+import static org.esa.beam.dataio.arcbin.TestGridFiles.tile;
+
+public class GridClassCounterTest {
+
+    private static final Dimension GRID_TILE_SIZE = new Dimension(8, 4);
+
+    @Test
+    public void testCountWholeGrid() throws IOException {
+        // a grid of 4 by 5 grid tiles, of which the last column and row are partly outside of the grid
+        final GridClassCounter counter = createCounter(30, 18);
+        final ClassHistogram histogram = counter.count(new Rectangle(30, 18));
+        assertEquals(30 * 18, histogram.getTotalPixelCount());
+        // the class of each grid tile is its index
+        assertEquals(32, histogram.getPixelCount(0));
+        assertEquals(6 * 4, histogram.getPixelCount(3));
+        assertEquals(8 * 2, histogram.getPixelCount(16));
+        assertEquals(6 * 2, histogram.getPixelCount(19));
+    }
+
+    @Test
+    public void testCountRegion() throws IOException {
+        final GridClassCounter counter = createCounter(30, 18);
+        final ClassHistogram histogram = counter.count(new Rectangle(6, 2, 4, 4));
+        assertEquals(16, histogram.getTotalPixelCount());
+        assertEquals(4, histogram.getPixelCount(0));
+        assertEquals(4, histogram.getPixelCount(1));
+        assertEquals(4, histogram.getPixelCount(4));
+        assertEquals(4, histogram.getPixelCount(5));
+    }
+
+    @Test
+    public void testCountOutsideGrid() throws IOException {
+        final GridClassCounter counter = createCounter(30, 18);
+        assertEquals(0, counter.count(new Rectangle(40, 0, 10, 10)).getTotalPixelCount());
+    }
+
+    @Test
+    public void testUnreadableTileFailsCounting() {
+        final IntegerGridTileDecoder decoder = new IntegerGridTileDecoder() {
+            @Override
+            public void readData(int tileIndex, IntegerGridTileWriter writer) throws IOException {
+                throw new IOException("Raster data file has been closed.");
+            }
+        };
+        final GridClassCounter counter = new GridClassCounter(decoder, 4, GRID_TILE_SIZE, 30, 18, 255, null);
+        try {
+            counter.count(new Rectangle(30, 18));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testCountEncodedTiles() throws IOException {
+        // a grid of 2 by 2 grid tiles, whose runs are counted without expanding them
+        final File rasterFile = File.createTempFile("w001001", ".adf");
+        final File indexFile = File.createTempFile("w001001x", ".adf");
+        try {
+            TestGridFiles.write(rasterFile, indexFile,
+                                tile(RLE_8BIT, 1, 0, 10, 1, 22, 2),
+                                tile(RUN_MIN, 1, 9, 4, 256 - 6, 0),
+                                tile(RUN_8BIT, 0, 0, 3, 5, 5, 6, 256 - 5, 0, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+                                     7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7),
+                                tile(CONST_BLOCK, 1, 3));
+            final RasterDataFile rasterDataFile = RasterDataFile.create(rasterFile);
+            try {
+                final IntegerGridTileProvider decoder = new IntegerGridTileProvider(
+                        rasterDataFile, TileIndex.create(indexFile, 4), 255, GRID_TILE_SIZE);
+                final GridClassCounter counter = new GridClassCounter(decoder, 2, GRID_TILE_SIZE, 16, 8, 255, null);
+
+                final ClassHistogram histogram = counter.count(new Rectangle(16, 8));
+                assertEquals(4 * 32 - 6 - 5, histogram.getTotalPixelCount());
+                assertEquals(10, histogram.getPixelCount(1));
+                assertEquals(22, histogram.getPixelCount(2));
+                assertEquals(26, histogram.getPixelCount(9));
+                assertEquals(2, histogram.getPixelCount(5));
+                assertEquals(1, histogram.getPixelCount(6));
+                assertEquals(24, histogram.getPixelCount(7));
+                assertEquals(32, histogram.getPixelCount(3));
+                assertEquals(0, histogram.getPixelCount(255));
+
+                // a region covering the inner corners of all grid tiles
+                final ClassHistogram regionHistogram = counter.count(new Rectangle(4, 2, 8, 4));
+                assertEquals(28, regionHistogram.getTotalPixelCount());
+                assertEquals(8, regionHistogram.getPixelCount(2));
+                assertEquals(8, regionHistogram.getPixelCount(9));
+                assertEquals(4, regionHistogram.getPixelCount(7));
+                assertEquals(8, regionHistogram.getPixelCount(3));
+                assertEquals(0, regionHistogram.getPixelCount(5));
+            } finally {
+                rasterDataFile.close();
+            }
+        } finally {
+            rasterFile.delete();
+            indexFile.delete();
+        }
+    }
+
+    @Test
+    public void testRowAreas() {
+        final double[] rowAreas = GridClassCounter.createRowAreas(90.0, 1.0, 1.0, 180);
+        double sum = 0.0;
+        for (final double area : rowAreas) {
+            sum += 360 * area;
+        }
+        // the surface of the authalic sphere
+        assertEquals(4 * Math.PI * 6371.0072 * 6371.0072, sum, 1.0);
+        assertTrue(rowAreas[90] > rowAreas[0]);
+        assertEquals(rowAreas[10], rowAreas[169], 1.0e-6);
+
+        assertNull(GridClassCounter.createRowAreas(100000.0, 30.0, 30.0, 100));
+    }
+
+    private static GridClassCounter createCounter(int width, int height) {
+        final IntegerGridTileDecoder decoder = new IntegerGridTileDecoder() {
+            @Override
+            public void readData(int tileIndex, IntegerGridTileWriter writer) {
+                writer.fillInt(0, GRID_TILE_SIZE.width * GRID_TILE_SIZE.height, tileIndex);
+            }
+        };
+        return new GridClassCounter(decoder, 4, GRID_TILE_SIZE, width, height, 255, null);
+    }
+}
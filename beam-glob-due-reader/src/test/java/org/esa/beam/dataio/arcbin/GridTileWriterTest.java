@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.arcbin;
+
+import org.junit.Test;
+
+import java.awt.Dimension;
+
+import static junit.framework.Assert.*;
+
+public class GridTileWriterTest {
+
+    private static final Dimension GRID_TILE_SIZE = new Dimension(8, 4);
+
+    @Test
+    public void testFullResolution() {
+        final int[] data = new int[10 * 6];
+        final GridTileWriter writer = GridTileWriter.create(data, GRID_TILE_SIZE, 10 + 1, 10, 1);
+        writer.fillInt(0, 8, 1);
+        writer.fillInt(8, 10, 2); // spans two lines
+        writer.setInt(31, 3);
+
+        assertEquals(0, data[10]);
+        assertEquals(1, data[11]);
+        assertEquals(1, data[18]);
+        assertEquals(0, data[19]);
+        assertEquals(2, data[21]);
+        assertEquals(2, data[28]);
+        assertEquals(2, data[31]);
+        assertEquals(2, data[32]);
+        assertEquals(0, data[33]);
+        assertEquals(3, data[48]);
+    }
+
+    @Test
+    public void testContiguous() {
+        final short[] data = new short[32];
+        final GridTileWriter writer = GridTileWriter.create(data, GRID_TILE_SIZE, 0, 8, 1);
+        writer.fillInt(5, 20, 7);
+        writer.setFloat(30, 4.0f);
+
+        assertEquals(0, data[4]);
+        assertEquals(7, data[5]);
+        assertEquals(7, data[24]);
+        assertEquals(0, data[25]);
+        assertEquals(4, data[30]);
+    }
+
+    @Test
+    public void testSubsampling() {
+        // every second sample of every second line is written into a raster of 4 by 2
+        final byte[] data = new byte[4 * 2];
+        final GridTileWriter writer = GridTileWriter.create(data, GRID_TILE_SIZE, 0, 4, 2);
+        for (int i = 0; i < 32; i++) {
+            writer.setInt(i, i);
+        }
+        assertEquals(0, data[0]);
+        assertEquals(2, data[1]);
+        assertEquals(6, data[3]);
+        assertEquals(16, data[4]);
+        assertEquals(22, data[7]);
+
+        writer.fillInt(1, 4, 9); // samples 2 and 4 of the first line
+        assertEquals(0, data[0]);
+        assertEquals(9, data[1]);
+        assertEquals(9, data[2]);
+        assertEquals(6, data[3]);
+
+        writer.fillInt(8, 8, 5); // a skipped line
+        assertEquals(16, data[4]);
+    }
+
+    @Test
+    public void testCopy() {
+        final float[] tileData = new float[32];
+        for (int i = 0; i < tileData.length; i++) {
+            tileData[i] = i;
+        }
+        final float[] data = new float[4 * 2];
+        GridTileWriter.create(data, GRID_TILE_SIZE, 0, 4, 2).copy(tileData);
+        assertEquals(0.0f, data[0], 0.0f);
+        assertEquals(6.0f, data[3], 0.0f);
+        assertEquals(16.0f, data[4], 0.0f);
+        assertEquals(22.0f, data[7], 0.0f);
+
+        final float[] fullData = new float[10 * 4];
+        GridTileWriter.create(fullData, GRID_TILE_SIZE, 2, 10, 1).copy(tileData);
+        assertEquals(0.0f, fullData[2], 0.0f);
+        assertEquals(7.0f, fullData[9], 0.0f);
+        assertEquals(8.0f, fullData[12], 0.0f);
+        assertEquals(31.0f, fullData[39], 0.0f);
+    }
+}
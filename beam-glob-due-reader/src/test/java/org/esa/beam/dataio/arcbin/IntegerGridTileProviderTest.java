@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.arcbin;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static junit.framework.Assert.*;
+import static org.esa.beam.dataio.arcbin.ArcBinGridConstants.*;
+import static org.esa.beam.dataio.arcbin.TestGridFiles.tile;
+
+public class IntegerGridTileProviderTest {
+
+    private static final Dimension GRID_TILE_SIZE = new Dimension(8, 4);
+    private static final int SIZE = GRID_TILE_SIZE.width * GRID_TILE_SIZE.height;
+    private static final int NODATA = -9999;
+
+    private File rasterFile;
+    private File indexFile;
+    private byte[][] tiles;
+    private RasterDataFile rasterDataFile;
+    private IntegerGridTileProvider provider;
+
+    @Before
+    public void setUp() throws IOException {
+        final Random random = new Random(5);
+        tiles = new byte[][]{
+                tile(CONST_BLOCK, 1, 5),
+                tile(CONST_BLOCK, 0, 0),
+                tile(RAW_1BIT, 1, 3, 0x81, 0x0f, 0xf0, 0x55),
+                tile(RAW_4BIT, 1, 2, randomBytes(random, 16)),
+                // a negative minimum of a single byte
+                tile(RAW_8BIT, 1, -3, randomBytes(random, 32)),
+                tile(RAW_16BIT, 2, 100, randomBytes(random, 64)),
+                tile(RAW_32BIT, 0, 0, randomBytes(random, 128)),
+                // a run of length zero extends to the end of the tile
+                tile(RLE_8BIT, 1, 7, 5, 10, 3, 200, 0, 4),
+                // the last run overshoots the tile
+                tile(RLE_8BIT, 1, 0, 30, 1, 40, 2),
+                tile(RLE_4BIT, 1, 0, 16, 3, 16, 4),
+                tile(RLE_16BIT, 2, 1000, 3, 0xff, 0xfe, 40, 0x01, 0x00),
+                tile(RLE_32BIT, 0, 0, 10, 0x00, 0x00, 0x01, 0x00, 22, 0xff, 0xff, 0xff, 0xff),
+                tile(RUN_MIN, 1, 9, 4, 256 - 6, 0),
+                tile(RUN_MIN, 1, 9, 20, 256 - 56),
+                tile(RUN_8BIT, 1, 1, concat(new int[]{3, 10, 11, 200, 256 - 5, 0}, randomBytes(random, 24))),
+                tile(RUN_16BIT, 1, 2, 2, 0x00, 0x05, 0x01, 0x07, 256 - 56),
+                // an unknown tile type
+                tile(0x42, 0, 0),
+        };
+        rasterFile = File.createTempFile("w001001", ".adf");
+        indexFile = File.createTempFile("w001001x", ".adf");
+        TestGridFiles.write(rasterFile, indexFile, tiles);
+        rasterDataFile = RasterDataFile.create(rasterFile);
+        provider = new IntegerGridTileProvider(rasterDataFile, TileIndex.create(indexFile, tiles.length), NODATA,
+                                               GRID_TILE_SIZE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        rasterDataFile.close();
+        rasterFile.delete();
+        indexFile.delete();
+    }
+
+    @Test
+    public void testFullResolution() throws IOException {
+        for (int tileIndex = 0; tileIndex < tiles.length; tileIndex++) {
+            final int[] expected = decodePerPixel(tiles[tileIndex]);
+            final int[] data = new int[SIZE];
+            provider.readData(tileIndex, GridTileWriter.create(data, GRID_TILE_SIZE, 0, GRID_TILE_SIZE.width, 1));
+            for (int i = 0; i < SIZE; i++) {
+                assertEquals("tile " + tileIndex + ", sample " + i, expected[i], data[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testSubsampled() throws IOException {
+        for (int subsampling = 2; subsampling <= 3; subsampling++) {
+            // the grid tile is written at (1, 1) into a raster of 5 columns
+            final int lineStride = 5;
+            final int offset = lineStride + 1;
+            final int lineCount = (GRID_TILE_SIZE.height + subsampling - 1) / subsampling;
+            for (int tileIndex = 0; tileIndex < tiles.length; tileIndex++) {
+                final int[] expected = new int[offset + lineCount * lineStride];
+                Arrays.fill(expected, Integer.MIN_VALUE);
+                final int[] samples = decodePerPixel(tiles[tileIndex]);
+                for (int y = 0; y < GRID_TILE_SIZE.height; y += subsampling) {
+                    for (int x = 0; x < GRID_TILE_SIZE.width; x += subsampling) {
+                        expected[offset + (y / subsampling) * lineStride + x / subsampling] =
+                                samples[y * GRID_TILE_SIZE.width + x];
+                    }
+                }
+                final int[] data = new int[expected.length];
+                Arrays.fill(data, Integer.MIN_VALUE);
+                provider.readData(tileIndex, GridTileWriter.create(data, GRID_TILE_SIZE, offset, lineStride,
+                                                                   subsampling));
+                for (int i = 0; i < data.length; i++) {
+                    assertEquals("tile " + tileIndex + ", subsampling " + subsampling + ", element " + i,
+                                 expected[i], data[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTileOfClosedFile() throws IOException {
+        rasterDataFile.close();
+        final int[] data = new int[SIZE];
+        try {
+            provider.readData(0, (IntegerGridTileWriter) GridTileWriter.create(data, GRID_TILE_SIZE, 0,
+                                                                               GRID_TILE_SIZE.width, 1));
+            fail();
+        } catch (IOException expected) {
+        }
+        // images show the tile as no-data
+        provider.readData(0, GridTileWriter.create(data, GRID_TILE_SIZE, 0, GRID_TILE_SIZE.width, 1));
+        assertEquals(NODATA, data[0]);
+        assertEquals(NODATA, data[SIZE - 1]);
+    }
+
+    /**
+     * Decodes a grid tile sample by sample, the way the samples have been decoded before the
+     * decoders were changed to write runs.
+     */
+    private static int[] decodePerPixel(byte[] tile) {
+        final int[] samples = new int[SIZE];
+        final int tileType = tile[2] & 0xff;
+        final int minSize = tile[3];
+        int min = 0;
+        if (minSize == 4) {
+            min = getInt(tile, 4);
+        } else {
+            for (int i = 0; i < minSize; i++) {
+                min = min * 256 + tile[4 + i];
+            }
+        }
+        int offset = 4 + minSize;
+        int count = 0;
+        int value = 0;
+        boolean readData = true;
+        switch (tileType) {
+            case CONST_BLOCK:
+                Arrays.fill(samples, min);
+                break;
+            case RAW_1BIT:
+                for (int i = 0; i < SIZE; i++) {
+                    samples[i] = (tile[offset + (i >> 3)] & (0x80 >> (i & 0x7))) != 0 ? min + 1 : min;
+                }
+                break;
+            case RAW_4BIT:
+                for (int i = 0; i < SIZE; i++) {
+                    final int rawValue = tile[offset + i / 2] & 0xff;
+                    samples[i] = (i % 2 == 0 ? (rawValue & 0xf0) >> 4 : rawValue & 0xf) + min;
+                }
+                break;
+            case RAW_8BIT:
+                for (int i = 0; i < SIZE; i++) {
+                    samples[i] = tile[offset++] + min;
+                }
+                break;
+            case RAW_16BIT:
+                for (int i = 0; i < SIZE; i++) {
+                    samples[i] = getShort(tile, offset) + min;
+                    offset += 2;
+                }
+                break;
+            case RAW_32BIT:
+                for (int i = 0; i < SIZE; i++) {
+                    samples[i] = getInt(tile, offset) + min;
+                    offset += 4;
+                }
+                break;
+            case RLE_4BIT:
+            case RLE_8BIT:
+            case RLE_16BIT:
+            case RLE_32BIT:
+                for (int i = 0; i < SIZE; i++) {
+                    if (count == 0) {
+                        count = tile[offset++] & 0xff;
+                        if (tileType == RLE_32BIT) {
+                            value = getInt(tile, offset) + min;
+                            offset += 4;
+                        } else if (tileType == RLE_16BIT) {
+                            value = getShort(tile, offset) + min;
+                            offset += 2;
+                        } else {
+                            value = (tile[offset++] & 0xff) + min;
+                        }
+                    }
+                    samples[i] = value;
+                    count--;
+                }
+                break;
+            case RUN_MIN:
+            case RUN_8BIT:
+            case RUN_16BIT:
+                for (int i = 0; i < SIZE; i++) {
+                    if (count == 0) {
+                        count = tile[offset++] & 0xff;
+                        if (count < 128) {
+                            readData = true;
+                            value = min;
+                        } else {
+                            count = 256 - count;
+                            value = NODATA;
+                            readData = false;
+                        }
+                    }
+                    if (readData && tileType == RUN_8BIT) {
+                        value = (tile[offset++] & 0xff) + min;
+                    } else if (readData && tileType == RUN_16BIT) {
+                        // only the first byte of each value has been decoded
+                        value = tile[offset] + min;
+                        offset += 2;
+                    }
+                    samples[i] = value;
+                    count--;
+                }
+                break;
+            default:
+                Arrays.fill(samples, NODATA);
+                break;
+        }
+        return samples;
+    }
+
+    private static short getShort(byte[] bytes, int offset) {
+        return (short) ((bytes[offset] << 8) | (bytes[offset + 1] & 0xff));
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return (getShort(bytes, offset) << 16) | (getShort(bytes, offset + 2) & 0xffff);
+    }
+
+    private static int[] randomBytes(Random random, int count) {
+        final int[] bytes = new int[count];
+        for (int i = 0; i < count; i++) {
+            bytes[i] = random.nextInt(256);
+        }
+        return bytes;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        final int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
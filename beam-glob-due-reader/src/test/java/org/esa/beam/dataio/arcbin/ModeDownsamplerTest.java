@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.arcbin;
+
+import org.junit.Test;
+
+import java.awt.image.DataBuffer;
+
+import static junit.framework.Assert.*;
+
+public class ModeDownsamplerTest {
+
+    @Test
+    public void testByteMode() {
+        final ModeDownsampler downsampler = new ModeDownsampler(DataBuffer.TYPE_BYTE, 255);
+        final byte[] data = {
+                3, 3, 7, 1,
+                7, 7, (byte) 255, (byte) 255,
+        };
+        assertEquals(7, downsampler.computeMode(data, 0, 4, 3, 2));
+        // ties are resolved in favour of the smallest class
+        assertEquals(1, downsampler.computeMode(data, 2, 4, 2, 1));
+        // no-data samples are ignored
+        assertEquals(1, downsampler.computeMode(data, 3, 4, 1, 2));
+        assertEquals(255, downsampler.computeMode(data, 6, 4, 2, 1));
+    }
+
+    @Test
+    public void testIntMode() {
+        final ModeDownsampler downsampler = new ModeDownsampler(DataBuffer.TYPE_INT, -2147483647);
+        final int[] data = {
+                100000, -5, -5,
+                -2147483647, -2147483647, 100000,
+                100000, 42, 42,
+        };
+        assertEquals(100000, downsampler.computeMode(data, 0, 3, 3, 3));
+        assertEquals(-5, downsampler.computeMode(data, 0, 3, 3, 2));
+        assertEquals(-2147483647, downsampler.computeMode(data, 3, 3, 2, 1));
+    }
+
+    @Test
+    public void testShortMode() {
+        final ModeDownsampler downsampler = new ModeDownsampler(DataBuffer.TYPE_SHORT, Short.MIN_VALUE);
+        final short[] data = {-300, 200, 200, Short.MIN_VALUE, Short.MIN_VALUE, Short.MIN_VALUE};
+        assertEquals(200, downsampler.computeMode(data, 0, 6, 6, 1));
+    }
+
+    @Test
+    public void testDownsample() {
+        final ModeDownsampler downsampler = new ModeDownsampler(DataBuffer.TYPE_BYTE, 255);
+        final byte[] data = {
+                1, 1, 2, 2, 4,
+                1, 2, 2, 3, 4,
+                5, 5, 6, 6, 4,
+        };
+        final byte[] target = (byte[]) downsampler.downsample(data, 5, 3, 2, 3, 2);
+        // the blocks at the right and lower border are partial
+        assertEquals(1, target[0]);
+        assertEquals(2, target[1]);
+        assertEquals(4, target[2]);
+        assertEquals(5, target[3]);
+        assertEquals(6, target[4]);
+        assertEquals(4, target[5]);
+    }
+}
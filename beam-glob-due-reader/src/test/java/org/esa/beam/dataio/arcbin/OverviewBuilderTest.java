@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.arcbin;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+
+import static junit.framework.Assert.*;
+
+public class OverviewBuilderTest {
+
+    private static final Dimension GRID_TILE_SIZE = new Dimension(4, 2);
+
+    private File cacheDir;
+    private OverviewCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = File.createTempFile("arcbin-overviews", "");
+        cacheDir.delete();
+        cache = new OverviewCache(cacheDir, "grid", 42L, 1);
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+        final File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        cacheDir.delete();
+    }
+
+    @Test
+    public void testBuildFromGridAndOverview() {
+        // a grid of 10 x 5 pixels, each grid tile holding its index in the first line and 255 below
+        final IntegerGridTileDecoder decoder = new IntegerGridTileDecoder() {
+            @Override
+            public void readData(int tileIndex, IntegerGridTileWriter writer) {
+                writer.fillInt(0, GRID_TILE_SIZE.width, tileIndex);
+                writer.fillInt(GRID_TILE_SIZE.width, GRID_TILE_SIZE.width, 255);
+            }
+        };
+        OverviewBuilder.fromGrid(cache, 1, 5, 2, DataBuffer.TYPE_BYTE, 2, 255, decoder, 3, GRID_TILE_SIZE,
+                                 10, 5).run();
+        final OverviewFile level1 = cache.getOverviewFile(1, 5, 2, DataBuffer.TYPE_BYTE);
+        assertNotNull(level1);
+        final byte[] data1 = (byte[]) level1.readAll();
+        assertEquals(0, data1[0]);
+        assertEquals(0, data1[1]);
+        // the block crossing two grid tiles has one sample of each, the smaller class wins
+        assertEquals(1, data1[2]);
+        assertEquals(1, data1[3]);
+        assertEquals(2, data1[4]);
+        // the second line covers the first line of the second grid tile row and no-data
+        assertEquals(3, data1[5]);
+        assertEquals(4, data1[7]);
+
+        OverviewBuilder.fromOverview(cache, 2, 2, 1, DataBuffer.TYPE_BYTE, 2, 255, 1, 5, 2).run();
+        final OverviewFile level2 = cache.getOverviewFile(2, 2, 1, DataBuffer.TYPE_BYTE);
+        assertNotNull(level2);
+        final byte[] data2 = (byte[]) level2.readAll();
+        // modes of modes, ties are resolved in favour of the smallest class
+        assertEquals(0, data2[0]);
+        assertEquals(1, data2[1]);
+    }
+
+    @Test
+    public void testBuiltOverviewIsReused() {
+        final OverviewCache otherCache = new OverviewCache(cacheDir, "grid", 42L, 1);
+        try {
+            final IntegerGridTileDecoder decoder = new IntegerGridTileDecoder() {
+                @Override
+                public void readData(int tileIndex, IntegerGridTileWriter writer) {
+                    writer.fillInt(0, GRID_TILE_SIZE.width * GRID_TILE_SIZE.height, 7);
+                }
+            };
+            OverviewBuilder.fromGrid(otherCache, 1, 2, 1, DataBuffer.TYPE_INT, 2, -1, decoder, 1, GRID_TILE_SIZE,
+                                     4, 2).run();
+        } finally {
+            otherCache.close();
+        }
+        final OverviewFile overviewFile = cache.getOverviewFile(1, 2, 1, DataBuffer.TYPE_INT);
+        assertNotNull(overviewFile);
+        assertEquals(7, ((int[]) overviewFile.readAll())[1]);
+        assertNull(new OverviewCache(cacheDir, "grid", 43L, 1).getOverviewFile(1, 2, 1, DataBuffer.TYPE_INT));
+    }
+
+    @Test
+    public void testNoOverviewIsWrittenFromUnreadableTiles() {
+        final IntegerGridTileDecoder decoder = new IntegerGridTileDecoder() {
+            @Override
+            public void readData(int tileIndex, IntegerGridTileWriter writer) throws IOException {
+                if (tileIndex == 2) {
+                    throw new IOException("Raster data file has been closed.");
+                }
+                writer.fillInt(0, GRID_TILE_SIZE.width * GRID_TILE_SIZE.height, 7);
+            }
+        };
+        OverviewBuilder.fromGrid(cache, 1, 5, 2, DataBuffer.TYPE_BYTE, 2, 255, decoder, 3, GRID_TILE_SIZE,
+                                 10, 5).run();
+        assertNull(cache.getOverviewFile(1, 5, 2, DataBuffer.TYPE_BYTE));
+        assertNull(cacheDir.listFiles());
+    }
+
+    @Test
+    public void testNoOverviewIsWrittenAfterClose() throws IOException {
+        final OverviewCache otherCache = new OverviewCache(cacheDir, "grid", 42L, 1);
+        otherCache.close();
+        otherCache.putOverviewFile(1, 2, 1, DataBuffer.TYPE_INT, new int[]{7, 7});
+        assertNull(cache.getOverviewFile(1, 2, 1, DataBuffer.TYPE_INT));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.arcbin;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+public class OverviewFileTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("arcbin", ".ovr");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        final short[] data = new short[4 * 3];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (short) (i - 5);
+        }
+        OverviewFile.write(file, 42L, 4, 3, DataBuffer.TYPE_SHORT, data);
+        assertTrue(file.isFile());
+        assertEquals(0, getTempFileCount());
+
+        final OverviewFile overviewFile = OverviewFile.open(file, 42L, 4, 3, DataBuffer.TYPE_SHORT);
+        assertNotNull(overviewFile);
+        final short[] all = (short[]) overviewFile.readAll();
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(data[i], all[i]);
+        }
+
+        final short[] target = new short[3 * 3];
+        overviewFile.readRect(new Rectangle(1, 1, 2, 2), target, 4, 3);
+        assertEquals(0, target[3]);
+        assertEquals(data[5], target[4]);
+        assertEquals(data[6], target[5]);
+        assertEquals(data[9], target[7]);
+        assertEquals(data[10], target[8]);
+    }
+
+    @Test
+    public void testOpenMismatchingFile() throws IOException {
+        assertNull(OverviewFile.open(file, 42L, 4, 3, DataBuffer.TYPE_BYTE));
+
+        OverviewFile.write(file, 42L, 4, 3, DataBuffer.TYPE_BYTE, new byte[12]);
+        assertNotNull(OverviewFile.open(file, 42L, 4, 3, DataBuffer.TYPE_BYTE));
+        // the grid has changed
+        assertNull(OverviewFile.open(file, 43L, 4, 3, DataBuffer.TYPE_BYTE));
+        assertNull(OverviewFile.open(file, 42L, 3, 4, DataBuffer.TYPE_BYTE));
+        assertNull(OverviewFile.open(file, 42L, 4, 3, DataBuffer.TYPE_SHORT));
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final List<Thread> threads = new ArrayList<Thread>();
+        final List<Exception> exceptions = new ArrayList<Exception>();
+        for (int i = 0; i < 4; i++) {
+            final byte value = (byte) i;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    final byte[] data = new byte[256 * 256];
+                    Arrays.fill(data, value);
+                    try {
+                        for (int j = 0; j < 10; j++) {
+                            OverviewFile.write(file, 42L, 256, 256, DataBuffer.TYPE_BYTE, data);
+                        }
+                    } catch (IOException e) {
+                        synchronized (exceptions) {
+                            exceptions.add(e);
+                        }
+                    }
+                }
+            });
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(exceptions.isEmpty());
+
+        // the file has been written completely by one of the writers
+        final OverviewFile overviewFile = OverviewFile.open(file, 42L, 256, 256, DataBuffer.TYPE_BYTE);
+        assertNotNull(overviewFile);
+        final byte[] all = (byte[]) overviewFile.readAll();
+        for (final byte sample : all) {
+            assertEquals(all[0], sample);
+        }
+        assertEquals(0, getTempFileCount());
+    }
+
+    private int getTempFileCount() {
+        final File[] tempFiles = file.getParentFile().listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.getName().startsWith(file.getName()) && !pathname.equals(file);
+            }
+        });
+        return tempFiles.length;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.arcbin;
+
+import org.esa.beam.dataio.arcbin.TileIndex.IndexEntry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static junit.framework.Assert.*;
+
+public class RasterDataFileTest {
+
+    private File file;
+    private RasterDataFile rasterDataFile;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("w001001", ".adf");
+        final byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(bytes);
+        } finally {
+            outputStream.close();
+        }
+        // windows of 32 bytes overlapping by 8 bytes
+        rasterDataFile = RasterDataFile.create(file, 32, 8);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        rasterDataFile.close();
+        file.delete();
+    }
+
+    @Test
+    public void testTileWithinWindow() throws IOException {
+        assertTileData(10, 4);
+    }
+
+    @Test
+    public void testTileWithinOverlap() throws IOException {
+        assertTileData(28, 6);
+    }
+
+    @Test
+    public void testTileCrossingWindows() throws IOException {
+        assertTileData(20, 30);
+    }
+
+    @Test
+    public void testTileAtEndOfFile() throws IOException {
+        assertTileData(90, 8);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTileExceedingFile() throws IOException {
+        rasterDataFile.getRawTileData(new IndexEntry(96, 4));
+    }
+
+    @Test
+    public void testBigEndianValues() throws IOException {
+        final ByteBuffer buffer = rasterDataFile.getRawTileData(new IndexEntry(4, 2));
+        assertEquals(0x04050607, buffer.getInt(0));
+        assertEquals(0x0405, buffer.getShort(0));
+    }
+
+    @Test
+    public void testBuffersAreIndependent() throws IOException {
+        final ByteBuffer buffer1 = rasterDataFile.getRawTileData(new IndexEntry(0, 4));
+        final ByteBuffer buffer2 = rasterDataFile.getRawTileData(new IndexEntry(0, 4));
+        buffer1.position(3);
+        assertEquals(0, buffer2.position());
+        assertTrue(buffer1.isReadOnly());
+    }
+
+    @Test
+    public void testWindowsAreMappedWhenAccessed() throws IOException {
+        assertEquals(0, rasterDataFile.getMappedWindowCount());
+        assertTileData(40, 4);
+        assertEquals(1, rasterDataFile.getMappedWindowCount());
+        assertTileData(44, 4);
+        assertEquals(1, rasterDataFile.getMappedWindowCount());
+        assertTileData(0, 4);
+        assertEquals(2, rasterDataFile.getMappedWindowCount());
+    }
+
+    @Test
+    public void testTilesAreReadWithoutMapping() throws IOException {
+        rasterDataFile.close();
+        rasterDataFile = RasterDataFile.create(file, 32, 8, false);
+        assertTileData(10, 4);
+        assertTileData(28, 6);
+        assertTileData(20, 30);
+        assertTileData(90, 8);
+        assertEquals(0, rasterDataFile.getMappedWindowCount());
+    }
+
+    @Test
+    public void testCloseReleasesWindows() throws IOException {
+        assertTileData(10, 4);
+        assertTileData(70, 4);
+        rasterDataFile.close();
+        assertEquals(0, rasterDataFile.getMappedWindowCount());
+        // closing twice does no harm
+        rasterDataFile.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testTileOfClosedFile() throws IOException {
+        rasterDataFile.close();
+        rasterDataFile.getRawTileData(new IndexEntry(0, 4));
+    }
+
+    private void assertTileData(int offset, int size) throws IOException {
+        final ByteBuffer buffer = rasterDataFile.getRawTileData(new IndexEntry(offset, size));
+        // the two bytes of the tile size are included
+        assertEquals(size + 2, buffer.remaining());
+        for (int i = 0; i < size + 2; i++) {
+            assertEquals(offset + i, buffer.get(i));
+        }
+    }
+}
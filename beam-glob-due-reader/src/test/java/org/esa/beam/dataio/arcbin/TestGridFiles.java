@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.arcbin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the raster data file and the tile index of an integer grid from raw grid tiles, so the
+ * decoders can be tested with real tile encodings.
+ */
+class TestGridFiles {
+
+    private static final int HEADER_SIZE = 100;
+
+    private TestGridFiles() {
+    }
+
+    /**
+     * Creates the raw data of a grid tile.
+     *
+     * @param tileType the tile type, one of the {@link ArcBinGridConstants} block types.
+     * @param minSize  the number of bytes of the minimum.
+     * @param min      the minimum.
+     * @param data     the data bytes following the minimum.
+     * @return the raw data, including the leading tile size.
+     */
+    static byte[] tile(int tileType, int minSize, int min, int... data) {
+        final int length = 2 + 2 + minSize + data.length;
+        // tiles are aligned to 16 bit words
+        final byte[] bytes = new byte[length + length % 2];
+        final int size = (bytes.length - 2) / 2;
+        bytes[0] = (byte) (size >> 8);
+        bytes[1] = (byte) size;
+        bytes[2] = (byte) tileType;
+        bytes[3] = (byte) minSize;
+        for (int i = 0; i < minSize; i++) {
+            bytes[4 + i] = (byte) (min >> (8 * (minSize - 1 - i)));
+        }
+        for (int i = 0; i < data.length; i++) {
+            bytes[4 + minSize + i] = (byte) data[i];
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes a raster data file and its tile index.
+     *
+     * @param rasterFile the raster data file.
+     * @param indexFile  the tile index file.
+     * @param tiles      the raw data of the grid tiles.
+     * @throws IOException if an I/O error occurs.
+     */
+    static void write(File rasterFile, File indexFile, byte[]... tiles) throws IOException {
+        final ByteArrayOutputStream rasterBytes = new ByteArrayOutputStream();
+        rasterBytes.write(new byte[HEADER_SIZE]);
+        final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        indexBytes.write(new byte[HEADER_SIZE]);
+        final DataOutputStream index = new DataOutputStream(indexBytes);
+        for (final byte[] tile : tiles) {
+            // offsets and sizes are given in 16 bit words
+            index.writeInt(rasterBytes.size() / 2);
+            index.writeInt((tile.length - 2) / 2);
+            rasterBytes.write(tile);
+        }
+        index.flush();
+        writeFile(rasterFile, rasterBytes.toByteArray());
+        writeFile(indexFile, indexBytes.toByteArray());
+    }
+
+    private static void writeFile(File file, byte[] bytes) throws IOException {
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(bytes);
+        } finally {
+            outputStream.close();
+        }
+    }
+}
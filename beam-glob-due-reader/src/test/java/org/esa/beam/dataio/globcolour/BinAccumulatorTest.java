@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import junit.framework.TestCase;
+
+/**
+ * Test methods for class {@link BinAccumulator}.
+ */
+public class BinAccumulatorTest extends TestCase {
+
+    private static final IsinGrid GRID = new IsinGrid(18);
+
+    public void testAccumulate() {
+        final BinAccumulator accumulator = new BinAccumulator(GRID, 8, 9, 1);
+        final int bin0 = GRID.getBin(8, 2);
+        final int bin1 = GRID.getBin(9, 0);
+
+        accumulator.accumulate(createChunk(new int[]{bin0, bin1}, new double[]{1.0, -1.0}), new double[]{-1.0}, -1);
+        accumulator.accumulate(createChunk(new int[]{bin0}, new double[]{3.0}), new double[]{-1.0}, -1);
+
+        final IsinBinChunk chunk = accumulator.createChunk();
+        assertEquals(2, chunk.getBinCount());
+        assertEquals(bin0, chunk.getBins()[0]);
+        assertEquals(8, chunk.getRows()[0]);
+        assertEquals(2, chunk.getCols()[0]);
+        assertEquals(2.0, chunk.getValues(0)[0], 0.0);
+        assertEquals(2.0, chunk.getValues(1)[0], 0.0);
+        assertEquals(1.0, chunk.getValues(2)[0], 0.0);
+        assertEquals(3.0, chunk.getValues(3)[0], 0.0);
+
+        // the bin is present, but has no valid value
+        assertEquals(bin1, chunk.getBins()[1]);
+        assertEquals(9, chunk.getRows()[1]);
+        assertEquals(0, chunk.getCols()[1]);
+        assertTrue(Double.isNaN(chunk.getValues(0)[1]));
+        assertEquals(0.0, chunk.getValues(1)[1], 0.0);
+        assertTrue(Double.isNaN(chunk.getValues(2)[1]));
+        assertTrue(Double.isNaN(chunk.getValues(3)[1]));
+    }
+
+    public void testAccumulateWeighted() {
+        final BinAccumulator accumulator = new BinAccumulator(GRID, 8, 9, 1);
+        final int bin = GRID.getBin(9, 1);
+
+        accumulator.accumulate(createChunk(new int[]{bin}, new double[]{1.0}, new double[]{3.0}), new double[]{0.0}, 1);
+        accumulator.accumulate(createChunk(new int[]{bin}, new double[]{5.0}, new double[]{1.0}), new double[]{0.0}, 1);
+        accumulator.accumulate(createChunk(new int[]{bin}, new double[]{9.0}, new double[]{0.0}), new double[]{0.0}, 1);
+
+        final IsinBinChunk chunk = accumulator.createChunk();
+        assertEquals(1, chunk.getBinCount());
+        assertEquals(2.0, chunk.getValues(0)[0], 0.0);
+        assertEquals(2.0, chunk.getValues(1)[0], 0.0);
+        assertEquals(1.0, chunk.getValues(2)[0], 0.0);
+        assertEquals(5.0, chunk.getValues(3)[0], 0.0);
+    }
+
+    private static IsinBinChunk createChunk(int[] bins, double[]... values) {
+        return new IsinBinChunk(bins, new short[bins.length], new short[bins.length], values);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import junit.framework.TestCase;
+
+/**
+ * Test methods for class {@link BinColumnCache}.
+ */
+public class BinColumnCacheTest extends TestCase {
+
+    public void testConstructor() {
+        try {
+            new BinColumnCache(-1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testGetAndPut() {
+        final BinColumnCache cache = new BinColumnCache(1024);
+        final short[] cols = {1, 2, 3};
+
+        assertNull(cache.get(0));
+        cache.put(0, cols);
+        assertSame(cols, cache.get(0));
+        assertNull(cache.get(1));
+
+        cache.clear();
+        assertNull(cache.get(0));
+        assertEquals(0, cache.getWeight());
+    }
+
+    public void testLeastRecentlyUsedRowsAreEvicted() {
+        // each row occupies 16 + 2 * 100 = 216 bytes
+        final BinColumnCache cache = new BinColumnCache(3 * 216);
+
+        cache.put(0, new short[100]);
+        cache.put(1, new short[100]);
+        cache.put(2, new short[100]);
+        assertEquals(3 * 216, cache.getWeight());
+
+        cache.get(0);
+        cache.put(3, new short[100]);
+
+        assertNotNull(cache.get(0));
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(2));
+        assertNotNull(cache.get(3));
+        assertEquals(3 * 216, cache.getWeight());
+    }
+}
@@ -19,6 +19,8 @@ import junit.framework.TestCase;
 import org.esa.beam.framework.dataio.DecodeQualification;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
@@ -45,6 +47,41 @@ public class BinnedProductReaderPlugInTest extends TestCase {
         // todo - add test with Binned product
     }
 
+    public void testHasNetcdfSignature() throws IOException {
+        assertTrue(hasNetcdfSignature(new byte[]{'C', 'D', 'F', 1, 0, 0, 0, 0}));
+        assertTrue(hasNetcdfSignature(new byte[]{'C', 'D', 'F', 2}));
+        assertTrue(hasNetcdfSignature(new byte[]{(byte) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n', 0}));
+
+        assertFalse(hasNetcdfSignature(new byte[]{'C', 'D', 'F', 3}));
+        assertFalse(hasNetcdfSignature(new byte[]{(byte) 0x89, 'H', 'D', 'F'}));
+        assertFalse(hasNetcdfSignature("netcdf".getBytes("US-ASCII")));
+        assertFalse(hasNetcdfSignature(new byte[0]));
+    }
+
+    public void testGetDecodeQualificationRejectsFileWithoutSignature() throws IOException {
+        final File file = File.createTempFile("BinnedProductReaderPlugInTest", ".nc");
+        try {
+            assertEquals(DecodeQualification.UNABLE, new BinnedProductReaderPlugIn().getDecodeQualification(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static boolean hasNetcdfSignature(byte[] bytes) throws IOException {
+        final File file = File.createTempFile("BinnedProductReaderPlugInTest", ".nc");
+        try {
+            final FileOutputStream stream = new FileOutputStream(file);
+            try {
+                stream.write(bytes);
+            } finally {
+                stream.close();
+            }
+            return BinnedProductReaderPlugIn.hasNetcdfSignature(file);
+        } finally {
+            file.delete();
+        }
+    }
+
     private static String getResourcePath(final String name) throws UnsupportedEncodingException {
         final URL url = BinnedProductReaderPlugInTest.class.getResource(name);
         assertNotNull(url);
@@ -0,0 +1,405 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import com.bc.ceres.core.ProgressMonitor;
+import junit.framework.TestCase;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFileWriteable;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test methods for class {@link BinnedProductReader}.
+ */
+public class BinnedProductReaderTest extends TestCase {
+
+    private static final float MEAN_FILL_VALUE = -999.0f;
+    private static final int COUNT_FILL_VALUE = -1;
+
+    private File file;
+    private File cacheDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("BinnedProductReaderTest", ".nc");
+        cacheDir = StorageInfoCacheTest.createCacheDir("BinnedProductReaderTest");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        StorageInfoCacheTest.deleteCacheDir(cacheDir);
+    }
+
+    public void testLowerBound() {
+        final short[] cols = {2, 3, 5, 8, 13};
+
+        assertEquals(0, BinnedProductReader.lowerBound(cols, 0));
+        assertEquals(0, BinnedProductReader.lowerBound(cols, 2));
+        assertEquals(1, BinnedProductReader.lowerBound(cols, 3));
+        assertEquals(2, BinnedProductReader.lowerBound(cols, 4));
+        assertEquals(4, BinnedProductReader.lowerBound(cols, 9));
+        assertEquals(4, BinnedProductReader.lowerBound(cols, 13));
+        assertEquals(5, BinnedProductReader.lowerBound(cols, 14));
+
+        assertEquals(0, BinnedProductReader.lowerBound(new short[0], 7));
+    }
+
+    public void testReadFullWidth() throws Exception {
+        writeProduct(0.01, 0.27, 0.01, 0.27, createEquatorBins());
+
+        final BinnedProductReader reader = createReader();
+        try {
+            final Product product = reader.readProductNodes(file, null);
+            // the bins of all rows are read at once
+            final Rectangle targetRect = new Rectangle(0, 0, 7, 7);
+            final ProductData means = read(reader, product.getBand("CHL1_mean"), targetRect);
+            final ProductData counts = read(reader, product.getBand("CHL1_count"), targetRect);
+
+            assertEquatorBins(targetRect, means, counts);
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testReadNarrowTile() throws Exception {
+        writeProduct(0.01, 0.27, 0.01, 0.27, createEquatorBins());
+
+        final BinnedProductReader reader = createReader();
+        try {
+            final Product product = reader.readProductNodes(file, null);
+            // the bins within the tile are read row by row
+            final Rectangle targetRect = new Rectangle(4, 1, 2, 5);
+            final ProductData means = read(reader, product.getBand("CHL1_mean"), targetRect);
+            final ProductData counts = read(reader, product.getBand("CHL1_count"), targetRect);
+
+            assertEquatorBins(targetRect, means, counts);
+            // the tile includes the empty row and invalid bins
+            assertEquals(MEAN_FILL_VALUE, means.getElemDoubleAt(2 * 2), 0.0);
+            assertEquals(COUNT_FILL_VALUE, counts.getElemIntAt(2 * 2 + 1));
+            assertEquals(MEAN_FILL_VALUE, means.getElemDoubleAt(1), 0.0);
+            assertEquals(COUNT_FILL_VALUE, counts.getElemIntAt(1));
+            assertEquals(54.5, means.getElemDoubleAt(4 * 2), 1.0e-6);
+            assertEquals(155, counts.getElemIntAt(4 * 2 + 1));
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testConcurrentReads() throws Exception {
+        writeProduct(0.01, 0.27, 0.01, 0.27, createEquatorBins());
+
+        final BinnedProductReader reader = createReader();
+        final int threadCount = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final Product product = reader.readProductNodes(file, null);
+            final Band meanBand = product.getBand("CHL1_mean");
+            final Band countBand = product.getBand("CHL1_count");
+            // full-width rows and narrow tiles are read by several threads at once
+            final List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (int i = 0; i < 4 * threadCount; i++) {
+                final Rectangle targetRect = i % 2 == 0 ? new Rectangle(0, i % 7, 7, 1)
+                                                        : new Rectangle(i % 6, 0, 2, 7);
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        final ProductData means = read(reader, meanBand, targetRect);
+                        final ProductData counts = read(reader, countBand, targetRect);
+                        assertEquatorBins(targetRect, means, counts);
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Object> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            reader.close();
+        }
+    }
+
+    public void testAggregationNearEquator() throws Exception {
+        // near the equator the 7 x 7 elements of the grid correspond to the ISIN bins one to one,
+        // the element at (x, y) is represented by the bin of row 2166 - y and column 4320 + x
+        final BinList bins = new BinList();
+        for (int row = 2160; row <= 2166; ++row) {
+            for (int col = 4320; col <= 4326; ++col) {
+                final int x = col - 4320;
+                final int y = 2166 - row;
+                if (x == 6 && y == 6) {
+                    continue; // the cell at (3, 3) has no bins
+                }
+                // the cell at (2, 0) has no valid bins at all
+                final boolean invalid = x >= 4 && x <= 5 && y <= 1;
+                final float mean = invalid || x == 2 && y == 0 ? MEAN_FILL_VALUE : 10 * y + x + 0.5f;
+                final int count = invalid || x == 0 && y == 0 ? COUNT_FILL_VALUE : 100 + 10 * y + x;
+                bins.add(row, col, mean, count);
+            }
+        }
+        writeProduct(0.01, 0.27, 0.01, 0.27, bins);
+
+        final BinnedProductReader reader = createReader();
+        try {
+            final Product product = reader.readProductNodes(file, null);
+            assertEquals(7, product.getSceneRasterWidth());
+            assertEquals(7, product.getSceneRasterHeight());
+
+            final Rectangle targetRect = new Rectangle(0, 0, 4, 4);
+
+            final ProductData means = readAggregated(reader, product.getBand("CHL1_mean"), targetRect);
+            // the mean of all valid bins within a cell
+            assertEquals(6.0, means.getElemDoubleAt(0), 1.0e-6);
+            assertEquals(29.5 / 3.0, means.getElemDoubleAt(1), 1.0e-6);
+            assertEquals(MEAN_FILL_VALUE, means.getElemDoubleAt(2), 0.0);
+            // the cells at the eastern boundary are clipped to a single column
+            assertEquals(11.5, means.getElemDoubleAt(3), 1.0e-6);
+            assertEquals(28.0, means.getElemDoubleAt(5), 1.0e-6);
+            assertEquals(31.5, means.getElemDoubleAt(7), 1.0e-6);
+            // the cells at the southern boundary are clipped to a single row
+            assertEquals(61.0, means.getElemDoubleAt(12), 1.0e-6);
+            assertEquals(MEAN_FILL_VALUE, means.getElemDoubleAt(15), 0.0);
+
+            final ProductData counts = readAggregated(reader, product.getBand("CHL1_count"), targetRect);
+            // the first valid bin within a cell
+            assertEquals(101, counts.getElemIntAt(0));
+            assertEquals(102, counts.getElemIntAt(1));
+            assertEquals(COUNT_FILL_VALUE, counts.getElemIntAt(2));
+            assertEquals(106, counts.getElemIntAt(3));
+            assertEquals(122, counts.getElemIntAt(5));
+            assertEquals(160, counts.getElemIntAt(12));
+            assertEquals(COUNT_FILL_VALUE, counts.getElemIntAt(15));
+
+            // a target region not starting at the origin of the resolution level
+            final ProductData subset = readAggregated(reader, product.getBand("CHL1_mean"), new Rectangle(1, 1, 2, 1));
+            assertEquals(28.0, subset.getElemDoubleAt(0), 1.0e-6);
+            assertEquals(30.0, subset.getElemDoubleAt(1), 1.0e-6);
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testAggregationFallsBackToCellCentres() throws Exception {
+        // at high latitudes an ISIN bin spans several columns of the grid, so many cells
+        // of a lower resolution level contain no bin centre
+        final double minLon = 0.01;
+        final double maxLon = 0.9;
+        final int minRow = ReaderConstants.IG.getRow(80.01);
+        final int maxRow = ReaderConstants.IG.getRow(80.1);
+
+        final BinList bins = new BinList();
+        for (int row = minRow; row <= maxRow; ++row) {
+            final int minCol = ReaderConstants.IG.getCol(row, 0.0);
+            final int maxCol = ReaderConstants.IG.getCol(row, 1.0);
+            for (int col = minCol; col <= maxCol; ++col) {
+                bins.add(row, col, col + 0.5f, col);
+            }
+        }
+        writeProduct(80.01, 80.1, minLon, maxLon, bins);
+
+        final BinnedProductReader reader = createReader();
+        try {
+            final Product product = reader.readProductNodes(file, null);
+            final int width = product.getSceneRasterWidth();
+            assertEquals(3, product.getSceneRasterHeight());
+            assertEquals(22, width);
+
+            final int scale = 2;
+            final Rectangle targetRect = new Rectangle(0, 0, width / scale, 1);
+            final ProductData means = readAggregated(reader, product.getBand("CHL1_mean"), targetRect);
+            final ProductData counts = readAggregated(reader, product.getBand("CHL1_count"), targetRect);
+
+            // the grid is defined by the ISIN row at the equator
+            final int rowOfTrueScale = ReaderConstants.IG.getRow(0.0);
+            final double gridMinLon = ReaderConstants.IG.getLonWest(rowOfTrueScale,
+                                                                    ReaderConstants.IG.getCol(rowOfTrueScale, minLon));
+            final double gridLonStep = ReaderConstants.IG.getLonStep(rowOfTrueScale);
+
+            int centredCellCount = 0;
+            int emptyCellCount = 0;
+            for (int j = 0; j < targetRect.width; ++j) {
+                double sum = 0.0;
+                int n = 0;
+                int first = -1;
+                // the cells of the first target row comprise the two northernmost rows
+                for (int row = maxRow; row >= maxRow - 1; --row) {
+                    final int maxCol = ReaderConstants.IG.getCol(row, 1.0);
+                    for (int col = ReaderConstants.IG.getCol(row, 0.0); col <= maxCol; ++col) {
+                        final double lon = ReaderConstants.IG.getLon(row, col);
+                        final int x = (int) Math.floor((lon - gridMinLon) / gridLonStep);
+                        if (x / scale == j) {
+                            sum += col + 0.5;
+                            if (n++ == 0) {
+                                first = col;
+                            }
+                        }
+                    }
+                }
+                if (n > 0) {
+                    assertEquals(sum / n, means.getElemDoubleAt(j), 1.0e-6);
+                    assertEquals(first, counts.getElemIntAt(j));
+                    centredCellCount++;
+                } else {
+                    // the bin at the centre of the cell
+                    final double lon = gridMinLon + (j * scale + scale / 2 + 0.5) * gridLonStep;
+                    final int col = ReaderConstants.IG.getCol(maxRow - 1, lon);
+                    assertEquals(col + 0.5, means.getElemDoubleAt(j), 1.0e-6);
+                    assertEquals(col, counts.getElemIntAt(j));
+                    emptyCellCount++;
+                }
+            }
+            assertTrue(centredCellCount > 0);
+            assertTrue(emptyCellCount > 0);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns the bins of a 7 by 7 grid near the equator. The grid element at (x, y) is
+     * represented by the bin of row 2166 - y and column 4320 + x. Row 2163 is empty, the
+     * bin of the element at (6, 6) is missing, and the bins of the elements at (2, 0) and
+     * (5, 1) are invalid.
+     *
+     * @return the bins.
+     */
+    private static BinList createEquatorBins() {
+        final BinList bins = new BinList();
+        for (int row = 2160; row <= 2166; ++row) {
+            for (int col = 4320; col <= 4326; ++col) {
+                final int x = col - 4320;
+                final int y = 2166 - row;
+                if (y == 3 || x == 6 && y == 6) {
+                    continue;
+                }
+                if (x == 2 && y == 0 || x == 5 && y == 1) {
+                    bins.add(row, col, MEAN_FILL_VALUE, COUNT_FILL_VALUE);
+                } else {
+                    bins.add(row, col, 10 * y + x + 0.5f, 100 + 10 * y + x);
+                }
+            }
+        }
+        return bins;
+    }
+
+    private static void assertEquatorBins(Rectangle targetRect, ProductData means, ProductData counts) {
+        for (int y = targetRect.y; y < targetRect.y + targetRect.height; ++y) {
+            for (int x = targetRect.x; x < targetRect.x + targetRect.width; ++x) {
+                final int i = (y - targetRect.y) * targetRect.width + x - targetRect.x;
+                final boolean invalid = y == 3 || x == 6 && y == 6 || x == 2 && y == 0 || x == 5 && y == 1;
+                assertEquals(invalid ? MEAN_FILL_VALUE : 10 * y + x + 0.5, means.getElemDoubleAt(i), 1.0e-6);
+                assertEquals(invalid ? COUNT_FILL_VALUE : 100 + 10 * y + x, counts.getElemIntAt(i));
+            }
+        }
+    }
+
+    private BinnedProductReader createReader() {
+        return new BinnedProductReader(new BinnedProductReaderPlugIn(), new StorageInfoCache(cacheDir, 16));
+    }
+
+    private static ProductData read(BinnedProductReader reader, Band band, Rectangle targetRect) throws IOException {
+        final ProductData targetBuffer = ProductData.createInstance(band.getDataType(),
+                                                                    targetRect.width * targetRect.height);
+        reader.readBandRasterData(band, targetRect.x, targetRect.y, targetRect.width, targetRect.height,
+                                  targetBuffer, ProgressMonitor.NULL);
+        return targetBuffer;
+    }
+
+    private static ProductData readAggregated(BinnedProductReader reader, Band band, Rectangle targetRect)
+            throws IOException {
+        final ProductData targetBuffer = ProductData.createInstance(band.getDataType(),
+                                                                    targetRect.width * targetRect.height);
+        reader.readBandRasterDataAggregated(band, 2, targetRect, targetBuffer);
+        return targetBuffer;
+    }
+
+    private void writeProduct(double minLat, double maxLat, double minLon, double maxLon, BinList bins)
+            throws IOException, InvalidRangeException {
+        final int binCount = bins.rows.size();
+        final short[] rows = new short[binCount];
+        final short[] cols = new short[binCount];
+        final float[] means = new float[binCount];
+        final int[] counts = new int[binCount];
+        for (int k = 0; k < binCount; ++k) {
+            rows[k] = bins.rows.get(k);
+            cols[k] = bins.cols.get(k);
+            means[k] = bins.means.get(k);
+            counts[k] = bins.counts.get(k);
+        }
+
+        final NetcdfFileWriteable ncFile = NetcdfFileWriteable.createNew(file.getPath(), false);
+        try {
+            ncFile.addGlobalAttribute(ProductAttributes.MIN_LAT, minLat);
+            ncFile.addGlobalAttribute(ProductAttributes.MAX_LAT, maxLat);
+            ncFile.addGlobalAttribute(ProductAttributes.MIN_LON, minLon);
+            ncFile.addGlobalAttribute(ProductAttributes.MAX_LON, maxLon);
+
+            final Dimension bin = ncFile.addDimension(ReaderConstants.BIN, binCount);
+            final Dimension[] dims = {bin};
+            ncFile.addVariable(ReaderConstants.ROW, DataType.SHORT, dims);
+            ncFile.addVariable(ReaderConstants.COL, DataType.SHORT, dims);
+            ncFile.addVariable("CHL1_mean", DataType.FLOAT, dims);
+            ncFile.addVariableAttribute("CHL1_mean", ProductAttributes.FILL_VALUE, MEAN_FILL_VALUE);
+            ncFile.addVariable("CHL1_count", DataType.INT, dims);
+            ncFile.addVariableAttribute("CHL1_count", ProductAttributes.FILL_VALUE, COUNT_FILL_VALUE);
+            ncFile.create();
+
+            final int[] origin = {0};
+            final int[] shape = {binCount};
+            ncFile.write(ReaderConstants.ROW, origin, Array.factory(DataType.SHORT, shape, rows));
+            ncFile.write(ReaderConstants.COL, origin, Array.factory(DataType.SHORT, shape, cols));
+            ncFile.write("CHL1_mean", origin, Array.factory(DataType.FLOAT, shape, means));
+            ncFile.write("CHL1_count", origin, Array.factory(DataType.INT, shape, counts));
+        } finally {
+            ncFile.close();
+        }
+    }
+
+    /**
+     * The bins of a product, which must be added in storage order, i.e. by ascending row
+     * and column.
+     */
+    private static class BinList {
+
+        final List<Short> rows = new ArrayList<Short>();
+        final List<Short> cols = new ArrayList<Short>();
+        final List<Float> means = new ArrayList<Float>();
+        final List<Integer> counts = new ArrayList<Integer>();
+
+        void add(int row, int col, float mean, int count) {
+            rows.add((short) row);
+            cols.add((short) col);
+            means.add(mean);
+            counts.add(count);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import com.bc.ceres.core.ProgressMonitor;
+import junit.framework.TestCase;
+import org.esa.beam.framework.dataio.ProductReader;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFileWriteable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Test methods for class {@link IsinBinCompositor}.
+ */
+public class IsinBinCompositorTest extends TestCase {
+
+    private static final float FILL_VALUE = -999.0f;
+
+    // the bins near the equator, which correspond to the elements of the global grid one to one
+    private static final int ROW = 2160;
+    private static final int COL = 4320;
+
+    private File[] inputFiles;
+    private File outputFile;
+    private File cacheDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        inputFiles = new File[3];
+        for (int i = 0; i < inputFiles.length; ++i) {
+            inputFiles[i] = File.createTempFile("IsinBinCompositorTest", ".nc");
+        }
+        outputFile = File.createTempFile("IsinBinCompositorTest", ".nc");
+        cacheDir = StorageInfoCacheTest.createCacheDir("IsinBinCompositorTest");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (final File file : inputFiles) {
+            file.delete();
+        }
+        outputFile.delete();
+        StorageInfoCacheTest.deleteCacheDir(cacheDir);
+    }
+
+    public void testWriteBinnedProduct() throws Exception {
+        writeProduct(inputFiles[0],
+                     new int[]{ROW, ROW, ROW + 1, ROW + 1},
+                     new int[]{COL, COL + 1, COL, COL + 1},
+                     new float[]{1.0f, 2.0f, FILL_VALUE, FILL_VALUE},
+                     new int[]{1, 1, 1, 1});
+        writeProduct(inputFiles[1],
+                     new int[]{ROW, ROW},
+                     new int[]{COL, COL + 2},
+                     new float[]{3.0f, 5.0f},
+                     new int[]{3, 2});
+        writeProduct(inputFiles[2],
+                     new int[]{ROW, ROW, ROW + 1},
+                     new int[]{COL, COL + 1, COL},
+                     new float[]{FILL_VALUE, 4.0f, 7.0f},
+                     new int[]{1, 0, 1});
+
+        final IsinBinCompositor compositor = new IsinBinCompositor(inputFiles, new String[]{"CHL1_mean"},
+                                                                   new StorageInfoCache(cacheDir, 16));
+        compositor.setWeightVariableName("CHL1_weight");
+        compositor.writeBinnedProduct(outputFile);
+
+        final BinnedProductReaderPlugIn plugIn = new BinnedProductReaderPlugIn();
+        final ProductReader reader = new BinnedProductReader(plugIn, new StorageInfoCache(cacheDir, 16));
+        try {
+            final Product product = reader.readProductNodes(outputFile, null);
+            assertEquals(8640, product.getSceneRasterWidth());
+            assertEquals(4320, product.getSceneRasterHeight());
+
+            // the northern row of the region holds the bins of ROW + 1, the southern row those of ROW
+            final int y = 4320 - 1 - (ROW + 1);
+            final float[] means = read(reader, product.getBand("CHL1_mean"), y);
+            final float[] counts = read(reader, product.getBand("CHL1_mean" + IsinBinCompositor.COUNT_SUFFIX), y);
+            final float[] mins = read(reader, product.getBand("CHL1_mean" + IsinBinCompositor.MIN_SUFFIX), y);
+            final float[] maxs = read(reader, product.getBand("CHL1_mean" + IsinBinCompositor.MAX_SUFFIX), y);
+
+            // the weighted mean of the values 1 and 3, a fill value is ignored
+            assertBin(2.5, 2, 1.0, 3.0, means, counts, mins, maxs, 4);
+            // a value of zero weight is ignored
+            assertBin(2.0, 1, 2.0, 2.0, means, counts, mins, maxs, 5);
+            assertBin(5.0, 1, 5.0, 5.0, means, counts, mins, maxs, 6);
+            // no product contains the bin
+            assertTrue(Float.isNaN(means[7]));
+            assertEquals(0.0f, counts[7]);
+            assertTrue(Float.isNaN(mins[7]));
+            assertTrue(Float.isNaN(maxs[7]));
+
+            assertBin(7.0, 1, 7.0, 7.0, means, counts, mins, maxs, 0);
+            // the bin has no valid value in any product
+            assertTrue(Float.isNaN(means[1]));
+            assertEquals(0.0f, counts[1]);
+            assertTrue(Float.isNaN(mins[1]));
+            assertTrue(Float.isNaN(maxs[1]));
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testMissingVariable() throws Exception {
+        for (final File file : inputFiles) {
+            writeProduct(file, new int[]{ROW}, new int[]{COL}, new float[]{1.0f}, new int[]{1});
+        }
+        final IsinBinCompositor compositor = new IsinBinCompositor(inputFiles, new String[]{"CHL2_mean"},
+                                                                   new StorageInfoCache(cacheDir, 16));
+        try {
+            compositor.writeBinnedProduct(outputFile);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private static void assertBin(double mean, int count, double min, double max,
+                                  float[] means, float[] counts, float[] mins, float[] maxs, int i) {
+        assertEquals(mean, means[i], 1.0e-6);
+        assertEquals(count, counts[i], 0.0);
+        assertEquals(min, mins[i], 1.0e-6);
+        assertEquals(max, maxs[i], 1.0e-6);
+    }
+
+    // reads 4 by 2 elements, starting with the element of column COL of the row given
+    private static float[] read(ProductReader reader, Band band, int y) throws IOException {
+        final ProductData buffer = ProductData.createInstance(band.getDataType(), 8);
+        reader.readBandRasterData(band, COL, y, 4, 2, buffer, ProgressMonitor.NULL);
+        final float[] values = new float[8];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = buffer.getElemFloatAt(i);
+        }
+        return values;
+    }
+
+    private static void writeProduct(File file, int[] rows, int[] cols, float[] means, int[] weights)
+            throws IOException, InvalidRangeException {
+        final int binCount = rows.length;
+        final short[] shortRows = new short[binCount];
+        final short[] shortCols = new short[binCount];
+        for (int k = 0; k < binCount; ++k) {
+            shortRows[k] = (short) rows[k];
+            shortCols[k] = (short) cols[k];
+        }
+
+        final NetcdfFileWriteable ncFile = NetcdfFileWriteable.createNew(file.getPath(), false);
+        try {
+            final Dimension bin = ncFile.addDimension(ReaderConstants.BIN, binCount);
+            final Dimension[] dims = {bin};
+            ncFile.addVariable(ReaderConstants.ROW, DataType.SHORT, dims);
+            ncFile.addVariable(ReaderConstants.COL, DataType.SHORT, dims);
+            ncFile.addVariable("CHL1_mean", DataType.FLOAT, dims);
+            ncFile.addVariableAttribute("CHL1_mean", ProductAttributes.FILL_VALUE, FILL_VALUE);
+            ncFile.addVariable("CHL1_weight", DataType.INT, dims);
+            ncFile.create();
+
+            final int[] origin = {0};
+            final int[] shape = {binCount};
+            ncFile.write(ReaderConstants.ROW, origin, Array.factory(DataType.SHORT, shape, shortRows));
+            ncFile.write(ReaderConstants.COL, origin, Array.factory(DataType.SHORT, shape, shortCols));
+            ncFile.write("CHL1_mean", origin, Array.factory(DataType.FLOAT, shape, means));
+            ncFile.write("CHL1_weight", origin, Array.factory(DataType.INT, shape, weights));
+        } finally {
+            ncFile.close();
+        }
+    }
+}
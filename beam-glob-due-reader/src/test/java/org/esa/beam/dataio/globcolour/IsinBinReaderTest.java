@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import junit.framework.TestCase;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Dimension;
+import ucar.nc2.NetcdfFileWriteable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test methods for class {@link IsinBinReader}.
+ */
+public class IsinBinReaderTest extends TestCase {
+
+    // rows near the equator holding more than 100000 bins, the row in the middle has no bins
+    private static final int MIN_ROW = 2150;
+    private static final int MAX_ROW = 2163;
+    private static final int EMPTY_ROW = 2155;
+
+    private static final float FILL_VALUE = -999.0f;
+
+    private File file;
+    private File cacheDir;
+    private int binCount;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("IsinBinReaderTest", ".nc");
+        cacheDir = StorageInfoCacheTest.createCacheDir("IsinBinReaderTest");
+        for (int row = MIN_ROW; row <= MAX_ROW; ++row) {
+            if (row != EMPTY_ROW) {
+                binCount += ReaderConstants.IG.getColCount(row);
+            }
+        }
+        assertTrue(binCount > 100000);
+        assertTrue(binCount < 200000);
+
+        final short[] rows = new short[binCount];
+        final short[] cols = new short[binCount];
+        final float[] means = new float[binCount];
+        final int[] counts = new int[binCount];
+        int k = 0;
+        for (int row = MIN_ROW; row <= MAX_ROW; ++row) {
+            if (row == EMPTY_ROW) {
+                continue;
+            }
+            for (int col = 0; col < ReaderConstants.IG.getColCount(row); ++col) {
+                rows[k] = (short) row;
+                cols[k] = (short) col;
+                // every tenth bin has no valid mean
+                means[k] = col % 10 == 0 ? FILL_VALUE : col + 0.5f;
+                counts[k] = row;
+                ++k;
+            }
+        }
+
+        final NetcdfFileWriteable ncFile = NetcdfFileWriteable.createNew(file.getPath(), false);
+        try {
+            final Dimension bin = ncFile.addDimension(ReaderConstants.BIN, binCount);
+            final Dimension[] dims = {bin};
+            ncFile.addVariable(ReaderConstants.ROW, DataType.SHORT, dims);
+            ncFile.addVariable(ReaderConstants.COL, DataType.SHORT, dims);
+            ncFile.addVariable("CHL1_mean", DataType.FLOAT, dims);
+            ncFile.addVariableAttribute("CHL1_mean", ProductAttributes.FILL_VALUE, FILL_VALUE);
+            ncFile.addVariable("CHL1_count", DataType.INT, dims);
+            ncFile.create();
+
+            final int[] origin = {0};
+            final int[] shape = {binCount};
+            ncFile.write(ReaderConstants.ROW, origin, Array.factory(DataType.SHORT, shape, rows));
+            ncFile.write(ReaderConstants.COL, origin, Array.factory(DataType.SHORT, shape, cols));
+            ncFile.write("CHL1_mean", origin, Array.factory(DataType.FLOAT, shape, means));
+            ncFile.write("CHL1_count", origin, Array.factory(DataType.INT, shape, counts));
+        } finally {
+            ncFile.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        StorageInfoCacheTest.deleteCacheDir(cacheDir);
+    }
+
+    public void testVariablesAndFillValues() throws IOException {
+        final IsinBinReader reader = open();
+        try {
+            final String[] names = reader.getVariableNames();
+            assertEquals(2, names.length);
+            assertEquals("CHL1_mean", names[0]);
+            assertEquals("CHL1_count", names[1]);
+
+            assertEquals(FILL_VALUE, reader.getFillValue("CHL1_mean"), 0.0);
+            assertTrue(Double.isNaN(reader.getFillValue("CHL1_count")));
+            try {
+                reader.getFillValue(ReaderConstants.ROW);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testChunksAreBounded() throws IOException {
+        final IsinBinReader reader = open();
+        try {
+            final List<IsinBinChunk> chunks = readBins(reader, 0, reader.getRowCount() - 1);
+            assertEquals(2, chunks.size());
+            assertEquals(100000, chunks.get(0).getBinCount());
+            assertEquals(binCount - 100000, chunks.get(1).getBinCount());
+
+            // the bins continue seamlessly across the chunk boundary, which lies within a row
+            int row = MIN_ROW;
+            int col = 0;
+            for (final IsinBinChunk chunk : chunks) {
+                for (int k = 0; k < chunk.getBinCount(); ++k) {
+                    if (col == ReaderConstants.IG.getColCount(row)) {
+                        row = row + 1 == EMPTY_ROW ? row + 2 : row + 1;
+                        col = 0;
+                    }
+                    assertEquals(row, chunk.getRows()[k]);
+                    assertEquals(col, chunk.getCols()[k]);
+                    assertEquals(ReaderConstants.IG.getBin(row, col), chunk.getBins()[k]);
+                    assertEquals(row, chunk.getValues(1)[k], 0.0);
+                    ++col;
+                }
+            }
+            assertEquals(MAX_ROW, row);
+            assertEquals(ReaderConstants.IG.getColCount(MAX_ROW), col);
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testRowRanges() throws IOException {
+        final IsinBinReader reader = open();
+        try {
+            assertEquals(binCount, reader.getBinCount(0, reader.getRowCount() - 1));
+            assertEquals(binCount, reader.getBinCount(MIN_ROW, MAX_ROW));
+            assertEquals(0, reader.getBinCount(0, MIN_ROW - 1));
+            assertEquals(0, reader.getBinCount(EMPTY_ROW, EMPTY_ROW));
+            assertEquals(ReaderConstants.IG.getColCount(EMPTY_ROW - 1), reader.getBinCount(EMPTY_ROW - 1, EMPTY_ROW));
+
+            final int row = MIN_ROW + 3;
+            List<IsinBinChunk> chunks = readBins(reader, row, row);
+            assertEquals(1, chunks.size());
+            final IsinBinChunk chunk = chunks.get(0);
+            assertEquals(ReaderConstants.IG.getColCount(row), chunk.getBinCount());
+            assertEquals(row, chunk.getRows()[0]);
+            assertEquals(0, chunk.getCols()[0]);
+            assertEquals(row, chunk.getRows()[chunk.getBinCount() - 1]);
+            assertEquals(ReaderConstants.IG.getColCount(row) - 1, chunk.getCols()[chunk.getBinCount() - 1]);
+
+            // no chunk is passed for rows without bins
+            chunks = readBins(reader, EMPTY_ROW, EMPTY_ROW);
+            assertEquals(0, chunks.size());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testInvalidRowRanges() throws IOException {
+        final IsinBinReader reader = open();
+        try {
+            try {
+                reader.getBinCount(-1, 0);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+            try {
+                reader.getBinCount(MAX_ROW, MIN_ROW);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+            try {
+                readBins(reader, 0, reader.getRowCount());
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testFillValuesAreNotReplaced() throws IOException {
+        final IsinBinReader reader = open();
+        try {
+            final List<IsinBinChunk> chunks = readBins(reader, MIN_ROW, MIN_ROW);
+            final double[] means = chunks.get(0).getValues(0);
+            assertEquals(FILL_VALUE, means[0], 0.0);
+            assertEquals(1.5, means[1], 0.0);
+            assertEquals(FILL_VALUE, means[10], 0.0);
+            assertEquals(11.5, means[11], 0.0);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static List<IsinBinChunk> readBins(IsinBinReader reader, int minRow, int maxRow) throws IOException {
+        final List<IsinBinChunk> chunks = new ArrayList<IsinBinChunk>();
+        reader.readBins(minRow, maxRow, reader.getVariableNames(), new IsinBinHandler() {
+            @Override
+            public void handleBins(IsinBinChunk chunk) {
+                chunks.add(chunk);
+            }
+        });
+        return chunks;
+    }
+
+    private IsinBinReader open() throws IOException {
+        return IsinBinReader.open(file, Runtime.getRuntime().availableProcessors(), new StorageInfoCache(cacheDir, 16));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import junit.framework.TestCase;
+
+/**
+ * Test methods for class {@link IsinColumnLookup}.
+ */
+public class IsinColumnLookupTest extends TestCase {
+
+    private static final IsinGrid ISIN_GRID = new IsinGrid(6);
+    private static final EquirectGrid EQUIRECT_GRID = new EquirectGrid(6, 12, -90.0, -180.0, 30.0, 30.0);
+
+    public void testGetCols() {
+        final IsinColumnLookup lookup = new IsinColumnLookup(ISIN_GRID, EQUIRECT_GRID);
+
+        for (int row = 0; row < ISIN_GRID.getRowCount(); ++row) {
+            final short[] cols = lookup.getCols(row);
+            assertEquals(EQUIRECT_GRID.getColCount(), cols.length);
+
+            for (int x = 0; x < cols.length; ++x) {
+                assertEquals(ISIN_GRID.getCol(row, EQUIRECT_GRID.getLon(x)), cols[x]);
+            }
+        }
+    }
+
+    public void testRowsWithEqualColCountShareTable() {
+        final IsinColumnLookup lookup = new IsinColumnLookup(ISIN_GRID, EQUIRECT_GRID);
+
+        assertSame(lookup.getCols(0), lookup.getCols(5));
+        assertSame(lookup.getCols(1), lookup.getCols(4));
+        assertSame(lookup.getCols(2), lookup.getCols(3));
+        assertNotSame(lookup.getCols(0), lookup.getCols(1));
+    }
+
+    public void testGetInstance() {
+        final EquirectGrid equalGrid = new EquirectGrid(6, 12, -90.0, -180.0, 30.0, 30.0);
+        final EquirectGrid otherGrid = new EquirectGrid(3, 12, -90.0, -180.0, 30.0, 30.0);
+
+        final IsinColumnLookup lookup = IsinColumnLookup.getInstance(ISIN_GRID, EQUIRECT_GRID);
+        assertSame(lookup, IsinColumnLookup.getInstance(ISIN_GRID, equalGrid));
+        assertNotSame(lookup, IsinColumnLookup.getInstance(ISIN_GRID, otherGrid));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import junit.framework.TestCase;
+import ucar.nc2.NetcdfFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test methods for class {@link NetcdfFilePool}.
+ */
+public class NetcdfFilePoolTest extends TestCase {
+
+    private static final int THREAD_COUNT = 8;
+    private static final int ACQUISITION_COUNT = 1000;
+
+    public void testMaxIdleCountMustBePositive() {
+        try {
+            new NetcdfFilePool("test.nc", 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testReleasedHandleIsReused() throws IOException {
+        final TestNetcdfFilePool pool = new TestNetcdfFilePool(2);
+
+        final NetcdfFile ncFile = pool.acquire();
+        pool.release(ncFile);
+
+        assertSame(ncFile, pool.acquire());
+        assertEquals(1, pool.openedHandles.size());
+        assertFalse(pool.openedHandles.get(0).isClosed());
+    }
+
+    public void testSurplusHandlesAreClosed() throws IOException {
+        final TestNetcdfFilePool pool = new TestNetcdfFilePool(2);
+
+        final NetcdfFile ncFile1 = pool.acquire();
+        final NetcdfFile ncFile2 = pool.acquire();
+        final NetcdfFile ncFile3 = pool.acquire();
+        pool.release(ncFile1);
+        pool.release(ncFile2);
+        pool.release(ncFile3);
+
+        assertEquals(3, pool.openedHandles.size());
+        assertFalse(pool.openedHandles.get(0).isClosed());
+        assertFalse(pool.openedHandles.get(1).isClosed());
+        assertTrue(pool.openedHandles.get(2).isClosed());
+    }
+
+    public void testCloseWhileAcquired() throws IOException {
+        final TestNetcdfFilePool pool = new TestNetcdfFilePool(2);
+
+        final NetcdfFile idleFile = pool.acquire();
+        final NetcdfFile acquiredFile = pool.acquire();
+        pool.release(idleFile);
+        pool.close();
+
+        // the idle handle is closed at once, the acquired one when it is released
+        assertTrue(pool.openedHandles.get(0).isClosed());
+        assertFalse(pool.openedHandles.get(1).isClosed());
+        pool.release(acquiredFile);
+        assertTrue(pool.openedHandles.get(1).isClosed());
+
+        try {
+            pool.acquire();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testConcurrentAcquisition() throws Exception {
+        final int maxIdleCount = 2;
+        final TestNetcdfFilePool pool = new TestNetcdfFilePool(maxIdleCount);
+        final Set<NetcdfFile> acquiredFiles = new HashSet<NetcdfFile>();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            final List<Future<Object>> futures = new ArrayList<Future<Object>>(THREAD_COUNT);
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        for (int j = 0; j < ACQUISITION_COUNT; j++) {
+                            final NetcdfFile ncFile = pool.acquire();
+                            synchronized (acquiredFiles) {
+                                // a handle must never be used by two threads at once
+                                assertTrue(acquiredFiles.add(ncFile));
+                            }
+                            assertFalse(((TestNetcdfFile) ncFile).isClosed());
+                            Thread.yield();
+                            synchronized (acquiredFiles) {
+                                acquiredFiles.remove(ncFile);
+                            }
+                            pool.release(ncFile);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Object> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // all but the idle handles have been closed
+        final int openCount = getOpenCount(pool.openedHandles);
+        assertTrue(openCount >= 1);
+        assertTrue(openCount <= maxIdleCount);
+
+        pool.close();
+        assertEquals(0, getOpenCount(pool.openedHandles));
+    }
+
+    private static int getOpenCount(List<TestNetcdfFile> handles) {
+        int count = 0;
+        for (final TestNetcdfFile handle : handles) {
+            if (!handle.isClosed()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static class TestNetcdfFilePool extends NetcdfFilePool {
+
+        // the handles in the order they have been opened
+        private final List<TestNetcdfFile> openedHandles = new ArrayList<TestNetcdfFile>();
+
+        private TestNetcdfFilePool(int maxIdleCount) {
+            super("test.nc", maxIdleCount);
+        }
+
+        @Override
+        synchronized NetcdfFile open() {
+            final TestNetcdfFile handle = new TestNetcdfFile();
+            openedHandles.add(handle);
+            return handle;
+        }
+    }
+}
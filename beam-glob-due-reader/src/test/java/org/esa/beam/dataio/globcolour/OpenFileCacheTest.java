@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Test methods for class {@link OpenFileCache}.
+ */
+public class OpenFileCacheTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("OpenFileCacheTest", ".nc");
+        final FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(new byte[16]);
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testTake() {
+        final OpenFileCache cache = new OpenFileCache(8, 10000L);
+        final TestNetcdfFile ncFile = new TestNetcdfFile();
+        cache.put(file.getPath(), ncFile);
+
+        assertSame(ncFile, cache.take(file.getPath()));
+        assertNull(cache.take(file.getPath()));
+        assertFalse(ncFile.isClosed());
+        cache.clear();
+    }
+
+    public void testExpiredFilesAreClosedWithoutFurtherCalls() throws InterruptedException {
+        final OpenFileCache cache = new OpenFileCache(8, 50L);
+        final TestNetcdfFile ncFile = new TestNetcdfFile();
+        cache.put(file.getPath(), ncFile);
+        assertEquals(1, cache.size());
+
+        // no other call to the cache is made, the file is closed by the timer
+        for (int i = 0; i < 100 && !ncFile.isClosed(); i++) {
+            Thread.sleep(20L);
+        }
+        assertTrue(ncFile.isClosed());
+        assertEquals(0, cache.size());
+    }
+
+    public void testEldestFileIsClosed() throws IOException {
+        final OpenFileCache cache = new OpenFileCache(1, 10000L);
+        final File otherFile = File.createTempFile("OpenFileCacheTest", ".nc");
+        try {
+            final TestNetcdfFile ncFile = new TestNetcdfFile();
+            final TestNetcdfFile otherNcFile = new TestNetcdfFile();
+            cache.put(file.getPath(), ncFile);
+            cache.put(otherFile.getPath(), otherNcFile);
+
+            assertTrue(ncFile.isClosed());
+            assertNull(cache.take(file.getPath()));
+            assertSame(otherNcFile, cache.take(otherFile.getPath()));
+        } finally {
+            otherFile.delete();
+            cache.clear();
+        }
+    }
+}
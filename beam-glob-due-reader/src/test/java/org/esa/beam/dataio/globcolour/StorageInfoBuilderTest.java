@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * Test methods for class {@link StorageInfoBuilder}.
+ */
+public class StorageInfoBuilderTest extends TestCase {
+
+    // row index numbers of the bins stored, rows 3 and 6 have no bins
+    private static final short[] ROWS = {1, 1, 2, 2, 2, 4, 5, 5, 7, 8, 8};
+
+    public void testSingleSequence() {
+        final int[] rowStarts = StorageInfoBuilder.createRowStarts(6);
+        StorageInfoBuilder.assignRowStarts(ROWS, 0, Integer.MIN_VALUE, 2, rowStarts);
+
+        // rows 2 to 7 and the following row 8
+        assertTrue(Arrays.equals(new int[]{2, 5, 5, 6, 8, 8, 9}, rowStarts));
+
+        final IsinGridStorageInfo info = StorageInfoBuilder.createStorageInfo(2, ROWS.length, rowStarts);
+        assertEquals(6, info.getRowCount());
+        assertEquals(9, info.getBinCount());
+        assertEquals(7, info.getRow(0));
+        assertEquals(2, info.getRow(5));
+        assertEquals(1, info.getBinCount(0));  // row 7
+        assertEquals(0, info.getBinCount(1));  // row 6
+        assertEquals(2, info.getBinCount(2));  // row 5
+        assertEquals(1, info.getBinCount(3));  // row 4
+        assertEquals(0, info.getBinCount(4));  // row 3
+        assertEquals(3, info.getBinCount(5));  // row 2
+    }
+
+    public void testSplitSequencesYieldSameResult() {
+        final int[] expected = StorageInfoBuilder.createRowStarts(6);
+        StorageInfoBuilder.assignRowStarts(ROWS, 0, Integer.MIN_VALUE, 2, expected);
+
+        for (int split = 1; split < ROWS.length; ++split) {
+            final short[] head = Arrays.copyOfRange(ROWS, 0, split);
+            final short[] tail = Arrays.copyOfRange(ROWS, split, ROWS.length);
+            final int[] rowStarts = StorageInfoBuilder.createRowStarts(6);
+
+            // the tail is processed first, as it may happen when sequences are scanned concurrently
+            StorageInfoBuilder.assignRowStarts(tail, split, ROWS[split - 1], 2, rowStarts);
+            StorageInfoBuilder.assignRowStarts(head, 0, Integer.MIN_VALUE, 2, rowStarts);
+
+            assertTrue(Arrays.equals(expected, rowStarts));
+        }
+    }
+
+    public void testRowsBeyondLastBin() {
+        final int[] rowStarts = StorageInfoBuilder.createRowStarts(3);
+        StorageInfoBuilder.assignRowStarts(ROWS, 0, Integer.MIN_VALUE, 8, rowStarts);
+
+        final IsinGridStorageInfo info = StorageInfoBuilder.createStorageInfo(8, ROWS.length, rowStarts);
+        assertEquals(ROWS.length, info.getBinCount());
+        assertEquals(ROWS.length, info.getOffset(0));  // row 10
+        assertEquals(ROWS.length, info.getOffset(1));  // row 9
+        assertEquals(9, info.getOffset(2));            // row 8
+        assertEquals(2, info.getBinCount(2));
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+package org.esa.beam.dataio.globcolour;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Test methods for class {@link StorageInfoCache}.
+ */
+public class StorageInfoCacheTest extends TestCase {
+
+    private File cacheDir;
+    private File productFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        cacheDir = createCacheDir("StorageInfoCacheTest");
+
+        productFile = new File(cacheDir, "product.nc");
+        writeBytes(productFile, 16);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteCacheDir(cacheDir);
+    }
+
+    public void testWriteAndRead() {
+        final StorageInfoCache cache = new StorageInfoCache(cacheDir, 16);
+        assertNull(cache.read(productFile, 1, 4));
+
+        cache.write(productFile, 1, new IsinGridStorageInfo(1, 4, new int[]{3, 2, 1, 0}));
+
+        final IsinGridStorageInfo info = cache.read(productFile, 1, 4);
+        assertNotNull(info);
+        assertEquals(4, info.getRowCount());
+        assertEquals(4, info.getBinCount());
+        assertEquals(4, info.getRow(0));
+        assertEquals(1, info.getRow(3));
+        assertEquals(3, info.getOffset(0));
+        assertEquals(0, info.getOffset(3));
+    }
+
+    public void testReadIgnoresOtherRows() {
+        final StorageInfoCache cache = new StorageInfoCache(cacheDir, 16);
+        cache.write(productFile, 1, new IsinGridStorageInfo(1, 4, new int[]{3, 2, 1, 0}));
+
+        assertNull(cache.read(productFile, 0, 4));
+        assertNull(cache.read(productFile, 1, 3));
+    }
+
+    public void testDifferentRowsAreKeptSeparately() {
+        final StorageInfoCache cache = new StorageInfoCache(cacheDir, 16);
+        cache.write(productFile, 1, new IsinGridStorageInfo(1, 4, new int[]{3, 2, 1, 0}));
+        cache.write(productFile, 0, new IsinGridStorageInfo(0, 4, new int[]{4, 3, 2}));
+
+        final IsinGridStorageInfo info1 = cache.read(productFile, 1, 4);
+        assertNotNull(info1);
+        assertEquals(4, info1.getRowCount());
+        final IsinGridStorageInfo info0 = cache.read(productFile, 0, 3);
+        assertNotNull(info0);
+        assertEquals(3, info0.getRowCount());
+        assertEquals(2, info0.getOffset(2));
+    }
+
+    public void testReadIgnoresStaleIndex() throws IOException {
+        final StorageInfoCache cache = new StorageInfoCache(cacheDir, 16);
+        cache.write(productFile, 1, new IsinGridStorageInfo(1, 4, new int[]{3, 2, 1, 0}));
+
+        writeBytes(productFile, 32);
+        assertNull(cache.read(productFile, 1, 4));
+    }
+
+    public void testLeastRecentlyUsedIndexFilesAreDeleted() throws IOException {
+        final StorageInfoCache cache = new StorageInfoCache(cacheDir, 2);
+        final File productFile2 = new File(cacheDir, "product2.nc");
+        final File productFile3 = new File(cacheDir, "product3.nc");
+        writeBytes(productFile2, 16);
+        writeBytes(productFile3, 16);
+
+        cache.write(productFile, 1, new IsinGridStorageInfo(1, 4, new int[]{3, 2, 1, 0}));
+        cache.write(productFile2, 1, new IsinGridStorageInfo(1, 4, new int[]{3, 2, 1, 0}));
+        final long now = System.currentTimeMillis();
+        setIndexFileLastModified("product.nc-", now - 20000);
+        setIndexFileLastModified("product2.nc-", now - 10000);
+
+        // reading the older index file makes it the most recently used one
+        assertNotNull(cache.read(productFile, 1, 4));
+        cache.write(productFile3, 1, new IsinGridStorageInfo(1, 4, new int[]{3, 2, 1, 0}));
+
+        assertNotNull(cache.read(productFile, 1, 4));
+        assertNull(cache.read(productFile2, 1, 4));
+        assertNotNull(cache.read(productFile3, 1, 4));
+        // the product files themselves are not affected
+        assertTrue(productFile2.isFile());
+    }
+
+    /**
+     * Creates an empty temporary directory for storing index files.
+     *
+     * @param prefix the prefix of the directory name.
+     * @return the directory.
+     * @throws IOException if the directory cannot be created.
+     */
+    static File createCacheDir(String prefix) throws IOException {
+        final File dir = File.createTempFile(prefix, "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        return dir;
+    }
+
+    /**
+     * Deletes a directory created by {@link #createCacheDir(String)} together with the files
+     * therein.
+     *
+     * @param dir the directory.
+     */
+    static void deleteCacheDir(File dir) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private void setIndexFileLastModified(String namePrefix, long lastModified) {
+        int count = 0;
+        for (final File file : cacheDir.listFiles()) {
+            if (file.getName().startsWith(namePrefix) && file.getName().endsWith(".idx")) {
+                assertTrue(file.setLastModified(lastModified));
+                count++;
+            }
+        }
+        assertEquals(1, count);
+    }
+
+    private static void writeBytes(File file, int count) throws IOException {
+        final FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(new byte[count]);
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import com.bc.ceres.glevel.MultiLevelImage;
+import org.esa.beam.framework.dataio.ProductSubsetDef;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AbstractGcProductReaderTest {
+
+    @Test
+    public void testAllBandsWithoutSubset() throws IOException {
+        final Product product = new TestReader().readProductNodes(new File("test.hdf"), null);
+
+        assertEquals(2, product.getBands().length);
+        assertNotNull(product.getBand("SM"));
+        assertNotNull(product.getBand("land_cover"));
+    }
+
+    @Test
+    public void testBandSubset() throws IOException {
+        final ProductSubsetDef subsetDef = new ProductSubsetDef();
+        subsetDef.addNodeName("land_cover");
+        final TestReader reader = new TestReader();
+        final Product product = reader.readProductNodes(new File("test.hdf"), subsetDef);
+
+        assertEquals(1, product.getBands().length);
+        assertNull(product.getBand("SM"));
+        final Band band = product.getBand("land_cover");
+        assertNotNull(band);
+        assertEquals(ProductData.TYPE_UINT8, band.getDataType());
+        assertEquals(200.0, band.getNoDataValue(), 0.0);
+        // source images are only created for the bands of the subset
+        assertEquals(1, reader.imageCount);
+    }
+
+    private static BandDescriptor createBandDescriptor(String name) {
+        final BandDescriptor descriptor = new BandDescriptor();
+        descriptor.setName(name);
+        descriptor.setDataType(ProductData.TYPE_UINT8);
+        descriptor.setWidth(100);
+        descriptor.setHeight(50);
+        descriptor.setScaleFactor(1.0);
+        descriptor.setFillValueUsed(true);
+        descriptor.setFillValue(200.0);
+        return descriptor;
+    }
+
+    private static class TestReader extends AbstractGcProductReader {
+
+        private int imageCount;
+
+        private TestReader() {
+            super(null);
+        }
+
+        @Override
+        protected Product readProductNodesImpl() throws IOException {
+            final Product product = new Product("test", "test", 100, 50);
+            final List<BandDescriptor> descriptors = new ArrayList<BandDescriptor>();
+            descriptors.add(createBandDescriptor("SM"));
+            descriptors.add(createBandDescriptor("land_cover"));
+            addBands(product, descriptors);
+            return product;
+        }
+
+        @Override
+        protected String getBimonthlyProductType() {
+            return "TEST_BI";
+        }
+
+        @Override
+        protected String getAnnualProductType() {
+            return "TEST_AN";
+        }
+
+        @Override
+        protected GeoPos getUpperLeftPosition() {
+            return new GeoPos(0.0f, 0.0f);
+        }
+
+        @Override
+        protected MultiLevelImage getMultiLevelImage(Band band) {
+            imageCount++;
+            return null;
+        }
+    }
+}
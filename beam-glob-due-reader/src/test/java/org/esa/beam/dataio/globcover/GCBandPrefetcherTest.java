@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.junit.Before;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GCBandPrefetcherTest {
+
+    private GCBandPrefetcher prefetcher;
+    private RecordingTileReader tileReader;
+
+    @Before
+    public void setUp() {
+        prefetcher = new GCBandPrefetcher(1024 * 1024);
+        tileReader = new RecordingTileReader();
+    }
+
+    @Test
+    public void testSingleBandSequentialReadDoesNotReadSiblings() throws Exception {
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) {
+                prefetcher.readData(tileReader, "red", x * 10, y * 10, 10, 10, 1, 1);
+            }
+        }
+        assertEquals(100, tileReader.reads.size());
+        for (final List<String> names : tileReader.reads) {
+            assertEquals(Arrays.asList("red"), names);
+        }
+        assertEquals(0, prefetcher.getSize());
+    }
+
+    @Test
+    public void testBandsRequestingTheSameRegionAreReadAlong() throws Exception {
+        // the first region is read band by band, which reveals that the bands are combined
+        readRgb(0);
+        assertEquals(3, tileReader.reads.size());
+
+        readRgb(10);
+        assertEquals(4, tileReader.reads.size());
+        assertEquals(3, tileReader.reads.get(3).size());
+        assertEquals(0, prefetcher.getSize());
+    }
+
+    @Test
+    public void testSiblingsAreNoLongerReadWhenNotRequested() throws Exception {
+        readRgb(0);
+        readRgb(10);
+        tileReader.reads.clear();
+
+        // only one band is read after the RGB image has been closed
+        for (int x = 20; x < 2000; x += 10) {
+            prefetcher.readData(tileReader, "red", x, 0, 10, 10, 1, 1);
+        }
+        int siblingReadCount = 0;
+        for (final List<String> names : tileReader.reads) {
+            if (names.size() > 1) {
+                siblingReadCount++;
+            }
+        }
+        assertTrue(siblingReadCount <= GCBandPrefetcher.MAX_PENDING_COUNT);
+        assertFalse(prefetcher.getPrefetchedBandNames(1).contains("green"));
+        assertFalse(prefetcher.getPrefetchedBandNames(1).contains("blue"));
+        assertEquals(Arrays.asList("red"), tileReader.reads.get(tileReader.reads.size() - 1));
+    }
+
+    @Test
+    public void testDifferentRegionsAreNotReadAlong() throws Exception {
+        // images with different tilings never request the same region
+        prefetcher.readData(tileReader, "red", 0, 0, 10, 10, 1, 1);
+        prefetcher.readData(tileReader, "green", 0, 0, 20, 20, 1, 1);
+        prefetcher.readData(tileReader, "red", 10, 0, 10, 10, 1, 1);
+        prefetcher.readData(tileReader, "green", 20, 0, 20, 20, 1, 1);
+        for (final List<String> names : tileReader.reads) {
+            assertEquals(1, names.size());
+        }
+        assertTrue(prefetcher.getPrefetchedBandNames(1).isEmpty());
+    }
+
+    @Test
+    public void testEvictedBandIsNoLongerReadAlong() throws Exception {
+        // room for a single buffered region of 10 x 10 shorts
+        prefetcher = new GCBandPrefetcher(200);
+        prefetcher.readData(tileReader, "red", 0, 0, 10, 10, 1, 1);
+        prefetcher.readData(tileReader, "green", 0, 0, 10, 10, 1, 1);
+        prefetcher.readData(tileReader, "blue", 0, 0, 10, 10, 1, 1);
+
+        // green and blue are read along, but only blue fits into the buffer
+        prefetcher.readData(tileReader, "red", 10, 0, 10, 10, 1, 1);
+        assertEquals(new HashSet<String>(Arrays.asList("red", "green", "blue")),
+                     new HashSet<String>(tileReader.reads.get(3)));
+        assertEquals(200, prefetcher.getSize());
+        assertEquals(new HashSet<String>(Arrays.asList("red", "blue")), prefetcher.getPrefetchedBandNames(1));
+
+        prefetcher.readData(tileReader, "blue", 10, 0, 10, 10, 1, 1);
+        prefetcher.readData(tileReader, "red", 20, 0, 10, 10, 1, 1);
+        assertEquals(5, tileReader.reads.size());
+        assertEquals(Arrays.asList("red", "blue"), tileReader.reads.get(4));
+    }
+
+    private void readRgb(int x) throws Exception {
+        prefetcher.readData(tileReader, "red", x, 0, 10, 10, 1, 1);
+        prefetcher.readData(tileReader, "green", x, 0, 10, 10, 1, 1);
+        prefetcher.readData(tileReader, "blue", x, 0, 10, 10, 1, 1);
+    }
+
+    private static class RecordingTileReader implements GCBandPrefetcher.TileReader {
+
+        private final List<List<String>> reads = new ArrayList<List<String>>();
+
+        @Override
+        public String getFilePath() {
+            return "tile.hdf";
+        }
+
+        @Override
+        public Array[] readData(String[] variableNames, int offsetX, int offsetY, int width, int height,
+                                int stepX, int stepY) throws IOException {
+            reads.add(Arrays.asList(variableNames));
+            final Array[] arrays = new Array[variableNames.length];
+            for (int i = 0; i < arrays.length; i++) {
+                arrays[i] = Array.factory(DataType.SHORT, new int[]{height, width}, new short[width * height]);
+            }
+            return arrays;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GCChunkCacheTest {
+
+    @Test
+    public void testLeastRecentlyUsedChunkIsEvicted() {
+        final GCChunkCache cache = new GCChunkCache(40);
+        final String fileKey = GCChunkCache.createFileKey("tile.hdf", 100, 0);
+        final short[] chunk00 = new short[10];
+        final short[] chunk10 = new short[5];
+        cache.put(fileKey, "SM", 0, 0, chunk00);
+        cache.put(fileKey, "SM", 1, 0, chunk10);
+        assertEquals(30, cache.getSize());
+
+        assertSame(chunk00, cache.get(fileKey, "SM", 0, 0));
+        cache.put(fileKey, "SM", 0, 1, new short[10]);
+        assertEquals(40, cache.getSize());
+        assertNull(cache.get(fileKey, "SM", 1, 0));
+
+        assertSame(chunk00, cache.get(fileKey, "SM", 0, 0));
+        cache.put(fileKey, "MEAN", 0, 0, new byte[10]);
+        assertNull(cache.get(fileKey, "SM", 0, 1));
+        assertSame(chunk00, cache.get(fileKey, "SM", 0, 0));
+        assertEquals(30, cache.getSize());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testModifiedFileIsNotHit() {
+        final GCChunkCache cache = new GCChunkCache(1024);
+        cache.put(GCChunkCache.createFileKey("tile.hdf", 100, 0), "SM", 0, 0, new byte[10]);
+        assertNull(cache.get(GCChunkCache.createFileKey("tile.hdf", 100, 1), "SM", 0, 0));
+        assertNotNull(cache.get(GCChunkCache.createFileKey("tile.hdf", 100, 0), "SM", 0, 0));
+    }
+
+    @Test
+    public void testTooLargeChunkIsNotCached() {
+        final GCChunkCache cache = new GCChunkCache(16);
+        cache.put("tile.hdf", "SM", 0, 0, new int[5]);
+        assertNull(cache.get("tile.hdf", "SM", 0, 0));
+        assertEquals(0, cache.getSize());
+        assertFalse(new GCChunkCache(0).isEnabled());
+    }
+
+    @Test
+    public void testCopySamples() {
+        final short[] target = new short[4];
+        GCTileFile.copySamples(new short[]{0, 1, 2, 3, 4, 5, 6, 7}, 1, 2, target, 1, 3);
+        assertArrayEquals(new short[]{0, 1, 3, 5}, target);
+        final double[] doubles = new double[2];
+        GCTileFile.copySamples(new double[]{1.0, 2.0, 3.0}, 1, 1, doubles, 0, 2);
+        assertArrayEquals(new double[]{2.0, 3.0}, doubles, 0.0);
+    }
+}
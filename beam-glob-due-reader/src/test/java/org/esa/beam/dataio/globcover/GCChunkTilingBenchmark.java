@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.util.jai.JAIUtils;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Compares reading a band of a GlobCover tile file with the preferred JAI tiling and with the
+ * chunk-aligned tiling. For each tiling it reports the number of chunk decompressions, which
+ * is the number of chunks touched by all tiles, and the time needed to read all tiles.
+ * <p/>
+ * Usage: <code>GCChunkTilingBenchmark &lt;tile file&gt; [&lt;band name&gt; [&lt;subsampling&gt;]]</code>
+ */
+public class GCChunkTilingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: GCChunkTilingBenchmark <tile file> [<band name> [<subsampling>]]");
+            System.exit(1);
+        }
+        // without chunk cache, so every chunk touched by a tile is decompressed
+        final GCTileFile tileFile = new GCTileFile(new File(args[0]), 1, new GCChunkCache(0));
+        try {
+            final List<BandDescriptor> descriptors = tileFile.getBandDescriptorList();
+            BandDescriptor descriptor = descriptors.get(0);
+            for (final BandDescriptor bandDescriptor : descriptors) {
+                if (args.length > 1 && bandDescriptor.getName().equals(args[1])) {
+                    descriptor = bandDescriptor;
+                }
+            }
+            final int subsampling = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+            final int width = (tileFile.getWidth() + subsampling - 1) / subsampling;
+            final int height = (tileFile.getHeight() + subsampling - 1) / subsampling;
+            System.out.printf("Band %s, %d x %d pixels, chunks %d x %d, subsampling %d%n",
+                              descriptor.getName(), width, height,
+                              descriptor.getChunkWidth(), descriptor.getChunkHeight(), subsampling);
+            if (descriptor.getChunkWidth() <= 0 || descriptor.getChunkHeight() <= 0) {
+                System.out.println("The chunk layout is unknown, both tilings are equal.");
+            }
+
+            final Dimension preferredSize = JAIUtils.computePreferredTileSize(width, height, 1);
+            final Dimension alignedSize = GCChunkTiling.computeTileSize(width, height, descriptor, subsampling, 0);
+            // the first run warms up the file system cache
+            run("preferred", tileFile, descriptor, preferredSize, width, height, subsampling);
+            run("preferred", tileFile, descriptor, preferredSize, width, height, subsampling);
+            run("chunk-aligned", tileFile, descriptor, alignedSize, width, height, subsampling);
+        } finally {
+            tileFile.close();
+        }
+    }
+
+    private static void run(String name, GCTileFile tileFile, BandDescriptor descriptor, Dimension tileSize,
+                            int width, int height, int subsampling) throws Exception {
+        final int sourceWidth = tileFile.getWidth();
+        final int sourceHeight = tileFile.getHeight();
+        long chunkCount = 0;
+        int tileCount = 0;
+        final long startTime = System.nanoTime();
+        for (int y = 0; y < height; y += tileSize.height) {
+            for (int x = 0; x < width; x += tileSize.width) {
+                final int sourceX = x * subsampling;
+                final int sourceY = y * subsampling;
+                final int sourceX1 = Math.min(sourceWidth, (x + tileSize.width) * subsampling);
+                final int sourceY1 = Math.min(sourceHeight, (y + tileSize.height) * subsampling);
+                tileFile.readData(descriptor.getName(), sourceX, sourceY,
+                                  sourceX1 - sourceX, sourceY1 - sourceY, subsampling, subsampling);
+                chunkCount += (long) countChunks(sourceX, sourceX1, descriptor.getChunkWidth())
+                              * countChunks(sourceY, sourceY1, descriptor.getChunkHeight());
+                tileCount++;
+            }
+        }
+        final long millis = (System.nanoTime() - startTime) / 1000000;
+        System.out.printf("%-14s tiles %4d x %4d: %5d tiles, %6d chunk decompressions, %6d ms%n",
+                          name, tileSize.width, tileSize.height, tileCount, chunkCount, millis);
+    }
+
+    private static int countChunks(int sourceStart, int sourceEnd, int chunkSize) {
+        if (chunkSize <= 0) {
+            return 1;
+        }
+        return (sourceEnd - 1) / chunkSize - sourceStart / chunkSize + 1;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GCChunkTilingTest {
+
+    @Test
+    public void testMosaicTileExtent() {
+        // source extents dividing the tile file size: 100, 200, 300, 600, 900, 1800
+        assertEquals(600, GCChunkTiling.computeTileExtent(129600, 512, 100, 1, TileIndex.TILE_SIZE));
+        assertEquals(450, GCChunkTiling.computeTileExtent(64800, 512, 100, 2, TileIndex.TILE_SIZE));
+        // beyond a size of eight source pixels per image pixel, a tile covers whole tile files
+        assertEquals(450, GCChunkTiling.computeTileExtent(8100, 512, 100, 16, TileIndex.TILE_SIZE));
+    }
+
+    @Test
+    public void testSingleFileTileExtent() {
+        assertEquals(500, GCChunkTiling.computeTileExtent(1800, 450, 100, 1, 0));
+        assertEquals(1800, GCChunkTiling.computeTileExtent(1800, 450, 1800, 1, 0));
+        // a single tile covering the whole image
+        assertEquals(113, GCChunkTiling.computeTileExtent(113, 113, 1800, 16, 0));
+    }
+
+    @Test
+    public void testFallbackToPreferredExtent() {
+        assertEquals(512, GCChunkTiling.computeTileExtent(129600, 512, 0, 1, TileIndex.TILE_SIZE));
+        assertEquals(512, GCChunkTiling.computeTileExtent(129600, 512, 7, 1, TileIndex.TILE_SIZE));
+    }
+}
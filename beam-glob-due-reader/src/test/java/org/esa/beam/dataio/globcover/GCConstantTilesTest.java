@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.junit.Test;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+
+import static org.junit.Assert.*;
+
+public class GCConstantTilesTest {
+
+    @Test
+    public void testConstantRasterIsShared() {
+        final SampleModel sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_SHORT, 8, 8, 1, 8,
+                                                                        new int[]{0});
+        final WritableRaster raster = GCConstantTiles.getConstantRaster(sampleModel, 4, 3, -1.0);
+        assertEquals(4, raster.getWidth());
+        assertEquals(3, raster.getHeight());
+        assertEquals(DataBuffer.TYPE_SHORT, raster.getSampleModel().getDataType());
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 4; x++) {
+                assertEquals(-1, raster.getSample(x, y, 0));
+            }
+        }
+
+        assertSame(raster, GCConstantTiles.getConstantRaster(sampleModel, 4, 3, -1.0));
+        assertNotSame(raster, GCConstantTiles.getConstantRaster(sampleModel, 4, 3, 0.0));
+        assertNotSame(raster, GCConstantTiles.getConstantRaster(sampleModel, 3, 4, -1.0));
+    }
+
+    @Test
+    public void testFill() {
+        final SampleModel sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_FLOAT, 2, 2, 1, 2,
+                                                                        new int[]{0});
+        final DataBuffer buffer = sampleModel.createDataBuffer();
+        GCConstantTiles.fill(buffer, Double.NaN);
+        for (int i = 0; i < buffer.getSize(); i++) {
+            assertTrue(Float.isNaN(buffer.getElemFloat(i)));
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GCMosaicCatalogCacheTest {
+
+    private File tempDir;
+    private File cacheDir;
+    private File productDir;
+    private File refFile;
+    private Map<TileIndex, File> tileFileMap;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = File.createTempFile("GCMosaicCatalogCacheTest", "");
+        assertTrue(tempDir.delete());
+        assertTrue(tempDir.mkdir());
+        cacheDir = new File(tempDir, "cache");
+        productDir = new File(tempDir, "product");
+        assertTrue(productDir.mkdir());
+
+        refFile = new File(productDir, "GLOBCOVER_H20V05.hdf");
+        writeBytes(refFile, 16);
+        tileFileMap = new HashMap<TileIndex, File>();
+        tileFileMap.put(new TileIndex(20, 5), refFile);
+        final File tileFile = new File(productDir, "GLOBCOVER_H21V05.hdf");
+        writeBytes(tileFile, 8);
+        tileFileMap.put(new TileIndex(21, 5), tileFile);
+    }
+
+    @After
+    public void tearDown() {
+        delete(tempDir);
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        final GCMosaicCatalogCache cache = new GCMosaicCatalogCache(cacheDir);
+        assertNull(cache.read("mosaic", productDir));
+
+        cache.write("mosaic", productDir, createCatalog());
+
+        final GCMosaicCatalog catalog = cache.read("mosaic", productDir);
+        assertNotNull(catalog);
+        assertEquals(refFile.getPath(), catalog.getFilePath());
+        assertTrue(catalog.isAnnualFile());
+        assertEquals(3600, catalog.getWidth());
+        assertEquals(1800, catalog.getHeight());
+        assertTrue(catalog.isUpToDate());
+
+        assertEquals(1000, catalog.getStartDate().getDaysFraction());
+        assertEquals(20, catalog.getStartDate().getSecondsFraction());
+        assertEquals(30, catalog.getStartDate().getMicroSecondsFraction());
+        assertEquals(1365, catalog.getEndDate().getDaysFraction());
+        assertEquals(10.5f, catalog.getUpperLeftCorner().getLat(), 0.0f);
+        assertEquals(-20.25f, catalog.getUpperLeftCorner().getLon(), 0.0f);
+
+        final List<BandDescriptor> descriptors = catalog.getBandDescriptors();
+        assertEquals(2, descriptors.size());
+        final BandDescriptor classes = catalog.getBandDescriptor("land_cover");
+        assertEquals(ProductData.TYPE_UINT8, classes.getDataType().intValue());
+        assertEquals(3600, classes.getWidth());
+        assertEquals(1800, classes.getHeight());
+        assertEquals("Land cover class", classes.getDescription());
+        assertNull(classes.getUnit());
+        assertTrue(classes.isFillValueUsed());
+        assertEquals(255.0, classes.getFillValue(), 0.0);
+        assertEquals(1.0, classes.getScaleFactor(), 0.0);
+        assertEquals(0.0, classes.getOffsetValue(), 0.0);
+        assertEquals(360, classes.getChunkWidth());
+        assertEquals(180, classes.getChunkHeight());
+        final BandDescriptor reflectance = descriptors.get(1);
+        assertEquals("reflectance", reflectance.getName());
+        assertEquals(ProductData.TYPE_INT16, reflectance.getDataType().intValue());
+        assertNull(reflectance.getDescription());
+        assertEquals("1", reflectance.getUnit());
+        assertFalse(reflectance.isFillValueUsed());
+        assertEquals(1.0e-4, reflectance.getScaleFactor(), 0.0);
+        assertEquals(-0.5, reflectance.getOffsetValue(), 0.0);
+        assertNull(catalog.getBandDescriptor("unknown"));
+
+        final List<Attribute> attributes = catalog.getGlobalAttributes();
+        assertEquals(3, attributes.size());
+        assertEquals("Title", attributes.get(0).getName());
+        assertTrue(attributes.get(0).isString());
+        assertEquals("GlobCover", attributes.get(0).getStringValue());
+        assertEquals("Sensors", attributes.get(1).getName());
+        assertEquals(2, attributes.get(1).getLength());
+        assertEquals("AATSR", attributes.get(1).getStringValue(1));
+        assertEquals("Scales", attributes.get(2).getName());
+        assertFalse(attributes.get(2).isString());
+        assertEquals(DataType.FLOAT, attributes.get(2).getDataType());
+        assertEquals(2, attributes.get(2).getLength());
+        assertEquals(0.25, attributes.get(2).getNumericValue(1).doubleValue(), 0.0);
+
+        final Map<TileIndex, File> catalogTileFileMap = catalog.getTileFileMap();
+        assertEquals(2, catalogTileFileMap.size());
+        final Iterator<Map.Entry<TileIndex, File>> iterator = catalogTileFileMap.entrySet().iterator();
+        Map.Entry<TileIndex, File> entry = iterator.next();
+        assertEquals(TileIndex.getIndex(20, 5), entry.getKey().getIndex());
+        assertEquals(refFile, entry.getValue());
+        entry = iterator.next();
+        assertEquals(TileIndex.getIndex(21, 5), entry.getKey().getIndex());
+        assertEquals(tileFileMap.get(new TileIndex(21, 5)), entry.getValue());
+    }
+
+    @Test
+    public void testProductsAreKeptSeparately() throws IOException {
+        final GCMosaicCatalogCache cache = new GCMosaicCatalogCache(cacheDir);
+        cache.write("mosaic", productDir, createCatalog());
+
+        assertNull(cache.read("other", productDir));
+        assertNull(cache.read("mosaic", tempDir));
+        assertNotNull(cache.read("mosaic", productDir));
+    }
+
+    @Test
+    public void testChangedTileFileInvalidatesCatalog() throws IOException {
+        final GCMosaicCatalogCache cache = new GCMosaicCatalogCache(cacheDir);
+        cache.write("mosaic", productDir, createCatalog());
+
+        writeBytes(tileFileMap.get(new TileIndex(21, 5)), 32);
+        assertNull(cache.read("mosaic", productDir));
+    }
+
+    @Test
+    public void testModifiedTileFileInvalidatesCatalog() throws IOException {
+        final GCMosaicCatalogCache cache = new GCMosaicCatalogCache(cacheDir);
+        cache.write("mosaic", productDir, createCatalog());
+
+        final File tileFile = tileFileMap.get(new TileIndex(21, 5));
+        assertTrue(tileFile.setLastModified(tileFile.lastModified() - 10000));
+        assertNull(cache.read("mosaic", productDir));
+    }
+
+    @Test
+    public void testChangedDirectoryInvalidatesCatalog() throws IOException {
+        final GCMosaicCatalogCache cache = new GCMosaicCatalogCache(cacheDir);
+        cache.write("mosaic", productDir, createCatalog());
+
+        // a tile file has been added or removed
+        assertTrue(productDir.setLastModified(productDir.lastModified() - 10000));
+        assertNull(cache.read("mosaic", productDir));
+    }
+
+    private GCMosaicCatalog createCatalog() throws IOException {
+        final GCTileFile tileFile = new GCTileFile(new TestNetcdfFile(refFile.getPath()), refFile, 1,
+                                                   new GCChunkCache(0), null) {
+            @Override
+            public boolean isAnnualFile() {
+                return true;
+            }
+
+            @Override
+            public int getWidth() {
+                return 3600;
+            }
+
+            @Override
+            public int getHeight() {
+                return 1800;
+            }
+
+            @Override
+            public ProductData.UTC getStartDate() {
+                return new ProductData.UTC(1000, 20, 30);
+            }
+
+            @Override
+            public ProductData.UTC getEndDate() {
+                return new ProductData.UTC(1365, 0, 0);
+            }
+
+            @Override
+            public GeoPos getUpperLeftCorner() {
+                return new GeoPos(10.5f, -20.25f);
+            }
+
+            @Override
+            public List<BandDescriptor> getBandDescriptorList() {
+                final List<BandDescriptor> descriptors = new ArrayList<BandDescriptor>();
+                descriptors.add(createBandDescriptor("land_cover", ProductData.TYPE_UINT8,
+                                                     "Land cover class", null, 1.0, 0.0, true));
+                descriptors.add(createBandDescriptor("reflectance", ProductData.TYPE_INT16,
+                                                     null, "1", 1.0e-4, -0.5, false));
+                return descriptors;
+            }
+
+            @Override
+            public List<Attribute> getGlobalAttributes() {
+                final Array scales = Array.factory(DataType.FLOAT, new int[]{2});
+                scales.setDouble(0, 0.5);
+                scales.setDouble(1, 0.25);
+                return Arrays.asList(new Attribute("Title", "GlobCover"),
+                                     new Attribute("Sensors", Arrays.asList("MERIS", "AATSR")),
+                                     new Attribute("Scales", scales));
+            }
+        };
+        return GCMosaicCatalog.create(tileFile, tileFileMap, true);
+    }
+
+    private static BandDescriptor createBandDescriptor(String name, int dataType, String description, String unit,
+                                                       double scaleFactor, double offset, boolean fillValueUsed) {
+        final BandDescriptor descriptor = new BandDescriptor();
+        descriptor.setName(name);
+        descriptor.setDataType(dataType);
+        descriptor.setWidth(3600);
+        descriptor.setHeight(1800);
+        descriptor.setDescription(description);
+        descriptor.setUnit(unit);
+        descriptor.setScaleFactor(scaleFactor);
+        descriptor.setOffsetValue(offset);
+        descriptor.setFillValueUsed(fillValueUsed);
+        descriptor.setFillValue(255.0);
+        descriptor.setChunkWidth(360);
+        descriptor.setChunkHeight(180);
+        return descriptor;
+    }
+
+    private static void writeBytes(File file, int count) throws IOException {
+        final FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(new byte[count]);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static void delete(File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (final File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
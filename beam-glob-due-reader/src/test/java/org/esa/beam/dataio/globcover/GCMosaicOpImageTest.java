@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.jai.ResolutionLevel;
+import org.junit.Test;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GCMosaicOpImageTest {
+
+    // the product starts 100 pixels left of and 50 pixels above the corner of four tile files
+    private static final Point MOSAIC_OFFSET = new Point(TileIndex.TILE_SIZE - 100, TileIndex.TILE_SIZE - 50);
+
+    @Test
+    public void testNoDataTilesAreShifted() {
+        final TestTileFilePool pool = createPool(new TileIndex(0, 0), new TileIndex(1, 0));
+        final GCMosaicOpImage image = createImage(pool, MOSAIC_OFFSET);
+        assertFalse(image.isNoDataTile(0, 0));
+        assertFalse(image.isNoDataTile(1, 0));
+        // the lower tiles of the image lie within the second row of tile files only
+        assertTrue(image.isNoDataTile(0, 1));
+        assertTrue(image.isNoDataTile(1, 1));
+
+        // without offset, the whole image lies within the first tile file
+        final GCMosaicOpImage unshiftedImage = createImage(pool, new Point(0, 0));
+        assertFalse(unshiftedImage.isNoDataTile(1, 1));
+    }
+
+    @Test
+    public void testRegionsAreReadAtMosaicOffset() {
+        final TestTileFilePool pool = createPool(new TileIndex(0, 0), new TileIndex(1, 0),
+                                                 new TileIndex(0, 1), new TileIndex(1, 1));
+        final GCMosaicOpImage image = createImage(pool, MOSAIC_OFFSET);
+        final WritableRaster raster = Raster.createBandedRaster(DataBuffer.TYPE_BYTE, 200, 100, 1, null);
+        image.computeRect(null, raster, new Rectangle(0, 0, 200, 100));
+
+        final int tileSize = TileIndex.TILE_SIZE;
+        assertEquals(Arrays.asList("H00V00 " + (tileSize - 100) + "," + (tileSize - 50) + " 100x50",
+                                   "H01V00 0," + (tileSize - 50) + " 100x50",
+                                   "H00V01 " + (tileSize - 100) + ",0 100x50",
+                                   "H01V01 0,0 100x50"),
+                     pool.reads);
+        assertEquals(TestTileFilePool.getValue(0, 0), raster.getSample(0, 0, 0));
+        assertEquals(TestTileFilePool.getValue(0, 0), raster.getSample(99, 49, 0));
+        assertEquals(TestTileFilePool.getValue(1, 0), raster.getSample(100, 0, 0));
+        assertEquals(TestTileFilePool.getValue(0, 1), raster.getSample(0, 50, 0));
+        assertEquals(TestTileFilePool.getValue(1, 1), raster.getSample(199, 99, 0));
+    }
+
+    private static GCMosaicOpImage createImage(GCTileFilePool pool, Point mosaicOffset) {
+        final Band band = new Band("land_cover", ProductData.TYPE_UINT8, 400, 200);
+        return new GCMosaicOpImage(band, pool, new GCBandPrefetcher(), new Dimension(200, 100), mosaicOffset,
+                                   ResolutionLevel.MAXRES);
+    }
+
+    private static TestTileFilePool createPool(TileIndex... tileIndexes) {
+        final Map<TileIndex, File> fileMap = new HashMap<TileIndex, File>();
+        for (final TileIndex tileIndex : tileIndexes) {
+            final int index = tileIndex.getIndex();
+            fileMap.put(tileIndex, new File(String.format("H%02dV%02d.hdf", index % TileIndex.HORIZ_TILE_COUNT,
+                                                          index / TileIndex.HORIZ_TILE_COUNT)));
+        }
+        return new TestTileFilePool(fileMap, 4);
+    }
+}
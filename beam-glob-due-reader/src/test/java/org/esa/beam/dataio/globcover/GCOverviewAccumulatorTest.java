@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.junit.Test;
+
+import java.awt.image.DataBuffer;
+
+import static org.junit.Assert.*;
+
+public class GCOverviewAccumulatorTest {
+
+    @Test
+    public void testMean() {
+        final GCOverviewAccumulator accumulator = new GCOverviewAccumulator(DataBuffer.TYPE_SHORT, 1, 0, 2, 1, 2,
+                                                                            0, true, -1);
+        assertArrayEquals(new int[]{2, 0, 4, 2}, accumulator.getSourceRect());
+        // the source rectangle is passed in two pieces, and the first piece exceeds it
+        accumulator.accumulate(new short[]{99, 10, 20, 30, 99, 30, 40, -1}, 1, 0, 4, 2);
+        accumulator.accumulate(new short[]{5, 7}, 5, 0, 1, 2);
+
+        final short[] data = (short[]) accumulator.createData(3);
+        assertEquals(9, data.length);
+        assertEquals(25, data[0]);
+        assertEquals(14, data[1]);
+        assertEquals(-1, data[2]);
+        assertEquals(-1, data[3]);
+    }
+
+    @Test
+    public void testMode() {
+        final GCOverviewAccumulator accumulator = new GCOverviewAccumulator(DataBuffer.TYPE_BYTE, 0, 0, 2, 1, 2,
+                                                                            7, false, 0);
+        accumulator.accumulate(new byte[]{4, 4, 6, 7, 3, 4, 9, 9}, 0, 0, 4, 2);
+
+        final byte[] data = (byte[]) accumulator.createData(2);
+        assertEquals(4, data[0]);
+        // values outside the classes are ignored
+        assertEquals(6, data[1]);
+    }
+
+    @Test
+    public void testUnsignedSamples() {
+        assertEquals(255.0, GCOverviewAccumulator.getSample(new byte[]{-1}, 0, DataBuffer.TYPE_BYTE), 0.0);
+        assertEquals(65535.0, GCOverviewAccumulator.getSample(new short[]{-1}, 0, DataBuffer.TYPE_USHORT), 0.0);
+        assertEquals(-1.0, GCOverviewAccumulator.getSample(new short[]{-1}, 0, DataBuffer.TYPE_SHORT), 0.0);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class GCOverviewFileTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("GCOverviewFileTest", ".ovr");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testBlocksArePersisted() throws IOException {
+        final int width = GCOverviewFile.BLOCK_SIZE + 10;
+        final int height = 20;
+        GCOverviewFile overviewFile = GCOverviewFile.open(file, 42L, width, height, DataBuffer.TYPE_SHORT);
+        try {
+            assertEquals(2, overviewFile.getBlockCountX());
+            assertEquals(1, overviewFile.getBlockCountY());
+            assertFalse(overviewFile.isBlockComplete(1, 0));
+
+            final short[] data = new short[GCOverviewFile.BLOCK_SIZE * GCOverviewFile.BLOCK_SIZE];
+            data[0] = 17;
+            data[data.length - 1] = -3;
+            overviewFile.writeBlock(1, 0, data);
+            assertTrue(overviewFile.isBlockComplete(1, 0));
+            assertFalse(overviewFile.isBlockComplete(0, 0));
+            assertFalse(overviewFile.isComplete());
+        } finally {
+            overviewFile.close();
+        }
+
+        overviewFile = GCOverviewFile.open(file, 42L, width, height, DataBuffer.TYPE_SHORT);
+        try {
+            assertTrue(overviewFile.isBlockComplete(1, 0));
+            assertFalse(overviewFile.isBlockComplete(0, 0));
+            final short[] data = (short[]) overviewFile.readBlock(1, 0);
+            assertEquals(17, data[0]);
+            assertEquals(-3, data[data.length - 1]);
+        } finally {
+            overviewFile.close();
+        }
+    }
+
+    @Test
+    public void testChangedMosaicDiscardsBlocks() throws IOException {
+        GCOverviewFile overviewFile = GCOverviewFile.open(file, 42L, 10, 10, DataBuffer.TYPE_BYTE);
+        try {
+            overviewFile.writeBlock(0, 0, new byte[GCOverviewFile.BLOCK_SIZE * GCOverviewFile.BLOCK_SIZE]);
+            assertTrue(overviewFile.isComplete());
+        } finally {
+            overviewFile.close();
+        }
+
+        overviewFile = GCOverviewFile.open(file, 43L, 10, 10, DataBuffer.TYPE_BYTE);
+        try {
+            assertFalse(overviewFile.isComplete());
+        } finally {
+            overviewFile.close();
+        }
+    }
+
+    @Test
+    public void testChangedMosaicDoesNotTruncateOpenFile() throws IOException {
+        final GCOverviewFile oldFile = GCOverviewFile.open(file, 42L, 10, 10, DataBuffer.TYPE_BYTE);
+        try {
+            final byte[] data = new byte[GCOverviewFile.BLOCK_SIZE * GCOverviewFile.BLOCK_SIZE];
+            data[0] = 5;
+            oldFile.writeBlock(0, 0, data);
+
+            final GCOverviewFile newFile = GCOverviewFile.open(file, 43L, 10, 10, DataBuffer.TYPE_BYTE);
+            try {
+                assertFalse(newFile.isComplete());
+                // the file opened before is still intact
+                assertTrue(oldFile.isComplete());
+                assertEquals(5, ((byte[]) oldFile.readBlock(0, 0))[0]);
+            } finally {
+                newFile.close();
+            }
+        } finally {
+            oldFile.close();
+        }
+        final File[] tempFiles = file.getParentFile().listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.getName().startsWith(file.getName()) && !pathname.equals(file);
+            }
+        });
+        assertEquals(0, tempFiles.length);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.junit.Test;
+import ucar.nc2.NetcdfFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GCTileFilePoolTest {
+
+    @Test
+    public void testFilesAreOnlyRegistered() throws IOException {
+        final Map<TileIndex, File> fileMap = new HashMap<TileIndex, File>();
+        fileMap.put(new TileIndex(3, 4), new File("doesNotExist_H03V04.hdf"));
+        final GCTileFilePool pool = new GCTileFilePool(fileMap, 2);
+
+        assertTrue(pool.contains(TileIndex.getIndex(3, 4)));
+        assertFalse(pool.contains(TileIndex.getIndex(4, 3)));
+        assertEquals(1, pool.getTileIndexes().size());
+        assertEquals(0, pool.getOpenFileCount());
+
+        assertNull(pool.acquire(TileIndex.getIndex(4, 3)));
+        assertEquals(0, pool.getOpenFileCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxOpenFileCountMustBePositive() {
+        new GCTileFilePool(new HashMap<TileIndex, File>(), 0);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedFileIsEvicted() throws IOException {
+        final TestTileFilePool pool = createPool(3, 2);
+        pool.acquire(0);
+        pool.release(0);
+        pool.acquire(1);
+        pool.release(1);
+        // the first tile file is used again, so the second one becomes the eldest
+        pool.acquire(0);
+        pool.release(0);
+        assertEquals(2, pool.getOpenFileCount());
+
+        pool.acquire(2);
+        pool.release(2);
+        assertEquals(2, pool.getOpenFileCount());
+        assertFalse(pool.openedHandles.get(0).isClosed());
+        assertTrue(pool.openedHandles.get(1).isClosed());
+        assertFalse(pool.openedHandles.get(2).isClosed());
+    }
+
+    @Test
+    public void testEvictedFileIsReopened() throws IOException {
+        final TestTileFilePool pool = createPool(2, 1);
+        final GCTileFile tileFile = pool.acquire(0);
+        pool.release(0);
+        pool.acquire(1);
+        pool.release(1);
+        assertTrue(pool.openedHandles.get(0).isClosed());
+
+        final GCTileFile reopenedTileFile = pool.acquire(0);
+        assertNotSame(tileFile, reopenedTileFile);
+        assertEquals(tileFile.getFilePath(), reopenedTileFile.getFilePath());
+        assertEquals(3, pool.openedHandles.size());
+        assertFalse(pool.openedHandles.get(2).isClosed());
+        // the other tile file has been evicted in turn
+        pool.release(0);
+        assertTrue(pool.openedHandles.get(1).isClosed());
+        assertEquals(1, pool.getOpenFileCount());
+    }
+
+    @Test
+    public void testAcquiredFileIsNeverClosed() throws IOException {
+        final TestTileFilePool pool = createPool(3, 1);
+        // the first tile file is acquired twice and released once only
+        final GCTileFile tileFile = pool.acquire(0);
+        assertSame(tileFile, pool.acquire(0));
+        pool.release(0);
+
+        pool.acquire(1);
+        pool.release(1);
+        pool.acquire(2);
+        pool.release(2);
+        assertFalse(pool.openedHandles.get(0).isClosed());
+        assertTrue(pool.openedHandles.get(1).isClosed());
+        assertTrue(pool.openedHandles.get(2).isClosed());
+        assertEquals(1, pool.getOpenFileCount());
+        assertSame(tileFile, pool.acquire(0));
+        pool.release(0);
+
+        // the limit is exceeded while all tile files are acquired
+        pool.acquire(1);
+        assertEquals(2, pool.getOpenFileCount());
+        pool.release(0);
+        assertTrue(pool.openedHandles.get(0).isClosed());
+        assertFalse(pool.openedHandles.get(3).isClosed());
+        assertEquals(1, pool.getOpenFileCount());
+        pool.release(1);
+    }
+
+    @Test
+    public void testReadHandlesCountAgainstLimit() throws IOException {
+        final TestTileFilePool pool = createPool(3, 2);
+        final GCTileFile tileFile = pool.acquire(0);
+        final NetcdfFile handle1 = tileFile.acquireReadHandle();
+        final NetcdfFile handle2 = tileFile.acquireReadHandle();
+        assertNotSame(handle1, handle2);
+        assertEquals(1, pool.getOpenFileCount());
+        assertEquals(2, pool.getOpenHandleCount());
+
+        // the other tile file takes the last handle, so no further read handle may be opened
+        pool.acquire(1);
+        assertEquals(3, pool.getOpenHandleCount());
+        final GCTileFile.ReadHandleBudget budget = pool.budgets.get(0);
+        assertFalse(budget.tryAcquire());
+
+        tileFile.releaseReadHandle(handle2);
+        tileFile.releaseReadHandle(handle1);
+        pool.release(0);
+        pool.release(1);
+        assertTrue(pool.getOpenHandleCount() <= 3);
+
+        // closing a tile file releases its read handles
+        pool.close();
+        assertEquals(0, pool.getOpenHandleCount());
+        assertTrue(pool.openedHandles.get(1).isClosed());
+    }
+
+    @Test
+    public void testOpeningTileFilesEvictsFilesWithReadHandles() throws IOException {
+        final TestTileFilePool pool = createPool(3, 2);
+        final GCTileFile tileFile = pool.acquire(0);
+        tileFile.releaseReadHandle(tileFile.acquireReadHandle());
+        final NetcdfFile handle1 = tileFile.acquireReadHandle();
+        final NetcdfFile handle2 = tileFile.acquireReadHandle();
+        tileFile.releaseReadHandle(handle1);
+        tileFile.releaseReadHandle(handle2);
+        pool.release(0);
+        assertEquals(2, pool.getOpenHandleCount());
+
+        pool.acquire(1);
+        pool.release(1);
+        pool.acquire(2);
+        pool.release(2);
+        // the first tile file with two handles has been closed
+        assertEquals(2, pool.getOpenFileCount());
+        assertEquals(2, pool.getOpenHandleCount());
+        assertTrue(pool.openedHandles.get(0).isClosed());
+        assertTrue(pool.openedHandles.get(1).isClosed());
+    }
+
+    private static TestTileFilePool createPool(int tileFileCount, int maxOpenFileCount) {
+        final Map<TileIndex, File> fileMap = new HashMap<TileIndex, File>();
+        for (int i = 0; i < tileFileCount; i++) {
+            fileMap.put(new TileIndex(i, 0), new File(String.format("H%02dV00.hdf", i)));
+        }
+        return new TestTileFilePool(fileMap, maxOpenFileCount);
+    }
+}
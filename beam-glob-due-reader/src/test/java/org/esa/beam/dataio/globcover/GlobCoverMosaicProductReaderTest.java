@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.globcover;
+
+import org.esa.beam.framework.dataio.ProductSubsetDef;
+import org.esa.beam.framework.datamodel.GeoPos;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GlobCoverMosaicProductReaderTest {
+
+    private static final Rectangle GLOBAL_REGION = new Rectangle(TileIndex.HORIZ_TILE_COUNT * TileIndex.TILE_SIZE,
+                                                                 (TileIndex.MAX_VERT_INDEX + 1) * TileIndex.TILE_SIZE);
+
+    @Test
+    public void testSubsetRegionWithoutSubset() throws IOException {
+        assertEquals(GLOBAL_REGION, GlobCoverMosaicProductReader.getSubsetRegion(null, GLOBAL_REGION));
+        assertEquals(GLOBAL_REGION, GlobCoverMosaicProductReader.getSubsetRegion(new ProductSubsetDef(),
+                                                                                 GLOBAL_REGION));
+    }
+
+    @Test
+    public void testSubsetRegionIsClipped() throws IOException {
+        final ProductSubsetDef subsetDef = new ProductSubsetDef();
+        subsetDef.setRegion(new Rectangle(1000, 2000, 300, 400));
+        assertEquals(new Rectangle(1000, 2000, 300, 400),
+                     GlobCoverMosaicProductReader.getSubsetRegion(subsetDef, GLOBAL_REGION));
+
+        subsetDef.setRegion(new Rectangle(-100, GLOBAL_REGION.height - 300, 500, 1000));
+        assertEquals(new Rectangle(0, GLOBAL_REGION.height - 300, 400, 300),
+                     GlobCoverMosaicProductReader.getSubsetRegion(subsetDef, GLOBAL_REGION));
+    }
+
+    @Test(expected = IOException.class)
+    public void testSubsetRegionOutsideMosaic() throws IOException {
+        final ProductSubsetDef subsetDef = new ProductSubsetDef();
+        subsetDef.setRegion(new Rectangle(GLOBAL_REGION.width, 0, 100, 100));
+        GlobCoverMosaicProductReader.getSubsetRegion(subsetDef, GLOBAL_REGION);
+    }
+
+    @Test
+    public void testSubSamplingIsRejected() {
+        final ProductSubsetDef subsetDef = new ProductSubsetDef();
+        subsetDef.setSubSampling(2, 1);
+        assertSubsetRejected(subsetDef);
+        subsetDef.setSubSampling(1, 3);
+        assertSubsetRejected(subsetDef);
+        // also together with a region
+        subsetDef.setRegion(new Rectangle(1000, 2000, 300, 400));
+        assertSubsetRejected(subsetDef);
+    }
+
+    @Test
+    public void testIntersectingTileFiles() {
+        final Map<TileIndex, File> tileFileMap = new HashMap<TileIndex, File>();
+        tileFileMap.put(new TileIndex(0, 0), new File("H00V00.hdf"));
+        tileFileMap.put(new TileIndex(1, 0), new File("H01V00.hdf"));
+        tileFileMap.put(new TileIndex(2, 0), new File("H02V00.hdf"));
+        tileFileMap.put(new TileIndex(1, 1), new File("H01V01.hdf"));
+
+        final Map<TileIndex, File> intersectingTileFiles =
+                GlobCoverMosaicProductReader.getIntersectingTileFiles(tileFileMap, new Rectangle(1700, 100, 200, 100));
+        assertEquals(2, intersectingTileFiles.size());
+        assertEquals(new File("H00V00.hdf"), intersectingTileFiles.get(new TileIndex(0, 0)));
+        assertEquals(new File("H01V00.hdf"), intersectingTileFiles.get(new TileIndex(1, 0)));
+
+        // the region ends exactly at the border of the next tile
+        assertEquals(1, GlobCoverMosaicProductReader.getIntersectingTileFiles(
+                tileFileMap, new Rectangle(0, 0, TileIndex.TILE_SIZE, TileIndex.TILE_SIZE)).size());
+        assertTrue(GlobCoverMosaicProductReader.getIntersectingTileFiles(
+                tileFileMap, new Rectangle(0, 2 * TileIndex.TILE_SIZE, 100, 100)).isEmpty());
+    }
+
+    @Test
+    public void testCoveredImageAreaIsTranslated() {
+        final Map<TileIndex, File> tileFileMap = new HashMap<TileIndex, File>();
+        tileFileMap.put(new TileIndex(1, 0), new File("H01V00.hdf"));
+        tileFileMap.put(new TileIndex(1, 1), new File("H01V01.hdf"));
+
+        final Rectangle region = new Rectangle(1700, 1700, 400, 400);
+        final Area area = GlobCoverMosaicProductReader.createCoveredImageArea(tileFileMap.keySet(), region);
+        // the tiles cover the mosaic from x = 1800 to 3600, in image coordinates of the product
+        assertEquals(new Rectangle(100, 0, 300, 400), area.getBounds());
+        assertTrue(area.contains(150, 10));
+        assertTrue(area.contains(399, 399));
+        assertFalse(area.contains(50, 10));
+    }
+
+    @Test
+    public void testUpperLeftPositionIsShifted() {
+        GeoPos pos = GlobCoverMosaicProductReader.getUpperLeftPosition(GLOBAL_REGION);
+        assertEquals(-180.0f + 0.5f / 360.0f, pos.getLon(), 1.0e-5f);
+        assertEquals(90.0f - 0.5f / 360.0f, pos.getLat(), 1.0e-5f);
+
+        // one degree is 360 pixels
+        pos = GlobCoverMosaicProductReader.getUpperLeftPosition(new Rectangle(360, 720, 100, 100));
+        assertEquals(-179.0f + 0.5f / 360.0f, pos.getLon(), 1.0e-5f);
+        assertEquals(88.0f - 0.5f / 360.0f, pos.getLat(), 1.0e-5f);
+    }
+
+    private static void assertSubsetRejected(ProductSubsetDef subsetDef) {
+        try {
+            GlobCoverMosaicProductReader.getSubsetRegion(subsetDef, GLOBAL_REGION);
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("Sub-sampling"));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+
+package org.esa.beam.dataio.globcover;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link GCTileFilePool} which opens {@link TestNetcdfFile}s instead of tile files. The tile files
+ * must be named after their tile index, e.g. {@code H03V04.hdf}; all their samples have the value
+ * {@link #getValue(int, int)}. The pool records the handles it opens, the budgets of its tile files
+ * and the regions read from them.
+ */
+class TestTileFilePool extends GCTileFilePool {
+
+    // the handles in the order they have been opened
+    final List<TestNetcdfFile> openedHandles = new ArrayList<TestNetcdfFile>();
+    // the budgets of the tile files in the order they have been opened
+    final List<GCTileFile.ReadHandleBudget> budgets = new ArrayList<GCTileFile.ReadHandleBudget>();
+    // the regions in the order they have been read, e.g. "H00V01 10,20 100x50"
+    final List<String> reads = new ArrayList<String>();
+
+    TestTileFilePool(Map<TileIndex, File> fileMap, int maxOpenFileCount) {
+        super(fileMap, maxOpenFileCount);
+    }
+
+    // the value of all samples of a tile file
+    static int getValue(int horizIndex, int vertIndex) {
+        return 10 * horizIndex + vertIndex + 1;
+    }
+
+    @Override
+    GCTileFile openTileFile(final File file, GCTileFile.ReadHandleBudget budget) {
+        synchronized (this) {
+            budgets.add(budget);
+        }
+        final String name = file.getName().substring(0, 6);
+        final int horizIndex = Integer.parseInt(name.substring(1, 3));
+        final int vertIndex = Integer.parseInt(name.substring(4, 6));
+        return new GCTileFile(openHandle(file), file, 2, new GCChunkCache(0), budget) {
+            @Override
+            NetcdfFile openReadHandle() {
+                return openHandle(file);
+            }
+
+            @Override
+            public Array[] readData(String[] variableNames, int offsetX, int offsetY, int width, int height,
+                                    int stepX, int stepY) {
+                synchronized (reads) {
+                    reads.add(name + " " + offsetX + "," + offsetY + " " + width + "x" + height);
+                }
+                final Array[] arrays = new Array[variableNames.length];
+                for (int i = 0; i < arrays.length; i++) {
+                    final byte[] data = new byte[width * height];
+                    Arrays.fill(data, (byte) getValue(horizIndex, vertIndex));
+                    arrays[i] = Array.factory(DataType.BYTE, new int[]{height, width}, data);
+                }
+                return arrays;
+            }
+        };
+    }
+
+    private synchronized TestNetcdfFile openHandle(File file) {
+        final TestNetcdfFile handle = new TestNetcdfFile(file.getPath());
+        openedHandles.add(handle);
+        return handle;
+    }
+}
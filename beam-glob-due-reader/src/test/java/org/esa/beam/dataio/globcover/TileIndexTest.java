@@ -41,4 +41,15 @@ public class TileIndexTest {
         assertNotNull(map.get(new TileIndex(0, 3)));
     }
 
+    @Test
+    public void testIndexIsUnique() {
+        assertFalse(new TileIndex(TileIndex.MAX_HORIZ_INDEX, 3).equals(new TileIndex(0, 4)));
+        assertEquals(0, TileIndex.getIndex(0, 0));
+        assertEquals(TileIndex.MAX_HORIZ_INDEX, TileIndex.getIndex(TileIndex.MAX_HORIZ_INDEX, 0));
+        assertEquals(TileIndex.HORIZ_TILE_COUNT, TileIndex.getIndex(0, 1));
+        assertEquals(TileIndex.TILE_COUNT - 1,
+                     TileIndex.getIndex(TileIndex.MAX_HORIZ_INDEX, TileIndex.MAX_VERT_INDEX));
+        assertEquals(TileIndex.getIndex(5, 7), new TileIndex(5, 7).getIndex());
+    }
+
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class CacheFileUtilsTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("CacheFileUtilsTest", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testReplace() throws IOException {
+        final File cacheFile = new File(dir, "cache.dat");
+
+        final File tempFile1 = CacheFileUtils.createTempFile(cacheFile);
+        assertEquals(dir, tempFile1.getParentFile());
+        writeBytes(tempFile1, 1);
+        assertTrue(CacheFileUtils.replace(tempFile1, cacheFile));
+        assertFalse(tempFile1.exists());
+        assertEquals(1, cacheFile.length());
+
+        // an existing cache file is replaced
+        final File tempFile2 = CacheFileUtils.createTempFile(cacheFile);
+        assertFalse(tempFile1.equals(tempFile2));
+        writeBytes(tempFile2, 2);
+        assertTrue(CacheFileUtils.replace(tempFile2, cacheFile));
+        assertFalse(tempFile2.exists());
+        assertEquals(2, cacheFile.length());
+    }
+
+    @Test
+    public void testFilePrefix() {
+        final File dir1 = new File(dir, "a/product");
+        final File dir2 = new File(dir, "b/product");
+
+        assertTrue(CacheFileUtils.getFilePrefix("product", dir1).startsWith("product-"));
+        assertEquals(CacheFileUtils.getFilePrefix("product", dir1),
+                     CacheFileUtils.getFilePrefix("product", new File(dir, "b/../a/product")));
+        assertFalse(CacheFileUtils.getFilePrefix("product", dir1).equals(
+                CacheFileUtils.getFilePrefix("product", dir2)));
+    }
+
+    @Test
+    public void testMakeCacheDir() {
+        final File cacheDir = new File(dir, "cache");
+        assertTrue(CacheFileUtils.makeCacheDir(cacheDir));
+        assertTrue(cacheDir.isDirectory());
+        assertTrue(CacheFileUtils.makeCacheDir(cacheDir));
+    }
+
+    @Test
+    public void testHeader() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(8);
+        CacheFileUtils.putHeader(buffer, 0x41424344, 2);
+        buffer.flip();
+        assertTrue(CacheFileUtils.getHeader(buffer.duplicate(), 0x41424344, 2));
+        assertFalse(CacheFileUtils.getHeader(buffer.duplicate(), 0x41424344, 1));
+        assertFalse(CacheFileUtils.getHeader(buffer.duplicate(), 0x41424345, 2));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CacheFileUtils.writeHeader(new DataOutputStream(bytes), 0x41424344, 2);
+        assertTrue(CacheFileUtils.readHeader(createInput(bytes), 0x41424344, 2));
+        assertFalse(CacheFileUtils.readHeader(createInput(bytes), 0x41424344, 3));
+    }
+
+    private static DataInputStream createInput(ByteArrayOutputStream bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static void writeBytes(File file, int count) throws IOException {
+        final FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(new byte[count]);
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2010 Brockmann Consult GmbH (info@brockmann-consult.de)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option)
+ * any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, see http://www.gnu.org/licenses/
+ */
+
+package org.esa.beam.dataio.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WeighedLruCacheTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaxWeight() {
+        new StringCache(-1);
+    }
+
+    @Test
+    public void testGetAndPut() {
+        final StringCache cache = new StringCache(10);
+        assertNull(cache.get(1));
+        cache.put(1, "abc");
+        assertEquals("abc", cache.get(1));
+        assertEquals(3, cache.getWeight());
+
+        // a replaced value no longer counts
+        cache.put(1, "abcde");
+        assertEquals("abcde", cache.get(1));
+        assertEquals(5, cache.getWeight());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        cache.clear();
+        assertNull(cache.get(1));
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedValuesAreEvicted() {
+        final StringCache cache = new StringCache(10);
+        cache.put(1, "aaaa");
+        cache.put(2, "bbbb");
+        cache.get(1);
+        cache.put(3, "cccc");
+
+        assertEquals("aaaa", cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals("cccc", cache.get(3));
+        assertEquals(8, cache.getWeight());
+
+        // several values are evicted to make room for a heavy one
+        cache.put(4, "dddddddddd");
+        assertNull(cache.get(1));
+        assertNull(cache.get(3));
+        assertEquals("dddddddddd", cache.get(4));
+        assertEquals(10, cache.getWeight());
+    }
+
+    @Test
+    public void testTooHeavyValueIsNotAdded() {
+        final StringCache cache = new StringCache(10);
+        cache.put(1, "aaaa");
+        cache.put(2, "bbbbbbbbbbb");
+
+        assertEquals("aaaa", cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals(4, cache.getWeight());
+
+        final StringCache disabledCache = new StringCache(0);
+        disabledCache.put(1, "a");
+        assertNull(disabledCache.get(1));
+    }
+
+    private static class StringCache extends WeighedLruCache<Integer, String> {
+
+        private StringCache(long maxWeight) {
+            super(maxWeight);
+        }
+
+        @Override
+        protected long weigh(String value) {
+            return value.length();
+        }
+    }
+}